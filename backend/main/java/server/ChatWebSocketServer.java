@@ -1,141 +1,369 @@
 package server;
 
-import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Base64;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-
-import org.java_websocket.WebSocket;
-import org.java_websocket.handshake.ClientHandshake;
-import org.java_websocket.server.WebSocketServer;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import server.cache.AttachmentCache;
+import server.cache.WarmState;
 import server.dao.ActionDAO;
 import server.dao.UserDAO;
+import server.http.FileTokens;
+import server.journal.AuditEvent;
+import server.lanes.BulkOutbound;
+import server.lanes.Lane;
+import server.lanes.LaneExecutors;
+import server.lanes.LaneMetrics;
+import server.model.HistoryRecord;
 import server.model.User;
+import server.preview.PreviewService;
+import server.retention.ArchiveStore;
+import server.search.MessageIndex;
 import server.service.AuditService;
+import server.service.BroadcastShards;
+import server.service.ConnectionEventRollup;
+import server.service.HistoryService;
 import server.service.MessageContext;
 import server.service.MessageDispatcher;
+import server.service.handlers.ArchiveQueryHandler;
 import server.service.handlers.AuthHandler;
+import server.service.handlers.DirectHandler;
+import server.service.handlers.FileGetHandler;
 import server.service.handlers.FileHandler;
+import server.service.handlers.FileUrlHandler;
 import server.service.handlers.JoinRoomHandler;
 import server.service.handlers.LeaveRoomHandler;
 import server.service.handlers.LogoutHandler;
 import server.service.handlers.RegisterHandler;
+import server.service.handlers.SearchHandler;
 import server.service.handlers.TextHandler;
+import server.service.handlers.TraceDumpHandler;
 import server.service.handlers.WebRTCAnswerHandler;
 import server.service.handlers.WebRTCIceHandler;
 import server.service.handlers.WebRTCOfferHandler;
+import server.signaling.CallSetupMetrics;
+import server.signaling.SignalingRelay;
+import server.trace.MessageTrace;
+import server.trace.Stage;
+import server.trace.Tracer;
+import server.transport.ChannelHandler;
+import server.transport.ClientChannel;
+import server.transport.Transport;
+import server.transport.Transports;
 
 /**
  * Servidor WebSocket para conectar con un frontend en JavaScript.
  * - Autenticación: type=auth {username, password} -> valida con UserDAO.authenticate
  * - Mensaje texto: type=text {content}
+ * - Mensaje directo: type=direct {to, content} (solo a las conexiones del destinatario)
  * - Logout: type=logout
- * - Lista de usuarios conectados: type=userlist {users:[...]} (broadcast automático)
+ * - Lista de usuarios conectados: type=userlist {users:[...], version} (broadcast automático)
  * - Archivos: recibe binario y lo reenvía a todos tal cual (versión simple)
+ *
+ * El transporte (sockets, handshake, frames) es intercambiable: ver {@link Transport} y {@code Config.getTransport()}.
  */
-public class ChatWebSocketServer extends WebSocketServer {
+public class ChatWebSocketServer implements ChannelHandler {
 
     // Conexión -> usuario autenticado
-    private final ConcurrentHashMap<WebSocket, User> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ClientChannel, User> sessions = new ConcurrentHashMap<>();
     // Usuarios en videollamada
-    private final ConcurrentHashMap<String, WebSocket> videoRoomUsers = new ConcurrentHashMap<>();
-    private final ExecutorService pool = Executors.newCachedThreadPool();
+    private final ConcurrentHashMap<String, ClientChannel> videoRoomUsers = new ConcurrentHashMap<>();
+    // Carriles de prioridad: señalización/presencia, chat y archivos no comparten hilos ni cola de salida
+    private final LaneMetrics laneMetrics = new LaneMetrics();
+    private final LaneExecutors lanes = new LaneExecutors(Config.getLaneThreads(),
+            Config.getBulkLaneThreads(), Config.getBulkLaneQueue(), laneMetrics);
+    private final BulkOutbound bulk = new BulkOutbound(Config.getBulkLaneBytesPerSecond(), laneMetrics);
+    private final Tracer tracer = new Tracer(Config.getTraceSampleEvery(), Config.getTraceRingSize());
     private final Gson gson = new Gson();
-    private final UserDAO userDAO = new UserDAO();
-    private final ActionDAO actionDAO = new ActionDAO();
-    private final AuditService auditService = new AuditService();
+    private final UserDAO userDAO;
+    private final ActionDAO actionDAO;
+    private final AuditService auditService;
+    private final WarmState warm;
+    private final HistoryService history;
+    private final FileTokens fileTokens;
+    private final ArchiveStore archive; // null si el backend no archiva (local)
+    private final MessageIndex searchIndex = MessageIndex.open(Paths.get(Config.getSearchIndexDir()), Config.getSearchBufferDocs());
+    private final PreviewService previews;
+    private final ConnectionEventRollup connectionEvents;
+    private final SignalingRelay signaling;
+    private final BroadcastShards broadcasts = new BroadcastShards(Config.getBroadcastShards());
+    // Resumen periódico de métricas en el log (además del que se escribe al apagar)
+    private final ScheduledExecutorService metricsReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "metrics-report");
+        t.setDaemon(true);
+        return t;
+    });
+    private final int port;
+    private volatile Transport transport; // se crea en start(): el constructor no publica this
     private MessageDispatcher dispatcher;
-    private MessageContext messageContext;
+    private volatile MessageContext messageContext;
 
-    public ChatWebSocketServer(int port) {
-        super(new InetSocketAddress(port));
+    public ChatWebSocketServer(int port, UserDAO userDAO, ActionDAO actionDAO, AuditService auditService,
+                               WarmState warm, FileTokens fileTokens, ArchiveStore archive) {
+        this.port = port;
+        this.userDAO = userDAO;
+        this.actionDAO = actionDAO;
+        this.previews = new PreviewService(actionDAO, Config.getPreviewMaxDimension(),
+                Config.getPreviewThreads(), Config.getPreviewQueue());
+        this.connectionEvents = new ConnectionEventRollup(auditService, Config.getConnEventSamples());
+        this.signaling = new SignalingRelay(videoRoomUsers, new CallSetupMetrics(), Config.getIceCoalesceMs());
+        this.auditService = auditService;
+        this.warm = warm;
+        this.fileTokens = fileTokens;
+        this.archive = archive;
+        this.history = new HistoryService(actionDAO, warm.history(), new AttachmentCache(Config.getAttachmentCacheBytes(), FileGetHandler::frameHeader));
+        // Indexar textos y actualizar el historial una vez persistidos (el id de acción lo asigna la BD)
+        auditService.addPersistListener((seq, event, actionId) -> {
+            if ("FILE".equals(event.getActionType())) history.cacheAttachment(event, actionId);
+            if ("TEXT".equals(event.getActionType()) || "FILE".equals(event.getActionType())
+                    || "DIRECT".equals(event.getActionType())) history.notePersisted(actionId);
+            if ("TEXT".equals(event.getActionType())) {
+                searchIndex.add(actionId, event.getRoom(), event.getContent());
+                history.appendPersisted(event, actionId);
+            } else if ("FILE".equals(event.getActionType()) && PreviewService.supports(event.getMimetype())) {
+                attachPreview(event, actionId);
+            } else if ("FILE".equals(event.getActionType())) {
+                history.appendPersisted(event, actionId);
+            }
+        });
+        // Cierra la etapa de persistencia de los mensajes muestreados
+        if (tracer.enabled()) {
+            auditService.setSequenceListener(tracer);
+            auditService.addPersistListener(tracer);
+        }
     }
 
     @Override
     public void onStart() {
-        System.out.println("WebSocket server ON ws://" + Config.getHost() + ":" + getPort() + "/");
-        setConnectionLostTimeout(30);
-        auditService.recordSystem("WebSocket server ON puerto " + getPort());
+        System.out.println("WebSocket server ON ws://" + Config.getHost() + ":" + getPort() + "/ (transporte " + transport.name() + ")");
+        auditService.recordSystem("WebSocket server ON puerto " + getPort() + " (" + transport.name() + ")");
+        connectionEvents.start(Config.getConnEventRollupSec());
+        int reportSec = Config.getMetricsReportSec();
+        if (reportSec > 0) metricsReporter.scheduleAtFixedRate(this::reportMetrics, reportSec, reportSec, TimeUnit.SECONDS);
         // Inicializar contexto y dispatcher (Open/Closed: agregar handler sin tocar servidor)
-        this.messageContext = new MessageContext(sessions, videoRoomUsers, userDAO, actionDAO, auditService, gson);
+        this.messageContext = new MessageContext(sessions, videoRoomUsers, userDAO, actionDAO, auditService, searchIndex,
+                history, warm, fileTokens, archive, signaling, broadcasts, bulk, tracer, gson);
         this.dispatcher = new MessageDispatcher()
             .register(new AuthHandler())
             .register(new RegisterHandler())
             .register(new TextHandler())
+            .register(new DirectHandler())
             .register(new FileHandler())
+            .register(new FileGetHandler())
+            .register(new FileUrlHandler())
             .register(new JoinRoomHandler())
             .register(new LeaveRoomHandler())
             .register(new WebRTCOfferHandler())
             .register(new WebRTCAnswerHandler())
             .register(new WebRTCIceHandler())
+            .register(new SearchHandler())
+            .register(new TraceDumpHandler())
+            .register(new ArchiveQueryHandler())
             .register(new LogoutHandler());
+        // Poner al día el índice de búsqueda con lo persistido tras el último segmento
+        lanes.execute(Lane.NORMAL, () -> searchIndex.catchUp(actionDAO));
+    }
+
+    public HistoryService history() { return history; }
+
+    /** Trazas por etapa de los mensajes muestreados. */
+    public Tracer tracer() { return tracer; }
+
+    /** Latencia por carril de prioridad (cola, proceso y salida bulk). */
+    public LaneMetrics laneMetrics() { return laneMetrics; }
+
+    public synchronized void start() {
+        if (transport != null) throw new IllegalStateException("El servidor ya fue iniciado");
+        transport = Transports.create(Config.getTransport(), port, Config.getNioSelectors(), this);
+        transport.start();
+    }
+
+    public int getPort() {
+        Transport t = transport;
+        return t != null ? t.getPort() : port;
+    }
+
+    /**
+     * Transporte en uso, o null antes de {@link #start()} (con TRANSPORT=memory, un
+     * {@link server.transport.InMemoryTransport} para conectar clientes en proceso).
+     */
+    public Transport transport() { return transport; }
+
+    public void stop(int timeout) throws InterruptedException {
+        if (transport != null) transport.stop(timeout);
+        lanes.stop(timeout);
+        bulk.stop();
+        broadcasts.stop(timeout);
+        connectionEvents.stop();
+        metricsReporter.shutdownNow();
+        signaling.stop();
+        previews.shutdown();
+        searchIndex.close();
+        reportMetrics();
+    }
+
+    private void reportMetrics() {
+        System.out.println(history.attachments().report());
+        System.out.println(laneMetrics.report());
     }
 
     @Override
-    public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        System.out.println("Nueva conexión WS: " + conn.getRemoteSocketAddress());
-        // Aún no autenticado: esperamos type=auth
-        auditService.recordSystem("Nueva conexión WS: " + conn.getRemoteSocketAddress());
+    public void onOpen(ClientChannel conn) {
+        // Aún no autenticado: esperamos type=auth. Solo se cuenta; el resumen se audita por intervalo
+        connectionEvents.connected(conn.getRemoteSocketAddress());
     }
 
     @Override
-    public void onMessage(WebSocket conn, String message) {
-        pool.submit(() -> handleText(conn, message));
+    public void onText(ClientChannel conn, String message) {
+        MessageTrace trace = tracer.sample();
+        if (!lanes.execute(Lane.classify(message), () -> handleText(conn, message, trace))) busy(conn);
     }
 
     @Override
-    public void onMessage(WebSocket conn, ByteBuffer bytes) {
-        pool.submit(() -> handleBinary(conn, bytes));
+    public void onBinary(ClientChannel conn, ByteBuffer bytes) {
+        if (!lanes.execute(Lane.BULK, () -> handleBinary(conn, bytes))) busy(conn);
+    }
+
+    /** El carril rechazó el mensaje (cola de archivos llena): el cliente puede reintentar. */
+    private void busy(ClientChannel conn) {
+        if (conn.isOpen() && messageContext != null) {
+            conn.send(messageContext.json("type","error","msg","Servidor ocupado, reintenta el envío"));
+        }
     }
 
     @Override
-    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        User u = sessions.remove(conn);
+    public void onClose(ClientChannel conn, int code, String reason, boolean remote) {
+        User u = messageContext != null ? messageContext.removeSession(conn) : sessions.remove(conn);
         if (u != null) {
             String username = u.getUsername();
             auditService.recordLogout(username);
+            // la posición se toma ahora; solo la escritura en BD sale del hilo del transporte
+            long seen = history.position();
+            lanes.execute(Lane.NORMAL, () -> messageContext.markSeen(u, seen));
             if (videoRoomUsers.containsKey(username)) {
                 videoRoomUsers.remove(username);
+                signaling.metrics().left(username);
                 auditService.recordVideoLeave(username);
-                for (WebSocket c : videoRoomUsers.values()) {
+                for (ClientChannel c : videoRoomUsers.values()) {
                     if (c.isOpen()) c.send(messageContext.json("type","user_left","username",username));
                 }
-                if (videoRoomUsers.isEmpty()) auditService.recordSystem("Videollamada finalizada");
+                if (videoRoomUsers.isEmpty()) {
+                    auditService.recordSystem("Videollamada finalizada");
+                    System.out.println(signaling.metrics().report());
+                }
             }
             // Broadcast nueva lista de usuarios
-            messageContext.broadcast(messageContext.json("type","userlist","users", messageContext.currentUsers()));
+            messageContext.broadcastUserList();
         }
     }
 
     @Override
-    public void onError(WebSocket conn, Exception ex) {
-        auditService.recordSystem("ERROR - WS error: " + ex.getMessage());
+    public void onError(ClientChannel conn, Exception ex) {
+        if (conn == null) {
+            // error del servidor (bind, selector...): siempre se audita
+            auditService.recordSystem("ERROR - WS error: " + ex.getMessage());
+            return;
+        }
+        connectionEvents.error(conn.getRemoteSocketAddress(), ex);
+    }
+
+    /**
+     * Genera la miniatura en segundo plano y la guarda en el historial. FileHandler solo difundió
+     * una referencia ({@code pending}); a los conectados les llega {@code file_preview} con el id de
+     * acción (correlacionado por remitente y timestamp) y la miniatura, o sin ella si no se pudo
+     * generar: el original se pide con {@code file_url}/{@code file_get}.
+     */
+    private void attachPreview(AuditEvent event, long actionId) {
+        boolean queued = previews.submit(actionId, event.getData(), preview -> {
+            if (preview == null) {
+                history.appendPersisted(event, actionId);
+                announcePreview(event, actionId, null, null);
+                return;
+            }
+            String previewB64 = Base64.getEncoder().encodeToString(preview.getData());
+            history.append(HistoryRecord.fileWithPreview(actionId, event.getRoom(), event.getUsername(), event.getFilename(),
+                    event.getMimetype(), event.getSize(), previewB64, preview.getMimetype(), event.getCreatedAt()));
+            announcePreview(event, actionId, previewB64, preview.getMimetype());
+        });
+        if (!queued) {
+            history.appendPersisted(event, actionId);
+            announcePreview(event, actionId, null, null);
+        }
+    }
+
+    private void announcePreview(AuditEvent event, long actionId, String previewB64, String previewMimetype) {
+        MessageContext ctx = messageContext;
+        if (ctx == null) return;
+        ctx.broadcast(previewB64 != null
+                ? ctx.json("type","file_preview","id",actionId,"from",event.getUsername(),"timestamp",event.getCreatedAt(),
+                        "preview",previewB64,"previewMimetype",previewMimetype)
+                : ctx.json("type","file_preview","id",actionId,"from",event.getUsername(),"timestamp",event.getCreatedAt()));
     }
 
-    private void handleText(WebSocket conn, String rawJson) {
+    private void handleText(ClientChannel conn, String rawJson, MessageTrace trace) {
+        if (trace == null) {
+            handleText(conn, rawJson);
+            return;
+        }
+        trace.end(Stage.RECEIVE);
+        User u = sessions.get(conn);
+        trace.describe(null, u != null ? u.getUsername() : null);
+        Tracer.attach(trace);
+        try {
+            handleText(conn, rawJson);
+        } finally {
+            Tracer.detach();
+            // auth/register recién crean la sesión
+            User after = sessions.get(conn);
+            if (u == null && after != null) trace.describe(null, after.getUsername());
+        }
+    }
+
+    private void handleText(ClientChannel conn, String rawJson) {
+        MessageTrace trace = Tracer.current();
+        if (trace != null) trace.begin(Stage.DECODE);
+        // Señalización WebRTC: se reenvía el texto original sin parsearlo a mapas
+        if (signaling.tryRelay(sessions.get(conn), rawJson)) {
+            if (trace != null) {
+                trace.describe("webrtc", null);
+                trace.end(Stage.DECODE);
+            }
+            return;
+        }
         Map<String,Object> map = gson.fromJson(rawJson,new TypeToken<Map<String,Object>>(){}.getType());
         String type = (String) map.get("type");
+        if (trace != null) {
+            trace.describe(type, null);
+            trace.end(Stage.DECODE);
+        }
         if (type == null) {
             conn.send(messageContext.json("type","error","msg","missing type"));
             return;
         }
-        dispatcher.dispatch(messageContext, conn, type, map);
+        if (trace != null) trace.begin(Stage.DISPATCH);
+        try {
+            dispatcher.dispatch(messageContext, conn, type, map);
+        } finally {
+            if (trace != null) trace.end(Stage.DISPATCH);
+        }
     }
 
-    private void handleBinary(WebSocket conn, ByteBuffer bytes) {
+    private void handleBinary(ClientChannel conn, ByteBuffer bytes) {
         User u = sessions.get(conn);
         if (u == null) { 
             conn.close(1008,"Not authed"); 
             return; 
         }
-        for (WebSocket c : sessions.keySet()) {
-            if (c.isOpen()) c.send(bytes);
+        for (ClientChannel c : sessions.keySet()) {
+            if (c.isOpen()) bulk.send(c, bytes);
         }
     }
 }
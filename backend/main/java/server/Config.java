@@ -1,20 +1,205 @@
 package server;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Configuración centralizada de host y puertos.
  * Permite cambiar IP y puertos desde variables de entorno sin tocar el código:
  *  JAVA_HOST, JAVA_TCP_PORT, JAVA_WS_PORT
+ * Índice de búsqueda de mensajes:
+ *  SEARCH_INDEX_DIR, SEARCH_BUFFER_DOCS
+ * Retención y archivado de 'actions' (días = 0 conserva para siempre):
+ *  RETENTION_DAYS_&lt;TIPO&gt;, RETENTION_INTERVAL_MIN, RETENTION_BATCH, RETENTION_PAUSE_MS,
+ *  RETENTION_MAX_ROWS, RETENTION_PARTITIONING, ARCHIVE_DIR
+ * Journal local de auditoría:
+ *  JOURNAL_DIR, JOURNAL_FSYNC_MS, JOURNAL_SEGMENT_MB, JOURNAL_BREAKER_FAILURES, JOURNAL_BREAKER_OPEN_MS
+ * Miniaturas de imágenes:
+ *  PREVIEW_MAX_DIM, PREVIEW_THREADS, PREVIEW_QUEUE
+ * Arranque en caliente (historial en memoria + snapshot):
+ *  HISTORY_CACHE_SIZE, SNAPSHOT_FILE, SNAPSHOT_INTERVAL_SEC
+ * Descarga HTTP de adjuntos:
+ *  FILE_HTTP_PORT, FILE_HTTP_THREADS, FILE_SPOOL_DIR, FILE_SPOOL_MB, FILE_TOKEN_TTL_SEC, FILE_TOKEN_SECRET
+ * Backend de persistencia (mysql | local):
+ *  PERSISTENCE, LOCAL_STORE_DIR
+ * Resumen de eventos de conexión (onOpen/onError):
+ *  CONN_EVENT_ROLLUP_SEC, CONN_EVENT_SAMPLES
+ * Señalización WebRTC (ventana de agrupación de candidatos ICE, 0 = sin agrupar):
+ *  ICE_COALESCE_MS
+ * Transporte WebSocket (java-websocket | nio | memory) e hilos de selector del transporte nio:
+ *  TRANSPORT, NIO_SELECTORS
+ * Difusión en paralelo por shards de sesiones (0 = en el hilo que envía):
+ *  BROADCAST_SHARDS
+ * Caché fuera del heap de adjuntos recientes (MB, 0 = desactivada):
+ *  ATTACHMENT_CACHE_MB
+ * Intervalo (segundos) del resumen periódico de métricas en el log (0 = solo al apagar):
+ *  METRICS_REPORT_SEC
+ * Compresión del contenido guardado en BD (deflate | none) y tamaño mínimo a comprimir:
+ *  STORAGE_CODEC, STORAGE_COMPRESS_MIN_BYTES
+ * Carriles de prioridad: hilos compartidos de high/normal, hilos y cola del carril de archivos y su tope de salida (KB/s, 0 = sin tope):
+ *  LANE_THREADS, BULK_LANE_THREADS, BULK_LANE_QUEUE, BULK_LANE_KBPS
+ * Trazas por etapa de mensajes muestreados (1 de cada N, 0 = desactivadas), tamaño del buffer y exportación:
+ *  TRACE_SAMPLE_EVERY, TRACE_RING_SIZE, TRACE_DIR
+ * Usuarios con acceso a mensajes de administración (separados por coma):
+ *  ADMIN_USERS
  */
 public final class Config {
     private static final String DEFAULT_HOST = "0.0.0.0"; // Cambiar aquí si se desea un valor por defecto distinto
     private static final int DEFAULT_WS_PORT  = 8081;
+    private static final String DEFAULT_SEARCH_INDEX_DIR = "data/search-index";
+    private static final int DEFAULT_SEARCH_BUFFER_DOCS = 50_000;
+    private static final String DEFAULT_ARCHIVE_DIR = "data/archive";
+    private static final int DEFAULT_RETENTION_INTERVAL_MIN = 60;
+    private static final int DEFAULT_RETENTION_BATCH = 500;
+    private static final int DEFAULT_RETENTION_PAUSE_MS = 200;
+    private static final int DEFAULT_RETENTION_MAX_ROWS = 50_000;
+    private static final String DEFAULT_JOURNAL_DIR = "data/journal";
+    private static final int DEFAULT_JOURNAL_FSYNC_MS = 5;
+    private static final int DEFAULT_JOURNAL_SEGMENT_MB = 64;
+    private static final int DEFAULT_JOURNAL_BREAKER_FAILURES = 3;
+    private static final int DEFAULT_JOURNAL_BREAKER_OPEN_MS = 2000;
+    private static final int DEFAULT_PREVIEW_MAX_DIM = 320;
+    private static final int DEFAULT_PREVIEW_THREADS = 2;
+    private static final int DEFAULT_PREVIEW_QUEUE = 64;
+    private static final int DEFAULT_HISTORY_CACHE_SIZE = 200;
+    private static final String DEFAULT_SNAPSHOT_FILE = "data/warm.snapshot";
+    private static final int DEFAULT_SNAPSHOT_INTERVAL_SEC = 60;
+    private static final int DEFAULT_FILE_HTTP_PORT = 8082;
+    private static final int DEFAULT_FILE_HTTP_THREADS = 8;
+    private static final String DEFAULT_FILE_SPOOL_DIR = "data/files";
+    private static final int DEFAULT_FILE_SPOOL_MB = 1024;
+    private static final int DEFAULT_FILE_TOKEN_TTL_SEC = 300;
+    private static final String DEFAULT_PERSISTENCE = "mysql";
+    private static final String DEFAULT_LOCAL_STORE_DIR = "data/store";
+    private static final int DEFAULT_CONN_EVENT_ROLLUP_SEC = 60;
+    private static final int DEFAULT_CONN_EVENT_SAMPLES = 5;
+    private static final int DEFAULT_METRICS_REPORT_SEC = 300;
+    private static final int DEFAULT_ICE_COALESCE_MS = 20;
+    private static final String DEFAULT_TRANSPORT = "java-websocket";
+    private static final int DEFAULT_ATTACHMENT_CACHE_MB = 64;
+    private static final String DEFAULT_STORAGE_CODEC = "deflate";
+    private static final int DEFAULT_STORAGE_COMPRESS_MIN_BYTES = 1024;
+    private static final int DEFAULT_BULK_LANE_THREADS = 2;
+    private static final int DEFAULT_BULK_LANE_QUEUE = 32;
+    private static final int DEFAULT_BULK_LANE_KBPS = 32 * 1024;
+    private static final int DEFAULT_TRACE_SAMPLE_EVERY = 100;
+    private static final int DEFAULT_TRACE_RING_SIZE = 1024;
+    private static final String DEFAULT_TRACE_DIR = "data/traces";
+    private static final String DEFAULT_ADMIN_USERS = ""; // sin administradores salvo configuración explícita
 
     private static final String HOST_VALUE;
     private static final int WS_PORT_VALUE;
+    private static final String SEARCH_INDEX_DIR_VALUE;
+    private static final int SEARCH_BUFFER_DOCS_VALUE;
+    private static final Map<String,Integer> RETENTION_DAYS_VALUE;
+    private static final String ARCHIVE_DIR_VALUE;
+    private static final int RETENTION_INTERVAL_MIN_VALUE;
+    private static final int RETENTION_BATCH_VALUE;
+    private static final int RETENTION_PAUSE_MS_VALUE;
+    private static final int RETENTION_MAX_ROWS_VALUE;
+    private static final boolean RETENTION_PARTITIONING_VALUE;
+    private static final String JOURNAL_DIR_VALUE;
+    private static final int JOURNAL_FSYNC_MS_VALUE;
+    private static final int JOURNAL_SEGMENT_MB_VALUE;
+    private static final int JOURNAL_BREAKER_FAILURES_VALUE;
+    private static final int JOURNAL_BREAKER_OPEN_MS_VALUE;
+    private static final int PREVIEW_MAX_DIM_VALUE;
+    private static final int PREVIEW_THREADS_VALUE;
+    private static final int PREVIEW_QUEUE_VALUE;
+    private static final int HISTORY_CACHE_SIZE_VALUE;
+    private static final String SNAPSHOT_FILE_VALUE;
+    private static final int SNAPSHOT_INTERVAL_SEC_VALUE;
+    private static final int FILE_HTTP_PORT_VALUE;
+    private static final int FILE_HTTP_THREADS_VALUE;
+    private static final String FILE_SPOOL_DIR_VALUE;
+    private static final int FILE_SPOOL_MB_VALUE;
+    private static final int FILE_TOKEN_TTL_SEC_VALUE;
+    private static final String FILE_TOKEN_SECRET_VALUE;
+    private static final String PERSISTENCE_VALUE;
+    private static final String LOCAL_STORE_DIR_VALUE;
+    private static final int CONN_EVENT_ROLLUP_SEC_VALUE;
+    private static final int CONN_EVENT_SAMPLES_VALUE;
+    private static final int METRICS_REPORT_SEC_VALUE;
+    private static final int ICE_COALESCE_MS_VALUE;
+    private static final String TRANSPORT_VALUE;
+    private static final int NIO_SELECTORS_VALUE;
+    private static final int BROADCAST_SHARDS_VALUE;
+    private static final int ATTACHMENT_CACHE_MB_VALUE;
+    private static final String STORAGE_CODEC_VALUE;
+    private static final int STORAGE_COMPRESS_MIN_BYTES_VALUE;
+    private static final int LANE_THREADS_VALUE;
+    private static final int BULK_LANE_THREADS_VALUE;
+    private static final int BULK_LANE_QUEUE_VALUE;
+    private static final int BULK_LANE_KBPS_VALUE;
+    private static final int TRACE_SAMPLE_EVERY_VALUE;
+    private static final int TRACE_RING_SIZE_VALUE;
+    private static final String TRACE_DIR_VALUE;
+    private static final Set<String> ADMIN_USERS_VALUE;
 
     static {
     HOST_VALUE = getenvOrDefault("JAVA_HOST", DEFAULT_HOST);
     WS_PORT_VALUE  = parsePort(getenvOrDefault("JAVA_WS_PORT", String.valueOf(DEFAULT_WS_PORT)), DEFAULT_WS_PORT);
+    SEARCH_INDEX_DIR_VALUE = getenvOrDefault("SEARCH_INDEX_DIR", DEFAULT_SEARCH_INDEX_DIR);
+    SEARCH_BUFFER_DOCS_VALUE = parsePositiveInt(getenvOrDefault("SEARCH_BUFFER_DOCS", String.valueOf(DEFAULT_SEARCH_BUFFER_DOCS)), DEFAULT_SEARCH_BUFFER_DOCS);
+    // Por defecto solo expiran eventos de sesión/sistema; TEXT y FILE se conservan
+    Map<String,Integer> days = new LinkedHashMap<>();
+    days.put("SYSTEM", parseNonNegativeInt(getenvOrDefault("RETENTION_DAYS_SYSTEM", "30"), 30));
+    days.put("LOGIN", parseNonNegativeInt(getenvOrDefault("RETENTION_DAYS_LOGIN", "90"), 90));
+    days.put("LOGOUT", parseNonNegativeInt(getenvOrDefault("RETENTION_DAYS_LOGOUT", "90"), 90));
+    days.put("VIDEO_JOIN", parseNonNegativeInt(getenvOrDefault("RETENTION_DAYS_VIDEO_JOIN", "90"), 90));
+    days.put("VIDEO_LEAVE", parseNonNegativeInt(getenvOrDefault("RETENTION_DAYS_VIDEO_LEAVE", "90"), 90));
+    days.put("TEXT", parseNonNegativeInt(getenvOrDefault("RETENTION_DAYS_TEXT", "0"), 0));
+    days.put("FILE", parseNonNegativeInt(getenvOrDefault("RETENTION_DAYS_FILE", "0"), 0));
+    days.put("DIRECT", parseNonNegativeInt(getenvOrDefault("RETENTION_DAYS_DIRECT", "0"), 0));
+    RETENTION_DAYS_VALUE = Collections.unmodifiableMap(days);
+    ARCHIVE_DIR_VALUE = getenvOrDefault("ARCHIVE_DIR", DEFAULT_ARCHIVE_DIR);
+    RETENTION_INTERVAL_MIN_VALUE = parsePositiveInt(getenvOrDefault("RETENTION_INTERVAL_MIN", String.valueOf(DEFAULT_RETENTION_INTERVAL_MIN)), DEFAULT_RETENTION_INTERVAL_MIN);
+    RETENTION_BATCH_VALUE = parsePositiveInt(getenvOrDefault("RETENTION_BATCH", String.valueOf(DEFAULT_RETENTION_BATCH)), DEFAULT_RETENTION_BATCH);
+    RETENTION_PAUSE_MS_VALUE = parseNonNegativeInt(getenvOrDefault("RETENTION_PAUSE_MS", String.valueOf(DEFAULT_RETENTION_PAUSE_MS)), DEFAULT_RETENTION_PAUSE_MS);
+    RETENTION_MAX_ROWS_VALUE = parsePositiveInt(getenvOrDefault("RETENTION_MAX_ROWS", String.valueOf(DEFAULT_RETENTION_MAX_ROWS)), DEFAULT_RETENTION_MAX_ROWS);
+    RETENTION_PARTITIONING_VALUE = Boolean.parseBoolean(getenvOrDefault("RETENTION_PARTITIONING", "false"));
+    JOURNAL_DIR_VALUE = getenvOrDefault("JOURNAL_DIR", DEFAULT_JOURNAL_DIR);
+    JOURNAL_FSYNC_MS_VALUE = parseNonNegativeInt(getenvOrDefault("JOURNAL_FSYNC_MS", String.valueOf(DEFAULT_JOURNAL_FSYNC_MS)), DEFAULT_JOURNAL_FSYNC_MS);
+    JOURNAL_SEGMENT_MB_VALUE = parsePositiveInt(getenvOrDefault("JOURNAL_SEGMENT_MB", String.valueOf(DEFAULT_JOURNAL_SEGMENT_MB)), DEFAULT_JOURNAL_SEGMENT_MB);
+    JOURNAL_BREAKER_FAILURES_VALUE = parsePositiveInt(getenvOrDefault("JOURNAL_BREAKER_FAILURES", String.valueOf(DEFAULT_JOURNAL_BREAKER_FAILURES)), DEFAULT_JOURNAL_BREAKER_FAILURES);
+    JOURNAL_BREAKER_OPEN_MS_VALUE = parsePositiveInt(getenvOrDefault("JOURNAL_BREAKER_OPEN_MS", String.valueOf(DEFAULT_JOURNAL_BREAKER_OPEN_MS)), DEFAULT_JOURNAL_BREAKER_OPEN_MS);
+    PREVIEW_MAX_DIM_VALUE = parsePositiveInt(getenvOrDefault("PREVIEW_MAX_DIM", String.valueOf(DEFAULT_PREVIEW_MAX_DIM)), DEFAULT_PREVIEW_MAX_DIM);
+    PREVIEW_THREADS_VALUE = parsePositiveInt(getenvOrDefault("PREVIEW_THREADS", String.valueOf(DEFAULT_PREVIEW_THREADS)), DEFAULT_PREVIEW_THREADS);
+    PREVIEW_QUEUE_VALUE = parsePositiveInt(getenvOrDefault("PREVIEW_QUEUE", String.valueOf(DEFAULT_PREVIEW_QUEUE)), DEFAULT_PREVIEW_QUEUE);
+    HISTORY_CACHE_SIZE_VALUE = parsePositiveInt(getenvOrDefault("HISTORY_CACHE_SIZE", String.valueOf(DEFAULT_HISTORY_CACHE_SIZE)), DEFAULT_HISTORY_CACHE_SIZE);
+    SNAPSHOT_FILE_VALUE = getenvOrDefault("SNAPSHOT_FILE", DEFAULT_SNAPSHOT_FILE);
+    SNAPSHOT_INTERVAL_SEC_VALUE = parseNonNegativeInt(getenvOrDefault("SNAPSHOT_INTERVAL_SEC", String.valueOf(DEFAULT_SNAPSHOT_INTERVAL_SEC)), DEFAULT_SNAPSHOT_INTERVAL_SEC);
+    FILE_HTTP_PORT_VALUE = parsePort(getenvOrDefault("FILE_HTTP_PORT", String.valueOf(DEFAULT_FILE_HTTP_PORT)), DEFAULT_FILE_HTTP_PORT);
+    FILE_HTTP_THREADS_VALUE = parsePositiveInt(getenvOrDefault("FILE_HTTP_THREADS", String.valueOf(DEFAULT_FILE_HTTP_THREADS)), DEFAULT_FILE_HTTP_THREADS);
+    FILE_SPOOL_DIR_VALUE = getenvOrDefault("FILE_SPOOL_DIR", DEFAULT_FILE_SPOOL_DIR);
+    FILE_SPOOL_MB_VALUE = parseNonNegativeInt(getenvOrDefault("FILE_SPOOL_MB", String.valueOf(DEFAULT_FILE_SPOOL_MB)), DEFAULT_FILE_SPOOL_MB);
+    FILE_TOKEN_TTL_SEC_VALUE = parsePositiveInt(getenvOrDefault("FILE_TOKEN_TTL_SEC", String.valueOf(DEFAULT_FILE_TOKEN_TTL_SEC)), DEFAULT_FILE_TOKEN_TTL_SEC);
+    FILE_TOKEN_SECRET_VALUE = getenvOrDefault("FILE_TOKEN_SECRET", "");
+    PERSISTENCE_VALUE = getenvOrDefault("PERSISTENCE", DEFAULT_PERSISTENCE).toLowerCase();
+    LOCAL_STORE_DIR_VALUE = getenvOrDefault("LOCAL_STORE_DIR", DEFAULT_LOCAL_STORE_DIR);
+    CONN_EVENT_ROLLUP_SEC_VALUE = parsePositiveInt(getenvOrDefault("CONN_EVENT_ROLLUP_SEC", String.valueOf(DEFAULT_CONN_EVENT_ROLLUP_SEC)), DEFAULT_CONN_EVENT_ROLLUP_SEC);
+    CONN_EVENT_SAMPLES_VALUE = parseNonNegativeInt(getenvOrDefault("CONN_EVENT_SAMPLES", String.valueOf(DEFAULT_CONN_EVENT_SAMPLES)), DEFAULT_CONN_EVENT_SAMPLES);
+    METRICS_REPORT_SEC_VALUE = parseNonNegativeInt(getenvOrDefault("METRICS_REPORT_SEC", String.valueOf(DEFAULT_METRICS_REPORT_SEC)), DEFAULT_METRICS_REPORT_SEC);
+    ICE_COALESCE_MS_VALUE = parseNonNegativeInt(getenvOrDefault("ICE_COALESCE_MS", String.valueOf(DEFAULT_ICE_COALESCE_MS)), DEFAULT_ICE_COALESCE_MS);
+    TRANSPORT_VALUE = getenvOrDefault("TRANSPORT", DEFAULT_TRANSPORT).toLowerCase();
+    int cpus = Runtime.getRuntime().availableProcessors();
+    NIO_SELECTORS_VALUE = parsePositiveInt(getenvOrDefault("NIO_SELECTORS", String.valueOf(cpus)), cpus);
+    BROADCAST_SHARDS_VALUE = parseNonNegativeInt(getenvOrDefault("BROADCAST_SHARDS", String.valueOf(cpus)), cpus);
+    ATTACHMENT_CACHE_MB_VALUE = parseNonNegativeInt(getenvOrDefault("ATTACHMENT_CACHE_MB", String.valueOf(DEFAULT_ATTACHMENT_CACHE_MB)), DEFAULT_ATTACHMENT_CACHE_MB);
+    STORAGE_CODEC_VALUE = getenvOrDefault("STORAGE_CODEC", DEFAULT_STORAGE_CODEC).toLowerCase();
+    STORAGE_COMPRESS_MIN_BYTES_VALUE = parseNonNegativeInt(getenvOrDefault("STORAGE_COMPRESS_MIN_BYTES", String.valueOf(DEFAULT_STORAGE_COMPRESS_MIN_BYTES)), DEFAULT_STORAGE_COMPRESS_MIN_BYTES);
+    int laneThreads = Math.max(8, 4 * cpus);
+    LANE_THREADS_VALUE = parsePositiveInt(getenvOrDefault("LANE_THREADS", String.valueOf(laneThreads)), laneThreads);
+    BULK_LANE_THREADS_VALUE = parsePositiveInt(getenvOrDefault("BULK_LANE_THREADS", String.valueOf(DEFAULT_BULK_LANE_THREADS)), DEFAULT_BULK_LANE_THREADS);
+    BULK_LANE_QUEUE_VALUE = parsePositiveInt(getenvOrDefault("BULK_LANE_QUEUE", String.valueOf(DEFAULT_BULK_LANE_QUEUE)), DEFAULT_BULK_LANE_QUEUE);
+    BULK_LANE_KBPS_VALUE = parseNonNegativeInt(getenvOrDefault("BULK_LANE_KBPS", String.valueOf(DEFAULT_BULK_LANE_KBPS)), DEFAULT_BULK_LANE_KBPS);
+    TRACE_SAMPLE_EVERY_VALUE = parseNonNegativeInt(getenvOrDefault("TRACE_SAMPLE_EVERY", String.valueOf(DEFAULT_TRACE_SAMPLE_EVERY)), DEFAULT_TRACE_SAMPLE_EVERY);
+    TRACE_RING_SIZE_VALUE = parsePositiveInt(getenvOrDefault("TRACE_RING_SIZE", String.valueOf(DEFAULT_TRACE_RING_SIZE)), DEFAULT_TRACE_RING_SIZE);
+    TRACE_DIR_VALUE = getenvOrDefault("TRACE_DIR", DEFAULT_TRACE_DIR);
+    ADMIN_USERS_VALUE = parseNames(getenvOrDefault("ADMIN_USERS", DEFAULT_ADMIN_USERS));
     }
 
     private Config() {}
@@ -34,8 +219,123 @@ public final class Config {
         }
     }
 
+    private static int parsePositiveInt(String raw, int def) {
+        if (raw == null) return def;
+        try {
+            int v = Integer.parseInt(raw.trim());
+            return v > 0 ? v : def;
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private static int parseNonNegativeInt(String raw, int def) {
+        if (raw == null) return def;
+        try {
+            int v = Integer.parseInt(raw.trim());
+            return v >= 0 ? v : def;
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    private static Set<String> parseNames(String raw) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String n : raw.split(",")) {
+            if (!n.isBlank()) names.add(n.trim());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
     public static String getHost() { return HOST_VALUE; }
     public static int getWsPort()  { return WS_PORT_VALUE; }
+    /** Directorio donde se guardan los segmentos del índice de búsqueda. */
+    public static String getSearchIndexDir() { return SEARCH_INDEX_DIR_VALUE; }
+    /** Documentos que el índice mantiene en memoria antes de volcarlos a un segmento. */
+    public static int getSearchBufferDocs() { return SEARCH_BUFFER_DOCS_VALUE; }
+    /** Días de retención por action_type (0 = sin expiración). */
+    public static Map<String,Integer> getRetentionDays() { return RETENTION_DAYS_VALUE; }
+    /** Directorio de segmentos de archivo comprimidos. */
+    public static String getArchiveDir() { return ARCHIVE_DIR_VALUE; }
+    public static int getRetentionIntervalMinutes() { return RETENTION_INTERVAL_MIN_VALUE; }
+    /** Filas por lote de archivado/borrado. */
+    public static int getRetentionBatch() { return RETENTION_BATCH_VALUE; }
+    /** Pausa entre lotes para no saturar la BD. */
+    public static int getRetentionPauseMs() { return RETENTION_PAUSE_MS_VALUE; }
+    /** Máximo de filas archivadas por ejecución del job. */
+    public static int getRetentionMaxRows() { return RETENTION_MAX_ROWS_VALUE; }
+    /** Habilita la gestión de particiones por rango de fecha en 'actions'. */
+    public static boolean isRetentionPartitioning() { return RETENTION_PARTITIONING_VALUE; }
+    /** Directorio del journal append-only de auditoría. */
+    public static String getJournalDir() { return JOURNAL_DIR_VALUE; }
+    /** Intervalo mínimo entre fsyncs del journal (ventana de group commit). */
+    public static int getJournalFsyncMs() { return JOURNAL_FSYNC_MS_VALUE; }
+    public static long getJournalSegmentBytes() { return JOURNAL_SEGMENT_MB_VALUE * 1024L * 1024L; }
+    /** Fallos consecutivos de BD que abren el circuit breaker del replay. */
+    public static int getJournalBreakerFailures() { return JOURNAL_BREAKER_FAILURES_VALUE; }
+    public static int getJournalBreakerOpenMs() { return JOURNAL_BREAKER_OPEN_MS_VALUE; }
+    /** Lado mayor (px) de las miniaturas de imágenes. */
+    public static int getPreviewMaxDimension() { return PREVIEW_MAX_DIM_VALUE; }
+    public static int getPreviewThreads() { return PREVIEW_THREADS_VALUE; }
+    /** Tareas de miniatura en espera antes de rechazar (se envía el original). */
+    public static int getPreviewQueue() { return PREVIEW_QUEUE_VALUE; }
+    /** Mensajes recientes por sala que se mantienen en memoria para el historial. */
+    public static int getHistoryCacheSize() { return HISTORY_CACHE_SIZE_VALUE; }
+    /** Archivo del snapshot de arranque en caliente. */
+    public static String getSnapshotFile() { return SNAPSHOT_FILE_VALUE; }
+    /** Cada cuántos segundos se reescribe el snapshot (0 = solo al apagar). */
+    public static int getSnapshotIntervalSec() { return SNAPSHOT_INTERVAL_SEC_VALUE; }
+    /** Puerto del endpoint HTTP de descarga de adjuntos. */
+    public static int getFileHttpPort() { return FILE_HTTP_PORT_VALUE; }
+    public static int getFileHttpThreads() { return FILE_HTTP_THREADS_VALUE; }
+    /** Directorio donde se materializan los adjuntos para servirlos con sendfile. */
+    public static String getFileSpoolDir() { return FILE_SPOOL_DIR_VALUE; }
+    /** Tope del spool de adjuntos en disco; al pasarlo se borran los menos usados (0 = sin tope). */
+    public static long getFileSpoolBytes() { return FILE_SPOOL_MB_VALUE * 1024L * 1024L; }
+    /** Vigencia de los tokens de descarga emitidos por el WebSocket. */
+    public static long getFileTokenTtlMillis() { return FILE_TOKEN_TTL_SEC_VALUE * 1000L; }
+    /** Clave HMAC de los tokens; vacía = aleatoria por ejecución. */
+    public static String getFileTokenSecret() { return FILE_TOKEN_SECRET_VALUE; }
+    /** Backend de usuarios/acciones: "mysql" (por defecto) o "local" (log embebido, sin BD). */
+    public static String getPersistence() { return PERSISTENCE_VALUE; }
+    /** Directorio del almacenamiento embebido cuando PERSISTENCE=local. */
+    public static String getLocalStoreDir() { return LOCAL_STORE_DIR_VALUE; }
+    /** Intervalo del resumen de conexiones/errores WS que se audita como un único SYSTEM. */
+    public static int getConnEventRollupSec() { return CONN_EVENT_ROLLUP_SEC_VALUE; }
+    /** Eventos crudos (conexión/error) auditados tal cual por intervalo como muestra. */
+    public static int getConnEventSamples() { return CONN_EVENT_SAMPLES_VALUE; }
+    /** Cada cuántos segundos se escriben en el log los resúmenes de métricas (0 = solo al apagar). */
+    public static int getMetricsReportSec() { return METRICS_REPORT_SEC_VALUE; }
+    /** Ventana en la que se agrupan los candidatos ICE hacia un mismo destino (0 = reenvío inmediato). */
+    public static int getIceCoalesceMs() { return ICE_COALESCE_MS_VALUE; }
+    /** Implementación del servidor WebSocket: "java-websocket" (por defecto), "nio" (selectores propios) o "memory" (en proceso, para benchmarks). */
+    public static String getTransport() { return TRANSPORT_VALUE; }
+    /** Bucles de selector del transporte nio (por defecto, uno por núcleo). */
+    public static int getNioSelectors() { return NIO_SELECTORS_VALUE; }
+    /** Shards (hilos de entrega) entre los que se reparten las sesiones para difundir (por defecto, uno por núcleo). */
+    public static int getBroadcastShards() { return BROADCAST_SHARDS_VALUE; }
+    /** Presupuesto en bytes de la caché fuera del heap de adjuntos (memoria directa; ver -XX:MaxDirectMemorySize). */
+    public static long getAttachmentCacheBytes() { return ATTACHMENT_CACHE_MB_VALUE * 1024L * 1024L; }
+    /** Codec con el que se guardan textos y adjuntos nuevos: "deflate" (por defecto) o "none". Las filas existentes se leen con su propio codec. */
+    public static String getStorageCodec() { return STORAGE_CODEC_VALUE; }
+    /** Contenido más chico que esto (bytes) se guarda sin comprimir. */
+    public static int getStorageCompressMinBytes() { return STORAGE_COMPRESS_MIN_BYTES_VALUE; }
+    /** Hilos que comparten los carriles high y normal (por defecto 4 por núcleo, al menos 8); high se atiende primero. */
+    public static int getLaneThreads() { return LANE_THREADS_VALUE; }
+    /** Hilos que procesan mensajes de archivos (file, file_get, binarios); el resto espera en la cola del carril. */
+    public static int getBulkLaneThreads() { return BULK_LANE_THREADS_VALUE; }
+    /** Mensajes de archivos que pueden esperar hilo; con la cola llena se rechazan y el cliente recibe un error. */
+    public static int getBulkLaneQueue() { return BULK_LANE_QUEUE_VALUE; }
+    /** Tope de salida del carril de archivos para todas las conexiones, en bytes por segundo (0 = sin tope). */
+    public static long getBulkLaneBytesPerSecond() { return BULK_LANE_KBPS_VALUE * 1024L; }
+    /** Se traza 1 de cada N mensajes entrantes (0 = sin trazas). */
+    public static int getTraceSampleEvery() { return TRACE_SAMPLE_EVERY_VALUE; }
+    /** Trazas que conserva el buffer circular. */
+    public static int getTraceRingSize() { return TRACE_RING_SIZE_VALUE; }
+    /** Directorio donde trace_dump con export=true escribe el Chrome trace JSON. */
+    public static String getTraceDir() { return TRACE_DIR_VALUE; }
+    /** Usernames que pueden usar mensajes de administración (trace_dump, archive_query); vacío por defecto (desactivado). */
+    public static Set<String> getAdminUsers() { return ADMIN_USERS_VALUE; }
 
     /** Devuelve la URL base para WebSocket (sin path final). */
     public static String getWebSocketBaseUrl() {
@@ -1,39 +1,111 @@
 // src/server/MainServer.java
 package server;
 
-import java.sql.Connection;
-import java.sql.SQLException;
+import java.io.IOException;
+import java.nio.file.Paths;
 
-import server.dao.DBConnection;
+import server.cache.WarmState;
+import server.dao.ActionDAO;
+import server.dao.Persistence;
+import server.dao.MySqlRetentionDAO;
+import server.http.AttachmentSpool;
+import server.http.FileHttpServer;
+import server.http.FileTokens;
+import server.journal.AuditJournal;
+import server.journal.JournalReplayer;
+import server.retention.ArchiveStore;
+import server.retention.RetentionJob;
 import server.service.AuditService;
+import server.snapshot.WarmStartService;
 
 public class MainServer {
     public static void main(String[] args){
+        System.setProperty("java.awt.headless", "true"); // miniaturas con ImageIO sin display
         int portWS  = Config.getWsPort();
 
-        // Inicializar auditoría y registrar shutdown hook
-        AuditService audit = new AuditService();
+        // Estado en memoria restaurado del último snapshot (historial servible sin esperar a MySQL)
+        WarmState warm = new WarmState(Config.getHistoryCacheSize());
+        WarmStartService warmStart = new WarmStartService(Paths.get(Config.getSnapshotFile()), warm);
+        warmStart.load();
+
+        // Inicializar auditoría (journal local + replay a BD) y registrar shutdown hook
+        Persistence persistence = Persistence.fromConfig();
+        ActionDAO actionDAO = persistence.actionDAO();
+        AuditJournal journal = AuditJournal.open(Paths.get(Config.getJournalDir()),
+                Config.getJournalSegmentBytes(), Config.getJournalFsyncMs(), persistedJournalSeq(actionDAO));
+        AuditService audit = new AuditService(journal, new JournalReplayer(journal, actionDAO, warm.userIds(),
+                Config.getJournalBreakerFailures(), Config.getJournalBreakerOpenMs()));
+        FileTokens fileTokens = FileTokens.create(Config.getFileTokenSecret(), Config.getFileTokenTtlMillis());
+        ArchiveStore archive = persistence.supportsRetention() ? new ArchiveStore(Paths.get(Config.getArchiveDir())) : null;
+        ChatWebSocketServer wsServer = new ChatWebSocketServer(portWS, persistence.userDAO(), actionDAO, audit, warm,
+                fileTokens, archive);
+        AttachmentSpool spool = AttachmentSpool.open(Paths.get(Config.getFileSpoolDir()), actionDAO, Config.getFileSpoolBytes());
+        FileHttpServer fileServer = new FileHttpServer(Config.getFileHttpPort(), Config.getFileHttpThreads(), spool, fileTokens);
+        RetentionJob retention = archive != null
+                ? new RetentionJob(new MySqlRetentionDAO(), archive, audit, Config.getRetentionDays(),
+                        Config.getRetentionBatch(), Config.getRetentionPauseMs(), Config.getRetentionMaxRows(), Config.isRetentionPartitioning())
+                : null;
+        // lo purgado deja de servirse por HTTP (copia en disco y metadatos cacheados)
+        if (retention != null) retention.addPurgeListener(spool::evictAll);
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             audit.recordSystem("Servidor apagándose (shutdown hook)");
+            if (retention != null) retention.stop();
+            fileServer.stop();
+            try {
+                wsServer.stop(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            warmStart.stop();
             audit.recordSystem("Servidor detenido");
+            audit.close();
+            persistence.close();
         }));
 
-        // Probar conexión a BD antes de iniciar servidor WS
-        try (Connection conn = DBConnection.getInstance().getConnection()) {
-            audit.recordSystem("Conexión a BD OK: " + conn.getMetaData().getURL());
-        } catch (SQLException e) {
-            audit.recordSystem("ERROR - Fallo conectando a BD: " + e.getMessage());
-            System.err.println("No se pudo establecer conexión a la base de datos. Abortando inicio de WebSocket.");
-            return;
+        // Probar el almacenamiento en segundo plano: el WS arranca igual (el journal absorbe las escrituras)
+        new Thread(() -> {
+            if (actionDAO.ping()) {
+                audit.recordSystem("Almacenamiento OK (" + persistence.name() + ")");
+            } else {
+                audit.recordSystem("ERROR - Almacenamiento no disponible (" + persistence.name() + ")");
+                System.err.println("No se pudo establecer conexión con el almacenamiento; se sirve desde snapshot/journal hasta que vuelva.");
+            }
+        }, "db-check").start();
+
+        // Drenar el journal (incluye lo pendiente de una ejecución anterior)
+        audit.start();
+
+        // Verificar el snapshot contra la BD y mantenerlo al día
+        warmStart.reconcileInBackground(actionDAO, wsServer.history());
+        warmStart.start(Config.getSnapshotIntervalSec());
+
+        // Retención/archivado en segundo plano (solo MySQL)
+        if (retention != null) retention.start(Config.getRetentionIntervalMinutes());
+
+        // Descargas de adjuntos por HTTP (puerto propio, no compite con el chat)
+        try {
+            fileServer.start();
+            System.out.println("Descargas HTTP activas en puerto " + fileServer.port());
+        } catch (IOException e) {
+            audit.recordSystem("ERROR - No se pudo abrir el puerto HTTP de archivos: " + e.getMessage());
         }
 
         // Arrancar WebSocket en un hilo separado
         new Thread(() -> {
-            ChatWebSocketServer wsServer = new ChatWebSocketServer(portWS);
             wsServer.start();
             String wsUrl = "ws://" + Config.getHost() + ":" + portWS + "/";
             System.out.println("WebSocket activo en " + wsUrl);
             audit.recordSystem("WebSocket activo en puerto " + portWS);
         }).start();
     }
+
+    /** Mayor journal_seq ya guardado; con el almacenamiento caído se usa solo el del directorio del journal. */
+    private static long persistedJournalSeq(ActionDAO actionDAO) {
+        try {
+            return actionDAO.getMaxJournalSeq();
+        } catch (RuntimeException e) {
+            System.err.println("Journal: no se pudo leer la última secuencia guardada, se usa la del directorio: " + e.getMessage());
+            return 0L;
+        }
+    }
 }
@@ -0,0 +1,207 @@
+package server.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+import server.model.HistoryRecord;
+
+/**
+ * AttachmentCache - LRU fuera del heap con el contenido de los adjuntos recientes, por id de acción.
+ *
+ * Un archivo recién compartido lo piden casi todos los de la sala en pocos segundos; sin caché,
+ * cada pedido relee el LONGBLOB, lo copia a un byte[] y lo vuelve a codificar en Base64. Aquí cada
+ * variante ({@link Variant#RAW} bytes originales, {@link Variant#FRAME} el mensaje {@code file_data}
+ * completo en UTF-8, con el Base64 adentro) vive en un {@code ByteBuffer} directo: el GC solo ve un
+ * objeto chico por entrada, no el contenido. {@link #fileFrame} devuelve una vista de ese buffer, que
+ * el transporte envía sin pasarla por el heap ({@code ClientChannel#sendText(ByteBuffer)}).
+ * Los metadatos (nombre, tipo, sala...) se guardan en el heap como {@link HistoryRecord} sin datos.
+ *
+ * El total de bytes de todas las variantes está acotado por {@code budgetBytes}; al pasarse se
+ * descartan las entradas menos usadas. Adjuntos de más de 1/8 del presupuesto no se guardan.
+ * La variante cruda se guarda al persistir (copia barata) y se reemplaza por el frame al primer pedido.
+ * La memoria directa de una entrada descartada se libera cuando el GC recoge su buffer.
+ */
+public final class AttachmentCache {
+
+    /** Representaciones que se guardan de un adjunto. */
+    public enum Variant { RAW, FRAME }
+
+    private static final byte[] DATA_FIELD = ",\"data\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FRAME_END = "\"}".getBytes(StandardCharsets.US_ASCII);
+
+    private static final class Entry {
+        final HistoryRecord meta;
+        final EnumMap<Variant, ByteBuffer> variants = new EnumMap<>(Variant.class);
+        int dataOffset;   // el Base64 dentro del FRAME
+        int dataLength;
+        long bytes;
+
+        Entry(HistoryRecord meta) { this.meta = meta; }
+    }
+
+    /** Mensaje {@code file_data} con su Base64 en [dataOffset, dataOffset + dataLength). */
+    private record Frame(HistoryRecord meta, ByteBuffer buffer, int dataOffset, int dataLength) { }
+
+    private final long budgetBytes;
+    private final long maxEntryBytes;
+    private final Function<HistoryRecord, String> frameHeader;
+    private final LinkedHashMap<Long, Entry> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder encodes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param budgetBytes tope de bytes fuera del heap; 0 desactiva la caché
+     * @param frameHeader objeto JSON del mensaje {@code file_data} sin el campo {@code data}; depende
+     *                    solo del adjunto (el Base64 se agrega al final)
+     */
+    public AttachmentCache(long budgetBytes, Function<HistoryRecord, String> frameHeader) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+        this.maxEntryBytes = this.budgetBytes / 8;
+        this.frameHeader = frameHeader;
+    }
+
+    public boolean enabled() { return budgetBytes > 0; }
+
+    /** Guarda los bytes originales de un adjunto recién persistido (el frame se arma al primer pedido). */
+    public void putRaw(HistoryRecord meta, byte[] data) {
+        if (data == null || !enabled() || data.length > maxEntryBytes) return;
+        ByteBuffer off = ByteBuffer.allocateDirect(data.length);
+        off.put(data).flip();
+        store(meta.getId(), meta, Variant.RAW, off, 0, 0);
+    }
+
+    /**
+     * Mensaje {@code file_data} listo para enviar (UTF-8, solo lectura); null si el adjunto no existe.
+     * Un acierto devuelve una vista del buffer directo, sin copias; si solo está la variante cruda se
+     * codifica una vez, y si no está se carga con {@code loader}.
+     */
+    public ByteBuffer fileFrame(long actionId, LongFunction<HistoryRecord> loader) {
+        Frame f = frame(actionId, loader);
+        return f != null ? f.buffer : null;
+    }
+
+    /**
+     * Adjunto completo (original en Base64) por id. Si solo está la variante cruda se codifica y
+     * se guarda; si no está, se carga con {@code loader} (normalmente {@code ActionDAO::getFileRecord}).
+     */
+    public HistoryRecord fileRecord(long actionId, LongFunction<HistoryRecord> loader) {
+        if (!enabled()) return loader.apply(actionId);
+        HistoryRecord[] loaded = new HistoryRecord[1];
+        Frame f = frame(actionId, id -> loaded[0] = loader.apply(id));
+        if (loaded[0] != null) return loaded[0];   // recién cargado: ya trae su Base64
+        return f != null ? withData(f) : null;
+    }
+
+    /** Frame del adjunto: de la caché, codificando la variante cruda, o cargándolo. */
+    private Frame frame(long actionId, LongFunction<HistoryRecord> loader) {
+        if (enabled()) {
+            HistoryRecord meta = null;
+            Frame cached = null;
+            ByteBuffer raw = null;
+            synchronized (this) {
+                Entry e = lru.get(actionId);
+                if (e != null) {
+                    meta = e.meta;
+                    ByteBuffer fb = e.variants.get(Variant.FRAME);
+                    if (fb != null) cached = new Frame(meta, fb.duplicate(), e.dataOffset, e.dataLength);
+                    else raw = e.variants.get(Variant.RAW);
+                    if (raw != null) raw = raw.duplicate();
+                }
+            }
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            if (raw != null) {
+                hits.increment();
+                encodes.increment();
+                return cache(actionId, meta, Base64.getEncoder().encode(raw));
+            }
+            misses.increment();
+        }
+        HistoryRecord full = loader.apply(actionId);
+        if (full == null || full.getDataBase64() == null) return null;
+        return cache(actionId, full.withoutData(),
+                ByteBuffer.wrap(full.getDataBase64().getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    /** Arma el frame (en memoria directa si entra en la caché) y lo guarda. */
+    private Frame cache(long actionId, HistoryRecord meta, ByteBuffer base64) {
+        byte[] header = frameHeader.apply(meta).getBytes(StandardCharsets.UTF_8);
+        int head = header.length - 1;   // sin la '}' final
+        int len = head + DATA_FIELD.length + base64.remaining() + FRAME_END.length;
+        boolean keep = enabled() && len <= maxEntryBytes;
+        ByteBuffer buf = keep ? ByteBuffer.allocateDirect(len) : ByteBuffer.allocate(len);
+        buf.put(header, 0, head).put(DATA_FIELD).put(base64.duplicate()).put(FRAME_END).flip();
+        Frame f = new Frame(meta, buf.asReadOnlyBuffer(), head + DATA_FIELD.length, base64.remaining());
+        if (keep) store(actionId, meta, Variant.FRAME, buf, f.dataOffset, f.dataLength);
+        return f;
+    }
+
+    public long hits() { return hits.sum(); }
+    public long misses() { return misses.sum(); }
+    public long evictions() { return evictions.sum(); }
+    public synchronized long usedBytes() { return usedBytes; }
+    public synchronized int size() { return lru.size(); }
+
+    /** Resumen de una línea para logs. */
+    public String report() {
+        long h = hits(), m = misses();
+        double ratio = h + m == 0 ? 0 : 100.0 * h / (h + m);
+        return String.format("Caché de adjuntos: %d entradas, %.1f/%.1f MB, hits=%d misses=%d (%.1f%%), codificaciones=%d, desalojos=%d",
+                size(), usedBytes() / 1048576.0, budgetBytes / 1048576.0, h, m, ratio, encodes.sum(), evictions());
+    }
+
+    /** Guarda {@code off} (buffer directo ya armado, pasa a ser de la caché) como variante de la entrada. */
+    private void store(long actionId, HistoryRecord meta, Variant variant, ByteBuffer off, int dataOffset, int dataLength) {
+        int len = off.remaining();
+        synchronized (this) {
+            Entry e = lru.computeIfAbsent(actionId, k -> new Entry(meta));
+            ByteBuffer prev = e.variants.put(variant, off.asReadOnlyBuffer());
+            long delta = len - (prev != null ? prev.capacity() : 0);
+            if (variant == Variant.FRAME) {
+                e.dataOffset = dataOffset;
+                e.dataLength = dataLength;
+                // hoy solo se sirve el frame: una vez armado, la variante cruda solo ocupa presupuesto
+                ByteBuffer raw = e.variants.remove(Variant.RAW);
+                if (raw != null) delta -= raw.capacity();
+            }
+            e.bytes += delta;
+            usedBytes += delta;
+            evict(actionId);
+        }
+    }
+
+    /** Descarta por LRU hasta volver al presupuesto (sin tocar la entrada recién escrita). */
+    private void evict(long keep) {
+        Iterator<Map.Entry<Long, Entry>> it = lru.entrySet().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<Long, Entry> e = it.next();
+            if (e.getKey() == keep) continue;
+            usedBytes -= e.getValue().bytes;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /** Registro con el Base64 copiado del frame (historial inicial; {@code file_get} envía el frame tal cual). */
+    private static HistoryRecord withData(Frame f) {
+        HistoryRecord meta = f.meta;
+        byte[] ascii = new byte[f.dataLength];
+        f.buffer.get(f.dataOffset, ascii);
+        return HistoryRecord.file(meta.getId(), meta.getRoom(), meta.getUsername(), meta.getFilename(),
+                meta.getMimetype(), meta.getSize(), new String(ascii, StandardCharsets.ISO_8859_1), meta.getTimestamp());
+    }
+}
@@ -0,0 +1,105 @@
+package server.cache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import server.model.HistoryRecord;
+
+/**
+ * HistoryCache - Últimos N eventos TEXT/FILE por sala, en orden de id ascendente.
+ * Una sala está "caliente" cuando su contenido refleja la BD (carga inicial, snapshot o
+ * reconciliación); mientras no lo esté, el historial se lee de MySQL.
+ */
+public final class HistoryCache {
+    private final int capacity;
+    private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+
+    private static final class Room {
+        final ArrayDeque<HistoryRecord> records = new ArrayDeque<>();
+        boolean warm;
+    }
+
+    public HistoryCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int capacity() { return capacity; }
+
+    /** Copia del historial de la sala, o null si no está caliente. */
+    public List<HistoryRecord> recent(String room) {
+        Room r = rooms.get(room);
+        if (r == null) return null;
+        synchronized (r) {
+            return r.warm ? new ArrayList<>(r.records) : null;
+        }
+    }
+
+    /** Agrega un evento recién persistido, manteniendo el orden por id y el tope de capacidad. */
+    public void append(HistoryRecord record) {
+        Room r = rooms.computeIfAbsent(record.getRoom(), k -> new Room());
+        synchronized (r) {
+            if (r.records.isEmpty() || r.records.peekLast().getId() < record.getId()) {
+                r.records.addLast(record);
+            } else {
+                // llegada fuera de orden (o replay duplicado): reinsertar ordenado
+                List<HistoryRecord> all = new ArrayList<>(r.records);
+                all.removeIf(x -> x.getId() == record.getId());
+                all.add(record);
+                all.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+                r.records.clear();
+                r.records.addAll(all);
+            }
+            while (r.records.size() > capacity) r.records.removeFirst();
+        }
+    }
+
+    /**
+     * Reemplaza el contenido de la sala con lo leído de la BD (o de un snapshot) y la marca caliente.
+     * Lo agregado con {@link #append} después de esa lectura (id mayor que el último leído) se
+     * conserva: la lectura y el reemplazo no son atómicos respecto de los eventos que se persisten.
+     */
+    public void replace(String room, List<HistoryRecord> records) {
+        long loadedMax = 0;
+        for (HistoryRecord hr : records) loadedMax = Math.max(loadedMax, hr.getId());
+        Room r = rooms.computeIfAbsent(room, k -> new Room());
+        synchronized (r) {
+            List<HistoryRecord> newer = new ArrayList<>();
+            for (HistoryRecord hr : r.records) if (hr.getId() > loadedMax) newer.add(hr);
+            r.records.clear();
+            int skip = Math.max(0, records.size() + newer.size() - capacity);
+            int i = 0;
+            for (HistoryRecord hr : records) {
+                if (i++ >= skip) r.records.addLast(hr);
+            }
+            for (HistoryRecord hr : newer) {
+                if (i++ >= skip) r.records.addLast(hr);
+            }
+            r.warm = true;
+        }
+    }
+
+    /** Mayor id cacheado en la sala (0 si vacía). */
+    public long maxId(String room) {
+        Room r = rooms.get(room);
+        if (r == null) return 0L;
+        synchronized (r) {
+            return r.records.isEmpty() ? 0L : r.records.peekLast().getId();
+        }
+    }
+
+    /** Copia de las salas calientes, para persistir en el snapshot. */
+    public Map<String, List<HistoryRecord>> snapshot() {
+        Map<String, List<HistoryRecord>> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Room> e : rooms.entrySet()) {
+            Room r = e.getValue();
+            synchronized (r) {
+                if (r.warm) out.put(e.getKey(), new ArrayList<>(r.records));
+            }
+        }
+        return out;
+    }
+}
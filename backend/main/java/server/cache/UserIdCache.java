@@ -0,0 +1,29 @@
+package server.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * UserIdCache - username -> id de usuario. Los ids no cambian una vez asignados,
+ * así que no requiere invalidación; evita un SELECT por cada evento auditado.
+ */
+public final class UserIdCache {
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /** Devuelve el id cacheado o lo carga con {@code loader} (null si el usuario no existe). */
+    public Integer resolve(String username, Function<String, Integer> loader) {
+        if (username == null) return null;
+        Integer id = ids.get(username);
+        if (id != null) return id;
+        id = loader.apply(username);
+        if (id != null) ids.put(username, id);
+        return id;
+    }
+
+    public void put(String username, int id) { ids.put(username, id); }
+
+    public Map<String, Integer> snapshot() { return Map.copyOf(ids); }
+
+    public void putAll(Map<String, Integer> entries) { ids.putAll(entries); }
+}
@@ -0,0 +1,30 @@
+package server.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WarmState - Estado en memoria que sobrevive reinicios vía snapshot: historial reciente por
+ * sala, cache de ids de usuario y versión de la lista de presencia.
+ */
+public final class WarmState {
+    private final HistoryCache history;
+    private final UserIdCache userIds = new UserIdCache();
+    private final AtomicLong presenceVersion = new AtomicLong();
+
+    public WarmState(int historyCapacity) {
+        this.history = new HistoryCache(historyCapacity);
+    }
+
+    public HistoryCache history() { return history; }
+    public UserIdCache userIds() { return userIds; }
+
+    public long presenceVersion() { return presenceVersion.get(); }
+
+    /** Nueva versión para un cambio de presencia (conexión/desconexión). */
+    public long nextPresenceVersion() { return presenceVersion.incrementAndGet(); }
+
+    /** Restaura la versión del snapshot; nunca retrocede. */
+    public void restorePresenceVersion(long version) {
+        presenceVersion.accumulateAndGet(version, Math::max);
+    }
+}
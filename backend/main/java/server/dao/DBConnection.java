@@ -24,11 +24,10 @@ public final class DBConnection {
     private static volatile DBConnection instance;
     private final DataSource dataSource;
 
-    private DBConnection() {
+    private DBConnection(String db) {
         MysqlDataSource ds = new MysqlDataSource();
         String host = getenvOrDefault("DB_HOST", "localhost");
         String port = getenvOrDefault("DB_PORT", "3306");
-        String db   = getenvOrDefault("DB_NAME", "chatapp");
         String user = getenvOrDefault("DB_USER", "root");
         String pass = getenvOrDefault("DB_PASS", "JoSeSiTo%_10");
         String url = "jdbc:mysql://" + host + ":" + port + "/" + db + "?useSSL=false&serverTimezone=UTC";
@@ -44,13 +43,18 @@ public final class DBConnection {
             synchronized (DBConnection.class) {
                 local = instance;
                 if (local == null) {
-                    instance = local = new DBConnection();
+                    instance = local = new DBConnection(getenvOrDefault("DB_NAME", "chatapp"));
                 }
             }
         }
         return local;
     }
 
+    /** Apunta las conexiones siguientes a otra base del mismo servidor (pruebas contra un esquema descartable). */
+    static synchronized void useDatabase(String db) {
+        instance = new DBConnection(db);
+    }
+
     /** Obtiene una nueva Connection. El llamador debe cerrarla (try-with-resources). */
     public Connection getConnection() throws SQLException {
         return dataSource.getConnection();
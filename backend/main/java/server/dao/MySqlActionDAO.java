@@ -0,0 +1,477 @@
+package server.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import server.model.HistoryRecord;
+
+/**
+ * MySqlActionDAO - Implementación MySQL de {@link ActionDAO}, stateless.
+ * Cada método abre/cierra su propia Connection desde DBConnection/DataSource.
+ */
+public final class MySqlActionDAO implements ActionDAO {
+    /** ER_DUP_ENTRY: otra inserción ya ocupó la clave única. */
+    private static final int ER_DUP_ENTRY = 1062;
+
+    @Override
+    public Integer getUserIdByUsername(String username) {
+        if (username == null || username.isBlank()) return null;
+        final String sql = "SELECT id FROM users WHERE username = ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Inserta una acción proveniente del journal de auditoría junto con su detalle, en una
+     * sola transacción. Idempotente por {@code journalSeq}: si ya existe una acción con esa
+     * secuencia se devuelve su id sin insertar nada. Si dos replays de la misma secuencia
+     * compiten, el índice único {@code idx_journal_seq} rechaza al segundo, que devuelve el id
+     * del primero.
+     */
+    @Override
+    public long insertJournaled(long journalSeq, String actionType, String room, Integer actorUserId,
+                                Integer recipientUserId, boolean serverGenerated, Timestamp createdAt, String content,
+                                String filename, String mimetype, long size, byte[] data) {
+        final String insertSql = "INSERT INTO actions(action_type, room, actor_user_id, recipient_user_id, server_generated, created_at, journal_seq) " +
+                "VALUES (?,?,?,?,?,?,?)";
+        try (Connection c = DBConnection.getInstance().getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                long existing = findJournaled(c, journalSeq, actionType, room, createdAt);
+                if (existing > 0) {
+                    c.commit();
+                    return existing;
+                }
+                long id;
+                try (PreparedStatement ps = c.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, actionType);
+                    ps.setString(2, room != null ? room : "global");
+                    if (actorUserId == null) ps.setNull(3, java.sql.Types.INTEGER); else ps.setInt(3, actorUserId);
+                    if (recipientUserId == null) ps.setNull(4, java.sql.Types.INTEGER); else ps.setInt(4, recipientUserId);
+                    ps.setBoolean(5, serverGenerated);
+                    ps.setTimestamp(6, createdAt);
+                    ps.setLong(7, journalSeq);
+                    ps.executeUpdate();
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        if (!rs.next()) throw new SQLException("No se obtuvo id de acción generada");
+                        id = rs.getLong(1);
+                    }
+                }
+                if (filename != null) {
+                    String mime = mimetype != null && !mimetype.isEmpty() ? mimetype : "application/octet-stream";
+                    StorageCodecs.Encoded stored = StorageCodecs.encode(data != null ? data : new byte[0], mime);
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "INSERT INTO action_file_details(action_id, filename, mimetype, size, data, codec) VALUES (?,?,?,?,?,?)")) {
+                        ps.setLong(1, id);
+                        ps.setString(2, filename);
+                        ps.setString(3, mime);
+                        ps.setLong(4, size);
+                        ps.setBytes(5, stored.getBytes());
+                        ps.setString(6, stored.getCodec());
+                        ps.executeUpdate();
+                    }
+                } else if (content != null) {
+                    // Comprimido: 'content' queda vacío y el texto va en 'content_z'
+                    StorageCodecs.Encoded stored = StorageCodecs.encodeText(content);
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "INSERT INTO action_text_details(action_id, content, content_length, codec, content_z) VALUES (?,?,?,?,?)")) {
+                        ps.setLong(1, id);
+                        ps.setString(2, stored.isRaw() ? content : "");
+                        ps.setInt(3, content.length());
+                        ps.setString(4, stored.getCodec());
+                        if (stored.isRaw()) ps.setNull(5, java.sql.Types.BLOB); else ps.setBytes(5, stored.getBytes());
+                        ps.executeUpdate();
+                    }
+                }
+                c.commit();
+                return id;
+            } catch (SQLException e) {
+                c.rollback();
+                if (e.getErrorCode() == ER_DUP_ENTRY) {
+                    // la otra transacción ya confirmó la acción con esta secuencia
+                    long existing = findJournaled(c, journalSeq, actionType, room, createdAt);
+                    c.commit();
+                    if (existing > 0) return existing;
+                }
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error persistiendo evento del journal seq=" + journalSeq, e);
+        }
+    }
+
+    /**
+     * Id de la acción con esa secuencia del journal, 0 si no existe. Si la fila no es la misma
+     * acción (otro journal reutilizó la secuencia) falla: el replayer la aparta a dead-letter.
+     */
+    private static long findJournaled(Connection c, long journalSeq, String actionType, String room,
+                                      Timestamp createdAt) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT id, action_type, room, created_at FROM actions WHERE journal_seq = ?")) {
+            ps.setLong(1, journalSeq);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return 0L;
+                Timestamp ts = rs.getTimestamp("created_at");
+                // TIMESTAMP sin fracción: el momento guardado puede diferir en menos de un segundo
+                boolean same = actionType.equals(rs.getString("action_type"))
+                        && (room != null ? room : "global").equals(rs.getString("room"))
+                        && ts != null && Math.abs(ts.getTime() - createdAt.getTime()) < 1000;
+                if (!same) {
+                    throw new SQLException("journal_seq " + journalSeq + " ya pertenece a la acción " + rs.getLong("id")
+                            + " (" + rs.getString("action_type") + "); ¿se reinició JOURNAL_DIR?");
+                }
+                return rs.getLong("id");
+            }
+        }
+    }
+
+    @Override
+    public long getMaxJournalSeq() {
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT MAX(journal_seq) FROM actions");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo la última secuencia del journal", e);
+        }
+    }
+
+    /** Mayor id de TEXT/FILE en la sala (high-water mark del historial), 0 si no hay. */
+    @Override
+    public long getHistoryHighWater(String room) {
+        final String sql = "SELECT MAX(id) FROM actions WHERE room = ? AND action_type IN ('TEXT','FILE')";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, room);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo high-water de historial: " + room, e);
+        }
+    }
+
+    /** Comprobación liviana de disponibilidad de la BD. */
+    @Override
+    public boolean ping() {
+        try (Connection c = DBConnection.getInstance().getConnection()) {
+            return c.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Guarda (o reemplaza) la miniatura de un adjunto de imagen. */
+    @Override
+    public void insertFilePreview(long actionId, String mimetype, int width, int height, byte[] data) {
+        final String sql = "REPLACE INTO action_file_previews(action_id, mimetype, width, height, size, data) VALUES (?,?,?,?,?,?)";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, actionId);
+            ps.setString(2, mimetype);
+            ps.setInt(3, width);
+            ps.setInt(4, height);
+            ps.setInt(5, data.length);
+            ps.setBytes(6, data);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error insertando preview de archivo " + actionId, e);
+        }
+    }
+
+    /** Recupera un adjunto completo (original) por id de acción, o null si no existe. */
+    @Override
+    public HistoryRecord getFileRecord(long actionId) {
+        final String sql = "SELECT a.id, a.room, a.created_at, u.username, f.filename, f.mimetype, f.size, f.data, f.codec AS file_codec " +
+                "FROM actions a " +
+                "LEFT JOIN users u ON u.id=a.actor_user_id " +
+                "JOIN action_file_details f ON f.action_id=a.id " +
+                "WHERE a.id = ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, actionId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Timestamp ts = rs.getTimestamp("created_at");
+                byte[] data = readData(rs);
+                return HistoryRecord.file(rs.getLong("id"), rs.getString("room"), rs.getString("username"),
+                        rs.getString("filename"), rs.getString("mimetype"), rs.getLong("size"),
+                        data != null ? Base64.getEncoder().encodeToString(data) : "",
+                        ts != null ? ts.getTime() : System.currentTimeMillis());
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo archivo " + actionId, e);
+        }
+    }
+
+    /**
+     * Últimos {@code limit} mensajes directos enviados o recibidos por el usuario, en orden ascendente.
+     */
+    @Override
+    public List<HistoryRecord> getDirectHistory(int userId, int limit) {
+        final String sql = "SELECT a.id, a.created_at, s.username AS sender, r.username AS recipient, t.content, t.codec AS text_codec, t.content_z " +
+                "FROM actions a " +
+                "JOIN action_text_details t ON t.action_id=a.id " +
+                "LEFT JOIN users s ON s.id=a.actor_user_id " +
+                "LEFT JOIN users r ON r.id=a.recipient_user_id " +
+                "WHERE a.action_type='DIRECT' AND (a.actor_user_id = ? OR a.recipient_user_id = ?) " +
+                "ORDER BY a.id DESC LIMIT ?";
+        ArrayList<HistoryRecord> list = new ArrayList<>();
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ps.setInt(2, userId);
+            ps.setInt(3, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp ts = rs.getTimestamp("created_at");
+                    list.add(HistoryRecord.direct(rs.getLong("id"), rs.getString("sender"), rs.getString("recipient"),
+                            readContent(rs), ts != null ? ts.getTime() : System.currentTimeMillis()));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo mensajes directos del usuario " + userId, e);
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    @Override
+    public int countHistoryBetween(String room, long afterId, long beforeId) {
+        final String sql = "SELECT COUNT(*) FROM actions WHERE room = ? AND action_type IN ('TEXT','FILE') AND id > ? AND id < ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, room);
+            ps.setLong(2, afterId);
+            ps.setLong(3, beforeId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error contando historial de " + room, e);
+        }
+    }
+
+    @Override
+    public int countDirectBetween(int userId, long afterId, long beforeId) {
+        final String sql = "SELECT COUNT(*) FROM actions WHERE action_type='DIRECT' AND (actor_user_id = ? OR recipient_user_id = ?) " +
+                "AND id > ? AND id < ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ps.setInt(2, userId);
+            ps.setLong(3, afterId);
+            ps.setLong(4, beforeId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error contando mensajes directos del usuario " + userId, e);
+        }
+    }
+
+    /** Metadatos de un adjunto (sin el contenido), o null si no existe. */
+    @Override
+    public HistoryRecord getFileMeta(long actionId) {
+        final String sql = "SELECT a.id, a.room, a.created_at, u.username, f.filename, f.mimetype, f.size " +
+                "FROM actions a " +
+                "LEFT JOIN users u ON u.id=a.actor_user_id " +
+                "JOIN action_file_details f ON f.action_id=a.id " +
+                "WHERE a.id = ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, actionId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Timestamp ts = rs.getTimestamp("created_at");
+                return HistoryRecord.file(rs.getLong("id"), rs.getString("room"), rs.getString("username"),
+                        rs.getString("filename"), rs.getString("mimetype"), rs.getLong("size"), null,
+                        ts != null ? ts.getTime() : System.currentTimeMillis());
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo metadatos de archivo " + actionId, e);
+        }
+    }
+
+    /**
+     * Copia el contenido de un adjunto a {@code target} leyendo el BLOB en streaming (y descomprimiéndolo si corresponde).
+     * @return false si el adjunto no existe
+     */
+    @Override
+    public boolean copyFileData(long actionId, Path target) throws IOException {
+        final String sql = "SELECT data, codec FROM action_file_details WHERE action_id = ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, actionId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return false;
+                StorageCodec codec = StorageCodecs.forName(rs.getString("codec"));
+                InputStream blob = rs.getBinaryStream("data");
+                if (blob == null) {
+                    Files.write(target, new byte[0]);
+                    return true;
+                }
+                try (InputStream in = codec.decoding(blob)) {
+                    Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return true;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo contenido de archivo " + actionId, e);
+        }
+    }
+
+    /**
+     * Recupera los últimos {@code limit} mensajes (TEXT y FILE) de una sala, en orden cronológico ascendente.
+     */
+    @Override
+    public List<HistoryRecord> getRecentHistory(String room, int limit) {
+        int lim = (limit <= 0 || limit > 1000) ? 200 : limit; // salvaguarda
+        // Si hay miniatura no se lee el original (LONGBLOB): el cliente lo pide con file_get
+        final String sql = "SELECT a.id, a.room, a.action_type, a.created_at, u.username, t.content, t.codec AS text_codec, t.content_z, " +
+                "f.filename, f.mimetype, f.size, f.codec AS file_codec, " +
+                "CASE WHEN p.action_id IS NULL THEN f.data END AS data, p.data AS preview_data, p.mimetype AS preview_mimetype " +
+                "FROM actions a " +
+                "LEFT JOIN users u ON u.id=a.actor_user_id " +
+                "LEFT JOIN action_text_details t ON t.action_id=a.id " +
+                "LEFT JOIN action_file_details f ON f.action_id=a.id " +
+                "LEFT JOIN action_file_previews p ON p.action_id=a.id " +
+                "JOIN (SELECT id FROM actions WHERE room = ? AND action_type IN ('TEXT','FILE') " +
+                "      ORDER BY id DESC LIMIT ?) recent ON recent.id=a.id " +
+                "ORDER BY a.created_at ASC, a.id ASC";
+        ArrayList<HistoryRecord> list = new ArrayList<>();
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, room);
+            ps.setInt(2, lim);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String type = rs.getString("action_type");
+                    Timestamp ts = rs.getTimestamp("created_at");
+                    long millis = ts != null ? ts.getTime() : System.currentTimeMillis();
+                    String username = rs.getString("username");
+                    long id = rs.getLong("id");
+                    if ("TEXT".equals(type)) {
+                        list.add(HistoryRecord.text(id, room, username, readContent(rs), millis));
+                    } else if ("FILE".equals(type)) {
+                        String filename = rs.getString("filename");
+                        String mimetype = rs.getString("mimetype");
+                        long size = rs.getLong("size");
+                        byte[] preview = rs.getBytes("preview_data");
+                        if (preview != null) {
+                            list.add(HistoryRecord.fileWithPreview(id, room, username, filename, mimetype, size,
+                                    Base64.getEncoder().encodeToString(preview), rs.getString("preview_mimetype"), millis));
+                            continue;
+                        }
+                        byte[] data = readData(rs);
+                        String b64 = (data != null && data.length > 0) ? Base64.getEncoder().encodeToString(data) : "";
+                        list.add(HistoryRecord.file(id, room, username, filename, mimetype, size, b64, millis));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo historial de la sala " + room, e);
+        }
+        return list;
+    }
+
+    /**
+     * Recupera mensajes de texto por id (resultados de búsqueda), respetando el orden recibido.
+     * Los ids que ya no existan en BD se omiten.
+     */
+    @Override
+    public List<HistoryRecord> getTextRecordsByIds(List<Long> ids) {
+        ArrayList<HistoryRecord> list = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) return list;
+        StringBuilder in = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) in.append(i == 0 ? "?" : ",?");
+        final String sql = "SELECT a.id, a.room, a.created_at, u.username, t.content, t.codec AS text_codec, t.content_z " +
+                "FROM actions a " +
+                "LEFT JOIN users u ON u.id=a.actor_user_id " +
+                "JOIN action_text_details t ON t.action_id=a.id " +
+                "WHERE a.action_type = 'TEXT' AND a.id IN (" + in + ")";
+        Map<Long, HistoryRecord> byId = new HashMap<>();
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) ps.setLong(i + 1, ids.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    HistoryRecord hr = readText(rs);
+                    byId.put(hr.getId(), hr);
+                }
+            }
+        } catch (SQLException e) {
+            return list;
+        }
+        for (Long id : ids) {
+            HistoryRecord hr = byId.get(id);
+            if (hr != null) list.add(hr);
+        }
+        return list;
+    }
+
+    /**
+     * Recupera mensajes de texto con id mayor a {@code afterId} en orden ascendente.
+     * Usado para poner al día índices derivados (p.ej. búsqueda) tras un reinicio.
+     */
+    @Override
+    public List<HistoryRecord> getTextRecordsAfter(long afterId, int limit) {
+        final String sql = "SELECT a.id, a.room, a.created_at, u.username, t.content, t.codec AS text_codec, t.content_z " +
+                "FROM actions a " +
+                "LEFT JOIN users u ON u.id=a.actor_user_id " +
+                "JOIN action_text_details t ON t.action_id=a.id " +
+                "WHERE a.action_type = 'TEXT' AND a.id > ? " +
+                "ORDER BY a.id ASC LIMIT ?";
+        ArrayList<HistoryRecord> list = new ArrayList<>();
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, afterId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(readText(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo mensajes posteriores a " + afterId, e);
+        }
+        return list;
+    }
+
+    private static HistoryRecord readText(ResultSet rs) throws SQLException {
+        Timestamp ts = rs.getTimestamp("created_at");
+        long millis = ts != null ? ts.getTime() : System.currentTimeMillis();
+        return HistoryRecord.text(rs.getLong("id"), rs.getString("room"), rs.getString("username"),
+                readContent(rs), millis);
+    }
+
+    /** Texto de la fila (columnas content, text_codec y content_z), descomprimido si hace falta. */
+    static String readContent(ResultSet rs) throws SQLException {
+        return StorageCodecs.decodeText(rs.getString("text_codec"), rs.getString("content"), rs.getBytes("content_z"));
+    }
+
+    /** Contenido original del adjunto (columnas data y file_codec), o null. */
+    static byte[] readData(ResultSet rs) throws SQLException {
+        return StorageCodecs.decode(rs.getString("file_codec"), rs.getBytes("data"));
+    }
+}
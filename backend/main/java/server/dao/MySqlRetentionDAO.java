@@ -0,0 +1,187 @@
+package server.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import server.model.ActionRow;
+
+/**
+ * MySqlRetentionDAO - Implementación MySQL de {@link RetentionDAO}.
+ * Stateless, igual que el resto de DAOs: cada método abre/cierra su Connection.
+ */
+public final class MySqlRetentionDAO implements RetentionDAO {
+
+    private static final String ROW_COLUMNS =
+            "a.id, a.action_type, a.room, a.actor_user_id, a.recipient_user_id, a.server_generated, a.created_at, " +
+            "t.content, t.codec AS text_codec, t.content_z, f.filename, f.mimetype, f.size, f.data, f.codec AS file_codec ";
+    private static final String ROW_JOINS =
+            "LEFT JOIN action_text_details t ON t.action_id=a.id " +
+            "LEFT JOIN action_file_details f ON f.action_id=a.id ";
+
+    @Override
+    public List<ActionRow> selectExpired(String actionType, Timestamp cutoff, int limit) {
+        final String sql = "SELECT " + ROW_COLUMNS + "FROM actions a " + ROW_JOINS +
+                "WHERE a.action_type = ? AND a.created_at < ? ORDER BY a.id ASC LIMIT ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, actionType);
+            ps.setTimestamp(2, cutoff);
+            ps.setInt(3, limit);
+            return readRows(ps);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error seleccionando acciones expiradas: " + actionType, e);
+        }
+    }
+
+    @Override
+    public List<ActionRow> selectFromPartition(String partition, long afterId, int limit) {
+        final String sql = "SELECT " + ROW_COLUMNS + "FROM actions PARTITION (" + checkIdentifier(partition) + ") a " +
+                ROW_JOINS + "WHERE a.id > ? ORDER BY a.id ASC LIMIT ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, afterId);
+            ps.setInt(2, limit);
+            return readRows(ps);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo partición " + partition, e);
+        }
+    }
+
+    @Override
+    public int deleteByIds(List<Long> ids) {
+        if (ids.isEmpty()) return 0;
+        String in = placeholders(ids.size());
+        try (Connection c = DBConnection.getInstance().getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                deleteIn(c, "DELETE FROM action_text_details WHERE action_id IN (" + in + ")", ids);
+                deleteIn(c, "DELETE FROM action_file_details WHERE action_id IN (" + in + ")", ids);
+                deleteIn(c, "DELETE FROM action_file_previews WHERE action_id IN (" + in + ")", ids);
+                int deleted = deleteIn(c, "DELETE FROM actions WHERE id IN (" + in + ")", ids);
+                c.commit();
+                return deleted;
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error borrando lote de acciones", e);
+        }
+    }
+
+    @Override
+    public boolean isActionsPartitioned() {
+        final String sql = "SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'actions' AND PARTITION_NAME IS NOT NULL";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() && rs.getInt(1) > 0;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Map<String, Long> listPartitions() {
+        final String sql = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'actions' AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION";
+        Map<String, Long> out = new LinkedHashMap<>();
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String desc = rs.getString(2);
+                long bound = "MAXVALUE".equalsIgnoreCase(desc) ? Long.MAX_VALUE : Long.parseLong(desc.trim());
+                out.put(rs.getString(1), bound);
+            }
+        } catch (SQLException | NumberFormatException e) {
+            throw new RuntimeException("Error listando particiones de actions", e);
+        }
+        return out;
+    }
+
+    @Override
+    public List<String> actionTypesIn(String partition) {
+        final String sql = "SELECT DISTINCT action_type FROM actions PARTITION (" + checkIdentifier(partition) + ")";
+        List<String> out = new ArrayList<>();
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) out.add(rs.getString(1));
+        } catch (SQLException e) {
+            throw new RuntimeException("Error inspeccionando partición " + partition, e);
+        }
+        return out;
+    }
+
+    @Override
+    public void addPartitionBefore(String maxPartition, String name, long upperEpochSeconds) {
+        String sql = "ALTER TABLE actions REORGANIZE PARTITION " + checkIdentifier(maxPartition) + " INTO (" +
+                "PARTITION " + checkIdentifier(name) + " VALUES LESS THAN (" + upperEpochSeconds + "), " +
+                "PARTITION " + checkIdentifier(maxPartition) + " VALUES LESS THAN MAXVALUE)";
+        executeDdl(sql);
+    }
+
+    @Override
+    public void dropPartition(String name) {
+        executeDdl("ALTER TABLE actions DROP PARTITION " + checkIdentifier(name));
+    }
+
+    private void executeDdl(String sql) {
+        try (Connection c = DBConnection.getInstance().getConnection();
+             Statement st = c.createStatement()) {
+            st.execute(sql);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error ejecutando DDL: " + sql, e);
+        }
+    }
+
+    private static int deleteIn(Connection c, String sql, List<Long> ids) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) ps.setLong(i + 1, ids.get(i));
+            return ps.executeUpdate();
+        }
+    }
+
+    private static List<ActionRow> readRows(PreparedStatement ps) throws SQLException {
+        List<ActionRow> list = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Timestamp ts = rs.getTimestamp("created_at");
+                int actor = rs.getInt("actor_user_id");
+                Integer actorId = rs.wasNull() ? null : actor;
+                int recipient = rs.getInt("recipient_user_id");
+                Integer recipientId = rs.wasNull() ? null : recipient;
+                list.add(new ActionRow(rs.getLong("id"), rs.getString("action_type"), rs.getString("room"),
+                        actorId, recipientId, rs.getBoolean("server_generated"), ts != null ? ts.getTime() : 0L,
+                        MySqlActionDAO.readContent(rs), rs.getString("filename"), rs.getString("mimetype"),
+                        rs.getLong("size"), MySqlActionDAO.readData(rs)));
+            }
+        }
+        return list;
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) sb.append(i == 0 ? "?" : ",?");
+        return sb.toString();
+    }
+
+    // Los nombres de partición no pueden ir como parámetro JDBC: se validan antes de concatenar
+    private static String checkIdentifier(String name) {
+        if (name == null || !name.matches("[A-Za-z0-9_]{1,64}")) {
+            throw new IllegalArgumentException("Identificador inválido: " + name);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,115 @@
+package server.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import server.model.User;
+
+/**
+ * MySqlUserDAO - Implementación MySQL de {@link UserDAO}, stateless. Cada método abre y cierra su propia Connection
+ * usando try-with-resources. El antiguo enfoque Singleton aquí no aporta valor porque
+ * no existe estado compartido; se evita así proliferación innecesaria de instancias
+ * y se favorece inyección explícita donde se necesite.
+ */
+public final class MySqlUserDAO implements UserDAO {
+
+    @Override
+    public User authenticate(String username, String passwordPlain) {
+        if (username == null || passwordPlain == null) return null;
+        String sql = "SELECT id, username, full_name, password_hash FROM users WHERE username = ?";
+        
+        try (Connection c = DBConnection.getInstance().getConnection();
+            PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, username);
+            
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    String stored = rs.getString("password_hash");
+                    if (stored != null && stored.equals(passwordPlain)) {
+                        return new User(rs.getInt("id"), rs.getString("username"), rs.getString("full_name"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error autenticando usuario: " + username, e);
+        }
+        return null;
+    }
+
+    /**
+     * Registra un nuevo usuario si el username no existe.
+     * Devuelve la entidad creada o null si el username ya está en uso.
+     */
+    @Override
+    public User registerUser(String username, String fullName, String passwordPlain) {
+        if (username == null || passwordPlain == null || username.isBlank() || passwordPlain.isBlank()) return null;
+        String checkSql = "SELECT id FROM users WHERE username = ?";
+        String insertSql = "INSERT INTO users (username, full_name, password_hash) VALUES (?,?,?)";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement checkPs = c.prepareStatement(checkSql)) {
+            checkPs.setString(1, username);
+            try (ResultSet rs = checkPs.executeQuery()) {
+                if (rs.next()) return null; // existe
+            }
+            try (PreparedStatement insertPs = c.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+                insertPs.setString(1, username);
+                insertPs.setString(2, fullName);
+                insertPs.setString(3, passwordPlain); // TODO: hash seguro
+                int affected = insertPs.executeUpdate();
+                if (affected > 0) {
+                    try (ResultSet gen = insertPs.getGeneratedKeys()) {
+                        if (gen.next()) {
+                            return new User(gen.getInt(1), username, fullName);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error registrando usuario: " + username, e);
+        }
+        return null;
+    }
+
+    @Override
+    public void recordLogin(int userId) {
+        String sql = "UPDATE users SET last_login = CURRENT_TIMESTAMP WHERE id = ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error registrando login del usuario " + userId, e);
+        }
+    }
+
+    @Override
+    public long getLastSeen(int userId) {
+        String sql = "SELECT last_seen_action_id FROM users WHERE id = ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L; // NULL => 0
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error leyendo última posición vista del usuario " + userId, e);
+        }
+    }
+
+    @Override
+    public void updateLastSeen(int userId, long actionId) {
+        // GREATEST: un cierre tardío de otra conexión no hace retroceder la posición
+        String sql = "UPDATE users SET last_seen_action_id = GREATEST(COALESCE(last_seen_action_id, 0), ?) WHERE id = ?";
+        try (Connection c = DBConnection.getInstance().getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, actionId);
+            ps.setInt(2, userId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error guardando última posición vista del usuario " + userId, e);
+        }
+    }
+}
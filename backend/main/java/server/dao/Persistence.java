@@ -0,0 +1,60 @@
+package server.dao;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import server.Config;
+import server.dao.local.LocalActionDAO;
+import server.dao.local.LocalStore;
+import server.dao.local.LocalUserDAO;
+
+/**
+ * Persistence - Punto único de elección del backend de almacenamiento.
+ * - "mysql": {@link MySqlUserDAO}/{@link MySqlActionDAO} (retención y particionado disponibles).
+ * - "local": log embebido en disco ({@link LocalStore}); no requiere servidor de BD.
+ * El resto del servidor solo ve las interfaces {@link UserDAO} y {@link ActionDAO}.
+ */
+public final class Persistence implements Closeable {
+    private final String name;
+    private final UserDAO userDAO;
+    private final ActionDAO actionDAO;
+    private final Closeable resource; // null si no hay nada que cerrar
+
+    private Persistence(String name, UserDAO userDAO, ActionDAO actionDAO, Closeable resource) {
+        this.name = name;
+        this.userDAO = userDAO;
+        this.actionDAO = actionDAO;
+        this.resource = resource;
+    }
+
+    /** Backend indicado por PERSISTENCE (valores desconocidos => mysql). */
+    public static Persistence fromConfig() {
+        if ("local".equals(Config.getPersistence())) return local(Paths.get(Config.getLocalStoreDir()));
+        return mysql();
+    }
+
+    public static Persistence mysql() {
+        return new Persistence("mysql", new MySqlUserDAO(), new MySqlActionDAO(), null);
+    }
+
+    public static Persistence local(Path dir) {
+        LocalStore store = LocalStore.open(dir);
+        return new Persistence("local", new LocalUserDAO(store), new LocalActionDAO(store), store);
+    }
+
+    public String name() { return name; }
+    public UserDAO userDAO() { return userDAO; }
+    public ActionDAO actionDAO() { return actionDAO; }
+
+    /** La retención/archivado opera con SQL sobre 'actions': solo aplica a MySQL. */
+    public boolean supportsRetention() { return "mysql".equals(name); }
+
+    @Override
+    public void close() {
+        if (resource == null) return;
+        try {
+            resource.close();
+        } catch (java.io.IOException ignored) { }
+    }
+}
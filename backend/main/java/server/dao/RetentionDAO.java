@@ -0,0 +1,43 @@
+package server.dao;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+import server.model.ActionRow;
+
+/**
+ * RetentionDAO - Consultas de mantenimiento sobre 'actions': selección de filas expiradas,
+ * borrado por lotes y administración de particiones por rango de fecha.
+ * Implementación: {@link MySqlRetentionDAO} (solo MySQL, ver {@link Persistence#supportsRetention()}).
+ */
+public interface RetentionDAO {
+
+    /** Lote de filas de un tipo con created_at anterior a {@code cutoff}, por id ascendente. */
+    List<ActionRow> selectExpired(String actionType, Timestamp cutoff, int limit);
+
+    /** Lote de filas de una partición con id mayor a {@code afterId}. */
+    List<ActionRow> selectFromPartition(String partition, long afterId, int limit);
+
+    /**
+     * Borra acciones y sus detalles en una única transacción. Los detalles se borran
+     * explícitamente porque una tabla particionada no admite ON DELETE CASCADE.
+     */
+    int deleteByIds(List<Long> ids);
+
+    /** true si 'actions' está particionada en la BD actual. */
+    boolean isActionsPartitioned();
+
+    /**
+     * Particiones de 'actions' en orden -> límite superior (epoch segundos; Long.MAX_VALUE para MAXVALUE).
+     */
+    Map<String, Long> listPartitions();
+
+    /** Tipos de acción presentes en una partición. */
+    List<String> actionTypesIn(String partition);
+
+    /** Divide la partición MAXVALUE para crear una nueva con límite superior {@code upperEpochSeconds}. */
+    void addPartitionBefore(String maxPartition, String name, long upperEpochSeconds);
+
+    void dropPartition(String name);
+}
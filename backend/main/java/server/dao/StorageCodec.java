@@ -0,0 +1,31 @@
+package server.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * StorageCodec - Transformación reversible del contenido antes de guardarlo en BD
+ * ({@code action_text_details.content_z}, {@code action_file_details.data}).
+ * El nombre se guarda por fila en la columna {@code codec}, de modo que cambiar el codec
+ * configurado no afecta a las filas ya escritas. Ver {@link StorageCodecs}.
+ */
+public interface StorageCodec {
+
+    /** Nombre persistido en la columna {@code codec} ("none", "deflate"...). */
+    String name();
+
+    byte[] encode(byte[] raw);
+
+    /** Envuelve el contenido almacenado para leerlo ya decodificado, en streaming. */
+    InputStream decoding(InputStream stored);
+
+    default byte[] decode(byte[] stored) {
+        try (InputStream in = decoding(new ByteArrayInputStream(stored))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Contenido almacenado con codec " + name() + " corrupto", e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package server.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import server.Config;
+
+/**
+ * StorageCodecs - Registro de {@link StorageCodec} y política de compresión del contenido persistido.
+ *
+ * Se comprime con el codec configurado ({@code Config.getStorageCodec()}) solo si el contenido
+ * supera {@code Config.getStorageCompressMinBytes()}, su mimetype no es un formato ya comprimido
+ * (imágenes, audio, video, zip, pdf...) y el resultado ahorra al menos 1/8; si no, se guarda tal cual
+ * con {@link #NONE}. Leer una fila comprimida cuesta un inflate, a cambio de menos páginas de
+ * InnoDB en el buffer pool y menos bytes por fila en {@code getRecentHistory}.
+ */
+public final class StorageCodecs {
+
+    /** Contenido tal cual (también el de las filas anteriores a la columna {@code codec}). */
+    public static final StorageCodec NONE = new StorageCodec() {
+        @Override public String name() { return "none"; }
+        @Override public byte[] encode(byte[] raw) { return raw; }
+        @Override public InputStream decoding(InputStream stored) { return stored; }
+        @Override public byte[] decode(byte[] stored) { return stored; }
+    };
+
+    /** zlib (JDK {@link Deflater}) con el nivel por defecto. */
+    public static final StorageCodec DEFLATE = new StorageCodec() {
+        @Override public String name() { return "deflate"; }
+
+        @Override
+        public byte[] encode(byte[] raw) {
+            Deflater d = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            try {
+                d.setInput(raw);
+                d.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+                byte[] buf = new byte[8192];
+                while (!d.finished()) out.write(buf, 0, d.deflate(buf));
+                return out.toByteArray();
+            } finally {
+                d.end();
+            }
+        }
+
+        @Override
+        public InputStream decoding(InputStream stored) {
+            return new InflaterInputStream(stored, new Inflater(), 8192) {
+                private boolean ended;
+
+                // InflaterInputStream no libera un Inflater recibido por parámetro
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    if (!ended) { ended = true; inf.end(); }
+                }
+            };
+        }
+    };
+
+    private static final Map<String, StorageCodec> CODECS = new ConcurrentHashMap<>(Map.of(
+            NONE.name(), NONE, DEFLATE.name(), DEFLATE));
+
+    /** Prefijos de mimetype que ya vienen comprimidos: recomprimirlos gasta CPU sin ahorrar bytes. */
+    private static final String[] COMPRESSED_PREFIXES = {
+            "image/", "video/", "audio/", "font/woff",
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z", "application/x-rar",
+            "application/x-bzip", "application/x-xz", "application/zstd", "application/pdf", "application/java-archive",
+            "application/epub", "application/vnd.openxmlformats", "application/vnd.oasis.opendocument",
+            "application/vnd.android.package-archive"
+    };
+
+    private StorageCodecs() { }
+
+    /** Registra un codec adicional (p.ej. uno basado en una librería externa) para escribir y leer filas. */
+    public static void register(StorageCodec codec) {
+        CODECS.put(codec.name(), codec);
+    }
+
+    /** Codec de una fila; {@code null} (filas previas a la migración o LEFT JOIN sin detalle) es {@link #NONE}. */
+    public static StorageCodec forName(String name) {
+        if (name == null || name.isEmpty()) return NONE;
+        StorageCodec c = CODECS.get(name);
+        if (c == null) throw new IllegalStateException("Codec de almacenamiento desconocido: " + name);
+        return c;
+    }
+
+    /** true si vale la pena intentar comprimir un contenido de este tipo y tamaño. */
+    public static boolean compressible(String mimetype, int length) {
+        if (length < Config.getStorageCompressMinBytes()) return false;
+        if (mimetype == null) return true;
+        String m = mimetype.toLowerCase(Locale.ROOT);
+        if (m.startsWith("image/svg")) return true; // svg es texto
+        for (String p : COMPRESSED_PREFIXES) {
+            if (m.startsWith(p)) return false;
+        }
+        return true;
+    }
+
+    /** Contenido a guardar junto con el nombre del codec usado. */
+    public static final class Encoded {
+        private final String codec;
+        private final byte[] bytes;
+
+        private Encoded(String codec, byte[] bytes) {
+            this.codec = codec;
+            this.bytes = bytes;
+        }
+
+        public String getCodec() { return codec; }
+        public byte[] getBytes() { return bytes; }
+        public boolean isRaw() { return NONE.name().equals(codec); }
+    }
+
+    /** Codifica {@code raw} según la política; devuelve el original con {@link #NONE} si no conviene. */
+    public static Encoded encode(byte[] raw, String mimetype) {
+        // nombre desconocido: sin comprimir
+        return encode(CODECS.getOrDefault(Config.getStorageCodec(), NONE), raw, mimetype);
+    }
+
+    static Encoded encode(StorageCodec codec, byte[] raw, String mimetype) {
+        if (codec == NONE || !compressible(mimetype, raw.length)) return new Encoded(NONE.name(), raw);
+        byte[] out = codec.encode(raw);
+        if (out.length > raw.length - raw.length / 8) return new Encoded(NONE.name(), raw);
+        return new Encoded(codec.name(), out);
+    }
+
+    /** Texto de un mensaje: UTF-8 con mimetype text/plain. */
+    public static Encoded encodeText(String content) {
+        return encode(content.getBytes(StandardCharsets.UTF_8), "text/plain");
+    }
+
+    public static byte[] decode(String codec, byte[] stored) {
+        return stored == null ? null : forName(codec).decode(stored);
+    }
+
+    /** Texto de una fila de {@code action_text_details}: {@code content} si está sin comprimir, si no {@code content_z}. */
+    public static String decodeText(String codec, String content, byte[] compressed) {
+        if (compressed == null) return content;
+        return new String(forName(codec).decode(compressed), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,174 @@
+package server.dao.local;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import server.dao.ActionDAO;
+import server.model.HistoryRecord;
+
+/**
+ * LocalActionDAO - Implementación de {@link ActionDAO} sobre {@link LocalStore}.
+ * Las consultas se resuelven con los índices en memoria del store; solo los binarios se leen del log.
+ */
+public final class LocalActionDAO implements ActionDAO {
+    private final LocalStore store;
+
+    public LocalActionDAO(LocalStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public Integer getUserIdByUsername(String username) {
+        if (username == null) return null;
+        LocalStore.UserEntry u = store.usersByName.get(username);
+        return u != null ? u.id : null;
+    }
+
+    @Override
+    public long insertJournaled(long journalSeq, String actionType, String room, Integer actorUserId,
+                                Integer recipientUserId, boolean serverGenerated, Timestamp createdAt, String content,
+                                String filename, String mimetype, long size, byte[] data) {
+        if (actionType == null || room == null) throw new IllegalArgumentException("actionType y room son obligatorios");
+        long ts = createdAt != null ? createdAt.getTime() : System.currentTimeMillis();
+        boolean isFile = "FILE".equals(actionType) && filename != null;
+        return store.addAction(journalSeq, actionType, room,
+                actorUserId != null ? actorUserId : -1, recipientUserId != null ? recipientUserId : -1, ts,
+                isFile ? null : content,
+                isFile ? filename : null, isFile ? mimetype : null, isFile ? size : 0L, isFile ? data : null);
+    }
+
+    @Override
+    public long getMaxJournalSeq() {
+        return store.maxJournalSeq();
+    }
+
+    @Override
+    public long getHistoryHighWater(String room) {
+        Long last = store.history(room).floor(Long.MAX_VALUE);
+        return last != null ? last : 0L;
+    }
+
+    @Override
+    public boolean ping() {
+        return store.isOpen();
+    }
+
+    @Override
+    public void insertFilePreview(long actionId, String mimetype, int width, int height, byte[] data) {
+        store.addPreview(actionId, mimetype, width, height, data);
+    }
+
+    @Override
+    public HistoryRecord getFileRecord(long actionId) {
+        LocalStore.ActionEntry a = store.actions.get(actionId);
+        if (a == null || a.filename == null) return null;
+        return fileRecord(a, Base64.getEncoder().encodeToString(store.read(a.dataPos, a.dataLen)));
+    }
+
+    @Override
+    public HistoryRecord getFileMeta(long actionId) {
+        LocalStore.ActionEntry a = store.actions.get(actionId);
+        if (a == null || a.filename == null) return null;
+        return fileRecord(a, null);
+    }
+
+    @Override
+    public boolean copyFileData(long actionId, Path target) throws IOException {
+        LocalStore.ActionEntry a = store.actions.get(actionId);
+        if (a == null || a.filename == null) return false;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            store.transferTo(a.dataPos, a.dataLen, out);
+        }
+        return true;
+    }
+
+    @Override
+    public List<HistoryRecord> getRecentHistory(String room, int limit) {
+        int lim = (limit <= 0 || limit > 1000) ? 200 : limit; // salvaguarda
+        ArrayList<HistoryRecord> list = new ArrayList<>(lim);
+        Iterator<Long> it = store.history(room).descendingIterator();
+        while (it.hasNext() && list.size() < lim) {
+            LocalStore.ActionEntry a = store.actions.get(it.next());
+            if (a == null) continue;
+            String username = store.usernameOf(a.actor);
+            if ("TEXT".equals(a.type)) {
+                list.add(HistoryRecord.text(a.id, a.room, username, a.content, a.createdAt));
+                continue;
+            }
+            LocalStore.PreviewEntry p = store.previews.get(a.id);
+            if (p != null) {
+                list.add(HistoryRecord.fileWithPreview(a.id, a.room, username, a.filename, a.mimetype, a.size,
+                        Base64.getEncoder().encodeToString(store.read(p.dataPos, p.dataLen)), p.mimetype, a.createdAt));
+            } else {
+                String b64 = a.dataLen > 0 ? Base64.getEncoder().encodeToString(store.read(a.dataPos, a.dataLen)) : "";
+                list.add(HistoryRecord.file(a.id, a.room, username, a.filename, a.mimetype, a.size, b64, a.createdAt));
+            }
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    @Override
+    public List<HistoryRecord> getDirectHistory(int userId, int limit) {
+        ArrayList<HistoryRecord> list = new ArrayList<>();
+        Iterator<Long> it = store.directOf(userId).descendingIterator();
+        while (it.hasNext() && list.size() < limit) {
+            LocalStore.ActionEntry a = store.actions.get(it.next());
+            if (a == null) continue;
+            list.add(HistoryRecord.direct(a.id, store.usernameOf(a.actor), store.usernameOf(a.recipient),
+                    a.content, a.createdAt));
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    @Override
+    public int countHistoryBetween(String room, long afterId, long beforeId) {
+        return afterId + 1 < beforeId ? store.history(room).subSet(afterId, false, beforeId, false).size() : 0;
+    }
+
+    @Override
+    public int countDirectBetween(int userId, long afterId, long beforeId) {
+        return afterId + 1 < beforeId ? store.directOf(userId).subSet(afterId, false, beforeId, false).size() : 0;
+    }
+
+    @Override
+    public List<HistoryRecord> getTextRecordsByIds(List<Long> ids) {
+        ArrayList<HistoryRecord> list = new ArrayList<>();
+        if (ids == null) return list;
+        for (Long id : ids) {
+            LocalStore.ActionEntry a = id != null ? store.actions.get(id) : null;
+            if (a != null && "TEXT".equals(a.type)) list.add(text(a));
+        }
+        return list;
+    }
+
+    @Override
+    public List<HistoryRecord> getTextRecordsAfter(long afterId, int limit) {
+        ArrayList<HistoryRecord> list = new ArrayList<>();
+        Iterator<Long> it = store.textIds.tailSet(afterId, false).iterator();
+        while (it.hasNext() && list.size() < limit) {
+            LocalStore.ActionEntry a = store.actions.get(it.next());
+            if (a != null) list.add(text(a));
+        }
+        return list;
+    }
+
+    private HistoryRecord text(LocalStore.ActionEntry a) {
+        return HistoryRecord.text(a.id, a.room, store.usernameOf(a.actor), a.content, a.createdAt);
+    }
+
+    private HistoryRecord fileRecord(LocalStore.ActionEntry a, String dataBase64) {
+        return HistoryRecord.file(a.id, a.room, store.usernameOf(a.actor), a.filename, a.mimetype, a.size,
+                dataBase64, a.createdAt);
+    }
+}
@@ -0,0 +1,471 @@
+package server.dao.local;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.zip.CRC32C;
+
+/**
+ * LocalStore - Almacenamiento embebido log-structured para usuarios y acciones.
+ *
+ * Todo se escribe al final de {@code store.log} (append + fsync por escritura) y al abrir se
+ * reconstruyen en memoria los índices: usuarios por nombre/id, acciones por id y por
+ * {@code journal_seq}, ids TEXT/FILE por sala, ids DIRECT por usuario y miniaturas por acción.
+ * El último login y la última posición vista de cada usuario se guardan como registros de estado
+ * completos: al reconstruir gana el último.
+ * Los textos se mantienen en memoria; los binarios (adjuntos, miniaturas) quedan en el log y
+ * se leen con lecturas posicionales.
+ *
+ * Registro: len(u32) | crc32c(u32) | tipo(u8) | cuerpo. Una cola truncada o corrupta (crash a
+ * mitad de escritura) se descarta al abrir. No hay compactación: el log solo crece.
+ * Las cadenas se guardan como len(i32, -1 = null) + UTF-8 estándar. Un tipo de registro
+ * desconocido hace fallar la apertura en lugar de omitir datos.
+ */
+public final class LocalStore implements Closeable {
+    private static final String FILE = "store.log";
+    private static final int HEADER = 9;
+    // 1-3 los usó un formato de desarrollo con writeUTF: no se reutilizan
+    private static final byte USER_STATE = 4;
+    private static final byte USER = 5;
+    private static final byte ACTION = 6;
+    private static final byte PREVIEW = 7;
+
+    /** Usuario registrado. */
+    static final class UserEntry {
+        final int id;
+        final String username;
+        final String fullName;
+        final String password;
+        volatile long lastLogin;   // epoch ms, 0 => nunca
+        volatile long lastSeen;    // último id de acción entregado
+
+        UserEntry(int id, String username, String fullName, String password) {
+            this.id = id;
+            this.username = username;
+            this.fullName = fullName;
+            this.password = password;
+        }
+    }
+
+    /** Acción con su detalle; {@code dataPos/dataLen} ubican el adjunto dentro del log. */
+    static final class ActionEntry {
+        final long id;
+        final String type;
+        final String room;
+        final int actor;       // -1 => sistema
+        final int recipient;   // -1 => sin destinatario
+        final long createdAt;
+        final String content;
+        final String filename; // null si no es adjunto
+        final String mimetype;
+        final long size;
+        long dataPos;
+        int dataLen;
+
+        ActionEntry(long id, String type, String room, int actor, int recipient, long createdAt,
+                    String content, String filename, String mimetype, long size) {
+            this.id = id;
+            this.type = type;
+            this.room = room;
+            this.actor = actor;
+            this.recipient = recipient;
+            this.createdAt = createdAt;
+            this.content = content;
+            this.filename = filename;
+            this.mimetype = mimetype;
+            this.size = size;
+        }
+    }
+
+    /** Miniatura de un adjunto de imagen. */
+    static final class PreviewEntry {
+        final String mimetype;
+        final long dataPos;
+        final int dataLen;
+
+        PreviewEntry(String mimetype, long dataPos, int dataLen) {
+            this.mimetype = mimetype;
+            this.dataPos = dataPos;
+            this.dataLen = dataLen;
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private long size;
+    private int lastUserId;
+    private long lastActionId;
+    private volatile long maxJournalSeq;
+    private volatile boolean open = true;
+
+    final ConcurrentHashMap<String, UserEntry> usersByName = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<Integer, UserEntry> usersById = new ConcurrentHashMap<>();
+    final ConcurrentSkipListMap<Long, ActionEntry> actions = new ConcurrentSkipListMap<>();
+    final ConcurrentHashMap<Long, Long> actionBySeq = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<String, ConcurrentSkipListSet<Long>> historyByRoom = new ConcurrentHashMap<>();
+    final ConcurrentSkipListSet<Long> textIds = new ConcurrentSkipListSet<>();
+    final ConcurrentHashMap<Integer, ConcurrentSkipListSet<Long>> directByUser = new ConcurrentHashMap<>();
+    final ConcurrentHashMap<Long, PreviewEntry> previews = new ConcurrentHashMap<>();
+
+    private LocalStore(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /** Abre (o crea) el almacenamiento en {@code dir} y reconstruye los índices. */
+    public static LocalStore open(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            Path f = dir.resolve(FILE);
+            FileChannel ch = FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            LocalStore store = new LocalStore(f, ch);
+            store.recover();
+            return store;
+        } catch (IOException e) {
+            throw new RuntimeException("Error abriendo almacenamiento local en " + dir, e);
+        }
+    }
+
+    boolean isOpen() { return open; }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        try {
+            channel.close();
+        } catch (IOException ignored) { }
+    }
+
+    // ---------------------------------------------------------------- escritura
+
+    /** Registra un usuario; null si el nombre ya existe. */
+    synchronized UserEntry addUser(String username, String fullName, String password) {
+        if (usersByName.containsKey(username)) return null;
+        UserEntry u = new UserEntry(lastUserId + 1, username, fullName, password);
+        Encoder e = new Encoder(USER);
+        e.out(o -> {
+            o.writeInt(u.id);
+            writeString(o, u.username);
+            writeString(o, u.fullName);
+            writeString(o, u.password);
+        });
+        append(e);
+        indexUser(u);
+        return u;
+    }
+
+    /**
+     * Actualiza último login y/o última posición vista (0 = sin cambio); la posición nunca retrocede.
+     * Usuario inexistente: no hace nada.
+     */
+    synchronized void updateUserState(int userId, long lastLogin, long lastSeen) {
+        UserEntry u = usersById.get(userId);
+        if (u == null) return;
+        long login = lastLogin > 0 ? lastLogin : u.lastLogin;
+        long seen = Math.max(u.lastSeen, lastSeen);
+        if (login == u.lastLogin && seen == u.lastSeen) return;
+        Encoder e = new Encoder(USER_STATE);
+        e.out(o -> {
+            o.writeInt(userId);
+            o.writeLong(login);
+            o.writeLong(seen);
+        });
+        append(e);
+        u.lastLogin = login;
+        u.lastSeen = seen;
+    }
+
+    /** Inserta una acción; idempotente por {@code journalSeq} (falla si la secuencia es de otra acción). */
+    synchronized long addAction(long journalSeq, String type, String room, int actor, int recipient, long createdAt,
+                                String content, String filename, String mimetype, long size, byte[] data) {
+        Long existing = actionBySeq.get(journalSeq);
+        if (existing != null) {
+            ActionEntry prev = actions.get(existing);
+            if (prev != null && (!prev.type.equals(type) || !prev.room.equals(room) || prev.createdAt != createdAt)) {
+                throw new IllegalStateException("journal_seq " + journalSeq + " ya pertenece a la acción " + existing
+                        + " (" + prev.type + "); ¿se reinició JOURNAL_DIR?");
+            }
+            return existing;
+        }
+        ActionEntry a = new ActionEntry(lastActionId + 1, type, room, actor, recipient, createdAt,
+                content, filename, mimetype, size);
+        Encoder e = new Encoder(ACTION);
+        int dataOffset = e.out(o -> {
+            o.writeLong(a.id);
+            o.writeLong(journalSeq);
+            writeString(o, a.type);
+            writeString(o, a.room);
+            o.writeInt(a.actor);
+            o.writeInt(a.recipient);
+            o.writeLong(a.createdAt);
+            writeString(o, a.content);
+            o.writeBoolean(a.filename != null);
+            if (a.filename != null) {
+                writeString(o, a.filename);
+                writeString(o, a.mimetype);
+                o.writeLong(a.size);
+                o.writeInt(data != null ? data.length : 0);
+            }
+        });
+        if (a.filename != null && data != null) e.raw(data);
+        long pos = append(e);
+        if (a.filename != null) {
+            a.dataPos = pos + HEADER + dataOffset;
+            a.dataLen = data != null ? data.length : 0;
+        }
+        indexAction(a, journalSeq);
+        return a.id;
+    }
+
+    /** Guarda (o reemplaza) la miniatura de una acción existente. */
+    synchronized void addPreview(long actionId, String mimetype, int width, int height, byte[] data) {
+        if (!actions.containsKey(actionId)) throw new IllegalArgumentException("Acción inexistente: " + actionId);
+        Encoder e = new Encoder(PREVIEW);
+        int dataOffset = e.out(o -> {
+            o.writeLong(actionId);
+            writeString(o, mimetype);
+            o.writeInt(width);
+            o.writeInt(height);
+            o.writeInt(data.length);
+        });
+        e.raw(data);
+        long pos = append(e);
+        previews.put(actionId, new PreviewEntry(mimetype, pos + HEADER + dataOffset, data.length));
+    }
+
+    private long append(Encoder e) {
+        if (!open) throw new IllegalStateException("Almacenamiento local cerrado");
+        ByteBuffer record = e.finish();
+        long pos = size;
+        try {
+            long written = 0;
+            int total = record.remaining();
+            while (written < total) written += channel.write(record, pos + written);
+            channel.force(false);
+        } catch (IOException ex) {
+            try {
+                channel.truncate(pos); // no dejar un registro a medias
+            } catch (IOException ignored) { }
+            throw new RuntimeException("Error escribiendo en " + file, ex);
+        }
+        size = pos + record.limit();
+        return pos;
+    }
+
+    // ---------------------------------------------------------------- lectura
+
+    /** Bytes guardados en el log (adjunto o miniatura). */
+    byte[] read(long pos, int len) {
+        ByteBuffer b = ByteBuffer.allocate(len);
+        try {
+            readFully(b, pos);
+        } catch (IOException e) {
+            throw new RuntimeException("Error leyendo " + file, e);
+        }
+        return b.array();
+    }
+
+    /** Copia un rango del log a {@code target} sin pasar por el heap. */
+    void transferTo(long pos, int len, FileChannel target) throws IOException {
+        long done = 0;
+        while (done < len) done += channel.transferTo(pos + done, len - done, target);
+    }
+
+    long maxJournalSeq() { return maxJournalSeq; }
+
+    NavigableSet<Long> history(String room) {
+        NavigableSet<Long> s = historyByRoom.get(room);
+        return s != null ? s : Collections.emptyNavigableSet();
+    }
+
+    NavigableSet<Long> directOf(int userId) {
+        NavigableSet<Long> s = directByUser.get(userId);
+        return s != null ? s : Collections.emptyNavigableSet();
+    }
+
+    String usernameOf(int userId) {
+        UserEntry u = userId >= 0 ? usersById.get(userId) : null;
+        return u != null ? u.username : null;
+    }
+
+    // ---------------------------------------------------------------- recuperación / índices
+
+    private void recover() throws IOException {
+        long pos = 0;
+        long end = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while (pos + HEADER <= end) {
+            header.clear();
+            readFully(header, pos);
+            header.flip();
+            int len = header.getInt();
+            int crc = header.getInt();
+            byte kind = header.get();
+            if (len < 0 || pos + HEADER + len > end) break;
+            ByteBuffer body = ByteBuffer.allocate(len);
+            readFully(body, pos + HEADER);
+            CRC32C c = new CRC32C();
+            c.update(kind);
+            c.update(body.array());
+            if ((int) c.getValue() != crc) break;
+            body.flip();
+            replay(kind, body, pos);
+            pos += HEADER + len;
+        }
+        if (pos < end) {
+            System.err.println("Almacenamiento local: descartando cola inválida de " + file.getFileName() + " en " + pos);
+            channel.truncate(pos);
+            channel.force(true);
+        }
+        size = pos;
+    }
+
+    private void replay(byte kind, ByteBuffer b, long recordPos) {
+        if (kind == USER) {
+            int id = b.getInt();
+            String username = readString(b);
+            String fullName = readString(b);
+            indexUser(new UserEntry(id, username, fullName, readString(b)));
+        } else if (kind == ACTION) {
+            long id = b.getLong();
+            long seq = b.getLong();
+            String type = readString(b);
+            String room = readString(b);
+            int actor = b.getInt();
+            int recipient = b.getInt();
+            long createdAt = b.getLong();
+            String content = readString(b);
+            boolean hasFile = b.get() != 0;
+            ActionEntry a;
+            if (hasFile) {
+                String filename = readString(b);
+                String mimetype = readString(b);
+                long size = b.getLong();
+                int dataLen = b.getInt();
+                a = new ActionEntry(id, type, room, actor, recipient, createdAt, content, filename, mimetype, size);
+                a.dataPos = recordPos + HEADER + b.position();
+                a.dataLen = dataLen;
+            } else {
+                a = new ActionEntry(id, type, room, actor, recipient, createdAt, content, null, null, 0L);
+            }
+            indexAction(a, seq);
+        } else if (kind == PREVIEW) {
+            long actionId = b.getLong();
+            String mimetype = readString(b);
+            b.getInt(); // ancho
+            b.getInt(); // alto
+            int len = b.getInt();
+            previews.put(actionId, new PreviewEntry(mimetype, recordPos + HEADER + b.position(), len));
+        } else if (kind == USER_STATE) {
+            UserEntry u = usersById.get(b.getInt());
+            long login = b.getLong();
+            long seen = b.getLong();
+            if (u != null) {
+                u.lastLogin = login;
+                u.lastSeen = seen;
+            }
+        } else {
+            throw new IllegalStateException("Almacenamiento local: tipo de registro desconocido " + kind
+                    + " en " + file.getFileName() + ":" + recordPos);
+        }
+    }
+
+    private void indexUser(UserEntry u) {
+        usersByName.put(u.username, u);
+        usersById.put(u.id, u);
+        lastUserId = Math.max(lastUserId, u.id);
+    }
+
+    private void indexAction(ActionEntry a, long seq) {
+        actions.put(a.id, a);
+        actionBySeq.put(seq, a.id);
+        maxJournalSeq = Math.max(maxJournalSeq, seq);
+        lastActionId = Math.max(lastActionId, a.id);
+        if ("TEXT".equals(a.type) || "FILE".equals(a.type)) {
+            historyByRoom.computeIfAbsent(a.room, k -> new ConcurrentSkipListSet<>()).add(a.id);
+        }
+        if ("TEXT".equals(a.type)) textIds.add(a.id);
+        if ("DIRECT".equals(a.type)) {
+            if (a.actor >= 0) directByUser.computeIfAbsent(a.actor, k -> new ConcurrentSkipListSet<>()).add(a.id);
+            if (a.recipient >= 0) directByUser.computeIfAbsent(a.recipient, k -> new ConcurrentSkipListSet<>()).add(a.id);
+        }
+    }
+
+    private void readFully(ByteBuffer dst, long pos) throws IOException {
+        while (dst.hasRemaining()) {
+            int r = channel.read(dst, pos);
+            if (r < 0) throw new EOFException();
+            pos += r;
+        }
+    }
+
+    // ---------------------------------------------------------------- codificación
+
+    private interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** Arma un registro en memoria: cabecera + cuerpo (+ bytes crudos al final). */
+    private static final class Encoder {
+        private final byte kind;
+        private final ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+        private final DataOutputStream out = new DataOutputStream(bos);
+
+        Encoder(byte kind) { this.kind = kind; }
+
+        /** Escribe campos y devuelve el offset (dentro del cuerpo) donde continúa el registro. */
+        int out(BodyWriter w) {
+            try {
+                w.write(out);
+                out.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // ByteArrayOutputStream no lanza IOException
+            }
+            return bos.size();
+        }
+
+        void raw(byte[] data) {
+            bos.write(data, 0, data.length);
+        }
+
+        ByteBuffer finish() {
+            byte[] body = bos.toByteArray();
+            CRC32C c = new CRC32C();
+            c.update(kind);
+            c.update(body);
+            ByteBuffer b = ByteBuffer.allocate(HEADER + body.length);
+            b.putInt(body.length).putInt((int) c.getValue()).put(kind).put(body);
+            b.flip();
+            return b;
+        }
+    }
+
+    /** len(i32, -1 = null) + UTF-8 estándar: sin el tope de 64 KB ni el UTF-8 modificado de writeUTF. */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) { out.writeInt(-1); return; }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(ByteBuffer b) {
+        int len = b.getInt();
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
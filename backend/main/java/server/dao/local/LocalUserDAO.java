@@ -0,0 +1,47 @@
+package server.dao.local;
+
+import server.dao.UserDAO;
+import server.model.User;
+
+/**
+ * LocalUserDAO - Implementación de {@link UserDAO} sobre {@link LocalStore}.
+ * Mismas reglas que la versión MySQL: username único y contraseña en texto plano (TODO: hash seguro).
+ */
+public final class LocalUserDAO implements UserDAO {
+    private final LocalStore store;
+
+    public LocalUserDAO(LocalStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public User authenticate(String username, String passwordPlain) {
+        if (username == null || passwordPlain == null) return null;
+        LocalStore.UserEntry u = store.usersByName.get(username);
+        if (u == null || !u.password.equals(passwordPlain)) return null;
+        return new User(u.id, u.username, u.fullName);
+    }
+
+    @Override
+    public User registerUser(String username, String fullName, String passwordPlain) {
+        if (username == null || passwordPlain == null || username.isBlank() || passwordPlain.isBlank()) return null;
+        LocalStore.UserEntry u = store.addUser(username, fullName, passwordPlain);
+        return u != null ? new User(u.id, u.username, u.fullName) : null;
+    }
+
+    @Override
+    public void recordLogin(int userId) {
+        store.updateUserState(userId, System.currentTimeMillis(), 0L);
+    }
+
+    @Override
+    public long getLastSeen(int userId) {
+        LocalStore.UserEntry u = store.usersById.get(userId);
+        return u != null ? u.lastSeen : 0L;
+    }
+
+    @Override
+    public void updateLastSeen(int userId, long actionId) {
+        store.updateUserState(userId, 0L, actionId);
+    }
+}
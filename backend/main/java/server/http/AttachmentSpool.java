@@ -0,0 +1,227 @@
+package server.http;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import server.dao.ActionDAO;
+import server.model.HistoryRecord;
+
+/**
+ * AttachmentSpool - Copia en disco de los adjuntos guardados en MySQL, para poder
+ * servirlos con {@code FileChannel.transferTo}. Los adjuntos son inmutables: cada uno se
+ * materializa una sola vez ({@code <actionId>.bin}, escritura a temporal + rename atómico).
+ *
+ * El directorio tiene un presupuesto de bytes: al pasarlo se borran los archivos usados hace
+ * más tiempo (LRU; al abrir, el orden inicial es el de modificación). Los metadatos de cada
+ * adjunto (nombre, tipo, tamaño) también se guardan en una LRU acotada en memoria, así una
+ * descarga repetida no consulta la BD. {@link #evict(long)} descarta ambos (retención).
+ */
+public final class AttachmentSpool {
+    private static final int META_ENTRIES = 4096;
+
+    private final Path dir;
+    private final ActionDAO actionDAO;
+    private final long maxBytes;
+    /** id -> bytes en disco, en orden de acceso (el primero es el menos usado). */
+    private final LinkedHashMap<Long, Long> files = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<Long, HistoryRecord> metas = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, HistoryRecord> eldest) {
+            return size() > META_ENTRIES;
+        }
+    };
+    private long usedBytes;
+
+    private AttachmentSpool(Path dir, ActionDAO actionDAO, long maxBytes) {
+        this.dir = dir;
+        this.actionDAO = actionDAO;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Abre (o crea) el spool, limpia temporales de una ejecución anterior y recorta a {@code maxBytes}
+     * (0 = sin tope).
+     */
+    public static AttachmentSpool open(Path dir, ActionDAO actionDAO, long maxBytes) {
+        AttachmentSpool spool = new AttachmentSpool(dir, actionDAO, maxBytes);
+        List<Path> existing = new ArrayList<>();
+        try {
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    String name = p.getFileName().toString();
+                    if (name.endsWith(".tmp")) Files.deleteIfExists(p);
+                    else if (name.endsWith(".bin") && parseId(name) > 0) existing.add(p);
+                }
+            }
+            existing.sort(Comparator.comparingLong(AttachmentSpool::lastModified));
+            List<Path> victims;
+            synchronized (spool) {
+                for (Path p : existing) spool.track(parseId(p.getFileName().toString()), Files.size(p));
+                victims = spool.trim(-1);
+            }
+            deleteAll(victims);
+        } catch (IOException e) {
+            throw new RuntimeException("Error abriendo spool de adjuntos en " + dir, e);
+        }
+        return spool;
+    }
+
+    /** Metadatos del adjunto (sin contenido), de la LRU o de la BD; null si no existe. */
+    public HistoryRecord meta(long actionId) {
+        synchronized (this) {
+            HistoryRecord m = metas.get(actionId);
+            if (m != null) return m;
+        }
+        HistoryRecord m = actionDAO.getFileMeta(actionId);
+        if (m != null) {
+            synchronized (this) {
+                metas.put(actionId, m);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Abre el contenido del adjunto para lectura (lo trae de la BD si no está en disco); null si no
+     * existe. Si la LRU lo borró entre la consulta y la apertura, se vuelve a materializar.
+     */
+    public FileChannel open(long actionId) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Path file = resolve(actionId);
+            if (file == null) return null;
+            try {
+                return FileChannel.open(file, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                if (attempt > 0) throw e;
+                synchronized (this) {
+                    forget(actionId);
+                }
+            }
+        }
+    }
+
+    /** Archivo con el contenido del adjunto (lo trae de la BD la primera vez); null si no existe. */
+    private Path resolve(long actionId) throws IOException {
+        Path target = path(actionId);
+        synchronized (this) {
+            if (files.get(actionId) != null) return target;  // marca el uso en la LRU
+        }
+        if (Files.exists(target)) {
+            // materializado por otro hilo que todavía no lo registró: se cuenta acá
+            register(actionId, Files.size(target));
+            return target;
+        }
+        Path tmp = Files.createTempFile(dir, actionId + "-", ".tmp");
+        try {
+            if (!actionDAO.copyFileData(actionId, tmp)) return null;
+            long size = Files.size(tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            register(actionId, size);
+            return target;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Descarta la copia local y los metadatos (el adjunto ya no existe en la BD). */
+    public void evict(long actionId) {
+        evictAll(List.of(actionId));
+    }
+
+    /** Como {@link #evict(long)} para varios ids (p.ej. un lote purgado por la retención). */
+    public void evictAll(Collection<Long> actionIds) {
+        List<Path> victims = new ArrayList<>();
+        synchronized (this) {
+            for (Long id : actionIds) {
+                metas.remove(id);
+                if (forget(id)) victims.add(path(id));
+            }
+        }
+        deleteAll(victims);
+    }
+
+    /** Bytes ocupados por los adjuntos en disco. */
+    public synchronized long usedBytes() { return usedBytes; }
+
+    private void register(long actionId, long size) {
+        List<Path> victims;
+        synchronized (this) {
+            track(actionId, size);
+            victims = trim(actionId);
+        }
+        deleteAll(victims);
+    }
+
+    /** Registra el archivo; si ya estaba (dos hilos lo materializaron a la vez) reemplaza su tamaño. */
+    private void track(long actionId, long size) {
+        Long prev = files.put(actionId, size);
+        usedBytes += size - (prev != null ? prev : 0);
+    }
+
+    private boolean forget(long actionId) {
+        Long size = files.remove(actionId);
+        if (size == null) return false;
+        usedBytes -= size;
+        return true;
+    }
+
+    /** Saca de la LRU los menos usados hasta entrar en el presupuesto, sin tocar {@code keep}. */
+    private List<Path> trim(long keep) {
+        List<Path> victims = new ArrayList<>();
+        if (maxBytes <= 0) return victims;
+        Iterator<Map.Entry<Long, Long>> it = files.entrySet().iterator();
+        while (usedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Long, Long> e = it.next();
+            if (e.getKey() == keep) continue;
+            usedBytes -= e.getValue();
+            victims.add(path(e.getKey()));
+            it.remove();
+        }
+        return victims;
+    }
+
+    private Path path(long actionId) {
+        return dir.resolve(actionId + ".bin");
+    }
+
+    /** Borra fuera del lock; una descarga en curso conserva su FileChannel abierto. */
+    private static void deleteAll(List<Path> victims) {
+        for (Path p : victims) {
+            try {
+                Files.deleteIfExists(p);
+            } catch (IOException e) {
+                System.err.println("Spool: no se pudo borrar " + p.getFileName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static long parseId(String name) {
+        try {
+            return Long.parseLong(name.substring(0, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
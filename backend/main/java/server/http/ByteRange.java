@@ -0,0 +1,46 @@
+package server.http;
+
+/**
+ * ByteRange - Rango único de una cabecera {@code Range: bytes=...} (extremos inclusivos).
+ * Rangos múltiples o mal formados se ignoran y se responde el contenido completo.
+ */
+final class ByteRange {
+    /** El rango pedido queda fuera del contenido (416). */
+    static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    final long start;
+    final long end;
+
+    private ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    long length() { return end - start + 1; }
+
+    /** Rango pedido sobre un contenido de {@code length} bytes; null si no aplica. */
+    static ByteRange parse(String header, long length) {
+        if (header == null) return null;
+        String h = header.trim();
+        if (!h.startsWith("bytes=") || h.indexOf(',') >= 0) return null;
+        String spec = h.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        String a = spec.substring(0, dash).trim();
+        String b = spec.substring(dash + 1).trim();
+        try {
+            if (a.isEmpty()) { // sufijo: últimos N bytes
+                long n = Long.parseLong(b);
+                if (n <= 0 || length == 0) return UNSATISFIABLE;
+                return new ByteRange(Math.max(0, length - n), length - 1);
+            }
+            long start = Long.parseLong(a);
+            long end = b.isEmpty() ? length - 1 : Math.min(Long.parseLong(b), length - 1);
+            if (start < 0 || (!b.isEmpty() && Long.parseLong(b) < start)) return null;
+            if (start >= length) return UNSATISFIABLE;
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
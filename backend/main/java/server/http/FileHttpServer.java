@@ -0,0 +1,325 @@
+package server.http;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import server.model.HistoryRecord;
+
+/**
+ * FileHttpServer - Endpoint HTTP/1.1 mínimo para descargar adjuntos, en un puerto propio
+ * para que las descargas grandes no compitan con el socket del chat.
+ *
+ * GET|HEAD /files/&lt;actionId&gt;?t=&lt;token&gt;[&amp;dl=1]  ({@code dl=1}: Content-Disposition attachment)
+ * - Solo imágenes rasterizadas, audio, video y texto plano se sirven inline con su tipo; el resto
+ *   va como descarga {@code application/octet-stream}, con {@code nosniff} y CSP {@code sandbox}.
+ * - El token lo emite el WebSocket autenticado ({@code file_url}) y expira en minutos.
+ * - El contenido se envía con {@code FileChannel.transferTo} (sendfile) desde el {@link AttachmentSpool},
+ *   que también cachea los metadatos: una descarga repetida no consulta la BD.
+ * - Soporta {@code Range} (un solo rango, 206/416), {@code ETag}/{@code If-None-Match} (304)
+ *   e {@code If-Range}. Conexiones keep-alive con timeout de inactividad.
+ */
+public final class FileHttpServer {
+    private static final Set<String> INLINE_TYPES = Set.of(
+            "image/png", "image/jpeg", "image/jpg", "image/gif", "image/webp", "image/bmp", "text/plain");
+    private static final int MAX_HEADER_BYTES = 8192;
+    private static final int IDLE_TIMEOUT_MS = 15_000;
+    private static final int MAX_REQUESTS_PER_CONNECTION = 100;
+    private static final String PATH_PREFIX = "/files/";
+
+    private final int port;
+    private final AttachmentSpool spool;
+    private final FileTokens tokens;
+    private final ThreadPoolExecutor workers;
+    private ServerSocketChannel server;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    /** Petición HTTP ya parseada (cabeceras en minúsculas). */
+    private static final class Request {
+        String method;
+        String path;
+        String query;
+        String version;
+        final Map<String, String> headers = new HashMap<>();
+
+        boolean keepAlive() {
+            String c = headers.getOrDefault("connection", "");
+            return "HTTP/1.1".equals(version) ? !c.equalsIgnoreCase("close") : c.equalsIgnoreCase("keep-alive");
+        }
+    }
+
+    public FileHttpServer(int port, int threads, AttachmentSpool spool, FileTokens tokens) {
+        this.port = port;
+        this.spool = spool;
+        this.tokens = tokens;
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16), r -> {
+                    Thread t = new Thread(r, "file-http");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public void start() throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        running = true;
+        acceptor = new Thread(this::acceptLoop, "file-http-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** Puerto en escucha (el asignado por el sistema si se pidió 0). */
+    public int port() { return server != null ? server.socket().getLocalPort() : port; }
+
+    public void stop() {
+        running = false;
+        try {
+            if (server != null) server.close();
+        } catch (IOException ignored) { }
+        workers.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel sc = server.accept();
+                try {
+                    workers.execute(() -> serve(sc));
+                } catch (RejectedExecutionException e) {
+                    closeQuietly(sc); // saturado: el cliente reintenta
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (running) System.err.println("HTTP archivos: error aceptando conexión: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(SocketChannel sc) {
+        try (sc) {
+            sc.socket().setSoTimeout(IDLE_TIMEOUT_MS);
+            sc.socket().setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(sc.socket().getInputStream());
+            for (int i = 0; i < MAX_REQUESTS_PER_CONNECTION; i++) {
+                Request req = readRequest(in);
+                if (req == null) return;
+                if (!handle(sc, req) || !req.keepAlive()) return;
+            }
+        } catch (SocketTimeoutException e) {
+            // conexión inactiva
+        } catch (IOException e) {
+            // el cliente cortó la descarga (o la conexión); nada que limpiar
+        }
+    }
+
+    /** Atiende una petición. false si la conexión debe cerrarse. */
+    private boolean handle(SocketChannel sc, Request req) throws IOException {
+        boolean head = "HEAD".equals(req.method);
+        if (!head && !"GET".equals(req.method)) {
+            return error(sc, 405, "Method Not Allowed", "Allow: GET, HEAD\r\n", false);
+        }
+        long id = parseId(req.path);
+        if (id <= 0) return error(sc, 404, "Not Found", "", req.keepAlive());
+        if (!tokens.verify(queryParam(req.query, "t"), id, System.currentTimeMillis())) {
+            return error(sc, 403, "Forbidden", "", req.keepAlive());
+        }
+        HistoryRecord meta;
+        FileChannel channel;
+        try {
+            meta = spool.meta(id);
+            if (meta == null) {
+                spool.evict(id);
+                return error(sc, 404, "Not Found", "", req.keepAlive());
+            }
+            channel = spool.open(id);
+        } catch (RuntimeException e) {
+            System.err.println("HTTP archivos: BD no disponible para " + id + ": " + e.getMessage());
+            return error(sc, 503, "Service Unavailable", "Retry-After: 5\r\n", false);
+        }
+        if (channel == null) return error(sc, 404, "Not Found", "", req.keepAlive());
+
+        try (FileChannel fc = channel) {
+            long length = fc.size();
+            String etag = "\"" + id + "-" + length + "\"";
+            StringBuilder h = new StringBuilder();
+            h.append("ETag: ").append(etag).append("\r\n")
+             .append("Accept-Ranges: bytes\r\n")
+             .append("Cache-Control: private, max-age=31536000, immutable\r\n")
+             .append("X-Content-Type-Options: nosniff\r\n")
+             .append("Content-Security-Policy: default-src 'none'; sandbox\r\n");
+
+            if (etagMatches(req.headers.get("if-none-match"), etag)) {
+                writeHead(sc, 304, "Not Modified", h.toString(), req.keepAlive());
+                return true;
+            }
+            String ifRange = req.headers.get("if-range");
+            ByteRange range = (ifRange == null || ifRange.trim().equals(etag))
+                    ? ByteRange.parse(req.headers.get("range"), length) : null;
+            if (range == ByteRange.UNSATISFIABLE) {
+                h.append("Content-Range: bytes */").append(length).append("\r\n");
+                return error(sc, 416, "Range Not Satisfiable", h.toString(), req.keepAlive());
+            }
+            long start = range != null ? range.start : 0;
+            long count = range != null ? range.length() : length;
+            boolean inline = inlineSafe(meta.getMimetype()) && !"1".equals(queryParam(req.query, "dl"));
+            h.append("Content-Type: ").append(contentType(meta.getMimetype())).append("\r\n")
+             .append("Content-Disposition: ").append(disposition(meta.getFilename(), !inline))
+             .append("\r\n")
+             .append("Content-Length: ").append(count).append("\r\n");
+            if (range != null) {
+                h.append("Content-Range: bytes ").append(range.start).append('-').append(range.end)
+                 .append('/').append(length).append("\r\n");
+                writeHead(sc, 206, "Partial Content", h.toString(), req.keepAlive());
+            } else {
+                writeHead(sc, 200, "OK", h.toString(), req.keepAlive());
+            }
+            if (!head) {
+                long pos = start;
+                long end = start + count;
+                while (pos < end) pos += fc.transferTo(pos, end - pos, sc);
+            }
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------- protocolo
+
+    private static Request readRequest(InputStream in) throws IOException {
+        String line = readLine(in, MAX_HEADER_BYTES);
+        if (line == null) return null;
+        while (line.isEmpty()) { // CRLF sobrantes entre peticiones
+            line = readLine(in, MAX_HEADER_BYTES);
+            if (line == null) return null;
+        }
+        String[] parts = line.split(" ");
+        if (parts.length != 3) throw new IOException("línea de petición inválida");
+        Request r = new Request();
+        r.method = parts[0];
+        r.version = parts[2];
+        int q = parts[1].indexOf('?');
+        r.path = q >= 0 ? parts[1].substring(0, q) : parts[1];
+        r.query = q >= 0 ? parts[1].substring(q + 1) : "";
+        int budget = MAX_HEADER_BYTES;
+        while (true) {
+            String h = readLine(in, budget);
+            if (h == null) throw new IOException("cabeceras incompletas");
+            if (h.isEmpty()) return r;
+            budget -= h.length() + 2;
+            if (budget <= 0) throw new IOException("cabeceras demasiado grandes");
+            int colon = h.indexOf(':');
+            if (colon > 0) r.headers.put(h.substring(0, colon).trim().toLowerCase(), h.substring(colon + 1).trim());
+        }
+    }
+
+    /** Lee una línea terminada en CRLF (o LF); null si el flujo terminó antes. */
+    private static String readLine(InputStream in, int max) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int len = sb.length();
+                if (len > 0 && sb.charAt(len - 1) == '\r') sb.setLength(len - 1);
+                return sb.toString();
+            }
+            if (sb.length() >= max) throw new IOException("línea demasiado larga");
+            sb.append((char) c);
+        }
+        return null;
+    }
+
+    private static void writeHead(SocketChannel sc, int status, String reason, String headers, boolean keepAlive) throws IOException {
+        String head = "HTTP/1.1 " + status + " " + reason + "\r\n" + headers
+                + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n";
+        ByteBuffer b = ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1));
+        while (b.hasRemaining()) sc.write(b);
+    }
+
+    private static boolean error(SocketChannel sc, int status, String reason, String headers, boolean keepAlive) throws IOException {
+        byte[] body = (status + " " + reason + "\n").getBytes(StandardCharsets.ISO_8859_1);
+        writeHead(sc, status, reason, headers + "Content-Type: text/plain\r\nContent-Length: " + body.length + "\r\n", keepAlive);
+        ByteBuffer b = ByteBuffer.wrap(body);
+        while (b.hasRemaining()) sc.write(b);
+        return keepAlive;
+    }
+
+    private static long parseId(String path) {
+        if (path == null || !path.startsWith(PATH_PREFIX)) return -1;
+        try {
+            return Long.parseLong(path.substring(PATH_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String queryParam(String query, String name) {
+        if (query == null) return null;
+        for (String kv : query.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq > 0 && kv.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String t : ifNoneMatch.split(",")) {
+            String v = t.trim();
+            if (v.startsWith("W/")) v = v.substring(2);
+            if (v.equals("*") || v.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * El tipo lo declaró quien subió el archivo: solo se respeta para tipos que el navegador no
+     * ejecuta (imágenes rasterizadas, audio, video, texto plano). HTML, SVG, XML, JS... se sirven
+     * como {@code application/octet-stream} y siempre como descarga.
+     */
+    private static String contentType(String mimetype) {
+        return inlineSafe(mimetype) ? mimetype : "application/octet-stream";
+    }
+
+    private static boolean inlineSafe(String mimetype) {
+        if (mimetype == null || mimetype.isBlank() || mimetype.indexOf('\r') >= 0 || mimetype.indexOf('\n') >= 0) {
+            return false;
+        }
+        String base = mimetype.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return INLINE_TYPES.contains(base) || base.startsWith("audio/") || base.startsWith("video/");
+    }
+
+    /** inline/attachment con nombre ASCII de respaldo + filename* en UTF-8 (RFC 6266). */
+    private static String disposition(String filename, boolean attachment) {
+        String name = filename == null || filename.isBlank() ? "archivo" : filename;
+        StringBuilder ascii = new StringBuilder();
+        for (char ch : name.toCharArray()) ascii.append(ch >= 0x20 && ch < 0x7f && ch != '"' && ch != '\\' ? ch : '_');
+        String encoded = URLEncoder.encode(name, StandardCharsets.UTF_8).replace("+", "%20");
+        return (attachment ? "attachment" : "inline") + "; filename=\"" + ascii + "\"; filename*=UTF-8''" + encoded;
+    }
+
+    private static void closeQuietly(SocketChannel sc) {
+        try { sc.close(); } catch (IOException ignored) { }
+    }
+}
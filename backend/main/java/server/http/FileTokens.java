@@ -0,0 +1,82 @@
+package server.http;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * FileTokens - Tokens de descarga de corta duración, firmados con HMAC-SHA256.
+ *
+ * Formato: {@code <actionId>.<expiraMillis>.<usuario b64url>.<firma b64url>}. Son stateless:
+ * el endpoint HTTP solo verifica firma, id y expiración, sin consultar sesiones.
+ */
+public final class FileTokens {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+
+    private FileTokens(byte[] secret, long ttlMillis) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /** Usa {@code secret} si viene configurado; si no, una clave aleatoria (los tokens no sobreviven reinicios). */
+    public static FileTokens create(String secret, long ttlMillis) {
+        byte[] k;
+        if (secret != null && !secret.isBlank()) {
+            k = secret.getBytes(StandardCharsets.UTF_8);
+        } else {
+            k = new byte[32];
+            new SecureRandom().nextBytes(k);
+        }
+        return new FileTokens(k, ttlMillis);
+    }
+
+    public long ttlMillis() { return ttlMillis; }
+
+    /** Emite un token para descargar el adjunto {@code actionId} hasta {@code expiresAt}. */
+    public String issue(String username, long actionId, long expiresAt) {
+        String body = actionId + "." + expiresAt + "." + B64.encodeToString(username.getBytes(StandardCharsets.UTF_8));
+        return body + "." + B64.encodeToString(sign(body));
+    }
+
+    /** true si el token es auténtico, corresponde a {@code actionId} y no expiró. */
+    public boolean verify(String token, long actionId, long now) {
+        if (token == null) return false;
+        int sep = token.lastIndexOf('.');
+        if (sep <= 0) return false;
+        String body = token.substring(0, sep);
+        byte[] sig;
+        try {
+            sig = B64D.decode(token.substring(sep + 1));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (!MessageDigest.isEqual(sign(body), sig)) return false;
+        String[] parts = body.split("\\.", 3);
+        if (parts.length != 3) return false;
+        try {
+            return Long.parseLong(parts[0]) == actionId && Long.parseLong(parts[1]) > now;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private byte[] sign(String body) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC no disponible", e);
+        }
+    }
+}
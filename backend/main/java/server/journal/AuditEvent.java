@@ -0,0 +1,131 @@
+package server.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * AuditEvent - Evento de auditoría pendiente de persistir en 'actions'.
+ * Viaja por el journal local en formato binario compacto; {@code createdAt} es la hora
+ * real del evento (no la del replay), así el historial conserva el orden aunque la BD
+ * haya estado caída.
+ */
+public final class AuditEvent {
+    private final String actionType;
+    private final String room;
+    private final String username;     // null => sistema
+    private final boolean serverGenerated;
+    private final long createdAt;
+    private final String content;      // TEXT / SYSTEM
+    private final String filename;     // FILE
+    private final String mimetype;
+    private final long size;
+    private final byte[] data;
+    private final String recipient;    // DIRECT
+
+    public AuditEvent(String actionType, String room, String username, boolean serverGenerated, long createdAt,
+                      String content, String filename, String mimetype, long size, byte[] data) {
+        this(actionType, room, username, serverGenerated, createdAt, content, filename, mimetype, size, data, null);
+    }
+
+    public AuditEvent(String actionType, String room, String username, boolean serverGenerated, long createdAt,
+                      String content, String filename, String mimetype, long size, byte[] data, String recipient) {
+        this.actionType = actionType;
+        this.room = room;
+        this.username = username;
+        this.serverGenerated = serverGenerated;
+        this.createdAt = createdAt;
+        this.content = content;
+        this.filename = filename;
+        this.mimetype = mimetype;
+        this.size = size;
+        this.data = data;
+        this.recipient = recipient;
+    }
+
+    public String getActionType() { return actionType; }
+    public String getRoom() { return room; }
+    public String getUsername() { return username; }
+    public boolean isServerGenerated() { return serverGenerated; }
+    public long getCreatedAt() { return createdAt; }
+    public String getContent() { return content; }
+    public String getFilename() { return filename; }
+    public String getMimetype() { return mimetype; }
+    public long getSize() { return size; }
+    public byte[] getData() { return data; }
+    public String getRecipient() { return recipient; }
+
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(64 + (data != null ? data.length : 0));
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeUTF(actionType);
+            writeNullable(out, room);
+            writeNullable(out, username);
+            out.writeBoolean(serverGenerated);
+            out.writeLong(createdAt);
+            writeLongString(out, content);
+            writeNullable(out, filename);
+            writeNullable(out, mimetype);
+            out.writeLong(size);
+            out.writeInt(data != null ? data.length : -1);
+            if (data != null) out.write(data);
+            if (recipient != null) writeNullable(out, recipient); // campo opcional al final: compatible con registros previos
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // ByteArrayOutputStream no lanza IOException
+        }
+    }
+
+    static AuditEvent decode(ByteBuffer payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                payload.array(), payload.arrayOffset() + payload.position(), payload.remaining()));
+        String type = in.readUTF();
+        String room = readNullable(in);
+        String username = readNullable(in);
+        boolean serverGenerated = in.readBoolean();
+        long createdAt = in.readLong();
+        String content = readLongString(in);
+        String filename = readNullable(in);
+        String mimetype = readNullable(in);
+        long size = in.readLong();
+        int len = in.readInt();
+        byte[] data = null;
+        if (len >= 0) {
+            data = new byte[len];
+            in.readFully(data);
+        }
+        String recipient = in.available() > 0 ? readNullable(in) : null;
+        return new AuditEvent(type, room, username, serverGenerated, createdAt, content, filename, mimetype, size, data, recipient);
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // writeUTF está limitado a 64KB; el contenido de texto puede superarlo
+    private static void writeLongString(DataOutputStream out, String s) throws IOException {
+        if (s == null) { out.writeInt(-1); return; }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readLongString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,346 @@
+package server.journal;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * AuditJournal - Journal local append-only de eventos de auditoría.
+ *
+ * Los handlers llaman a {@link #append(AuditEvent)}, que solo encola (no toca disco ni BD).
+ * Un único hilo escritor asigna números de secuencia, escribe los eventos acumulados con una
+ * escritura gather sobre FileChannel y hace un único fsync por lote (group commit), con al
+ * menos {@code fsyncMillis} entre fsyncs. {@link #durableSeq()} indica hasta qué secuencia
+ * lo escrito ya está en disco; el {@link JournalReplayer} nunca lee más allá.
+ *
+ * Registro: len(u32) | seq(u64) | crc32c(u32) | payload. Segmentos {@code journal-<primerSeq>.log};
+ * al abrir se trunca una posible cola incompleta del último segmento (crash a mitad de escritura).
+ *
+ * La BD usa la secuencia como clave única ({@code actions.journal_seq}), así que al abrir se
+ * continúa desde la mayor entre la del directorio y la ya guardada en la BD: un JOURNAL_DIR
+ * borrado o cambiado no vuelve a emitir secuencias usadas.
+ */
+public final class AuditJournal implements Closeable {
+    static final int RECORD_HEADER = 16;
+    private static final int MAX_BATCH = 1024;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String DEAD_LETTER = "dead-letter.log";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long fsyncMillis;
+    private final LinkedBlockingQueue<AuditEvent> queue = new LinkedBlockingQueue<>();
+    private final Object durableMonitor = new Object();
+    private final Thread writer;
+    private FileChannel active;
+    private long activeSize;
+    private long nextSeq;
+    private volatile long durableSeq;
+    private volatile SequenceListener sequenceListener;
+    private volatile boolean closing;
+
+    private AuditJournal(Path dir, long segmentBytes, long fsyncMillis) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.fsyncMillis = fsyncMillis;
+        this.writer = new Thread(this::writeLoop, "audit-journal-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Abre el journal, recupera la última secuencia y arranca el hilo escritor.
+     * @param persistedSeq mayor secuencia ya guardada en la BD (0 si no se conoce); los eventos nuevos van después
+     */
+    public static AuditJournal open(Path dir, long segmentBytes, long fsyncMillis, long persistedSeq) {
+        AuditJournal j = new AuditJournal(dir, segmentBytes, fsyncMillis);
+        try {
+            Files.createDirectories(dir);
+            long last = j.readCheckpoint();
+            List<Path> segs = j.segments();
+            if (!segs.isEmpty()) {
+                Path tail = segs.get(segs.size() - 1);
+                last = Math.max(last, recoverTail(tail));
+                if (Files.size(tail) < segmentBytes) {
+                    j.active = FileChannel.open(tail, StandardOpenOption.WRITE);
+                    j.activeSize = j.active.size();
+                    j.active.position(j.activeSize);
+                }
+            }
+            if (persistedSeq > last) {
+                System.err.println("Journal: la BD ya tiene hasta seq=" + persistedSeq + " (directorio: " + last
+                        + "), se continúa desde ahí");
+            }
+            j.nextSeq = Math.max(last, persistedSeq) + 1;
+            j.durableSeq = last;
+        } catch (IOException e) {
+            throw new RuntimeException("Error abriendo journal de auditoría en " + dir, e);
+        }
+        j.writer.start();
+        return j;
+    }
+
+    /** Encola un evento; el fsync ocurre en segundo plano dentro de la ventana de group commit. */
+    public void append(AuditEvent event) {
+        if (closing) {
+            System.err.println("Journal cerrado, evento descartado: " + event.getActionType());
+            return;
+        }
+        queue.add(event);
+    }
+
+    /** Avisa la secuencia asignada a cada evento, desde el hilo escritor (uno solo; null lo quita). */
+    public void setSequenceListener(SequenceListener listener) { sequenceListener = listener; }
+
+    /** Última secuencia con fsync completado. */
+    public long durableSeq() { return durableSeq; }
+
+    /** Eventos encolados aún no escritos. */
+    public int queued() { return queue.size(); }
+
+    /** Espera hasta que haya algo durable posterior a {@code seq} o venza el timeout. */
+    void awaitDurable(long seq, long timeoutMillis) throws InterruptedException {
+        synchronized (durableMonitor) {
+            if (durableSeq <= seq) durableMonitor.wait(timeoutMillis);
+        }
+    }
+
+    /** Vacía la cola, hace fsync final y detiene el escritor. */
+    @Override
+    public void close() {
+        closing = true;
+        try {
+            writer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (active != null) active.close();
+        } catch (IOException ignored) { }
+    }
+
+    // ---------------------------------------------------------------- escritura
+
+    private void writeLoop() {
+        List<AuditEvent> batch = new ArrayList<>();
+        long lastForce = 0;
+        long unforced = -1; // última secuencia escrita cuyo fsync falló
+        while (!(closing && queue.isEmpty() && batch.isEmpty() && unforced < 0)) {
+            try {
+                if (unforced >= 0) {
+                    // lo escrito ya tiene secuencia: solo se reintenta el fsync, nunca la escritura
+                    active.force(false);
+                    lastForce = System.currentTimeMillis();
+                    publishDurable(unforced);
+                    unforced = -1;
+                    continue;
+                }
+                if (batch.isEmpty()) {
+                    AuditEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                }
+                queue.drainTo(batch, MAX_BATCH - batch.size());
+                long wait = fsyncMillis - (System.currentTimeMillis() - lastForce);
+                if (wait > 0 && batch.size() < MAX_BATCH && !closing) {
+                    Thread.sleep(wait); // acumular más eventos para el mismo fsync
+                    queue.drainTo(batch, MAX_BATCH - batch.size());
+                }
+                unforced = writeBatch(batch);
+                notifySequenced(batch, unforced - batch.size() + 1);
+                batch.clear();
+                active.force(false);
+                lastForce = System.currentTimeMillis();
+                publishDurable(unforced);
+                unforced = -1;
+            } catch (InterruptedException e) {
+                closing = true;
+            } catch (IOException e) {
+                // si falló la escritura el lote se conserva (writeBatch no avanzó la secuencia);
+                // si falló el fsync el lote ya se descartó y solo se reintenta el fsync
+                System.err.println("Error escribiendo journal de auditoría: " + e.getMessage());
+                sleepQuietly(1000);
+            }
+        }
+    }
+
+    private void notifySequenced(List<AuditEvent> batch, long firstSeq) {
+        SequenceListener l = sequenceListener;
+        if (l == null) return;
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                l.onSequenced(batch.get(i), firstSeq + i);
+            } catch (RuntimeException e) {
+                System.err.println("Journal: listener de secuencia falló: " + e.getMessage());
+            }
+        }
+    }
+
+    private void publishDurable(long seq) {
+        synchronized (durableMonitor) {
+            durableSeq = seq;
+            durableMonitor.notifyAll();
+        }
+    }
+
+    private long writeBatch(List<AuditEvent> batch) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        long seq = nextSeq;
+        long bytes = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            buffers[i] = encodeRecord(seq + i, batch.get(i).encode());
+            bytes += buffers[i].remaining();
+        }
+        if (active == null || (activeSize > 0 && activeSize + bytes > segmentBytes)) roll(seq);
+        long start = activeSize;
+        try {
+            long written = 0;
+            while (written < bytes) written += active.write(buffers);
+        } catch (IOException e) {
+            active.truncate(start); // no dejar registros a medias antes de reintentar
+            active.position(start);
+            throw e;
+        }
+        activeSize += bytes;
+        nextSeq = seq + batch.size();
+        return nextSeq - 1;
+    }
+
+    private void roll(long firstSeq) throws IOException {
+        if (active != null) {
+            active.force(false);
+            active.close();
+        }
+        Path p = dir.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+        active = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeSize = active.size();
+        active.position(activeSize);
+    }
+
+    static ByteBuffer encodeRecord(long seq, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        ByteBuffer b = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+        b.putInt(payload.length).putLong(seq).putInt((int) crc.getValue()).put(payload);
+        b.flip();
+        return b;
+    }
+
+    /** Valida los registros del segmento, trunca la cola inválida y devuelve la última secuencia. */
+    private static long recoverTail(Path segment) throws IOException {
+        long last = 0;
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long pos = 0;
+            long size = ch.size();
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            while (pos + RECORD_HEADER <= size) {
+                header.clear();
+                readFully(ch, header, pos);
+                header.flip();
+                int len = header.getInt();
+                long seq = header.getLong();
+                int crc = header.getInt();
+                if (len < 0 || pos + RECORD_HEADER + len > size) break;
+                ByteBuffer payload = ByteBuffer.allocate(len);
+                readFully(ch, payload, pos + RECORD_HEADER);
+                CRC32C c = new CRC32C();
+                c.update(payload.array());
+                if ((int) c.getValue() != crc) break;
+                last = seq;
+                pos += RECORD_HEADER + len;
+            }
+            if (pos < size) {
+                System.err.println("Journal: truncando cola incompleta de " + segment.getFileName() + " en " + pos);
+                ch.truncate(pos);
+                ch.force(true);
+            }
+        }
+        return last;
+    }
+
+    // ---------------------------------------------------------------- lectura / mantenimiento
+
+    List<Path> segments() throws IOException {
+        List<Path> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path p : ds) out.add(p);
+        }
+        out.sort(null); // nombres con secuencia rellenada con ceros: orden lexicográfico = orden de secuencia
+        return out;
+    }
+
+    static long firstSeqOf(Path segment) {
+        String n = segment.getFileName().toString();
+        return Long.parseLong(n.substring(PREFIX.length(), n.length() - SUFFIX.length()));
+    }
+
+    /** Borra los segmentos cuyos registros ya fueron todos reproducidos (nunca el activo). */
+    void deleteReplayedSegments(long replayedSeq) throws IOException {
+        List<Path> segs = segments();
+        for (int i = 0; i + 1 < segs.size(); i++) {
+            if (firstSeqOf(segs.get(i + 1)) - 1 <= replayedSeq) Files.deleteIfExists(segs.get(i));
+            else break;
+        }
+    }
+
+    long readCheckpoint() throws IOException {
+        Path p = dir.resolve(CHECKPOINT);
+        if (!Files.exists(p)) return 0L;
+        String s = Files.readString(p, StandardCharsets.UTF_8).trim();
+        try {
+            return s.isEmpty() ? 0L : Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    void writeCheckpoint(long seq) throws IOException {
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(ByteBuffer.wrap(Long.toString(seq).getBytes(StandardCharsets.UTF_8)));
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Guarda un registro que no pudo persistirse en BD, para revisión manual. */
+    void deadLetter(long seq, AuditEvent event) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir.resolve(DEAD_LETTER), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer b = encodeRecord(seq, event.encode());
+            while (b.hasRemaining()) ch.write(b);
+            ch.force(false);
+        }
+    }
+
+    static void readFully(FileChannel ch, ByteBuffer dst, long pos) throws IOException {
+        while (dst.hasRemaining()) {
+            int r = ch.read(dst, pos);
+            if (r < 0) throw new EOFException();
+            pos += r;
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package server.journal;
+
+/**
+ * CircuitBreaker - Corta los intentos contra la BD tras N fallos consecutivos.
+ * CLOSED: se permiten llamadas. OPEN: se rechazan hasta que vence la espera (que se duplica
+ * en cada apertura consecutiva, con tope). HALF_OPEN: se permite una llamada de prueba.
+ */
+final class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long baseOpenMillis;
+    private final long maxOpenMillis;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openMillis;
+    private long openUntil;
+
+    CircuitBreaker(int failureThreshold, long baseOpenMillis, long maxOpenMillis) {
+        this.failureThreshold = failureThreshold;
+        this.baseOpenMillis = baseOpenMillis;
+        this.maxOpenMillis = maxOpenMillis;
+        this.openMillis = baseOpenMillis;
+    }
+
+    synchronized boolean allow(long now) {
+        if (state == State.OPEN && now >= openUntil) state = State.HALF_OPEN;
+        return state != State.OPEN;
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        openMillis = baseOpenMillis;
+    }
+
+    synchronized void onFailure(long now) {
+        failures++;
+        if (state == State.HALF_OPEN) {
+            openMillis = Math.min(maxOpenMillis, openMillis * 2);
+            open(now);
+        } else if (failures >= failureThreshold) {
+            open(now);
+        }
+    }
+
+    /** Milisegundos hasta el próximo intento permitido (0 si ya se permite). */
+    synchronized long remaining(long now) {
+        return state == State.OPEN ? Math.max(0, openUntil - now) : 0;
+    }
+
+    synchronized State state() { return state; }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openUntil = now + openMillis;
+    }
+}
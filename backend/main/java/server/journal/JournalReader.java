@@ -0,0 +1,98 @@
+package server.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * JournalReader - Recorre los registros del journal en orden de secuencia, saltando los
+ * ya reproducidos y sin pasar nunca de la secuencia durable indicada.
+ */
+final class JournalReader implements Closeable {
+
+    /** Registro leído del journal. */
+    static final class Entry {
+        final long seq;
+        final AuditEvent event;
+
+        Entry(long seq, AuditEvent event) {
+            this.seq = seq;
+            this.event = event;
+        }
+    }
+
+    private final AuditJournal journal;
+    private long lastSeq;
+    private Path segment;
+    private FileChannel channel;
+    private long offset;
+
+    JournalReader(AuditJournal journal, long afterSeq) {
+        this.journal = journal;
+        this.lastSeq = afterSeq;
+    }
+
+    /** Siguiente registro con seq &lt;= {@code maxSeq}, o null si aún no hay ninguno disponible. */
+    Entry next(long maxSeq) throws IOException {
+        while (true) {
+            if (lastSeq >= maxSeq) return null;
+            if (channel == null && !openNextSegment()) return null;
+            ByteBuffer header = ByteBuffer.allocate(AuditJournal.RECORD_HEADER);
+            if (offset + AuditJournal.RECORD_HEADER > channel.size()) {
+                if (!openNextSegment()) return null;
+                continue;
+            }
+            AuditJournal.readFully(channel, header, offset);
+            header.flip();
+            int len = header.getInt();
+            long seq = header.getLong();
+            int crc = header.getInt();
+            if (seq > maxSeq) return null;
+            ByteBuffer payload = ByteBuffer.allocate(len);
+            AuditJournal.readFully(channel, payload, offset + AuditJournal.RECORD_HEADER);
+            offset += AuditJournal.RECORD_HEADER + len;
+            CRC32C c = new CRC32C();
+            c.update(payload.array());
+            if ((int) c.getValue() != crc) {
+                System.err.println("Journal: registro corrupto seq=" + seq + " en " + segment.getFileName() + ", se omite el resto del segmento");
+                if (!openNextSegment()) return null;
+                continue;
+            }
+            if (seq <= lastSeq) continue; // ya reproducido
+            lastSeq = seq;
+            payload.flip();
+            return new Entry(seq, AuditEvent.decode(payload));
+        }
+    }
+
+    /** Avanza al primer segmento posterior al actual que pueda contener seq &gt; lastSeq. */
+    private boolean openNextSegment() throws IOException {
+        List<Path> segs = journal.segments();
+        Path candidate = null;
+        for (int i = 0; i < segs.size(); i++) {
+            Path p = segs.get(i);
+            if (segment != null && p.compareTo(segment) <= 0) continue;
+            boolean hasNewer = i + 1 < segs.size() && AuditJournal.firstSeqOf(segs.get(i + 1)) - 1 <= lastSeq;
+            if (hasNewer) continue; // todo su contenido ya fue reproducido
+            candidate = p;
+            break;
+        }
+        if (candidate == null) return false;
+        close();
+        segment = candidate;
+        channel = FileChannel.open(candidate, StandardOpenOption.READ);
+        offset = 0;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+        channel = null;
+    }
+}
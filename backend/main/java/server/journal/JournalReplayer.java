@@ -0,0 +1,155 @@
+package server.journal;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import server.cache.UserIdCache;
+import server.dao.ActionDAO;
+
+/**
+ * JournalReplayer - Drena el journal hacia la BD en un hilo propio.
+ *
+ * - Respeta el orden del journal: un evento no se salta hasta quedar persistido.
+ * - Idempotente: cada inserción lleva la secuencia del journal ({@code actions.journal_seq})
+ *   y {@link ActionDAO#insertJournaled} devuelve el id existente si ya se insertó
+ *   (p.ej. caída entre el commit y el checkpoint).
+ * - Con la BD caída el {@link CircuitBreaker} espacia los reintentos; los handlers no se ven
+ *   afectados porque solo escriben en el journal.
+ * - Si un evento falla repetidamente con la BD sana, se aparta a dead-letter para no bloquear la cola.
+ */
+public final class JournalReplayer {
+    private static final int CHECKPOINT_EVERY = 256;
+    private static final long CHECKPOINT_MILLIS = 1000;
+    private static final int POISON_ATTEMPTS = 3;
+
+    private final AuditJournal journal;
+    private final ActionDAO actionDAO;
+    private final UserIdCache userIds;
+    private final CircuitBreaker breaker;
+    private final List<PersistListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long replayedSeq;
+
+    public JournalReplayer(AuditJournal journal, ActionDAO actionDAO, UserIdCache userIds,
+                           int breakerFailures, long breakerOpenMillis) {
+        this.journal = journal;
+        this.actionDAO = actionDAO;
+        this.userIds = userIds;
+        this.breaker = new CircuitBreaker(breakerFailures, breakerOpenMillis, breakerOpenMillis * 30);
+        this.thread = new Thread(this::run, "audit-journal-replayer");
+        this.thread.setDaemon(true);
+    }
+
+    public void addListener(PersistListener l) { listeners.add(l); }
+
+    public void start() { thread.start(); }
+
+    /** Eventos durables en el journal pendientes de llegar a la BD. */
+    public long backlog() { return Math.max(0, journal.durableSeq() - replayedSeq); }
+
+    /** Estado del circuit breaker (CLOSED / OPEN / HALF_OPEN). */
+    public String breakerState() { return breaker.state().name(); }
+
+    /** Espera (con tope) a que se drene lo durable y detiene el hilo. */
+    public void stop(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (backlog() > 0 && System.currentTimeMillis() < deadline) sleep(50);
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long checkpointed;
+        try {
+            checkpointed = journal.readCheckpoint();
+        } catch (IOException e) {
+            System.err.println("Journal: no se pudo leer checkpoint, se reproduce desde el inicio: " + e.getMessage());
+            checkpointed = 0;
+        }
+        replayedSeq = checkpointed;
+        long lastCheckpointAt = System.currentTimeMillis();
+        try (JournalReader reader = new JournalReader(journal, checkpointed)) {
+            while (running) {
+                JournalReader.Entry e = reader.next(journal.durableSeq());
+                if (e != null) {
+                    if (!persist(e)) break;
+                    replayedSeq = e.seq;
+                }
+                long now = System.currentTimeMillis();
+                boolean idle = e == null;
+                if (replayedSeq > checkpointed && (idle || replayedSeq - checkpointed >= CHECKPOINT_EVERY
+                        || now - lastCheckpointAt >= CHECKPOINT_MILLIS)) {
+                    journal.writeCheckpoint(replayedSeq);
+                    journal.deleteReplayedSegments(replayedSeq);
+                    checkpointed = replayedSeq;
+                    lastCheckpointAt = now;
+                }
+                if (idle) journal.awaitDurable(replayedSeq, 500);
+            }
+            if (replayedSeq > checkpointed) journal.writeCheckpoint(replayedSeq);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            try { if (replayedSeq > checkpointed) journal.writeCheckpoint(replayedSeq); } catch (IOException ignored) { }
+        } catch (IOException ex) {
+            System.err.println("Journal: replayer detenido por error de E/S: " + ex.getMessage());
+        }
+    }
+
+    /** Persiste el evento (reintentando según el breaker). false si se pidió detener. */
+    private boolean persist(JournalReader.Entry e) {
+        int failures = 0;
+        while (running) {
+            long now = System.currentTimeMillis();
+            if (!breaker.allow(now)) {
+                sleep(Math.max(10, breaker.remaining(now)));
+                continue;
+            }
+            try {
+                AuditEvent ev = e.event;
+                Integer uid = userIds.resolve(ev.getUsername(), actionDAO::getUserIdByUsername);
+                Integer recipient = userIds.resolve(ev.getRecipient(), actionDAO::getUserIdByUsername);
+                long id = actionDAO.insertJournaled(e.seq, ev.getActionType(), ev.getRoom(), uid, recipient, ev.isServerGenerated(),
+                        new Timestamp(ev.getCreatedAt()), ev.getContent(), ev.getFilename(), ev.getMimetype(),
+                        ev.getSize(), ev.getData());
+                breaker.onSuccess();
+                for (PersistListener l : listeners) {
+                    try {
+                        l.onPersisted(e.seq, ev, id);
+                    } catch (RuntimeException ex) {
+                        System.err.println("Journal: listener falló para seq=" + e.seq + ": " + ex.getMessage());
+                    }
+                }
+                return true;
+            } catch (RuntimeException ex) {
+                breaker.onFailure(System.currentTimeMillis());
+                if (++failures >= POISON_ATTEMPTS && actionDAO.ping()) {
+                    System.err.println("Journal: evento seq=" + e.seq + " rechazado por la BD, se envía a dead-letter: " + ex.getMessage());
+                    try {
+                        journal.deadLetter(e.seq, e.event);
+                    } catch (IOException io) {
+                        System.err.println("Journal: no se pudo escribir dead-letter: " + io.getMessage());
+                    }
+                    breaker.onSuccess();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package server.journal;
+
+/**
+ * Callback invocado cuando un evento del journal quedó persistido en BD, con su secuencia
+ * ({@code actions.journal_seq}).
+ * El evento es el releído del journal, no la instancia original del append.
+ * Se ejecuta en el hilo del replayer: las implementaciones deben ser rápidas
+ * o delegar a su propio executor. Puede recibir el mismo evento más de una vez
+ * si el servidor cae entre la inserción y el checkpoint.
+ */
+public interface PersistListener {
+    void onPersisted(long seq, AuditEvent event, long actionId);
+}
@@ -0,0 +1,11 @@
+package server.journal;
+
+/**
+ * Callback invocado cuando el journal asignó secuencia a un evento encolado (ya escrito,
+ * antes del fsync). Recibe la misma instancia pasada a {@link AuditJournal#append(AuditEvent)}
+ * y la secuencia con la que luego llega a {@link PersistListener}. Se ejecuta en el hilo
+ * escritor, por cada evento: las implementaciones deben ser inmediatas.
+ */
+public interface SequenceListener {
+    void onSequenced(AuditEvent event, long seq);
+}
@@ -0,0 +1,182 @@
+package server.lanes;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import server.transport.ClientChannel;
+
+/**
+ * BulkOutbound - Carril de salida {@link Lane#BULK}: los frames de archivos esperan aquí y no en
+ * el buffer del transporte.
+ *
+ * Un frame de varios MB encolado en el transporte deja detrás, hasta terminar de escribirse, a
+ * todo lo que se envíe después por esa conexión (un answer, un ICE, un mensaje de chat). Aquí cada
+ * conexión tiene su cola bulk y un único hilo ("lane-bulk-out") pasa el siguiente frame al
+ * transporte solo cuando este no tiene nada pendiente ({@link ClientChannel#hasBufferedData()}):
+ * lo urgente se envía directo y espera, como mucho, a un frame bulk.
+ *
+ * El hilo recorre las conexiones por turnos (un frame por conexión y vuelta) y respeta un tope
+ * global de bytes por segundo (token bucket con ráfaga de un segundo; un frame más grande que el
+ * saldo se envía igual y deja el saldo en negativo). Dentro de una conexión los frames bulk
+ * conservan su orden; respecto de los demás carriles, no.
+ */
+public final class BulkOutbound {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long BUSY_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final class Pending {
+        final String text;
+        final ByteBuffer binary;
+        final boolean utf8;   // 'binary' es un mensaje de texto ya codificado
+        final long bytes;
+        final long queuedAt = System.nanoTime();
+
+        Pending(String text, ByteBuffer binary, boolean utf8, long bytes) {
+            this.text = text;
+            this.binary = binary;
+            this.utf8 = utf8;
+            this.bytes = bytes;
+        }
+    }
+
+    private final ConcurrentHashMap<ClientChannel, ArrayDeque<Pending>> queues = new ConcurrentHashMap<>();
+    private final LaneMetrics metrics;
+    private final long bytesPerSecond;
+    private final Thread pacer;
+    private volatile boolean running = true;
+
+    // solo el hilo pacer
+    private long tokens;
+    private long refilledAt = System.nanoTime();
+
+    /** @param bytesPerSecond tope de salida del carril para todas las conexiones juntas (0 = sin tope) */
+    public BulkOutbound(long bytesPerSecond, LaneMetrics metrics) {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+        this.tokens = this.bytesPerSecond;
+        this.metrics = metrics;
+        this.pacer = new Thread(this::run, "lane-bulk-out");
+        pacer.setDaemon(true);
+        pacer.start();
+    }
+
+    /** Encola un frame de texto bulk (p.ej. {@code file}, {@code file_data}) para la conexión. */
+    public void send(ClientChannel conn, String text) {
+        // aproximado: el texto de un adjunto es JSON con Base64, casi todo ASCII
+        enqueue(conn, new Pending(text, null, false, text.length()));
+    }
+
+    /** Encola un frame de texto ya codificado en UTF-8 (p.ej. de la caché de adjuntos); no consume el buffer. */
+    public void sendText(ClientChannel conn, ByteBuffer utf8) {
+        ByteBuffer own = utf8.duplicate();
+        enqueue(conn, new Pending(null, own, true, own.remaining()));
+    }
+
+    /** Encola un frame binario; no consume la posición del buffer recibido. */
+    public void send(ClientChannel conn, ByteBuffer data) {
+        ByteBuffer own = data.duplicate();
+        enqueue(conn, new Pending(null, own, false, own.remaining()));
+    }
+
+    /** Descarta lo pendiente de una conexión cerrada. */
+    public void forget(ClientChannel conn) {
+        queues.remove(conn);
+    }
+
+    /** Frames bulk pendientes de todas las conexiones. */
+    public int pending() {
+        int n = 0;
+        for (ArrayDeque<Pending> q : queues.values()) {
+            synchronized (q) { n += q.size(); }
+        }
+        return n;
+    }
+
+    /** Detiene el hilo; lo que no se alcanzó a enviar se descarta (igual que el transporte al cerrar). */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(pacer);
+    }
+
+    private void enqueue(ClientChannel conn, Pending p) {
+        if (!running || !conn.isOpen()) return;
+        queues.compute(conn, (k, q) -> {
+            ArrayDeque<Pending> out = q != null ? q : new ArrayDeque<>();
+            synchronized (out) { out.add(p); }
+            return out;
+        });
+        LockSupport.unpark(pacer);
+    }
+
+    private void run() {
+        ArrayList<ClientChannel> turn = new ArrayList<>();
+        while (running) {
+            boolean sent = false, busy = false;
+            long throttleNanos = 0;
+            turn.clear();
+            turn.addAll(queues.keySet());
+            for (ClientChannel conn : turn) {
+                if (!conn.isOpen()) {
+                    queues.remove(conn);
+                    continue;
+                }
+                if (conn.hasBufferedData()) {
+                    busy = true;
+                    continue;
+                }
+                throttleNanos = refill();
+                if (throttleNanos > 0) break;
+                Pending p = poll(conn);
+                if (p == null) continue;
+                tokens -= p.bytes;
+                try {
+                    if (p.text != null) conn.send(p.text);
+                    else if (p.utf8) conn.sendText(p.binary);
+                    else conn.send(p.binary);
+                } catch (RuntimeException e) {
+                    // la conexión se cerró entre isOpen y send
+                }
+                metrics.bulkSent(System.nanoTime() - p.queuedAt, p.bytes);
+                sent = true;
+            }
+            if (sent) continue;
+            if (throttleNanos > 0) {
+                metrics.throttled();
+                LockSupport.parkNanos(throttleNanos);
+            } else {
+                LockSupport.parkNanos(busy ? BUSY_PARK_NANOS : IDLE_PARK_NANOS);
+            }
+        }
+        queues.clear();
+    }
+
+    /** Siguiente frame de la conexión; quita la cola si quedó vacía. */
+    private Pending poll(ClientChannel conn) {
+        Pending[] out = new Pending[1];
+        queues.computeIfPresent(conn, (k, q) -> {
+            synchronized (q) {
+                out[0] = q.poll();
+                return q.isEmpty() ? null : q;
+            }
+        });
+        return out[0];
+    }
+
+    /** Recarga el saldo; devuelve cuánto esperar hasta tener saldo positivo (0 = se puede enviar). */
+    private long refill() {
+        if (bytesPerSecond == 0) return 0;
+        long now = System.nanoTime();
+        long elapsed = Math.min(now - refilledAt, 1_000_000_000L); // más de 1 s ya llena el bucket (y evita overflow)
+        long earned = elapsed * bytesPerSecond / 1_000_000_000L;
+        if (earned > 0) {
+            tokens = Math.min(bytesPerSecond, tokens + earned);
+            refilledAt = now;
+        }
+        if (tokens > 0) return 0;
+        return Math.max(BUSY_PARK_NANOS, (1 - tokens) * 1_000_000_000L / bytesPerSecond);
+    }
+}
@@ -0,0 +1,63 @@
+package server.lanes;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Lane - Prioridad con la que se procesa un mensaje entrante y se entrega lo que genera.
+ * <ul>
+ *   <li>{@link #HIGH}: señalización WebRTC y presencia (join/leave/logout): pocos bytes y muy sensibles a la latencia.</li>
+ *   <li>{@link #NORMAL}: chat, directos, búsqueda, autenticación.</li>
+ *   <li>{@link #BULK}: archivos (subida, {@code file_get}, binarios): hilos acotados y salida con tope de ancho de banda.</li>
+ * </ul>
+ */
+public enum Lane {
+    HIGH, NORMAL, BULK;
+
+    /** Frames de texto más grandes que esto van a {@link #BULK} sin mirar el tipo (solo un archivo llega a ese tamaño). */
+    static final int BULK_FRAME_CHARS = 64 * 1024;
+
+    /**
+     * Carril de un mensaje de texto entrante. Se lee solo la clave {@code type} (el frontend la envía
+     * primero), sin armar el mapa: esto corre en el hilo del transporte.
+     */
+    public static Lane classify(String raw) {
+        if (raw.length() > BULK_FRAME_CHARS) return BULK;
+        try (JsonReader r = new JsonReader(new StringReader(raw))) {
+            if (r.peek() != JsonToken.BEGIN_OBJECT) return NORMAL;
+            r.beginObject();
+            while (r.hasNext()) {
+                if ("type".equals(r.nextName()) && r.peek() == JsonToken.STRING) return ofType(r.nextString());
+                r.skipValue();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // JSON inválido: el dispatcher responde el error desde el carril normal
+        }
+        return NORMAL;
+    }
+
+    /** Carril por tipo de mensaje del protocolo. */
+    public static Lane ofType(String type) {
+        if (type == null) return NORMAL;
+        switch (type) {
+            case "webrtc_offer":
+            case "webrtc_answer":
+            case "webrtc_ice":
+            case "join_room":
+            case "leave_room":
+            case "logout":
+                return HIGH;
+            case "file":
+            case "file_get":
+                return BULK;
+            default:
+                return NORMAL;
+        }
+    }
+
+    /** Nombre en minúsculas para logs y nombres de hilo. */
+    public String label() { return name().toLowerCase(); }
+}
@@ -0,0 +1,116 @@
+package server.lanes;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LaneExecutors - Pools de hilos que procesan los mensajes entrantes según su {@link Lane}.
+ *
+ * Antes todo iba a un único {@code newCachedThreadPool}: una ráfaga de archivos (decodificar
+ * Base64 de varios MB, armar el JSON de difusión) ocupaba tantos hilos como archivos y la
+ * señalización competía con ellos por CPU. Ahora:
+ * <ul>
+ *   <li>{@link Lane#HIGH} y {@link Lane#NORMAL} comparten un pool fijo con cola de prioridad: un
+ *       hilo libre siempre toma primero lo urgente y, dentro de un carril, en orden de llegada;</li>
+ *   <li>{@link Lane#BULK} tiene sus propios hilos y una cola acotada (cada tarea puede retener un
+ *       mensaje de varios MB): con la cola llena {@link #execute} devuelve false y el llamador
+ *       avisa al cliente, en lugar de bloquear al hilo del transporte o acumular memoria.</li>
+ * </ul>
+ * Entre carriles no hay orden garantizado (tampoco lo había con el pool único).
+ */
+public final class LaneExecutors {
+
+    private final ThreadPoolExecutor shared;
+    private final ThreadPoolExecutor bulk;
+    private final LaneMetrics metrics;
+    private final AtomicLong seq = new AtomicLong();
+
+    /**
+     * @param threads hilos compartidos por {@link Lane#HIGH} y {@link Lane#NORMAL} (al menos 1)
+     * @param bulkThreads hilos del carril {@link Lane#BULK} (al menos 1)
+     * @param bulkQueue mensajes {@link Lane#BULK} que pueden esperar hilo antes de rechazarse (al menos 1)
+     */
+    public LaneExecutors(int threads, int bulkThreads, int bulkQueue, LaneMetrics metrics) {
+        this.metrics = metrics;
+        int n = Math.max(1, threads);
+        this.shared = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), named("lane"));
+        int b = Math.max(1, bulkThreads);
+        this.bulk = new ThreadPoolExecutor(b, b, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, bulkQueue)), named("lane-" + Lane.BULK.label()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public LaneMetrics metrics() { return metrics; }
+
+    /**
+     * Ejecuta {@code task} en el carril, midiendo espera en cola y tiempo de proceso.
+     * @return false si no se aceptó (cola {@link Lane#BULK} llena o pools detenidos)
+     */
+    public boolean execute(Lane lane, Runnable task) {
+        try {
+            (lane == Lane.BULK ? bulk : shared).execute(new LaneTask(lane, seq.getAndIncrement(), task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            metrics.reject(lane);
+            return false;
+        }
+    }
+
+    /** Deja de aceptar tareas y espera a que terminen las encoladas. */
+    public void stop(long timeoutMillis) throws InterruptedException {
+        shared.shutdown();
+        bulk.shutdown();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        shared.awaitTermination(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        bulk.awaitTermination(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /** Tarea ordenada por carril (HIGH antes que NORMAL) y luego por llegada. */
+    private final class LaneTask implements Runnable, Comparable<LaneTask> {
+        final Lane lane;
+        final long order;
+        final Runnable task;
+        final long queuedAt = System.nanoTime();
+
+        LaneTask(Lane lane, long order, Runnable task) {
+            this.lane = lane;
+            this.order = order;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // una excepción del handler no debe matar el hilo del pool, pero tampoco perderse en silencio
+                System.err.println("Error en tarea del carril " + lane.label() + ": " + e);
+            } finally {
+                metrics.executed(lane, start - queuedAt, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public int compareTo(LaneTask o) {
+            int c = Integer.compare(lane.ordinal(), o.lane.ordinal());
+            return c != 0 ? c : Long.compare(order, o.order);
+        }
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package server.lanes;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LaneMetrics - Latencia por carril en ventanas circulares de muestras (microsegundos):
+ * <ul>
+ *   <li>cola: desde que el transporte entrega el mensaje hasta que un hilo del carril lo toma;</li>
+ *   <li>proceso: lo que tarda el handler;</li>
+ *   <li>salida: espera de un envío {@link Lane#BULK} hasta pasar al transporte (socket ocupado o tope de ancho de banda).</li>
+ * </ul>
+ * {@link #report()} resume p50/p95/max de cada una.
+ */
+public final class LaneMetrics {
+    private static final int SAMPLES = 1024;
+
+    /** Ventana circular de muestras en microsegundos. */
+    private static final class Samples {
+        final long[] values = new long[SAMPLES];
+        int count;
+
+        synchronized void add(long micros) {
+            values[count % SAMPLES] = micros;
+            count++;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, Math.min(count, SAMPLES));
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    private final EnumMap<Lane, Samples> queue = new EnumMap<>(Lane.class);
+    private final EnumMap<Lane, Samples> service = new EnumMap<>(Lane.class);
+    private final EnumMap<Lane, LongAdder> executed = new EnumMap<>(Lane.class);
+    private final EnumMap<Lane, LongAdder> rejected = new EnumMap<>(Lane.class);
+    private final Samples outbound = new Samples();
+    private final LongAdder bulkBytes = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    public LaneMetrics() {
+        for (Lane l : Lane.values()) {
+            queue.put(l, new Samples());
+            service.put(l, new Samples());
+            executed.put(l, new LongAdder());
+            rejected.put(l, new LongAdder());
+        }
+    }
+
+    void executed(Lane lane, long queueNanos, long serviceNanos) {
+        queue.get(lane).add(queueNanos / 1000);
+        service.get(lane).add(serviceNanos / 1000);
+        executed.get(lane).increment();
+    }
+
+    /** El carril no aceptó el mensaje (cola llena). */
+    void reject(Lane lane) { rejected.get(lane).increment(); }
+
+    void bulkSent(long waitNanos, long bytes) {
+        outbound.add(waitNanos / 1000);
+        bulkBytes.add(bytes);
+    }
+
+    /** El pacer tuvo que esperar por el tope de ancho de banda. */
+    void throttled() { throttled.increment(); }
+
+    public long executed(Lane lane) { return executed.get(lane).sum(); }
+
+    public long rejected(Lane lane) { return rejected.get(lane).sum(); }
+
+    /** Resumen legible, una línea por carril. */
+    public String report() {
+        StringBuilder sb = new StringBuilder("Carriles de prioridad:");
+        for (Lane l : Lane.values()) {
+            sb.append("\n  ").append(l.label()).append(" (").append(executed(l)).append(" mensajes");
+            if (rejected(l) > 0) sb.append(", ").append(rejected(l)).append(" rechazados");
+            sb.append("): cola ")
+                    .append(describe(queue.get(l).sorted())).append(" | proceso ").append(describe(service.get(l).sorted()));
+        }
+        sb.append("\n  salida bulk: ").append(describe(outbound.sorted()))
+                .append(String.format(" | %.1f MB enviados, %d esperas por tope", bulkBytes.sum() / 1048576.0, throttled.sum()));
+        return sb.toString();
+    }
+
+    static String describe(long[] sortedMicros) {
+        if (sortedMicros.length == 0) return "sin muestras";
+        return String.format("p50=%.2f ms p95=%.2f ms max=%.2f ms", percentile(sortedMicros, 50) / 1000.0,
+                percentile(sortedMicros, 95) / 1000.0, sortedMicros[sortedMicros.length - 1] / 1000.0);
+    }
+
+    static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+}
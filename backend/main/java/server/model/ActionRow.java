@@ -0,0 +1,50 @@
+package server.model;
+
+/**
+ * ActionRow - Fila completa de 'actions' junto a sus detalles (texto o archivo).
+ * Se usa para archivar acciones expiradas fuera de la BD.
+ */
+public final class ActionRow {
+    private final long id;
+    private final String actionType;
+    private final String room;
+    private final Integer actorUserId;   // null => sistema
+    private final Integer recipientUserId; // solo DIRECT
+    private final boolean serverGenerated;
+    private final long createdAt;        // millis
+    private final String content;        // solo si hay detalle de texto
+    private final String filename;       // solo si hay detalle de archivo
+    private final String mimetype;
+    private final long size;
+    private final byte[] data;
+
+    public ActionRow(long id, String actionType, String room, Integer actorUserId, Integer recipientUserId,
+                     boolean serverGenerated, long createdAt, String content, String filename, String mimetype,
+                     long size, byte[] data) {
+        this.id = id;
+        this.actionType = actionType;
+        this.room = room;
+        this.actorUserId = actorUserId;
+        this.recipientUserId = recipientUserId;
+        this.serverGenerated = serverGenerated;
+        this.createdAt = createdAt;
+        this.content = content;
+        this.filename = filename;
+        this.mimetype = mimetype;
+        this.size = size;
+        this.data = data;
+    }
+
+    public long getId() { return id; }
+    public String getActionType() { return actionType; }
+    public String getRoom() { return room; }
+    public Integer getActorUserId() { return actorUserId; }
+    public Integer getRecipientUserId() { return recipientUserId; }
+    public boolean isServerGenerated() { return serverGenerated; }
+    public long getCreatedAt() { return createdAt; }
+    public String getContent() { return content; }
+    public String getFilename() { return filename; }
+    public String getMimetype() { return mimetype; }
+    public long getSize() { return size; }
+    public byte[] getData() { return data; }
+}
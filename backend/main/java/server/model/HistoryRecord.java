@@ -5,18 +5,31 @@ package server.model;
  * Se utiliza para reconstruir el chat cuando un usuario se conecta.
  */
 public final class HistoryRecord {
-    private final String type; // "text" | "file"
+    private final long id;        // id de la acción en 'actions'
+    private final String room;
+    private final String type; // "text" | "file" | "direct"
     private final String username; // puede ser null => system
     private final String content; // solo para texto
     private final String filename; // solo para archivo
     private final String mimetype; // solo para archivo
     private final long size;       // solo para archivo
-    private final String dataBase64; // solo para archivo
+    private final String dataBase64; // solo para archivo (null si se envía solo la miniatura)
+    private final String previewBase64; // miniatura de imágenes, si existe
+    private final String previewMimetype;
     private final long timestamp; // millis
+    private final String recipient; // solo para mensajes directos
 
-    private HistoryRecord(String type, String username, String content,
+    private HistoryRecord(long id, String room, String type, String username, String content,
                           String filename, String mimetype, long size,
-                          String dataBase64, long timestamp) {
+                          String dataBase64, String previewBase64, String previewMimetype, long timestamp) {
+        this(id, room, type, username, content, filename, mimetype, size, dataBase64, previewBase64, previewMimetype, timestamp, null);
+    }
+
+    private HistoryRecord(long id, String room, String type, String username, String content,
+                          String filename, String mimetype, long size,
+                          String dataBase64, String previewBase64, String previewMimetype, long timestamp, String recipient) {
+        this.id = id;
+        this.room = room;
         this.type = type;
         this.username = username;
         this.content = content;
@@ -24,17 +37,38 @@ public final class HistoryRecord {
         this.mimetype = mimetype;
         this.size = size;
         this.dataBase64 = dataBase64;
+        this.previewBase64 = previewBase64;
+        this.previewMimetype = previewMimetype;
         this.timestamp = timestamp;
+        this.recipient = recipient;
+    }
+
+    public static HistoryRecord text(long id, String room, String username, String content, long timestamp) {
+        return new HistoryRecord(id, room, "text", username, content, null, null, 0L, null, null, null, timestamp);
+    }
+
+    public static HistoryRecord file(long id, String room, String username, String filename, String mimetype, long size, String dataBase64, long timestamp) {
+        return new HistoryRecord(id, room, "file", username, null, filename, mimetype, size, dataBase64, null, null, timestamp);
+    }
+
+    /** Mensaje directo entre dos usuarios. */
+    public static HistoryRecord direct(long id, String from, String to, String content, long timestamp) {
+        return new HistoryRecord(id, "direct", "direct", from, content, null, null, 0L, null, null, null, timestamp, to);
     }
 
-    public static HistoryRecord text(String username, String content, long timestamp) {
-        return new HistoryRecord("text", username, content, null, null, 0L, null, timestamp);
+    /** Archivo de imagen representado por su miniatura; el original se pide aparte (file_get). */
+    public static HistoryRecord fileWithPreview(long id, String room, String username, String filename, String mimetype, long size,
+                                                String previewBase64, String previewMimetype, long timestamp) {
+        return new HistoryRecord(id, room, "file", username, null, filename, mimetype, size, null, previewBase64, previewMimetype, timestamp);
     }
 
-    public static HistoryRecord file(String username, String filename, String mimetype, long size, String dataBase64, long timestamp) {
-        return new HistoryRecord("file", username, null, filename, mimetype, size, dataBase64, timestamp);
+    /** Copia sin el original en Base64 (se recupera por id cuando haga falta). */
+    public HistoryRecord withoutData() {
+        return new HistoryRecord(id, room, type, username, content, filename, mimetype, size, null, previewBase64, previewMimetype, timestamp);
     }
 
+    public long getId() { return id; }
+    public String getRoom() { return room; }
     public String getType() { return type; }
     public String getUsername() { return username; }
     public String getContent() { return content; }
@@ -42,5 +76,8 @@ public final class HistoryRecord {
     public String getMimetype() { return mimetype; }
     public long getSize() { return size; }
     public String getDataBase64() { return dataBase64; }
+    public String getPreviewBase64() { return previewBase64; }
+    public String getPreviewMimetype() { return previewMimetype; }
     public long getTimestamp() { return timestamp; }
+    public String getRecipient() { return recipient; }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package server.preview;
+
+/**
+ * ImagePreview - Miniatura generada para un adjunto de imagen.
+ */
+public final class ImagePreview {
+    private final String mimetype;
+    private final int width;
+    private final int height;
+    private final byte[] data;
+
+    public ImagePreview(String mimetype, int width, int height, byte[] data) {
+        this.mimetype = mimetype;
+        this.width = width;
+        this.height = height;
+        this.data = data;
+    }
+
+    public String getMimetype() { return mimetype; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public byte[] getData() { return data; }
+}
@@ -0,0 +1,129 @@
+package server.preview;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import server.dao.ActionDAO;
+
+/**
+ * PreviewService - Genera miniaturas de adjuntos de imagen en segundo plano (solo JDK ImageIO).
+ *
+ * Se invoca cuando el journal ya persistió el FILE (se conoce el id de acción). Usa un pool
+ * fijo con cola acotada: si la cola está llena la tarea se rechaza y el llamador cae al
+ * comportamiento anterior (enviar el original). Las imágenes se validan por dimensiones antes
+ * de decodificarlas para no reservar memoria de más.
+ */
+public final class PreviewService {
+    private static final long MAX_PIXELS = 40_000_000L;
+    private static final String PREVIEW_MIMETYPE = "image/jpeg";
+
+    private final ActionDAO actionDAO;
+    private final int maxDimension;
+    private final ThreadPoolExecutor pool;
+
+    public PreviewService(ActionDAO actionDAO, int maxDimension, int threads, int queueCapacity) {
+        this.actionDAO = actionDAO;
+        this.maxDimension = maxDimension;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "preview-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /** Tipos que ImageIO puede decodificar sin plugins extra. */
+    public static boolean supports(String mimetype) {
+        if (mimetype == null) return false;
+        String m = mimetype.toLowerCase(Locale.ROOT);
+        return m.equals("image/jpeg") || m.equals("image/jpg") || m.equals("image/png")
+                || m.equals("image/gif") || m.equals("image/bmp");
+    }
+
+    /**
+     * Encola la generación y guardado de la miniatura.
+     * @param onDone recibe la miniatura, o null si no pudo generarse
+     * @return false si la cola está llena (no se generará)
+     */
+    public boolean submit(long actionId, byte[] original, Consumer<ImagePreview> onDone) {
+        try {
+            pool.execute(() -> {
+                ImagePreview p = null;
+                try {
+                    p = render(original);
+                    if (p != null) actionDAO.insertFilePreview(actionId, p.getMimetype(), p.getWidth(), p.getHeight(), p.getData());
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("No se pudo generar preview para acción " + actionId + ": " + e.getMessage());
+                }
+                onDone.accept(p);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /** Decodifica y reduce la imagen; null si no es decodificable o ya es pequeña. */
+    ImagePreview render(byte[] original) throws IOException {
+        if (original == null || original.length == 0) return null;
+        BufferedImage src;
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels <= 0 || pixels > MAX_PIXELS) return null;
+                src = reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+        int w = src.getWidth(), h = src.getHeight();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(w, h));
+        int tw = Math.max(1, (int) Math.round(w * scale));
+        int th = Math.max(1, (int) Math.round(h * scale));
+        BufferedImage dst = new BufferedImage(tw, th, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = dst.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE); // JPEG no tiene alfa
+            g.fillRect(0, 0, tw, th);
+            g.drawImage(src, 0, 0, tw, th, null);
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        if (!ImageIO.write(dst, "jpg", out)) return null;
+        byte[] bytes = out.toByteArray();
+        if (bytes.length >= original.length) return null; // la miniatura no ahorra nada
+        return new ImagePreview(PREVIEW_MIMETYPE, tw, th, bytes);
+    }
+}
@@ -0,0 +1,185 @@
+package server.retention;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import server.model.ActionRow;
+
+/**
+ * ArchiveStore - Segmentos de archivo comprimidos (JSON lines + gzip) para acciones
+ * retiradas de la BD. Cada segmento cubre un rango de ids y de fechas, codificado en
+ * el nombre ({@code actions-<idMin>-<idMax>-<tsMin>-<tsMax>.jsonl.gz}) para poder
+ * descartar archivos sin abrirlos al consultar.
+ */
+public final class ArchiveStore {
+    private static final String PREFIX = "actions-";
+    private static final String SUFFIX = ".jsonl.gz";
+
+    private final Path dir;
+    private final Gson gson = new Gson();
+
+    public ArchiveStore(Path dir) {
+        this.dir = dir;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("No se pudo crear directorio de archivo: " + dir, e);
+        }
+    }
+
+    /**
+     * Escribe un lote como segmento nuevo y lo sincroniza a disco antes de retornar,
+     * de modo que sea seguro borrar las filas de la BD a continuación. Nunca reemplaza un
+     * segmento existente: si el nombre ya está tomado (reintento tras un fallo) se agrega
+     * un sufijo {@code -1}, {@code -2}... y {@link #query} descarta los ids repetidos.
+     */
+    public Path write(List<ActionRow> rows) throws IOException {
+        if (rows.isEmpty()) return null;
+        long idMin = Long.MAX_VALUE, idMax = 0, tsMin = Long.MAX_VALUE, tsMax = 0;
+        for (ActionRow r : rows) {
+            idMin = Math.min(idMin, r.getId());
+            idMax = Math.max(idMax, r.getId());
+            tsMin = Math.min(tsMin, r.getCreatedAt());
+            tsMax = Math.max(tsMax, r.getCreatedAt());
+        }
+        String base = PREFIX + idMin + "-" + idMax + "-" + tsMin + "-" + tsMax;
+        Path tmp = dir.resolve(base + SUFFIX + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream raw = Channels.newOutputStream(ch);
+            GZIPOutputStream gz = new GZIPOutputStream(raw, 1 << 16);
+            Writer w = new BufferedWriter(new OutputStreamWriter(gz, StandardCharsets.UTF_8));
+            for (ActionRow r : rows) {
+                w.write(gson.toJson(toJson(r)));
+                w.write('\n');
+            }
+            w.flush();
+            gz.finish();
+            ch.force(true);
+        }
+        // createLink falla si el destino existe (un rename lo reemplazaría en silencio)
+        for (int n = 0; ; n++) {
+            Path target = dir.resolve(base + (n == 0 ? "" : "-" + n) + SUFFIX);
+            try {
+                Files.createLink(target, tmp);
+                Files.delete(tmp);
+                return target;
+            } catch (FileAlreadyExistsException e) {
+                // probar con el siguiente sufijo
+            }
+        }
+    }
+
+    /**
+     * Consulta el archivo. Los filtros nulos (o 0 en fechas) no restringen.
+     * @return filas en orden de id ascendente, como máximo {@code limit}
+     */
+    public List<ActionRow> query(String actionType, String room, long fromMillis, long toMillis, int limit) throws IOException {
+        List<Path> candidates = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path p : ds) {
+                long[] meta = parseName(p);
+                if (meta == null) continue;
+                if (fromMillis > 0 && meta[3] < fromMillis) continue;
+                if (toMillis > 0 && meta[2] > toMillis) continue;
+                candidates.add(p);
+            }
+        }
+        // a igual rango, primero el segmento original (sin sufijo)
+        candidates.sort(Comparator.<Path>comparingLong(p -> parseName(p)[0]).thenComparingLong(p -> parseName(p)[4]));
+        List<ActionRow> out = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Path p : candidates) {
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(p), 1 << 16), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    ActionRow row = fromJson(gson.fromJson(line, JsonObject.class));
+                    if (actionType != null && !actionType.equals(row.getActionType())) continue;
+                    if (room != null && !room.equals(row.getRoom())) continue;
+                    if (fromMillis > 0 && row.getCreatedAt() < fromMillis) continue;
+                    if (toMillis > 0 && row.getCreatedAt() > toMillis) continue;
+                    if (!seen.add(row.getId())) continue;
+                    out.add(row);
+                    if (out.size() >= limit) return out;
+                }
+            }
+        }
+        return out;
+    }
+
+    private static Map<String,Object> toJson(ActionRow r) {
+        Map<String,Object> m = new LinkedHashMap<>();
+        m.put("id", r.getId());
+        m.put("type", r.getActionType());
+        m.put("room", r.getRoom());
+        m.put("actor", r.getActorUserId());
+        if (r.getRecipientUserId() != null) m.put("recipient", r.getRecipientUserId());
+        m.put("server", r.isServerGenerated());
+        m.put("created", r.getCreatedAt());
+        if (r.getContent() != null) m.put("content", r.getContent());
+        if (r.getFilename() != null) {
+            m.put("filename", r.getFilename());
+            m.put("mimetype", r.getMimetype());
+            m.put("size", r.getSize());
+            m.put("data", r.getData() != null ? Base64.getEncoder().encodeToString(r.getData()) : "");
+        }
+        return m;
+    }
+
+    private static ActionRow fromJson(JsonObject o) {
+        String data = str(o, "data");
+        return new ActionRow(o.get("id").getAsLong(), str(o, "type"), str(o, "room"),
+                o.has("actor") && !o.get("actor").isJsonNull() ? o.get("actor").getAsInt() : null,
+                o.has("recipient") && !o.get("recipient").isJsonNull() ? o.get("recipient").getAsInt() : null,
+                o.has("server") && o.get("server").getAsBoolean(), o.get("created").getAsLong(),
+                str(o, "content"), str(o, "filename"), str(o, "mimetype"),
+                o.has("size") ? o.get("size").getAsLong() : 0L,
+                data != null ? Base64.getDecoder().decode(data) : null);
+    }
+
+    private static String str(JsonObject o, String k) {
+        return o.has(k) && !o.get(k).isJsonNull() ? o.get(k).getAsString() : null;
+    }
+
+    /** [idMin, idMax, tsMin, tsMax, sufijo] o null si el nombre no corresponde a un segmento. */
+    private static long[] parseName(Path p) {
+        String n = p.getFileName().toString();
+        if (!n.startsWith(PREFIX) || !n.endsWith(SUFFIX)) return null;
+        String[] parts = n.substring(PREFIX.length(), n.length() - SUFFIX.length()).split("-");
+        if (parts.length != 4 && parts.length != 5) return null; // el 5to es el sufijo de desambiguación
+        try {
+            return new long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                    Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                    parts.length == 5 ? Long.parseLong(parts[4]) : 0L };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package server.retention;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import server.dao.RetentionDAO;
+import server.model.ActionRow;
+import server.service.AuditService;
+
+/**
+ * RetentionJob - Tarea periódica de retención sobre 'actions'.
+ *
+ * Por cada action_type con retención &gt; 0 días: selecciona lotes pequeños de filas expiradas,
+ * los escribe en el {@link ArchiveStore} (fsync) y recién entonces los borra de la BD.
+ * Entre lotes se hace una pausa y cada ejecución tiene un tope de filas, para no competir
+ * con el tráfico del chat.
+ *
+ * Con particionado habilitado (ver documentación/database/partition_actions.sql) además:
+ * crea por adelantado las particiones mensuales futuras y, cuando una partición solo contiene
+ * filas expiradas, la archiva por lotes (borrando cada lote) y la elimina con DROP PARTITION.
+ *
+ * Tras borrar cada lote se avisa a los listeners de purga con sus ids (p.ej. el spool de
+ * adjuntos descarta su copia en disco y los metadatos cacheados).
+ */
+public final class RetentionJob {
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final int FUTURE_PARTITION_MONTHS = 2;
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final RetentionDAO dao;
+    private final ArchiveStore archive;
+    private final AuditService audit;
+    private final Map<String,Integer> retentionDays;
+    private final int batchSize;
+    private final int pauseMs;
+    private final int maxRowsPerRun;
+    private final boolean partitioning;
+    private final List<Consumer<List<Long>>> purgeListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "retention-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RetentionJob(RetentionDAO dao, ArchiveStore archive, AuditService audit, Map<String,Integer> retentionDays,
+                        int batchSize, int pauseMs, int maxRowsPerRun, boolean partitioning) {
+        this.dao = dao;
+        this.archive = archive;
+        this.audit = audit;
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+        this.maxRowsPerRun = maxRowsPerRun;
+        this.partitioning = partitioning;
+    }
+
+    /** Recibe los ids de cada lote ya borrado de la BD, en el hilo de la retención. */
+    public void addPurgeListener(Consumer<List<Long>> listener) {
+        purgeListeners.add(listener);
+    }
+
+    public void start(int intervalMinutes) {
+        scheduler.scheduleWithFixedDelay(this::runSafely, 1, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void runSafely() {
+        try {
+            int archived = runOnce();
+            if (archived > 0) audit.recordSystem("Retención: " + archived + " acciones archivadas");
+        } catch (RuntimeException e) {
+            System.err.println("Error en job de retención: " + e.getMessage());
+        }
+    }
+
+    /** Ejecuta una pasada completa. Devuelve la cantidad de filas archivadas. */
+    public int runOnce() {
+        int budget = maxRowsPerRun;
+        if (partitioning && dao.isActionsPartitioned()) {
+            ensureFuturePartitions();
+            budget -= dropExpiredPartitions(budget);
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String,Integer> e : retentionDays.entrySet()) {
+            if (e.getValue() <= 0 || budget <= 0) continue;
+            Timestamp cutoff = new Timestamp(now - e.getValue() * DAY_MS);
+            while (budget > 0) {
+                List<ActionRow> rows = dao.selectExpired(e.getKey(), cutoff, Math.min(batchSize, budget));
+                if (rows.isEmpty()) break;
+                archiveAndDelete(rows);
+                budget -= rows.size();
+                if (rows.size() < batchSize || !pause()) break;
+            }
+        }
+        return maxRowsPerRun - budget;
+    }
+
+    private void ensureFuturePartitions() {
+        Map<String,Long> parts = dao.listPartitions();
+        String maxName = null;
+        long highest = 0;
+        for (Map.Entry<String,Long> p : parts.entrySet()) {
+            if (p.getValue() == Long.MAX_VALUE) maxName = p.getKey();
+            else highest = Math.max(highest, p.getValue());
+        }
+        if (maxName == null) return; // sin partición MAXVALUE no se puede dividir
+        LocalDate horizon = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1).plusMonths(FUTURE_PARTITION_MONTHS + 1);
+        LocalDate next = highest > 0
+                ? LocalDate.ofEpochDay(Math.floorDiv(highest, 86400L)).withDayOfMonth(1)
+                : LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+        while (!next.isAfter(horizon)) {
+            long upper = next.plusMonths(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            if (upper > highest) {
+                dao.addPartitionBefore(maxName, next.format(PARTITION_NAME), upper);
+                highest = upper;
+            }
+            next = next.plusMonths(1);
+        }
+    }
+
+    /** Archiva y elimina particiones cuyo contenido completo ya expiró. */
+    private int dropExpiredPartitions(int budget) {
+        int archived = 0;
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String,Long> p : dao.listPartitions().entrySet()) {
+            if (p.getValue() == Long.MAX_VALUE) break;
+            long upperMillis = p.getValue() * 1000L;
+            if (upperMillis > now) break; // aún puede recibir filas (p.ej. las futuras recién creadas)
+            boolean expired = true;
+            for (String type : dao.actionTypesIn(p.getKey())) {
+                int days = retentionDays.getOrDefault(type, 0);
+                if (days <= 0 || upperMillis > now - days * DAY_MS) { expired = false; break; }
+            }
+            if (!expired) break; // las particiones siguientes son más recientes
+            // cada lote se borra completo (acción + detalle): si el presupuesto corta la pasada,
+            // la siguiente retoma desde 0 y solo ve lo que aún no se archivó
+            long after = 0;
+            while (true) {
+                if (archived >= budget) return archived;
+                List<ActionRow> rows = dao.selectFromPartition(p.getKey(), after, batchSize);
+                if (rows.isEmpty()) break;
+                archiveAndDelete(rows);
+                after = rows.get(rows.size() - 1).getId();
+                archived += rows.size();
+                if (!pause()) return archived;
+            }
+            dao.dropPartition(p.getKey());
+        }
+        return archived;
+    }
+
+    private void archiveAndDelete(List<ActionRow> rows) {
+        try {
+            archive.write(rows);
+        } catch (IOException e) {
+            throw new RuntimeException("Error escribiendo segmento de archivo", e);
+        }
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (ActionRow r : rows) ids.add(r.getId());
+        dao.deleteByIds(ids);
+        for (Consumer<List<Long>> l : purgeListeners) {
+            try {
+                l.accept(ids);
+            } catch (RuntimeException e) {
+                System.err.println("Retención: listener de purga falló: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean pause() {
+        if (pauseMs <= 0) return true;
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package server.search;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * IndexBuffer - Postings en memoria de los documentos aún no volcados a disco.
+ * No es thread-safe: MessageIndex lo protege con su lock.
+ */
+final class IndexBuffer {
+    private final Map<String, PostingList> terms = new HashMap<>();
+    private int docs;
+    private long minId = Long.MAX_VALUE;
+    private long maxId;
+
+    void add(long actionId, Collection<String> keys) {
+        for (String k : keys) terms.computeIfAbsent(k, x -> new PostingList()).add(actionId);
+        docs++;
+        minId = Math.min(minId, actionId);
+        maxId = Math.max(maxId, actionId);
+    }
+
+    long[] postings(String key) {
+        PostingList pl = terms.get(key);
+        return pl == null ? null : pl.sorted();
+    }
+
+    /** Vista ordenada por término, lista para escribirse como segmento. */
+    TreeMap<String, long[]> snapshot() {
+        TreeMap<String, long[]> out = new TreeMap<>();
+        for (Map.Entry<String, PostingList> e : terms.entrySet()) out.put(e.getKey(), e.getValue().sorted());
+        return out;
+    }
+
+    int docs() { return docs; }
+    long minId() { return docs == 0 ? 0 : minId; }
+    long maxId() { return maxId; }
+}
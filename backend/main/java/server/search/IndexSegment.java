@@ -0,0 +1,381 @@
+package server.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IndexSegment - Segmento inmutable del índice invertido en disco.
+ *
+ * Formato:
+ * <pre>
+ *  header (40 bytes): magic, version, minId, maxId, docCount, termCount, dictOffset
+ *  postings: por término, ids ascendentes codificados como deltas varint
+ *  diccionario: por término (orden lexicográfico) -> len(u16), utf8, offset(u64), bytes(u32), count(u32)
+ * </pre>
+ * En memoria solo se mantiene un término de cada {@link #SPARSE_INTERVAL}; la búsqueda
+ * hace binaria sobre ese índice disperso y lee un único bloque del diccionario.
+ * Las lecturas son posicionales sobre un FileChannel, por lo que son seguras entre hilos.
+ */
+final class IndexSegment implements Closeable {
+    private static final int MAGIC = 0x4D535831; // "MSX1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    private static final int SPARSE_INTERVAL = 32;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long minId;
+    private final long maxId;
+    private final int docCount;
+    private final int termCount;
+    private final long dictOffset;
+    private final long dictEnd;
+    private final String[] sparseTerms;
+    private final long[] sparseOffsets;
+
+    private IndexSegment(Path file, FileChannel channel, long minId, long maxId, int docCount, int termCount,
+                         long dictOffset, long dictEnd, String[] sparseTerms, long[] sparseOffsets) {
+        this.file = file;
+        this.channel = channel;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.docCount = docCount;
+        this.termCount = termCount;
+        this.dictOffset = dictOffset;
+        this.dictEnd = dictEnd;
+        this.sparseTerms = sparseTerms;
+        this.sparseOffsets = sparseOffsets;
+    }
+
+    static IndexSegment open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(ch, h, 0);
+            h.flip();
+            if (h.getInt() != MAGIC || h.getInt() != VERSION) throw new IOException("Segmento inválido: " + file);
+            long minId = h.getLong();
+            long maxId = h.getLong();
+            int docs = h.getInt();
+            int terms = h.getInt();
+            long dictOffset = h.getLong();
+            long dictEnd = ch.size();
+
+            int sparseLen = (terms + SPARSE_INTERVAL - 1) / SPARSE_INTERVAL;
+            String[] sparseTerms = new String[sparseLen];
+            long[] sparseOffsets = new long[sparseLen];
+            try (DataInputStream in = dictionaryStream(file, dictOffset)) {
+                long pos = dictOffset;
+                for (int i = 0; i < terms; i++) {
+                    int len = in.readUnsignedShort();
+                    byte[] tb = new byte[len];
+                    in.readFully(tb);
+                    in.skipBytes(16);
+                    if (i % SPARSE_INTERVAL == 0) {
+                        sparseTerms[i / SPARSE_INTERVAL] = new String(tb, StandardCharsets.UTF_8);
+                        sparseOffsets[i / SPARSE_INTERVAL] = pos;
+                    }
+                    pos += 2 + len + 16;
+                }
+            }
+            return new IndexSegment(file, ch, minId, maxId, docs, terms, dictOffset, dictEnd, sparseTerms, sparseOffsets);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    Path file() { return file; }
+    long minId() { return minId; }
+    long maxId() { return maxId; }
+    int docCount() { return docCount; }
+    long sizeBytes() { return dictEnd; }
+
+    /**
+     * Postings del término con {@code from} &lt;= id &lt; {@code before} (before 0 = sin límite), o null
+     * si no existe. Los deltas se decodifican desde el inicio, pero se corta al llegar a {@code before}.
+     */
+    long[] postings(String term, long from, long before) throws IOException {
+        if ((before > 0 && minId >= before) || maxId < from) return null;
+        int idx = Arrays.binarySearch(sparseTerms, term);
+        if (idx < 0) idx = -idx - 2;
+        if (idx < 0) return null;
+        long start = sparseOffsets[idx];
+        long to = (idx + 1 < sparseOffsets.length) ? sparseOffsets[idx + 1] : dictEnd;
+        ByteBuffer block = ByteBuffer.allocate((int) (to - start));
+        readFully(channel, block, start);
+        block.flip();
+        byte[] target = term.getBytes(StandardCharsets.UTF_8);
+        while (block.hasRemaining()) {
+            int len = Short.toUnsignedInt(block.getShort());
+            boolean match = len == target.length;
+            if (match) {
+                for (int i = 0; i < len; i++) {
+                    if (block.get(block.position() + i) != target[i]) { match = false; break; }
+                }
+            }
+            block.position(block.position() + len);
+            long offset = block.getLong();
+            int bytes = block.getInt();
+            int count = block.getInt();
+            if (match) return decode(offset, bytes, count, from, before);
+        }
+        return null;
+    }
+
+    private long[] decode(long offset, int bytes, int count, long from, long before) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(bytes);
+        readFully(channel, buf, offset);
+        buf.flip();
+        long[] out = new long[count];
+        int n = 0;
+        long prev = 0;
+        for (int i = 0; i < count; i++) {
+            prev += readVarLong(buf);
+            if (before > 0 && prev >= before) break;
+            if (prev >= from) out[n++] = prev;
+        }
+        return n == count ? out : Arrays.copyOf(out, n);
+    }
+
+    /** Recorre el diccionario completo en orden (usado por el merge). */
+    TermCursor cursor() throws IOException {
+        return new TermCursor(this);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static DataInputStream dictionaryStream(Path file, long dictOffset) throws IOException {
+        InputStream raw = Files.newInputStream(file);
+        long skipped = 0;
+        while (skipped < dictOffset) {
+            long s = raw.skip(dictOffset - skipped);
+            if (s <= 0) { raw.close(); throw new EOFException("Segmento truncado: " + file); }
+            skipped += s;
+        }
+        return new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long pos) throws IOException {
+        while (dst.hasRemaining()) {
+            int r = ch.read(dst, pos);
+            if (r < 0) throw new EOFException();
+            pos += r;
+        }
+    }
+
+    private static long readVarLong(ByteBuffer buf) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    /** Cursor secuencial sobre términos y postings de un segmento. */
+    static final class TermCursor implements Closeable {
+        private final IndexSegment segment;
+        private final DataInputStream in;
+        private int remaining;
+        private String term;
+        private long offset;
+        private int bytes;
+        private int count;
+
+        private TermCursor(IndexSegment segment) throws IOException {
+            this.segment = segment;
+            this.in = dictionaryStream(segment.file, segment.dictOffset);
+            this.remaining = segment.termCount;
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) { term = null; return false; }
+            remaining--;
+            byte[] tb = new byte[in.readUnsignedShort()];
+            in.readFully(tb);
+            term = new String(tb, StandardCharsets.UTF_8);
+            offset = in.readLong();
+            bytes = in.readInt();
+            count = in.readInt();
+            return true;
+        }
+
+        String term() { return term; }
+
+        long[] postings() throws IOException { return segment.decode(offset, bytes, count, 0, 0); }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+
+    /**
+     * Escribe un segmento nuevo. Los términos deben agregarse en orden lexicográfico.
+     * Se escribe sobre un archivo temporal y se publica con un move atómico en {@link #finish}.
+     */
+    static final class Writer implements Closeable {
+        private final Path target;
+        private final Path tmp;
+        private final Path dictTmp;
+        private final FileChannel channel;
+        private final DataOutputStream postingsOut;
+        private final DataOutputStream dictOut;
+        private final ByteBuffer scratch = ByteBuffer.allocate(10);
+        private long position = HEADER_BYTES;
+        private int terms;
+        private boolean done;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.dictTmp = target.resolveSibling(target.getFileName() + ".dict.tmp");
+            this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.channel.position(HEADER_BYTES);
+            this.postingsOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            this.dictOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dictTmp), 1 << 16));
+        }
+
+        void add(String term, long[] sortedIds) throws IOException {
+            if (sortedIds.length == 0) return;
+            byte[] tb = term.getBytes(StandardCharsets.UTF_8);
+            if (tb.length > 0xFFFF) return;
+            long start = position;
+            long prev = 0;
+            for (long id : sortedIds) {
+                writeVarLong(id - prev);
+                prev = id;
+            }
+            dictOut.writeShort(tb.length);
+            dictOut.write(tb);
+            dictOut.writeLong(start);
+            dictOut.writeInt((int) (position - start));
+            dictOut.writeInt(sortedIds.length);
+            terms++;
+        }
+
+        private void writeVarLong(long v) throws IOException {
+            scratch.clear();
+            while ((v & ~0x7FL) != 0) {
+                scratch.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            scratch.put((byte) v);
+            postingsOut.write(scratch.array(), 0, scratch.position());
+            position += scratch.position();
+        }
+
+        IndexSegment finish(long minId, long maxId, int docCount) throws IOException {
+            postingsOut.flush();
+            dictOut.close();
+            long dictOffset = position;
+            try (FileChannel dict = FileChannel.open(dictTmp, StandardOpenOption.READ)) {
+                long size = dict.size();
+                long copied = 0;
+                while (copied < size) copied += dict.transferTo(copied, size - copied, channel);
+            }
+            ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES);
+            h.putInt(MAGIC).putInt(VERSION).putLong(minId).putLong(maxId)
+             .putInt(docCount).putInt(terms).putLong(dictOffset);
+            h.flip();
+            while (h.hasRemaining()) channel.write(h, HEADER_BYTES - h.remaining());
+            channel.force(true);
+            channel.close();
+            Files.deleteIfExists(dictTmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            done = true;
+            return IndexSegment.open(target);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (done) return;
+            try { dictOut.close(); } catch (IOException ignored) { }
+            channel.close();
+            Files.deleteIfExists(dictTmp);
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Escribe un segmento a partir de postings ya ordenados por término. */
+    static IndexSegment write(Path target, Map<String, long[]> sortedTerms, long minId, long maxId, int docs) throws IOException {
+        try (Writer w = new Writer(target)) {
+            for (Map.Entry<String, long[]> e : sortedTerms.entrySet()) w.add(e.getKey(), e.getValue());
+            return w.finish(minId, maxId, docs);
+        }
+    }
+
+    /** Fusiona varios segmentos en uno nuevo (k-way merge por término). */
+    static IndexSegment merge(Path target, List<IndexSegment> inputs) throws IOException {
+        long minId = Long.MAX_VALUE, maxId = 0;
+        int docs = 0;
+        List<TermCursor> cursors = new ArrayList<>();
+        try (Writer w = new Writer(target)) {
+            for (IndexSegment s : inputs) {
+                minId = Math.min(minId, s.minId);
+                maxId = Math.max(maxId, s.maxId);
+                docs += s.docCount;
+                TermCursor c = s.cursor();
+                cursors.add(c);
+                c.next();
+            }
+            while (true) {
+                String smallest = null;
+                for (TermCursor c : cursors) {
+                    if (c.term() != null && (smallest == null || c.term().compareTo(smallest) < 0)) smallest = c.term();
+                }
+                if (smallest == null) break;
+                long[] merged = new long[0];
+                for (TermCursor c : cursors) {
+                    if (smallest.equals(c.term())) {
+                        merged = union(merged, c.postings());
+                        c.next();
+                    }
+                }
+                w.add(smallest, merged);
+            }
+            return w.finish(minId == Long.MAX_VALUE ? 0 : minId, maxId, docs);
+        } finally {
+            for (TermCursor c : cursors) c.close();
+        }
+    }
+
+    /** Unión ordenada y sin duplicados de dos listas ascendentes. */
+    static long[] union(long[] a, long[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        long[] out = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            long v;
+            if (j >= b.length || (i < a.length && a[i] <= b[j])) v = a[i++];
+            else v = b[j++];
+            if (n == 0 || out[n - 1] != v) out[n++] = v;
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,346 @@
+package server.search;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import server.dao.ActionDAO;
+import server.model.HistoryRecord;
+
+/**
+ * MessageIndex - Índice invertido incremental de mensajes de texto, por sala.
+ *
+ * - Los mensajes nuevos se agregan a un buffer en memoria acotado (N documentos).
+ * - Al llenarse, el buffer se congela y se vuelca en segundo plano a un segmento inmutable
+ *   en disco ({@link IndexSegment}); cuando hay demasiados segmentos se fusionan los más pequeños.
+ * - Al reiniciar se cargan los segmentos existentes y solo se reindexa lo posterior a la marca
+ *   contigua persistida en {@code watermark}: todo id menor o igual ya está en un segmento, aunque
+ *   haya llegado tarde o fuera de orden (ver {@link #catchUp(ActionDAO)}).
+ * - Las consultas son AND de términos y se paginan hacia atrás con el cursor {@code before}:
+ *   se recorren las fuentes (buffers y segmentos) de la más reciente a la más antigua y se
+ *   deja de leer en cuanto la página está completa.
+ */
+public final class MessageIndex {
+    private static final char ROOM_SEPARATOR = '\u0001';
+    private static final int MERGE_THRESHOLD = 10;
+    private static final int MAX_QUERY_TERMS = 8;
+    private static final int CATCH_UP_BATCH = 1000;
+    private static final String WATERMARK_FILE = "watermark";
+
+    private final Path dir;
+    private final int bufferDocs;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "search-index");
+        t.setDaemon(true);
+        return t;
+    });
+    private IndexBuffer active = new IndexBuffer();
+    private final List<IndexBuffer> pending = new ArrayList<>();
+    private final List<IndexSegment> segments = new ArrayList<>();
+    private long generation;
+    private volatile long highWater;
+    private volatile long watermark;   // contigua y en disco: todo id <= watermark está en un segmento
+    private long fed;                  // hasta aquí llegaron a add() todos los ids (bajo el lock)
+    private boolean caughtUp;          // catchUp terminó: desde ahí add() recibe todo lo persistido
+
+    private MessageIndex(Path dir, int bufferDocs) {
+        this.dir = dir;
+        this.bufferDocs = bufferDocs;
+    }
+
+    /** Abre (o crea) el índice en {@code dir}, cargando los segmentos ya persistidos. */
+    public static MessageIndex open(Path dir, int bufferDocs) {
+        MessageIndex idx = new MessageIndex(dir, bufferDocs);
+        try {
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    String name = p.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        Files.deleteIfExists(p); // restos de un volcado interrumpido
+                    } else if (name.startsWith("seg-") && name.endsWith(".idx")) {
+                        IndexSegment s = IndexSegment.open(p);
+                        idx.segments.add(s);
+                        idx.highWater = Math.max(idx.highWater, s.maxId());
+                        idx.generation = Math.max(idx.generation, parseGeneration(name));
+                    }
+                }
+            }
+            // sin marca (índices anteriores) se reindexa todo: los duplicados se descartan al consultar
+            Path wm = dir.resolve(WATERMARK_FILE);
+            if (Files.exists(wm)) idx.watermark = Long.parseLong(Files.readString(wm, StandardCharsets.US_ASCII).trim());
+            idx.fed = idx.watermark;
+        } catch (IOException | NumberFormatException e) {
+            throw new RuntimeException("Error abriendo índice de búsqueda en " + dir, e);
+        }
+        return idx;
+    }
+
+    /** Mayor id de acción indexado (en disco o en memoria). */
+    public long highWaterMark() { return highWater; }
+
+    /** Marca contigua persistida: desde aquí reindexa {@link #catchUp(ActionDAO)} al reiniciar. */
+    public long watermark() { return watermark; }
+
+    /** Indexa un mensaje de texto ya persistido. */
+    public void add(long actionId, String room, String content) {
+        Set<String> tokens = Tokenizer.tokens(content);
+        if (tokens.isEmpty()) return;
+        List<String> keys = new ArrayList<>(tokens.size());
+        for (String t : tokens) keys.add(key(room, t));
+        IndexBuffer toFlush = null;
+        lock.writeLock().lock();
+        try {
+            active.add(actionId, keys);
+            if (actionId > highWater) highWater = actionId;
+            if (caughtUp && actionId > fed) fed = actionId;
+            if (active.docs() >= bufferDocs) {
+                toFlush = active;
+                pending.add(toFlush);
+                active = new IndexBuffer();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (toFlush != null) {
+            IndexBuffer b = toFlush;
+            background.submit(() -> flush(b));
+        }
+    }
+
+    /**
+     * Busca mensajes de la sala que contengan todos los términos de {@code query}.
+     * @param before cursor exclusivo (id de acción); 0 para empezar por lo más reciente
+     * @param limit tamaño de página
+     */
+    public SearchPage search(String room, String query, long before, int limit) {
+        List<String> terms = new ArrayList<>(Tokenizer.tokens(query));
+        if (terms.isEmpty() || limit <= 0) return SearchPage.empty();
+        if (terms.size() > MAX_QUERY_TERMS) terms = terms.subList(0, MAX_QUERY_TERMS);
+        List<String> keys = new ArrayList<>(terms.size());
+        for (String t : terms) keys.add(key(room, t));
+        List<Long> ids = new ArrayList<>(limit + 1);
+        lock.readLock().lock();
+        try {
+            List<Source> sources = sources(before);
+            long cursor = before > 0 ? before : Long.MAX_VALUE;
+            int i = 0;
+            // uno más que la página, para saber si hay siguiente
+            while (i < sources.size() && ids.size() <= limit) {
+                // grupo: la fuente más reciente y las que se solapan con ella; por debajo de 'lo'
+                // ninguna otra fuente tiene ids, así que los aciertos en [lo, cursor) son definitivos
+                long lo = sources.get(i).minId;
+                int j = i + 1;
+                while (j < sources.size() && sources.get(j).maxId >= lo) lo = Math.min(lo, sources.get(j++).minId);
+                long[] hits = hits(sources.subList(i, j), keys, lo, cursor);
+                for (int k = hits.length - 1; k >= 0 && ids.size() <= limit; k--) ids.add(hits[k]);
+                cursor = lo;
+                i = j;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error leyendo índice de búsqueda", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (ids.size() <= limit) return new SearchPage(ids, 0L);
+        return new SearchPage(new ArrayList<>(ids.subList(0, limit)), ids.get(limit - 1));
+    }
+
+    /**
+     * Reindexa los mensajes de texto posteriores al high-water mark persistido.
+     * Pensado para ejecutarse en segundo plano al iniciar el servidor.
+     */
+    public void catchUp(ActionDAO actionDAO) {
+        long after = watermark;
+        while (true) {
+            List<HistoryRecord> batch = actionDAO.getTextRecordsAfter(after, CATCH_UP_BATCH);
+            for (HistoryRecord hr : batch) {
+                add(hr.getId(), hr.getRoom(), hr.getContent());
+                after = hr.getId();
+            }
+            lock.writeLock().lock();
+            try {
+                if (after > fed) fed = after;
+                // lo que se persista desde ahora llega por add(); lo agregado en paralelo ya cuenta
+                if (batch.size() < CATCH_UP_BATCH) {
+                    caughtUp = true;
+                    fed = Math.max(fed, highWater);
+                    return;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /** Vuelca el buffer en memoria y libera los segmentos (apagado ordenado). */
+    public void close() {
+        IndexBuffer last;
+        lock.writeLock().lock();
+        try {
+            last = active;
+            active = new IndexBuffer();
+            if (last.docs() > 0) pending.add(last);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (last.docs() > 0) background.submit(() -> flush(last));
+        background.shutdown();
+        try {
+            background.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            for (IndexSegment s : segments) closeQuietly(s);
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Buffers y segmentos con ids menores que {@code before}, del mayor maxId al menor. */
+    private List<Source> sources(long before) {
+        List<Source> out = new ArrayList<>(segments.size() + pending.size() + 1);
+        if (active.docs() > 0) out.add(new Source(active, null, active.minId(), active.maxId()));
+        for (IndexBuffer b : pending) out.add(new Source(b, null, b.minId(), b.maxId()));
+        for (IndexSegment s : segments) out.add(new Source(null, s, s.minId(), s.maxId()));
+        if (before > 0) out.removeIf(src -> src.minId >= before);
+        out.sort(Comparator.comparingLong((Source src) -> src.maxId).reversed());
+        return out;
+    }
+
+    /** Ids en [from, before) que contienen todas las claves, según las fuentes dadas. */
+    private static long[] hits(List<Source> group, List<String> keys, long from, long before) throws IOException {
+        List<long[]> lists = new ArrayList<>(keys.size());
+        for (String k : keys) {
+            long[] acc = new long[0];
+            for (Source src : group) acc = IndexSegment.union(acc, src.postings(k, from, before));
+            if (acc.length == 0) return acc;
+            lists.add(acc);
+        }
+        lists.sort(Comparator.comparingInt(a -> a.length));
+        long[] hits = lists.get(0);
+        for (int i = 1; i < lists.size() && hits.length > 0; i++) hits = intersect(hits, lists.get(i));
+        return hits;
+    }
+
+    private void flush(IndexBuffer buffer) {
+        try {
+            IndexSegment seg = IndexSegment.write(nextSegmentPath(), buffer.snapshot(),
+                    buffer.minId(), buffer.maxId(), buffer.docs());
+            long mark;
+            lock.writeLock().lock();
+            try {
+                segments.add(seg);
+                pending.remove(buffer);
+                mark = fed;
+                if (active.docs() > 0) mark = Math.min(mark, active.minId() - 1);
+                for (IndexBuffer b : pending) mark = Math.min(mark, b.minId() - 1);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (mark > watermark) writeWatermark(mark);
+            maybeMerge();
+        } catch (IOException e) {
+            // el buffer queda en 'pending' y sigue siendo consultable; se reintenta en el próximo volcado
+            System.err.println("No se pudo volcar segmento de búsqueda: " + e.getMessage());
+        }
+    }
+
+    private void maybeMerge() throws IOException {
+        List<IndexSegment> victims;
+        lock.readLock().lock();
+        try {
+            if (segments.size() < MERGE_THRESHOLD) return;
+            victims = new ArrayList<>(segments);
+        } finally {
+            lock.readLock().unlock();
+        }
+        victims.sort(Comparator.comparingLong(IndexSegment::sizeBytes));
+        victims = victims.subList(0, MERGE_THRESHOLD);
+        IndexSegment merged = IndexSegment.merge(nextSegmentPath(), victims);
+        lock.writeLock().lock();
+        try {
+            segments.removeAll(victims);
+            segments.add(merged);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (IndexSegment s : victims) {
+            closeQuietly(s);
+            Files.deleteIfExists(s.file());
+        }
+    }
+
+    /** Persiste la marca contigua (solo desde el hilo de volcado, después de publicar el segmento). */
+    private void writeWatermark(long mark) throws IOException {
+        Path tmp = dir.resolve(WATERMARK_FILE + ".tmp");
+        Files.writeString(tmp, Long.toString(mark), StandardCharsets.US_ASCII);
+        Files.move(tmp, dir.resolve(WATERMARK_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        watermark = mark;
+    }
+
+    private synchronized Path nextSegmentPath() {
+        return dir.resolve(String.format("seg-%016d.idx", ++generation));
+    }
+
+    private static long[] filter(long[] sorted, long from, long before) {
+        if (sorted == null) return new long[0];
+        int i = Arrays.binarySearch(sorted, from);
+        int start = i >= 0 ? i : -i - 1;
+        i = Arrays.binarySearch(sorted, before);
+        int end = i >= 0 ? i : -i - 1;
+        return start == 0 && end == sorted.length ? sorted : Arrays.copyOfRange(sorted, start, Math.max(start, end));
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) { out[n++] = a[i]; i++; j++; }
+            else if (a[i] < b[j]) i++;
+            else j++;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static String key(String room, String token) {
+        return (room == null || room.isBlank() ? "global" : room) + ROOM_SEPARATOR + token;
+    }
+
+    private static long parseGeneration(String name) {
+        try {
+            return Long.parseLong(name.substring(4, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static void closeQuietly(IndexSegment s) {
+        try { s.close(); } catch (IOException ignored) { }
+    }
+
+    /** Buffer o segmento con su rango de ids, para recorrerlos del más reciente al más antiguo. */
+    private record Source(IndexBuffer buffer, IndexSegment segment, long minId, long maxId) {
+        long[] postings(String key, long from, long before) throws IOException {
+            if (buffer != null) return filter(buffer.postings(key), from, before);
+            long[] p = segment.postings(key, from, before);
+            return p != null ? p : new long[0];
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package server.search;
+
+import java.util.Arrays;
+
+/**
+ * PostingList - Lista creciente de ids de acción (long primitivo, sin boxing)
+ * usada por el buffer en memoria del índice.
+ */
+final class PostingList {
+    private long[] ids = new long[4];
+    private int size;
+
+    void add(long id) {
+        if (size == ids.length) ids = Arrays.copyOf(ids, size << 1);
+        ids[size++] = id;
+    }
+
+    int size() { return size; }
+
+    /** Copia ordenada ascendente y sin duplicados. */
+    long[] sorted() {
+        long[] copy = Arrays.copyOf(ids, size);
+        Arrays.sort(copy);
+        return dedup(copy, copy.length);
+    }
+
+    static long[] dedup(long[] sorted, int len) {
+        if (len == 0) return new long[0];
+        int w = 1;
+        for (int r = 1; r < len; r++) {
+            if (sorted[r] != sorted[w - 1]) sorted[w++] = sorted[r];
+        }
+        return w == sorted.length ? sorted : Arrays.copyOf(sorted, w);
+    }
+}
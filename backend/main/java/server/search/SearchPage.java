@@ -0,0 +1,24 @@
+package server.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SearchPage - Página de resultados (ids de acción, del más reciente al más antiguo).
+ * {@code nextBefore} es el cursor para pedir la página siguiente; 0 si no hay más.
+ */
+public final class SearchPage {
+    private final List<Long> ids;
+    private final long nextBefore;
+
+    SearchPage(List<Long> ids, long nextBefore) {
+        this.ids = Collections.unmodifiableList(ids);
+        this.nextBefore = nextBefore;
+    }
+
+    static SearchPage empty() { return new SearchPage(List.of(), 0L); }
+
+    public List<Long> getIds() { return ids; }
+    public long getNextBefore() { return nextBefore; }
+    public boolean hasMore() { return nextBefore > 0; }
+}
@@ -0,0 +1,36 @@
+package server.search;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tokenizer - Normaliza texto para el índice: minúsculas, sin tildes,
+ * separación por caracteres no alfanuméricos.
+ */
+final class Tokenizer {
+    private static final int MIN_TOKEN = 2;
+    private static final int MAX_TOKEN = 40;
+
+    private Tokenizer() {}
+
+    static Set<String> tokens(String text) {
+        Set<String> out = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) return out;
+        String norm = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= norm.length(); i++) {
+            boolean word = i < norm.length() && Character.isLetterOrDigit(norm.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                if (i - start >= MIN_TOKEN) out.add(norm.substring(start, Math.min(i, start + MAX_TOKEN)));
+                start = -1;
+            }
+        }
+        return out;
+    }
+}
@@ -1,52 +1,98 @@
 package server.service;
 
-import server.dao.ActionDAO;
+import server.journal.AuditEvent;
+import server.journal.AuditJournal;
+import server.journal.JournalReplayer;
+import server.journal.PersistListener;
+import server.journal.SequenceListener;
+import server.trace.MessageTrace;
+import server.trace.Tracer;
 
 /**
  * AuditService - Servicio de dominio para registrar acciones en BD.
  * Centraliza inserciones en 'actions' y tablas de detalle para evitar duplicidad
  * y mantener una única fuente de verdad.
+ *
+ * Los registros se escriben primero en el journal local ({@link AuditJournal}) y un
+ * {@link JournalReplayer} los lleva a la BD en segundo plano: los handlers nunca esperan
+ * a MySQL. Quien necesite el id generado (índices, previews...) se suscribe con
+ * {@link #addPersistListener(PersistListener)}.
+ * Si el mensaje en curso está muestreado ({@link Tracer#current()}), el append abre su etapa de persistencia.
  */
 public final class AuditService {
-    private final ActionDAO actionDAO = new ActionDAO();
+    private final AuditJournal journal;
+    private final JournalReplayer replayer;
 
-    public long recordSystem(String message) {
-        long id = actionDAO.insertAction("SYSTEM", "global", null, true);
-        actionDAO.insertTextDetails(id, message != null ? message : "");
-        return id;
+    public AuditService(AuditJournal journal, JournalReplayer replayer) {
+        this.journal = journal;
+        this.replayer = replayer;
     }
 
-    public long recordLogin(String username) {
-        Integer uid = actionDAO.getUserIdByUsername(username);
-        return actionDAO.insertAction("LOGIN", "global", uid, false);
+    public void addPersistListener(PersistListener listener) { replayer.addListener(listener); }
+
+    /** Recibe la secuencia que el journal asigna a cada evento (ver {@link SequenceListener}). */
+    public void setSequenceListener(SequenceListener listener) { journal.setSequenceListener(listener); }
+
+    /** Arranca el drenado del journal hacia la BD. */
+    public void start() { replayer.start(); }
+
+    /** Fsync final del journal y drenado (con tope) de lo pendiente. */
+    public void close() {
+        journal.close();
+        replayer.stop(5000);
+    }
+
+    /** Eventos aún no persistidos en BD (encolados + durables sin replay). */
+    public long pending() { return journal.queued() + replayer.backlog(); }
+
+    public void recordSystem(String message) {
+        append("SYSTEM", null, true, message != null ? message : "");
+    }
+
+    public void recordLogin(String username) {
+        append("LOGIN", username, false, null);
+    }
+
+    public void recordLogout(String username) {
+        append("LOGOUT", username, false, null);
+    }
+
+    public void recordText(String username, String content) {
+        append("TEXT", username, false, content != null ? content : "");
+    }
+
+    /** Mensaje directo (DIRECT, sala "direct"): el destinatario viaja en el evento. */
+    public void recordDirect(String from, String to, String content) {
+        append(new AuditEvent("DIRECT", "direct", from, false, System.currentTimeMillis(),
+                content, null, null, 0L, null, to));
+    }
+
+    public void recordVideoJoin(String username) {
+        append("VIDEO_JOIN", username, false, null);
     }
 
-    public long recordLogout(String username) {
-        Integer uid = actionDAO.getUserIdByUsername(username);
-        return actionDAO.insertAction("LOGOUT", "global", uid, false);
+    public void recordVideoLeave(String username) {
+        append("VIDEO_LEAVE", username, false, null);
     }
 
-    public long recordText(String username, String content) {
-        Integer uid = actionDAO.getUserIdByUsername(username);
-        long id = actionDAO.insertAction("TEXT", "global", uid, false);
-        actionDAO.insertTextDetails(id, content != null ? content : "");
-        return id;
+    public void recordFile(String username, String filename, String mimetype, long size, byte[] bytes) {
+        recordFile(username, filename, mimetype, size, bytes, System.currentTimeMillis());
     }
 
-    public long recordVideoJoin(String username) {
-        Integer uid = actionDAO.getUserIdByUsername(username);
-        return actionDAO.insertAction("VIDEO_JOIN", "global", uid, false);
+    /** Como {@link #recordFile(String, String, String, long, byte[])} con el timestamp ya difundido a los clientes. */
+    public void recordFile(String username, String filename, String mimetype, long size, byte[] bytes, long createdAt) {
+        append(new AuditEvent("FILE", "global", username, false, createdAt,
+                null, filename != null ? filename : "", mimetype, size, bytes));
     }
 
-    public long recordVideoLeave(String username) {
-        Integer uid = actionDAO.getUserIdByUsername(username);
-        return actionDAO.insertAction("VIDEO_LEAVE", "global", uid, false);
+    private void append(String type, String username, boolean serverGenerated, String content) {
+        append(new AuditEvent(type, "global", username, serverGenerated, System.currentTimeMillis(),
+                content, null, null, 0L, null));
     }
 
-    public long recordFile(String username, String filename, String mimetype, long size, byte[] bytes) {
-        Integer uid = actionDAO.getUserIdByUsername(username);
-        long id = actionDAO.insertAction("FILE", "global", uid, false);
-        actionDAO.insertFileDetails(id, filename, mimetype, size, bytes);
-        return id;
+    private void append(AuditEvent event) {
+        MessageTrace trace = Tracer.current();
+        if (trace != null) trace.persisting(event);
+        journal.append(event);
     }
 }
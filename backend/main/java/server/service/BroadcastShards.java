@@ -0,0 +1,107 @@
+package server.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+import server.model.User;
+import server.trace.MessageTrace;
+import server.trace.Stage;
+import server.trace.Tracer;
+import server.transport.ClientChannel;
+
+/**
+ * BroadcastShards - Reparte las sesiones en shards, cada uno con su hilo de entrega.
+ *
+ * Un broadcast se encola una vez por shard y el hilo que lo pidió queda libre enseguida; cada
+ * shard recorre solo sus conexiones, en paralelo con los demás. Como cada shard tiene un único
+ * hilo que consume su cola en orden, dos broadcasts llegan en el mismo orden a todas las
+ * conexiones de un shard (y, por lo tanto, a cada conexión).
+ *
+ * Con {@code shards = 0} se entrega en el hilo que llama, recorriendo todas las sesiones (comportamiento anterior).
+ *
+ * Si el mensaje que origina el broadcast está muestreado ({@link Tracer#current()}), se marcan
+ * {@link Stage#ENQUEUE} y {@link Stage#SOCKET_WRITE} hasta el último destinatario.
+ */
+public final class BroadcastShards {
+
+    private static final class Shard {
+        final ConcurrentHashMap<ClientChannel, User> members = new ConcurrentHashMap<>();
+        final ExecutorService delivery;
+
+        Shard(int index) {
+            this.delivery = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "broadcast-" + index);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private final Shard[] shards;
+    private final ConcurrentHashMap<ClientChannel, User> all = new ConcurrentHashMap<>(); // solo sin shards
+
+    public BroadcastShards(int shards) {
+        this.shards = new Shard[Math.max(0, shards)];
+        for (int i = 0; i < this.shards.length; i++) this.shards[i] = new Shard(i);
+    }
+
+    public int shards() { return shards.length; }
+
+    /** Asigna la conexión a su shard (fijo durante toda la conexión). */
+    public void add(ClientChannel conn, User u) {
+        members(conn).put(conn, u);
+    }
+
+    public void remove(ClientChannel conn) {
+        members(conn).remove(conn);
+    }
+
+    /** Entrega {@code payload} a las conexiones abiertas que cumplan {@code accept}. */
+    public void broadcast(String payload, BiPredicate<ClientChannel, User> accept) {
+        MessageTrace trace = Tracer.current();
+        if (trace != null) {
+            long now = System.nanoTime();
+            trace.begin(Stage.ENQUEUE, now);
+            trace.begin(Stage.SOCKET_WRITE, now);
+        }
+        if (shards.length == 0) {
+            deliver(all, payload, accept, trace);
+            return;
+        }
+        for (Shard s : shards) {
+            if (s.members.isEmpty()) continue;
+            s.delivery.execute(() -> deliver(s.members, payload, accept, trace));
+        }
+    }
+
+    /** Deja de aceptar broadcasts y espera a que se vacíen las colas. */
+    public void stop(long timeoutMillis) throws InterruptedException {
+        for (Shard s : shards) s.delivery.shutdown();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Shard s : shards) s.delivery.awaitTermination(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private Map<ClientChannel, User> members(ClientChannel conn) {
+        if (shards.length == 0) return all;
+        return shards[Math.floorMod(System.identityHashCode(conn), shards.length)].members;
+    }
+
+    private static void deliver(Map<ClientChannel, User> members, String payload, BiPredicate<ClientChannel, User> accept,
+                                MessageTrace trace) {
+        for (Map.Entry<ClientChannel, User> e : members.entrySet()) {
+            ClientChannel c = e.getKey();
+            if (!c.isOpen() || !accept.test(c, e.getValue())) continue;
+            try {
+                if (trace == null) c.send(payload);
+                else c.send(payload, () -> trace.end(Stage.SOCKET_WRITE));
+            } catch (RuntimeException ex) {
+                // la conexión se cerró entre isOpen y send: no debe cortar la entrega al resto del shard
+            }
+        }
+        if (trace != null) trace.end(Stage.ENQUEUE);
+    }
+}
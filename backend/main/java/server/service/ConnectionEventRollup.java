@@ -0,0 +1,151 @@
+package server.service;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.Gson;
+
+/**
+ * ConnectionEventRollup - Agrega los eventos de conexión (onOpen/onError) en vez de auditar uno por uno.
+ *
+ * En el hilo del selector solo se incrementan contadores: conexiones, errores por tipo de
+ * excepción y conexiones por subred remota (/24 en IPv4, /48 en IPv6). Cada intervalo se
+ * escribe un único SYSTEM cuyo contenido es un objeto JSON con campos fijos
+ * ({@code kind:"conn_rollup", seconds, connects, errors:{tipo:n}, subnets:{subred:n},
+ * otherSubnets, unsampled}) para poder filtrarlo y agregarlo sin parsear texto libre, y como
+ * muestra se auditan tal cual los primeros
+ * {@code samplesPerInterval} eventos del intervalo. Una ráfaga de reconexiones o un escaneo de
+ * puertos produce así un registro por intervalo en lugar de miles.
+ */
+public final class ConnectionEventRollup {
+    private static final int MAX_KEYS = 1024;     // tope de claves distintas por intervalo
+    private static final int TOP_SUBNETS = 10;    // subredes listadas en el resumen
+    private static final String OTHER = "otras";
+    private static final Gson GSON = new Gson();
+
+    /** Contadores de un intervalo; se reemplazan enteros al hacer flush con un único getAndSet. */
+    private static final class Window {
+        final long startedAt = System.currentTimeMillis();
+        final LongAdder connects = new LongAdder();
+        final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, LongAdder> subnets = new ConcurrentHashMap<>();
+        final AtomicInteger samples = new AtomicInteger();
+        final LongAdder dropped = new LongAdder();
+    }
+
+    private final AuditService audit;
+    private final int samplesPerInterval;
+    private final AtomicReference<Window> window = new AtomicReference<>(new Window());
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "conn-rollup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ConnectionEventRollup(AuditService audit, int samplesPerInterval) {
+        this.audit = audit;
+        this.samplesPerInterval = samplesPerInterval;
+    }
+
+    /** Programa el volcado periódico del resumen. */
+    public void start(int intervalSeconds) {
+        scheduler.scheduleAtFixedRate(this::flush, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Detiene el volcado periódico y escribe el intervalo en curso. */
+    public void stop() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    /** Nueva conexión (sin autenticar todavía). */
+    public void connected(InetSocketAddress remote) {
+        Window w = window.get();
+        w.connects.increment();
+        count(w.subnets, subnetOf(remote));
+        if (sample(w)) audit.recordSystem("Nueva conexión WS: " + remote);
+    }
+
+    /** Error en una conexión concreta. */
+    public void error(InetSocketAddress remote, Exception ex) {
+        Window w = window.get();
+        count(w.errors, ex != null ? ex.getClass().getSimpleName() : "desconocido");
+        if (sample(w)) audit.recordSystem("ERROR - WS error (" + remote + "): " + (ex != null ? ex.getMessage() : ""));
+    }
+
+    /** Escribe el resumen del intervalo actual (si hubo actividad) y empieza uno nuevo. */
+    public void flush() {
+        Map<String, Object> summary = drain();
+        if (summary != null) audit.recordSystem(GSON.toJson(summary));
+    }
+
+    /**
+     * Cambia de intervalo y devuelve el resumen del que termina, o null si no hubo actividad.
+     * Solo el hilo que gana el getAndSet ve la ventana vieja, así que dos flush concurrentes
+     * (el periódico y el de stop) nunca resumen el mismo intervalo dos veces.
+     */
+    Map<String, Object> drain() {
+        Window w = window.getAndSet(new Window());
+        long connects = w.connects.sum();
+        if (connects == 0 && w.errors.isEmpty()) return null;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("kind", "conn_rollup");
+        summary.put("seconds", Math.max(1, (System.currentTimeMillis() - w.startedAt) / 1000));
+        summary.put("connects", connects);
+        summary.put("errors", top(w.errors, Integer.MAX_VALUE));
+        Map<String, Long> subnets = top(w.subnets, TOP_SUBNETS);
+        summary.put("subnets", subnets);
+        summary.put("otherSubnets", w.subnets.size() - subnets.size());
+        summary.put("unsampled", w.dropped.sum());
+        return summary;
+    }
+
+    private boolean sample(Window w) {
+        if (w.samples.getAndIncrement() < samplesPerInterval) return true;
+        w.dropped.increment();
+        return false;
+    }
+
+    private static void count(ConcurrentHashMap<String, LongAdder> map, String key) {
+        LongAdder c = map.get(key);
+        if (c == null) {
+            // cardinalidad acotada: direcciones aleatorias no deben crecer el mapa sin límite
+            c = map.size() < MAX_KEYS ? map.computeIfAbsent(key, k -> new LongAdder())
+                                     : map.computeIfAbsent(OTHER, k -> new LongAdder());
+        }
+        c.increment();
+    }
+
+    /** Las {@code top} claves con más eventos, en orden de cantidad descendente. */
+    private static Map<String, Long> top(Map<String, LongAdder> map, int top) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> e : map.entrySet()) entries.add(Map.entry(e.getKey(), e.getValue().sum()));
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size() && i < top; i++) out.put(entries.get(i).getKey(), entries.get(i).getValue());
+        return out;
+    }
+
+    static String subnetOf(InetSocketAddress remote) {
+        InetAddress addr = remote != null ? remote.getAddress() : null;
+        if (addr == null) return "desconocida";
+        byte[] b = addr.getAddress();
+        if (addr instanceof Inet4Address) {
+            return (b[0] & 0xff) + "." + (b[1] & 0xff) + "." + (b[2] & 0xff) + ".0/24";
+        }
+        return String.format("%x:%x:%x::/48", ((b[0] & 0xff) << 8) | (b[1] & 0xff),
+                ((b[2] & 0xff) << 8) | (b[3] & 0xff), ((b[4] & 0xff) << 8) | (b[5] & 0xff));
+    }
+}
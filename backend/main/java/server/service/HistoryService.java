@@ -0,0 +1,204 @@
+package server.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import server.cache.AttachmentCache;
+import server.cache.HistoryCache;
+import server.dao.ActionDAO;
+import server.journal.AuditEvent;
+import server.model.HistoryRecord;
+import server.model.User;
+
+/**
+ * HistoryService - Historial reciente por sala servido desde memoria ({@link HistoryCache}).
+ * Solo consulta MySQL si la sala aún no está caliente. Los adjuntos grandes se guardan en
+ * la caché sin su Base64 y se completan por id al servirlos, pasando por {@link AttachmentCache}.
+ */
+public final class HistoryService {
+    private static final int INLINE_MAX_CHARS = 256 * 1024;
+    private static final int INLINE_MAX_BYTES = INLINE_MAX_CHARS / 4 * 3;
+    private static final int DIRECT_HISTORY_LIMIT = 50;
+
+    private final ActionDAO actionDAO;
+    private final HistoryCache cache;
+    private final AttachmentCache attachments;
+    // mayor id de TEXT/FILE/DIRECT persistido en esta ejecución (posición "vista" al desconectarse)
+    private final AtomicLong persistedHigh = new AtomicLong();
+
+    /**
+     * Historial para enviar al autenticarse: lo posterior a la última posición vista, cuántos ya vistos
+     * se omitieron y cuántos sin ver quedaron fuera de la ventana reciente.
+     */
+    public static final class CatchUp {
+        private final List<HistoryRecord> items;
+        private final int older;
+        private final int unsent;
+
+        CatchUp(List<HistoryRecord> items, int older, int unsent) {
+            this.items = items;
+            this.older = older;
+            this.unsent = unsent;
+        }
+
+        public List<HistoryRecord> getItems() { return items; }
+        /** Mensajes anteriores a la última posición vista que no se enviaron. */
+        public int getOlder() { return older; }
+        /** Mensajes posteriores a la última posición vista pero más antiguos que la ventana enviada. */
+        public int getUnsent() { return unsent; }
+    }
+
+    public HistoryService(ActionDAO actionDAO, HistoryCache cache, AttachmentCache attachments) {
+        this.actionDAO = actionDAO;
+        this.cache = cache;
+        this.attachments = attachments;
+    }
+
+    public HistoryCache cache() { return cache; }
+    public AttachmentCache attachments() { return attachments; }
+
+    /** Adjunto completo (original en Base64) por id, desde la caché de adjuntos o la BD; null si no existe. */
+    public HistoryRecord fileRecord(long actionId) {
+        return attachments.fileRecord(actionId, actionDAO::getFileRecord);
+    }
+
+    /** Mensaje {@code file_data} del adjunto en UTF-8, listo para enviar; null si no existe. */
+    public ByteBuffer fileFrame(long actionId) {
+        return attachments.fileFrame(actionId, actionDAO::getFileRecord);
+    }
+
+    /** Últimos eventos de la sala listos para enviar al cliente. */
+    public List<HistoryRecord> recent(String room) {
+        List<HistoryRecord> cached = cache.recent(room);
+        if (cached == null) {
+            try {
+                return reload(room);
+            } catch (RuntimeException e) {
+                // BD no disponible y sin snapshot: historial vacío, la sala sigue fría
+                System.err.println("Historial no disponible para '" + room + "': " + e.getMessage());
+                return new ArrayList<>();
+            }
+        }
+        List<HistoryRecord> out = new ArrayList<>(cached.size());
+        for (HistoryRecord hr : cached) {
+            if ("file".equals(hr.getType()) && hr.getDataBase64() == null && hr.getPreviewBase64() == null) {
+                HistoryRecord full = fileRecord(hr.getId());
+                if (full != null) out.add(full);
+            } else {
+                out.add(hr);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Historial inicial de un usuario: la sala global más sus mensajes directos recientes,
+     * intercalados por id.
+     */
+    public List<HistoryRecord> forUser(User user) {
+        return merge(recent("global"), directs(user));
+    }
+
+    /**
+     * Historial inicial incremental: solo lo posterior a {@code lastSeen} (0 = sin registro, se envía todo).
+     * Lo anterior se resume en {@link CatchUp#getOlder()}. Si el usuario estuvo fuera más de lo que cubre
+     * la ventana (sala o directos), los mensajes sin ver que quedaron antes de ella se cuentan en la BD
+     * y se informan en {@link CatchUp#getUnsent()}.
+     */
+    public CatchUp catchUp(User user, long lastSeen) {
+        List<HistoryRecord> room = recent("global");
+        List<HistoryRecord> direct = directs(user);
+        List<HistoryRecord> all = merge(room, direct);
+        if (lastSeen <= 0) return new CatchUp(all, 0, 0);
+        List<HistoryRecord> newer = new ArrayList<>();
+        for (HistoryRecord hr : all) if (hr.getId() > lastSeen) newer.add(hr);
+        return new CatchUp(newer, all.size() - newer.size(), unsent(user, lastSeen, room, direct));
+    }
+
+    /** Sin ver anteriores a la ventana; solo consulta la BD si la ventana está llena y no llega a {@code lastSeen}. */
+    private int unsent(User user, long lastSeen, List<HistoryRecord> room, List<HistoryRecord> direct) {
+        int n = 0;
+        try {
+            if (!room.isEmpty() && room.size() >= cache.capacity() && room.get(0).getId() > lastSeen + 1) {
+                n += actionDAO.countHistoryBetween("global", lastSeen, room.get(0).getId());
+            }
+            if (!direct.isEmpty() && direct.size() >= DIRECT_HISTORY_LIMIT && direct.get(0).getId() > lastSeen + 1) {
+                n += actionDAO.countDirectBetween(user.getId(), lastSeen, direct.get(0).getId());
+            }
+        } catch (RuntimeException e) {
+            System.err.println("No se pudo contar el historial sin ver de '" + user.getUsername() + "': " + e.getMessage());
+        }
+        return n;
+    }
+
+    private List<HistoryRecord> directs(User user) {
+        try {
+            return actionDAO.getDirectHistory(user.getId(), DIRECT_HISTORY_LIMIT);
+        } catch (RuntimeException e) {
+            System.err.println("Mensajes directos no disponibles para '" + user.getUsername() + "': " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private static List<HistoryRecord> merge(List<HistoryRecord> room, List<HistoryRecord> direct) {
+        List<HistoryRecord> out = new ArrayList<>(room.size() + direct.size());
+        out.addAll(room);
+        out.addAll(direct);
+        out.sort(Comparator.comparingLong(HistoryRecord::getId));
+        return out;
+    }
+
+    /** Registra el id de un TEXT/FILE/DIRECT recién persistido. */
+    public void notePersisted(long actionId) {
+        persistedHigh.accumulateAndGet(actionId, Math::max);
+    }
+
+    /**
+     * Posición actual del historial: lo que un usuario conectado ya recibió al desconectarse.
+     * Tras un reinicio sin mensajes nuevos se toma de la sala global en caché.
+     */
+    public long position() {
+        return Math.max(persistedHigh.get(), cache.maxId("global"));
+    }
+
+    /** Recarga la sala desde la BD y la deja caliente (propaga el error si la BD falla). */
+    public List<HistoryRecord> reload(String room) {
+        List<HistoryRecord> fromDb = actionDAO.getRecentHistory(room, cache.capacity());
+        List<HistoryRecord> slim = new ArrayList<>(fromDb.size());
+        for (HistoryRecord hr : fromDb) slim.add(slim(hr));
+        cache.replace(room, slim);
+        return fromDb;
+    }
+
+    /** Agrega un evento recién persistido. */
+    public void append(HistoryRecord record) {
+        cache.append(slim(record));
+    }
+
+    /** Agrega un TEXT o FILE (imagen sin miniatura incluida) desde su evento de auditoría ya persistido. */
+    public void appendPersisted(AuditEvent event, long actionId) {
+        if ("TEXT".equals(event.getActionType())) {
+            cache.append(HistoryRecord.text(actionId, event.getRoom(), event.getUsername(), event.getContent(), event.getCreatedAt()));
+        } else if ("FILE".equals(event.getActionType())) {
+            byte[] data = event.getData();
+            String b64 = (data != null && data.length <= INLINE_MAX_BYTES) ? Base64.getEncoder().encodeToString(data) : null;
+            cache.append(HistoryRecord.file(actionId, event.getRoom(), event.getUsername(), event.getFilename(),
+                    event.getMimetype(), event.getSize(), b64, event.getCreatedAt()));
+        }
+    }
+
+    /** Guarda los bytes de un FILE recién persistido: los pedidos de los próximos segundos no van a la BD. */
+    public void cacheAttachment(AuditEvent event, long actionId) {
+        attachments.putRaw(HistoryRecord.file(actionId, event.getRoom(), event.getUsername(), event.getFilename(),
+                event.getMimetype(), event.getSize(), null, event.getCreatedAt()), event.getData());
+    }
+
+    private static HistoryRecord slim(HistoryRecord hr) {
+        String data = hr.getDataBase64();
+        return (data != null && data.length() > INLINE_MAX_CHARS) ? hr.withoutData() : hr;
+    }
+}
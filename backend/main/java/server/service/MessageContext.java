@@ -1,52 +1,157 @@
 package server.service;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
-import org.java_websocket.WebSocket;
-
 import com.google.gson.Gson;
 
+import server.cache.WarmState;
 import server.dao.ActionDAO;
 import server.dao.UserDAO;
+import server.http.FileTokens;
+import server.lanes.BulkOutbound;
+import server.model.HistoryRecord;
 import server.model.User;
+import server.retention.ArchiveStore;
+import server.search.MessageIndex;
+import server.signaling.SignalingRelay;
+import server.trace.Tracer;
+import server.transport.ClientChannel;
 
 /**
  * MessageContext: provee acceso controlado a estado y servicios del servidor
  * para los handlers. Respeta SRP al separar los detalles de infraestructura
- * (maps, DAOs, logger) del WebSocketServer.
+ * (maps, DAOs, logger) del servidor.
  */
 public final class MessageContext {
-    private final ConcurrentHashMap<WebSocket, User> sessions;
-    private final ConcurrentHashMap<String, WebSocket> videoRoomUsers;
+    private final ConcurrentHashMap<ClientChannel, User> sessions;
+    private final ConcurrentHashMap<String, ClientChannel> videoRoomUsers;
+    // Índice inverso username -> conexiones (varios dispositivos por usuario)
+    private final ConcurrentHashMap<String, Set<ClientChannel>> connectionsByUser = new ConcurrentHashMap<>();
     private final UserDAO userDAO;
     private final ActionDAO actionDAO;
     private final AuditService auditService;
+    private final MessageIndex searchIndex;
+    private final HistoryService history;
+    private final WarmState warm;
+    private final FileTokens fileTokens;
+    private final ArchiveStore archive;
+    private final SignalingRelay signaling;
+    private final BroadcastShards broadcasts;
+    private final BulkOutbound bulk;
+    private final Tracer tracer;
     private final Gson gson;
 
-    public MessageContext(ConcurrentHashMap<WebSocket, User> sessions,
-                          ConcurrentHashMap<String, WebSocket> videoRoomUsers,
+    public MessageContext(ConcurrentHashMap<ClientChannel, User> sessions,
+                          ConcurrentHashMap<String, ClientChannel> videoRoomUsers,
                           UserDAO userDAO,
                           ActionDAO actionDAO,
                           AuditService auditService,
+                          MessageIndex searchIndex,
+                          HistoryService history,
+                          WarmState warm,
+                          FileTokens fileTokens,
+                          ArchiveStore archive,
+                          SignalingRelay signaling,
+                          BroadcastShards broadcasts,
+                          BulkOutbound bulk,
+                          Tracer tracer,
                           Gson gson) {
         this.sessions = sessions;
         this.videoRoomUsers = videoRoomUsers;
         this.userDAO = userDAO;
         this.actionDAO = actionDAO;
         this.auditService = auditService;
+        this.searchIndex = searchIndex;
+        this.history = history;
+        this.warm = warm;
+        this.fileTokens = fileTokens;
+        this.archive = archive;
+        this.signaling = signaling;
+        this.broadcasts = broadcasts;
+        this.bulk = bulk;
+        this.tracer = tracer;
         this.gson = gson;
     }
 
-    public ConcurrentHashMap<WebSocket, User> sessions() { return sessions; }
-    public ConcurrentHashMap<String, WebSocket> videoRoomUsers() { return videoRoomUsers; }
+    public ConcurrentHashMap<ClientChannel, User> sessions() { return sessions; }
+    public ConcurrentHashMap<String, ClientChannel> videoRoomUsers() { return videoRoomUsers; }
     public UserDAO userDAO() { return userDAO; }
     public ActionDAO actionDAO() { return actionDAO; }
     public AuditService audit() { return auditService; }
+    public MessageIndex searchIndex() { return searchIndex; }
+    public HistoryService history() { return history; }
+    public WarmState warm() { return warm; }
+    public FileTokens fileTokens() { return fileTokens; }
+    /** Segmentos de acciones retiradas de la BD; null si el backend no archiva. */
+    public ArchiveStore archive() { return archive; }
+    public SignalingRelay signaling() { return signaling; }
+    public Tracer tracer() { return tracer; }
+
+    /** Registra una conexión autenticada y la indexa por usuario. */
+    public void addSession(ClientChannel conn, User u) {
+        User prev = sessions.put(conn, u);
+        if (prev != null && !prev.getUsername().equals(u.getUsername())) unindex(prev.getUsername(), conn);
+        broadcasts.add(conn, u);
+        connectionsByUser.compute(u.getUsername(), (k, set) -> {
+            Set<ClientChannel> s = set != null ? set : ConcurrentHashMap.newKeySet();
+            s.add(conn);
+            return s;
+        });
+    }
+
+    /** Quita la conexión (cierre/logout). Devuelve el usuario que tenía, o null. */
+    public User removeSession(ClientChannel conn) {
+        User u = sessions.remove(conn);
+        broadcasts.remove(conn);
+        bulk.forget(conn);
+        if (u != null) unindex(u.getUsername(), conn);
+        return u;
+    }
+
+    /** Conexiones abiertas del usuario (vacío si no está conectado). */
+    public Set<ClientChannel> connectionsOf(String username) {
+        Set<ClientChannel> s = connectionsByUser.get(username);
+        return s != null ? Collections.unmodifiableSet(s) : Collections.emptySet();
+    }
+
+    /** Envía solo a las conexiones del usuario: O(dispositivos del usuario). */
+    public int sendToUser(String username, String payload) {
+        int sent = 0;
+        for (ClientChannel c : connectionsOf(username)) {
+            if (c.isOpen()) {
+                c.send(payload);
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    private void unindex(String username, ClientChannel conn) {
+        connectionsByUser.computeIfPresent(username, (k, set) -> {
+            set.remove(conn);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Guarda hasta dónde recibió el usuario (logout/cierre); si el almacenamiento falla, el próximo login trae más historial.
+     * @param position {@link HistoryService#position()} tomada al desconectarse, no al escribir: lo persistido
+     *                 después no llegó a esta conexión y debe enviarse en el próximo login
+     */
+    public void markSeen(User u, long position) {
+        try {
+            userDAO.updateLastSeen(u.getId(), position);
+        } catch (RuntimeException e) {
+            System.err.println("No se pudo guardar la posición vista de '" + u.getUsername() + "': " + e.getMessage());
+        }
+    }
 
     public String json(Object... kv) {
         Map<String,Object> m = new LinkedHashMap<>();
@@ -56,17 +161,74 @@ public final class MessageContext {
         return gson.toJson(m);
     }
 
+    /** Difunde a todas las sesiones autenticadas. Asíncrono: la entrega la hacen los shards (ver {@link BroadcastShards}). */
     public void broadcast(String payload) {
-        for (WebSocket c : sessions.keySet()) if (c.isOpen()) c.send(payload);
+        broadcasts.broadcast(payload, (c, u) -> true);
     }
 
-    public void broadcastExcept(WebSocket exclude, String payload) {
-        for (WebSocket c : sessions.keySet()) if (c.isOpen() && c != exclude) c.send(payload);
+    public void broadcastExcept(ClientChannel exclude, String payload) {
+        broadcasts.broadcast(payload, (c, u) -> c != exclude);
+    }
+
+    /** Difunde la lista de usuarios conectados con una nueva versión de presencia. */
+    public void broadcastUserList() {
+        broadcast(json("type","userlist","users", currentUsers(),"version", warm.nextPresenceVersion()));
+    }
+
+    /** Broadcast a todas las conexiones salvo las del usuario indicado. */
+    public void broadcastExceptUser(String username, String payload) {
+        broadcasts.broadcast(payload, (c, u) -> !u.getUsername().equals(username));
+    }
+
+    /** Envía un frame de archivo por el carril bulk (detrás de lo urgente, con tope de ancho de banda). */
+    public void sendBulk(ClientChannel conn, String payload) {
+        bulk.send(conn, payload);
+    }
+
+    /** Como {@link #sendBulk(ClientChannel, String)} con un mensaje ya codificado en UTF-8 (no se copia). */
+    public void sendBulk(ClientChannel conn, ByteBuffer utf8) {
+        bulk.sendText(conn, utf8);
+    }
+
+    /** Como {@link #broadcastExcept} pero por el carril bulk: solo encola, la entrega la hace {@link BulkOutbound}. */
+    public void broadcastBulkExcept(ClientChannel exclude, String payload) {
+        for (ClientChannel c : sessions.keySet()) {
+            if (c != exclude) bulk.send(c, payload);
+        }
+    }
+
+    /** Convierte registros de historial al formato de mensajes que entiende el cliente. */
+    public List<Map<String,Object>> historyItems(List<HistoryRecord> history) {
+        List<Map<String,Object>> items = new ArrayList<>(history.size());
+        for (HistoryRecord hr : history) {
+            Map<String,Object> it = new LinkedHashMap<>();
+            it.put("type", hr.getType());
+            it.put("id", hr.getId());
+            it.put("from", hr.getUsername());
+            it.put("timestamp", hr.getTimestamp());
+            if ("text".equals(hr.getType())) {
+                it.put("content", hr.getContent());
+            } else if ("direct".equals(hr.getType())) {
+                it.put("to", hr.getRecipient());
+                it.put("content", hr.getContent());
+            } else if ("file".equals(hr.getType())) {
+                it.put("filename", hr.getFilename());
+                it.put("mimetype", hr.getMimetype());
+                it.put("size", hr.getSize());
+                if (hr.getPreviewBase64() != null) {
+                    it.put("preview", hr.getPreviewBase64());
+                    it.put("previewMimetype", hr.getPreviewMimetype());
+                } else {
+                    it.put("data", hr.getDataBase64());
+                }
+            }
+            items.add(it);
+        }
+        return items;
     }
 
     public List<String> currentUsers() {
-        ArrayList<String> list = new ArrayList<>();
-        for (User u : sessions.values()) list.add(u.getUsername());
+        ArrayList<String> list = new ArrayList<>(connectionsByUser.keySet());
         Collections.sort(list);
         return list;
     }
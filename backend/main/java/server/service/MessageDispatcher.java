@@ -3,7 +3,7 @@ package server.service;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.java_websocket.WebSocket;
+import server.transport.ClientChannel;
 
 /**
  * Registra y despacha handlers por tipo de mensaje.
@@ -16,7 +16,7 @@ public final class MessageDispatcher {
         return this;
     }
 
-    public void dispatch(MessageContext ctx, WebSocket conn, String type, Map<String,Object> payload) {
+    public void dispatch(MessageContext ctx, ClientChannel conn, String type, Map<String,Object> payload) {
         ServerMessageHandler h = registry.get(type);
         if (h == null) {
             conn.send(ctx.json("type","error","msg","unknown type: " + type));
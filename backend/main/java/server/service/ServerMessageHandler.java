@@ -2,7 +2,7 @@ package server.service;
 
 import java.util.Map;
 
-import org.java_websocket.WebSocket;
+import server.transport.ClientChannel;
 
 /**
  * Contrato para handlers de mensajes. Abre la puerta a Open/Closed: agregar
@@ -10,5 +10,5 @@ import org.java_websocket.WebSocket;
  */
 public interface ServerMessageHandler {
     String type();
-    void handle(MessageContext ctx, WebSocket conn, Map<String,Object> payload);
+    void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload);
 }
@@ -0,0 +1,77 @@
+package server.service.handlers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import server.Config;
+import server.model.ActionRow;
+import server.model.User;
+import server.retention.ArchiveStore;
+import server.service.MessageContext;
+import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
+
+/**
+ * Consulta del archivo de retención para administradores:
+ * {type:"archive_query", actionType?, room?, from?, to?, limit?} (fechas en epoch ms).
+ * Responde {type:"archive_results", items:[...]} en orden de id ascendente con los metadatos de
+ * cada acción archivada; el contenido de los adjuntos no se envía (solo nombre, tipo y tamaño).
+ * Solo para usuarios listados en {@code ADMIN_USERS} y con un backend que archive (MySQL).
+ */
+public final class ArchiveQueryHandler implements ServerMessageHandler {
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    @Override public String type() { return "archive_query"; }
+
+    @Override
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
+        User u = ctx.sessions().get(conn);
+        if (u == null) { conn.close(1008, "Not authed"); return; }
+        if (!Config.getAdminUsers().contains(u.getUsername())) {
+            conn.send(ctx.json("type","error","msg","forbidden"));
+            return;
+        }
+        ArchiveStore archive = ctx.archive();
+        if (archive == null) {
+            conn.send(ctx.json("type","error","msg","archive disabled"));
+            return;
+        }
+        String actionType = MessageContext.safeStr(payload.get("actionType"));
+        String room = MessageContext.safeStr(payload.get("room"));
+        long from = (payload.get("from") instanceof Number n) ? n.longValue() : 0L;
+        long to = (payload.get("to") instanceof Number n) ? n.longValue() : 0L;
+        int limit = (payload.get("limit") instanceof Number n) ? n.intValue() : DEFAULT_LIMIT;
+        limit = Math.max(1, Math.min(MAX_LIMIT, limit));
+
+        List<ActionRow> rows;
+        try {
+            rows = archive.query(actionType.isEmpty() ? null : actionType, room.isEmpty() ? null : room, from, to, limit);
+        } catch (IOException e) {
+            System.err.println("Error consultando archivo de retención: " + e.getMessage());
+            conn.send(ctx.json("type","error","msg","archive read failed"));
+            return;
+        }
+        List<Map<String,Object>> items = new ArrayList<>();
+        for (ActionRow r : rows) {
+            Map<String,Object> it = new LinkedHashMap<>();
+            it.put("id", r.getId());
+            it.put("actionType", r.getActionType());
+            it.put("room", r.getRoom());
+            it.put("actorUserId", r.getActorUserId());
+            it.put("recipientUserId", r.getRecipientUserId());
+            it.put("createdAt", r.getCreatedAt());
+            if (r.getContent() != null) it.put("content", r.getContent());
+            if (r.getFilename() != null) {
+                it.put("filename", r.getFilename());
+                it.put("mimetype", r.getMimetype());
+                it.put("size", r.getSize());
+            }
+            items.add(it);
+        }
+        conn.send(ctx.json("type","archive_results","items",items));
+    }
+}
@@ -1,22 +1,19 @@
 package server.service.handlers;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.java_websocket.WebSocket;
-
-import server.model.HistoryRecord;
 import server.model.User;
+import server.service.HistoryService;
 import server.service.MessageContext;
 import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
 
 public final class AuthHandler implements ServerMessageHandler {
     @Override public String type() { return "auth"; }
 
     @Override
-    public void handle(MessageContext ctx, WebSocket conn, Map<String,Object> payload) {
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
         String username = MessageContext.safeStr(payload.get("username"));
         String password = MessageContext.safeStr(payload.get("password"));
         if (username.isEmpty() || password.isEmpty()) {
@@ -26,32 +23,31 @@ public final class AuthHandler implements ServerMessageHandler {
         }
         User u = ctx.userDAO().authenticate(username, password);
         if (u != null) {
-            ctx.sessions().put(conn, u);
+            ctx.addSession(conn, u);
+            ctx.warm().userIds().put(u.getUsername(), u.getId());
             conn.send(ctx.json("type","auth_ok","username", u.getUsername()));
-            // Recuperar historial y enviarlo al usuario recién autenticado
-            List<HistoryRecord> history = ctx.actionDAO().getRecentHistory(200);
-            List<Map<String,Object>> items = new ArrayList<>();
-            for (HistoryRecord hr : history) {
-                Map<String,Object> it = new LinkedHashMap<>();
-                it.put("type", hr.getType());
-                it.put("from", hr.getUsername());
-                it.put("timestamp", hr.getTimestamp());
-                if ("text".equals(hr.getType())) {
-                    it.put("content", hr.getContent());
-                } else if ("file".equals(hr.getType())) {
-                    it.put("filename", hr.getFilename());
-                    it.put("mimetype", hr.getMimetype());
-                    it.put("size", hr.getSize());
-                    it.put("data", hr.getDataBase64());
-                }
-                items.add(it);
-            }
-            conn.send(ctx.json("type","history","items", items));
-            ctx.broadcast(ctx.json("type","userlist","users", ctx.currentUsers()));
+            // Historial incremental: solo lo posterior a la última desconexión, más cuántos anteriores hay
+            // y cuántos sin ver quedaron fuera de la ventana reciente
+            HistoryService.CatchUp history = ctx.history().catchUp(u, lastSeen(ctx, u));
+            List<Map<String,Object>> items = ctx.historyItems(history.getItems());
+            conn.send(ctx.json("type","history","items", items, "older", history.getOlder(), "unsent", history.getUnsent()));
+            ctx.broadcastUserList();
             ctx.audit().recordLogin(u.getUsername());
         } else {
             conn.send(ctx.json("type","auth_fail","msg","bad credentials"));
             conn.close(1008, "Auth failed");
         }
     }
+
+    /** Última posición vista (y marca el login); ante un error se envía el historial completo. */
+    private static long lastSeen(MessageContext ctx, User u) {
+        try {
+            long seen = ctx.userDAO().getLastSeen(u.getId());
+            ctx.userDAO().recordLogin(u.getId());
+            return seen;
+        } catch (RuntimeException e) {
+            System.err.println("Posición vista no disponible para '" + u.getUsername() + "': " + e.getMessage());
+            return 0L;
+        }
+    }
 }
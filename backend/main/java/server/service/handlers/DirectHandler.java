@@ -0,0 +1,42 @@
+package server.service.handlers;
+
+import java.util.Map;
+
+import server.model.User;
+import server.service.MessageContext;
+import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
+
+/**
+ * Mensaje privado: {type:"direct", to, content}. Se entrega solo a las conexiones del
+ * destinatario (y a las del remitente, para sus otros dispositivos) usando el índice
+ * username -> conexiones; se persiste como DIRECT con destinatario aunque esté desconectado.
+ */
+public final class DirectHandler implements ServerMessageHandler {
+    @Override public String type() { return "direct"; }
+
+    @Override
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
+        User u = ctx.sessions().get(conn);
+        if (u == null) {
+            conn.close(1008, "Not authed");
+            return;
+        }
+        String to = MessageContext.safeStr(payload.get("to"));
+        String content = MessageContext.safeStr(payload.get("content"));
+        if (to.isEmpty() || content.isEmpty()) {
+            conn.send(ctx.json("type","error","msg","missing recipient or content"));
+            return;
+        }
+        if (ctx.connectionsOf(to).isEmpty()
+                && ctx.warm().userIds().resolve(to, ctx.actionDAO()::getUserIdByUsername) == null) {
+            conn.send(ctx.json("type","error","msg","unknown user"));
+            return;
+        }
+        long ts = System.currentTimeMillis();
+        String msg = ctx.json("type","direct","from",u.getUsername(),"to",to,"content",content,"timestamp",ts);
+        ctx.sendToUser(to, msg);
+        if (!to.equals(u.getUsername())) ctx.sendToUser(u.getUsername(), msg);
+        ctx.audit().recordDirect(u.getUsername(), to, content);
+    }
+}
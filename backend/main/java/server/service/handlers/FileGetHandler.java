@@ -0,0 +1,53 @@
+package server.service.handlers;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gson.Gson;
+
+import server.model.HistoryRecord;
+import server.model.User;
+import server.service.MessageContext;
+import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
+
+/**
+ * Descarga bajo demanda del original de un adjunto: {type:"file_get", id}.
+ * El historial y los broadcasts de imágenes llevan solo la miniatura; el cliente
+ * pide el original al hacer clic.
+ * Responde {type:"file_data", id, filename, mimetype, size, data}: el mensaje completo sale armado
+ * de la caché de adjuntos y se envía sin copiarlo al heap.
+ */
+public final class FileGetHandler implements ServerMessageHandler {
+    private static final Gson GSON = new Gson();
+
+    @Override public String type() { return "file_get"; }
+
+    /** Campos de {@code file_data} salvo {@code data}, que la caché agrega al final (ver {@code AttachmentCache}). */
+    public static String frameHeader(HistoryRecord hr) {
+        Map<String,Object> m = new LinkedHashMap<>();
+        m.put("type", "file_data");
+        m.put("id", hr.getId());
+        m.put("filename", hr.getFilename());
+        m.put("mimetype", hr.getMimetype());
+        m.put("size", hr.getSize());
+        return GSON.toJson(m);
+    }
+
+    @Override
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
+        User u = ctx.sessions().get(conn);
+        if (u == null) { conn.close(1008, "Not authed"); return; }
+        if (!(payload.get("id") instanceof Number n)) {
+            conn.send(ctx.json("type","error","msg","missing id"));
+            return;
+        }
+        ByteBuffer frame = ctx.history().fileFrame(n.longValue());
+        if (frame == null) {
+            conn.send(ctx.json("type","error","msg","file not found"));
+            return;
+        }
+        ctx.sendBulk(conn, frame);
+    }
+}
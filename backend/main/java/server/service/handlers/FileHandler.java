@@ -3,17 +3,17 @@ package server.service.handlers;
 import java.util.Base64;
 import java.util.Map;
 
-import org.java_websocket.WebSocket;
-
 import server.model.User;
+import server.preview.PreviewService;
 import server.service.MessageContext;
 import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
 
 public final class FileHandler implements ServerMessageHandler {
     @Override public String type() { return "file"; }
 
     @Override
-    public void handle(MessageContext ctx, WebSocket conn, Map<String,Object> payload) {
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
         User u = ctx.sessions().get(conn);
         if (u == null) { conn.close(1008, "Not authed"); return; }
         String filename = MessageContext.safeStr(payload.get("filename"));
@@ -25,17 +25,30 @@ public final class FileHandler implements ServerMessageHandler {
             conn.send(ctx.json("type","error","msg","Archivo inválido"));
             return;
         }
+        boolean recorded = false;
         try {
             long declaredSize = (size instanceof Number n) ? n.longValue() : 0L;
             String b64 = (data instanceof String s) ? s : String.valueOf(data);
             byte[] bytes = Base64.getDecoder().decode(b64);
             // Persistir vía servicio de auditoría (único punto)
-            ctx.audit().recordFile(u.getUsername(), filename, mimetype, declaredSize, bytes);
+            ctx.audit().recordFile(u.getUsername(), filename, mimetype, declaredSize, bytes, ts);
+            recorded = true;
         } catch (IllegalArgumentException ex) {
             ctx.audit().recordSystem("ERROR - Base64 inválido para archivo: " + filename);
         }
+        if (PreviewService.supports(mimetype)) {
+            if (!recorded) {
+                conn.send(ctx.json("type","error","msg","Archivo inválido"));
+                return;
+            }
+            // Imágenes: solo una referencia; la miniatura llega como file_preview una vez persistida
+            // (ver ChatWebSocketServer#attachPreview) y el original se pide bajo demanda
+            ctx.broadcastExcept(conn, ctx.json("type","file","from",u.getUsername(),"filename",filename,
+                    "mimetype",mimetype,"size",size,"pending",true,"timestamp",ts));
+            return;
+        }
         String payloadJson = ctx.json("type","file","from",u.getUsername(),"filename",filename,
                 "mimetype",mimetype,"size",size,"data",data,"timestamp",ts);
-        ctx.broadcastExcept(conn, payloadJson);
+        ctx.broadcastBulkExcept(conn, payloadJson);
     }
 }
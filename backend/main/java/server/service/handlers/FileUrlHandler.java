@@ -0,0 +1,34 @@
+package server.service.handlers;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import server.Config;
+import server.model.User;
+import server.service.MessageContext;
+import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
+
+/**
+ * Emite un enlace de descarga HTTP de corta duración para un adjunto: {type:"file_url", id}.
+ * Responde {type:"file_url", id, port, path, expires}; el cliente arma la URL con el host del WS.
+ */
+public final class FileUrlHandler implements ServerMessageHandler {
+    @Override public String type() { return "file_url"; }
+
+    @Override
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
+        User u = ctx.sessions().get(conn);
+        if (u == null) { conn.close(1008, "Not authed"); return; }
+        if (!(payload.get("id") instanceof Number n)) {
+            conn.send(ctx.json("type","error","msg","missing id"));
+            return;
+        }
+        long id = n.longValue();
+        long expires = System.currentTimeMillis() + ctx.fileTokens().ttlMillis();
+        String token = ctx.fileTokens().issue(u.getUsername(), id, expires);
+        String path = "/files/" + id + "?t=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
+        conn.send(ctx.json("type","file_url","id",id,"port",Config.getFileHttpPort(),"path",path,"expires",expires));
+    }
+}
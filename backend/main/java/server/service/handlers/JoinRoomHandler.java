@@ -4,24 +4,26 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import org.java_websocket.WebSocket;
-
 import server.model.User;
 import server.service.MessageContext;
 import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
 
 public final class JoinRoomHandler implements ServerMessageHandler {
     @Override public String type() { return "join_room"; }
 
     @Override
-    public void handle(MessageContext ctx, WebSocket conn, Map<String,Object> payload) {
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
         User u = ctx.sessions().get(conn);
         if (u == null) { conn.close(1008, "Not authed"); return; }
         String username = u.getUsername();
         List<String> currentRoomUsers = new ArrayList<>(ctx.videoRoomUsers().keySet());
-        conn.send(ctx.json("type","room_users","users", currentRoomUsers));
-        boolean wasEmpty = ctx.videoRoomUsers().isEmpty();
+        // El que entra envía un offer a cada participante previo: se mide hasta el último answer
+        ctx.signaling().metrics().joined(username, (int) currentRoomUsers.stream().filter(n -> !n.equals(username)).count());
+        boolean wasEmpty = currentRoomUsers.isEmpty();
+        // Registrar antes de responder: los answers a sus offers ya deben encontrar su conexión
         ctx.videoRoomUsers().put(username, conn);
+        conn.send(ctx.json("type","room_users","users", currentRoomUsers));
         if (wasEmpty) ctx.audit().recordSystem("Videollamada iniciada");
         ctx.audit().recordVideoJoin(username);
         for (var entry : ctx.videoRoomUsers().entrySet()) {
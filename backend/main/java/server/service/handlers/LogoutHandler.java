@@ -2,19 +2,21 @@ package server.service.handlers;
 
 import java.util.Map;
 
-import org.java_websocket.WebSocket;
-
 import server.model.User;
 import server.service.MessageContext;
 import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
 
 public final class LogoutHandler implements ServerMessageHandler {
     @Override public String type() { return "logout"; }
 
     @Override
-    public void handle(MessageContext ctx, WebSocket conn, Map<String,Object> payload) {
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
         User u = ctx.sessions().get(conn);
-        if (u != null) ctx.audit().recordLogout(u.getUsername());
+        if (u != null) {
+            ctx.audit().recordLogout(u.getUsername());
+            ctx.markSeen(u, ctx.history().position());
+        }
         conn.close(1000, "bye");
     }
 }
@@ -0,0 +1,54 @@
+package server.service.handlers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import server.model.HistoryRecord;
+import server.model.User;
+import server.search.SearchPage;
+import server.service.MessageContext;
+import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
+
+/**
+ * Búsqueda de texto completo sobre el historial: {type:"search", query, room?, before?, limit?}.
+ * Responde {type:"search_results", query, room, items:[...], next?} con los resultados más
+ * recientes primero; {@code next} se reenvía como {@code before} para la siguiente página.
+ */
+public final class SearchHandler implements ServerMessageHandler {
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+
+    @Override public String type() { return "search"; }
+
+    @Override
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
+        User u = ctx.sessions().get(conn);
+        if (u == null) { conn.close(1008, "Not authed"); return; }
+        String query = MessageContext.safeStr(payload.get("query"));
+        if (query.isEmpty()) {
+            conn.send(ctx.json("type","error","msg","empty query"));
+            return;
+        }
+        String room = MessageContext.safeStr(payload.get("room"));
+        if (room.isEmpty()) room = "global";
+        long before = (payload.get("before") instanceof Number n) ? n.longValue() : 0L;
+        int limit = (payload.get("limit") instanceof Number n) ? n.intValue() : DEFAULT_LIMIT;
+        limit = Math.max(1, Math.min(MAX_LIMIT, limit));
+
+        SearchPage page = ctx.searchIndex().search(room, query, before, limit);
+        List<Map<String,Object>> items = new ArrayList<>();
+        for (HistoryRecord hr : ctx.actionDAO().getTextRecordsByIds(page.getIds())) {
+            Map<String,Object> it = new LinkedHashMap<>();
+            it.put("id", hr.getId());
+            it.put("from", hr.getUsername());
+            it.put("content", hr.getContent());
+            it.put("timestamp", hr.getTimestamp());
+            items.add(it);
+        }
+        conn.send(ctx.json("type","search_results","query",query,"room",room,"items",items,
+                "next", page.hasMore() ? page.getNextBefore() : null));
+    }
+}
@@ -2,17 +2,16 @@ package server.service.handlers;
 
 import java.util.Map;
 
-import org.java_websocket.WebSocket;
-
 import server.model.User;
 import server.service.MessageContext;
 import server.service.ServerMessageHandler;
+import server.transport.ClientChannel;
 
 public final class TextHandler implements ServerMessageHandler {
     @Override public String type() { return "text"; }
 
     @Override
-    public void handle(MessageContext ctx, WebSocket conn, Map<String,Object> payload) {
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
         User u = ctx.sessions().get(conn);
         if (u == null) { 
             conn.close(1008, "Not authed"); 
@@ -0,0 +1,67 @@
+package server.service.handlers;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import server.Config;
+import server.model.User;
+import server.service.MessageContext;
+import server.service.ServerMessageHandler;
+import server.trace.MessageTrace;
+import server.trace.Tracer;
+import server.transport.ClientChannel;
+
+/**
+ * Volcado de trazas para administradores: {type:"trace_dump", n?, export?}.
+ * Responde {type:"trace_dump", sampleEvery, items:[...]} con las {@code n} trazas más lentas del
+ * buffer, etapa por etapa; con {@code export:true} además escribe el buffer completo como
+ * Chrome trace en {@code TRACE_DIR} y devuelve el nombre del archivo en {@code file}.
+ * Solo para usuarios listados en {@code ADMIN_USERS} (vacío por defecto: nadie).
+ */
+public final class TraceDumpHandler implements ServerMessageHandler {
+    private static final int DEFAULT_N = 10;
+    private static final int MAX_N = 200;
+
+    private final Set<String> adminUsers;
+
+    public TraceDumpHandler() {
+        this(Config.getAdminUsers());
+    }
+
+    /** @param adminUsers usernames autorizados (por defecto {@code ADMIN_USERS}) */
+    public TraceDumpHandler(Set<String> adminUsers) {
+        this.adminUsers = adminUsers;
+    }
+
+    @Override public String type() { return "trace_dump"; }
+
+    @Override
+    public void handle(MessageContext ctx, ClientChannel conn, Map<String,Object> payload) {
+        User u = ctx.sessions().get(conn);
+        if (u == null) { conn.close(1008, "Not authed"); return; }
+        if (!adminUsers.contains(u.getUsername())) {
+            conn.send(ctx.json("type","error","msg","forbidden"));
+            return;
+        }
+        Tracer tracer = ctx.tracer();
+        if (!tracer.enabled()) {
+            conn.send(ctx.json("type","error","msg","tracing disabled"));
+            return;
+        }
+        int n = (payload.get("n") instanceof Number num) ? num.intValue() : DEFAULT_N;
+        n = Math.max(1, Math.min(MAX_N, n));
+
+        List<Map<String,Object>> items = new ArrayList<>();
+        for (MessageTrace t : tracer.slowest(n)) items.add(t.toMap());
+        String file = null;
+        if (Boolean.TRUE.equals(payload.get("export"))) {
+            Path out = tracer.export(Paths.get(Config.getTraceDir()));
+            file = out.getFileName().toString(); // sin la ruta del servidor
+        }
+        conn.send(ctx.json("type","trace_dump","sampleEvery",tracer.sampleEvery(),"items",items,"file",file));
+    }
+}
@@ -0,0 +1,111 @@
+package server.signaling;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CallSetupMetrics - Latencia de establecimiento de videollamadas vista desde el servidor.
+ *
+ * Al unirse, el nuevo participante envía un offer a cada usuario ya presente (malla completa).
+ * Se mide:
+ * - por par: offer reenviado -> answer reenviado;
+ * - por ingreso: join_room -> último answer recibido de los N-1 pares ("setup" de la malla).
+ * Las muestras se agrupan por tamaño de llamada en ventanas circulares; {@link #report()} resume p50/p95/max.
+ */
+public final class CallSetupMetrics {
+    private static final int SAMPLES = 256;
+
+    /** Ingreso en curso: cuántos answers faltan. */
+    private static final class PendingJoin {
+        final long startedAt = System.nanoTime();
+        final int peers;
+        int answered;
+
+        PendingJoin(int peers) { this.peers = peers; }
+    }
+
+    /** Ventana circular de muestras en microsegundos. */
+    private static final class Samples {
+        final long[] values = new long[SAMPLES];
+        int count;
+
+        synchronized void add(long micros) {
+            values[count % SAMPLES] = micros;
+            count++;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, Math.min(count, SAMPLES));
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    private final ConcurrentHashMap<String, PendingJoin> joins = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> offers = new ConcurrentHashMap<>(); // "from>to" -> nanoTime
+    private final ConcurrentHashMap<Integer, Samples> setupBySize = new ConcurrentHashMap<>();
+    private final Samples offerAnswer = new Samples();
+
+    /** El usuario entró a una llamada con {@code peers} participantes previos. */
+    public void joined(String username, int peers) {
+        if (peers <= 0) {
+            joins.remove(username);
+            return;
+        }
+        joins.put(username, new PendingJoin(peers));
+    }
+
+    /** El usuario salió (o se desconectó): se descartan sus mediciones pendientes. */
+    public void left(String username) {
+        joins.remove(username);
+        offers.keySet().removeIf(k -> k.startsWith(username + ">") || k.endsWith(">" + username));
+    }
+
+    void offerRelayed(String from, String to) {
+        offers.put(from + ">" + to, System.nanoTime());
+    }
+
+    void answerRelayed(String from, String to) {
+        long now = System.nanoTime();
+        Long offeredAt = offers.remove(to + ">" + from);
+        if (offeredAt != null) offerAnswer.add((now - offeredAt) / 1000);
+        PendingJoin j = joins.get(to);
+        if (j == null) return;
+        boolean done;
+        synchronized (j) {
+            done = ++j.answered == j.peers;
+        }
+        if (done && joins.remove(to, j)) {
+            long micros = (now - j.startedAt) / 1000;
+            setupBySize.computeIfAbsent(j.peers + 1, k -> new Samples()).add(micros);
+            System.out.println("Videollamada: " + to + " conectado con " + j.peers + " participantes en "
+                    + (micros / 1000) + " ms");
+        }
+    }
+
+    /** Resumen legible: setup por tamaño de llamada y offer->answer global. */
+    public String report() {
+        StringBuilder sb = new StringBuilder("Setup de videollamada (join -> último answer):");
+        Map<Integer, Samples> bySize = new TreeMap<>(setupBySize);
+        if (bySize.isEmpty()) sb.append(" sin muestras");
+        for (Map.Entry<Integer, Samples> e : bySize.entrySet()) {
+            sb.append("\n  ").append(e.getKey()).append(" participantes: ").append(describe(e.getValue().sorted()));
+        }
+        sb.append("\nOffer -> answer por par: ").append(describe(offerAnswer.sorted()));
+        return sb.toString();
+    }
+
+    static String describe(long[] sortedMicros) {
+        if (sortedMicros.length == 0) return "sin muestras";
+        return String.format("n=%d p50=%.1f ms p95=%.1f ms max=%.1f ms", sortedMicros.length,
+                percentile(sortedMicros, 50) / 1000.0, percentile(sortedMicros, 95) / 1000.0,
+                sortedMicros[sortedMicros.length - 1] / 1000.0);
+    }
+
+    static long percentile(long[] sorted, int p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+}
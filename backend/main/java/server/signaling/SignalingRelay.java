@@ -0,0 +1,140 @@
+package server.signaling;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import server.model.User;
+import server.transport.ClientChannel;
+
+/**
+ * SignalingRelay - Ruta rápida para la señalización WebRTC (offer / answer / ice).
+ *
+ * El servidor no interpreta SDP ni candidatos: se leen solo {@code type} y {@code to} con un
+ * lector en streaming (sin construir mapas) y el texto original se reenvía con {@code from}
+ * insertado al inicio. Si el cliente ya trae {@code from} (o el JSON no es un objeto válido) se
+ * devuelve false y el mensaje sigue la ruta normal de handlers, que lo reescribe con el remitente real.
+ *
+ * Los candidatos ICE hacia un mismo destino se agrupan durante {@code coalesceMillis} y se envían
+ * en un solo frame {@code {type:"webrtc_ice_batch", items:[...]}} que une los textos reenviados sin
+ * volver a parsearlos. El texto se reenvía (solo o en un lote) únicamente si es exactamente un objeto
+ * JSON estricto, sin nada detrás, así que cada elemento del lote es un valor JSON completo.
+ * Un offer/answer vacía antes los candidatos pendientes del destino para conservar el orden.
+ */
+public final class SignalingRelay {
+    private static final String OFFER = "webrtc_offer";
+    private static final String ANSWER = "webrtc_answer";
+    private static final String ICE = "webrtc_ice";
+
+    private final Map<String, ClientChannel> videoRoomUsers;
+    private final CallSetupMetrics metrics;
+    private final int coalesceMillis;
+    private final Gson gson = new Gson();
+    private final ConcurrentHashMap<ClientChannel, List<String>> pendingIce = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ice-coalesce");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SignalingRelay(Map<String, ClientChannel> videoRoomUsers, CallSetupMetrics metrics, int coalesceMillis) {
+        this.videoRoomUsers = videoRoomUsers;
+        this.metrics = metrics;
+        this.coalesceMillis = coalesceMillis;
+    }
+
+    public CallSetupMetrics metrics() { return metrics; }
+
+    /**
+     * Reenvía {@code raw} si es señalización de un usuario autenticado.
+     * @return true si el mensaje quedó atendido; false para seguir por el dispatcher
+     */
+    public boolean tryRelay(User sender, String raw) {
+        if (sender == null || raw.indexOf("webrtc_") < 0) return false;
+        String type = null, to = null;
+        try (JsonReader r = strictReader(raw)) {
+            if (r.peek() != JsonToken.BEGIN_OBJECT) return false;
+            r.beginObject();
+            while (r.hasNext()) {
+                String name = r.nextName();
+                if ("from".equals(name)) return false; // no se confía en el remitente declarado
+                if (("type".equals(name) || "to".equals(name)) && r.peek() == JsonToken.STRING) {
+                    if ("type".equals(name)) type = r.nextString(); else to = r.nextString();
+                } else {
+                    r.skipValue();
+                }
+            }
+            r.endObject();
+            // el frame se reenvía textual: nada puede seguir al objeto (p. ej. un segundo objeto con otro from)
+            if (r.peek() != JsonToken.END_DOCUMENT) return false;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        }
+        if (!OFFER.equals(type) && !ANSWER.equals(type) && !ICE.equals(type)) return false;
+        if (to == null) return true; // sin destino: nada que reenviar (igual que los handlers)
+        ClientChannel target = videoRoomUsers.get(to);
+        if (target == null || !target.isOpen()) return true;
+        String from = sender.getUsername();
+        String frame = "{\"from\":" + gson.toJson(from) + "," + raw.substring(raw.indexOf('{') + 1);
+        if (ICE.equals(type) && coalesceMillis > 0) {
+            queueIce(target, frame);
+            return true;
+        }
+        synchronized (target) {
+            flushIce(target);
+            target.send(frame);
+        }
+        if (OFFER.equals(type)) metrics.offerRelayed(from, to);
+        else if (ANSWER.equals(type)) metrics.answerRelayed(from, to);
+        return true;
+    }
+
+    /** Detiene el agrupador enviando lo pendiente. */
+    public void stop() {
+        scheduler.shutdownNow();
+        for (ClientChannel target : new ArrayList<>(pendingIce.keySet())) {
+            synchronized (target) { flushIce(target); }
+        }
+    }
+
+    private void queueIce(ClientChannel target, String frame) {
+        pendingIce.compute(target, (k, list) -> {
+            if (list == null) {
+                list = new ArrayList<>(8);
+                scheduler.schedule(() -> {
+                    synchronized (target) { flushIce(target); }
+                }, coalesceMillis, TimeUnit.MILLISECONDS);
+            }
+            list.add(frame);
+            return list;
+        });
+    }
+
+    /** Envía los candidatos pendientes del destino; el llamador sostiene el lock del destino. */
+    private void flushIce(ClientChannel target) {
+        List<String> items = pendingIce.remove(target);
+        if (items == null || !target.isOpen()) return;
+        if (items.size() == 1) {
+            target.send(items.get(0));
+            return;
+        }
+        target.send("{\"type\":\"webrtc_ice_batch\",\"items\":[" + String.join(",", items) + "]}");
+    }
+
+    private static JsonReader strictReader(String json) {
+        JsonReader r = new JsonReader(new StringReader(json));
+        r.setStrictness(Strictness.STRICT);
+        return r;
+    }
+}
@@ -0,0 +1,171 @@
+package server.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import server.cache.WarmState;
+import server.model.HistoryRecord;
+
+/**
+ * WarmSnapshot - Formato binario del snapshot de arranque en caliente.
+ *
+ * magic(u32) | version(u32) | createdAt(u64) | presenceVersion(u64)
+ * | nUsers(u32) { username, id(u32) } | nRooms(u32) { room, nRecords(u32) { registro } } | crc32c(u32)
+ *
+ * Cadenas como len(i32, -1 = null) + UTF-8. Se escribe a un temporal con fsync y se renombra
+ * atómicamente; se lee mapeando el archivo en memoria, sin copiarlo a un buffer intermedio.
+ */
+public final class WarmSnapshot {
+    private static final int MAGIC = 0x57534E50; // "WSNP"
+    private static final int VERSION = 1;
+    private static final byte TEXT = 0;
+    private static final byte FILE = 1;
+
+    private WarmSnapshot() { }
+
+    /** Escribe el estado actual en {@code file} (reemplazo atómico). */
+    public static void write(Path file, WarmState state) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<String, Integer> users = state.userIds().snapshot();
+        Map<String, List<HistoryRecord>> rooms = state.history().snapshot();
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fos, 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(state.presenceVersion());
+            out.writeInt(users.size());
+            for (Map.Entry<String, Integer> e : users.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeInt(e.getValue());
+            }
+            out.writeInt(rooms.size());
+            for (Map.Entry<String, List<HistoryRecord>> e : rooms.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeInt(e.getValue().size());
+                for (HistoryRecord hr : e.getValue()) writeRecord(out, hr);
+            }
+            out.flush();
+            out.writeInt((int) crc.getValue()); // el propio crc queda fuera del cálculo
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Carga el snapshot en {@code state}. Devuelve false (sin tocar el estado) si no existe,
+     * está truncado o no pasa la verificación de integridad.
+     */
+    public static boolean load(Path file, WarmState state) {
+        if (!Files.isRegularFile(file)) return false;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 28 || size > Integer.MAX_VALUE) return false;
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodyLen = (int) size - 4;
+            CRC32C crc = new CRC32C();
+            crc.update(map.slice(0, bodyLen));
+            if ((int) crc.getValue() != map.getInt(bodyLen)) {
+                System.err.println("Snapshot: checksum inválido en " + file + ", se ignora");
+                return false;
+            }
+            ByteBuffer b = map.slice(0, bodyLen);
+            if (b.getInt() != MAGIC || b.getInt() != VERSION) return false;
+            b.getLong(); // createdAt (informativo)
+            long presence = b.getLong();
+            Map<String, Integer> users = new HashMap<>();
+            for (int i = b.getInt(); i > 0; i--) users.put(readString(b), b.getInt());
+            Map<String, List<HistoryRecord>> rooms = new HashMap<>();
+            for (int i = b.getInt(); i > 0; i--) {
+                String room = readString(b);
+                int n = b.getInt();
+                List<HistoryRecord> records = new ArrayList<>(n);
+                for (int j = 0; j < n; j++) records.add(readRecord(b, room));
+                rooms.put(room, records);
+            }
+            state.restorePresenceVersion(presence);
+            state.userIds().putAll(users);
+            for (Map.Entry<String, List<HistoryRecord>> e : rooms.entrySet()) state.history().replace(e.getKey(), e.getValue());
+            return true;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            System.err.println("Snapshot: no se pudo leer " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, HistoryRecord hr) throws IOException {
+        boolean text = "text".equals(hr.getType());
+        out.writeLong(hr.getId());
+        out.writeByte(text ? TEXT : FILE);
+        writeString(out, hr.getUsername());
+        out.writeLong(hr.getTimestamp());
+        if (text) {
+            writeString(out, hr.getContent());
+        } else {
+            writeString(out, hr.getFilename());
+            writeString(out, hr.getMimetype());
+            out.writeLong(hr.getSize());
+            writeString(out, hr.getDataBase64());
+            writeString(out, hr.getPreviewBase64());
+            writeString(out, hr.getPreviewMimetype());
+        }
+    }
+
+    private static HistoryRecord readRecord(ByteBuffer b, String room) {
+        long id = b.getLong();
+        byte kind = b.get();
+        String username = readString(b);
+        long ts = b.getLong();
+        if (kind == TEXT) return HistoryRecord.text(id, room, username, readString(b), ts);
+        if (kind != FILE) throw new IllegalArgumentException("tipo de registro desconocido: " + kind);
+        String filename = readString(b);
+        String mimetype = readString(b);
+        long size = b.getLong();
+        String data = readString(b);
+        String preview = readString(b);
+        String previewMime = readString(b);
+        return preview != null
+                ? HistoryRecord.fileWithPreview(id, room, username, filename, mimetype, size, preview, previewMime, ts)
+                : HistoryRecord.file(id, room, username, filename, mimetype, size, data, ts);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer b) {
+        int len = b.getInt();
+        if (len < 0) return null;
+        if (len > b.remaining()) throw new IllegalArgumentException("cadena fuera de rango");
+        String s = StandardCharsets.UTF_8.decode(b.slice(b.position(), len)).toString();
+        b.position(b.position() + len);
+        return s;
+    }
+}
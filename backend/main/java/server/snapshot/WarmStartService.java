@@ -0,0 +1,93 @@
+package server.snapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import server.cache.WarmState;
+import server.dao.ActionDAO;
+import server.service.HistoryService;
+
+/**
+ * WarmStartService - Arranque en caliente.
+ *
+ * - {@link #load()} restaura el snapshot al iniciar: el historial queda servible de inmediato,
+ *   sin esperar a MySQL.
+ * - {@link #reconcileInBackground} compara cada sala restaurada con el high-water mark de la BD
+ *   y la recarga si el snapshot quedó atrás (p.ej. caída después del último snapshot periódico).
+ * - El snapshot se reescribe cada {@code intervalSeconds} y una última vez al apagar.
+ */
+public final class WarmStartService {
+    private final Path file;
+    private final WarmState state;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "warm-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public WarmStartService(Path file, WarmState state) {
+        this.file = file;
+        this.state = state;
+    }
+
+    /** Carga el snapshot si existe y es válido. */
+    public boolean load() {
+        long t0 = System.nanoTime();
+        boolean ok = WarmSnapshot.load(file, state);
+        if (ok) {
+            System.out.println("Snapshot cargado (" + state.history().snapshot().size() + " salas) en "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) + " ms");
+        }
+        return ok;
+    }
+
+    /** Verifica contra la BD, sala por sala, lo restaurado del snapshot. */
+    public void reconcileInBackground(ActionDAO actionDAO, HistoryService history) {
+        List<String> rooms = new ArrayList<>(state.history().snapshot().keySet());
+        if (rooms.isEmpty()) return;
+        scheduler.execute(() -> {
+            for (String room : rooms) {
+                try {
+                    long dbHigh = actionDAO.getHistoryHighWater(room);
+                    if (dbHigh != state.history().maxId(room)) {
+                        history.reload(room);
+                        System.out.println("Snapshot: sala '" + room + "' desactualizada, recargada desde BD");
+                    }
+                } catch (RuntimeException e) {
+                    // BD no disponible: se sigue sirviendo el snapshot y los eventos nuevos se agregan al persistirse
+                    System.err.println("Snapshot: no se pudo reconciliar '" + room + "': " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /** Programa la escritura periódica del snapshot. */
+    public void start(int intervalSeconds) {
+        if (intervalSeconds <= 0) return;
+        scheduler.scheduleWithFixedDelay(this::saveQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Detiene la escritura periódica y escribe un snapshot final. */
+    public void stop() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveQuietly();
+    }
+
+    private void saveQuietly() {
+        try {
+            WarmSnapshot.write(file, state);
+        } catch (IOException e) {
+            System.err.println("Snapshot: no se pudo escribir " + file + ": " + e.getMessage());
+        }
+    }
+}
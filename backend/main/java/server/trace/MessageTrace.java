@@ -0,0 +1,104 @@
+package server.trace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import server.journal.AuditEvent;
+
+/**
+ * MessageTrace - Marcas de tiempo (System.nanoTime) de cada {@link Stage} de un mensaje muestreado.
+ *
+ * Las etapas se marcan desde hilos distintos (carril, shards, selector, replayer), por eso los
+ * métodos son sincronizados: solo se trazan los mensajes muestreados, el costo es despreciable.
+ * Si una etapa se marca varias veces (p.ej. un broadcast a muchas conexiones) se conserva el
+ * primer inicio y el último fin.
+ */
+public final class MessageTrace {
+    private static final int STAGES = Stage.values().length;
+
+    private final long id;
+    private final Tracer owner;
+    private final long receivedAt;
+    private final long receivedAtMillis = System.currentTimeMillis();
+    private final long[] start = new long[STAGES];
+    private final long[] end = new long[STAGES];
+    private String type;
+    private String username;
+
+    MessageTrace(long id, Tracer owner, long receivedAt) {
+        this.id = id;
+        this.owner = owner;
+        this.receivedAt = receivedAt;
+        start[Stage.RECEIVE.ordinal()] = receivedAt;
+    }
+
+    public long getId() { return id; }
+    public long getReceivedAtMillis() { return receivedAtMillis; }
+
+    /** Tipo de mensaje y remitente, cuando se conocen (tras decodificar). */
+    public synchronized void describe(String type, String username) {
+        if (type != null) this.type = type;
+        if (username != null) this.username = username;
+    }
+
+    public synchronized String getType() { return type; }
+    public synchronized String getUsername() { return username; }
+
+    public void begin(Stage stage) {
+        begin(stage, System.nanoTime());
+    }
+
+    public synchronized void begin(Stage stage, long nanos) {
+        if (start[stage.ordinal()] == 0) start[stage.ordinal()] = nanos;
+    }
+
+    public void end(Stage stage) {
+        end(stage, System.nanoTime());
+    }
+
+    public synchronized void end(Stage stage, long nanos) {
+        end[stage.ordinal()] = Math.max(end[stage.ordinal()], nanos);
+    }
+
+    /** El evento se agregó al journal: abre {@link Stage#PERSIST}, que cierra el replayer al insertarlo. */
+    public void persisting(AuditEvent event) {
+        begin(Stage.PERSIST);
+        owner.awaitPersist(event, this);
+    }
+
+    /** Desde la recepción hasta la última etapa cerrada. */
+    public synchronized long totalNanos() {
+        long last = receivedAt;
+        for (long e : end) last = Math.max(last, e);
+        return last - receivedAt;
+    }
+
+    synchronized long startOf(Stage stage) { return start[stage.ordinal()]; }
+    synchronized long endOf(Stage stage) { return end[stage.ordinal()]; }
+    long receivedAt() { return receivedAt; }
+
+    /** Desglose para el cliente: por etapa, inicio relativo a la recepción y duración en ms (solo etapas cerradas). */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        m.put("type", type);
+        m.put("from", username);
+        m.put("receivedAt", receivedAtMillis);
+        m.put("totalMs", ms(totalNanos()));
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (Stage s : Stage.values()) {
+            int i = s.ordinal();
+            if (start[i] == 0 || end[i] == 0) continue;
+            Map<String, Object> st = new LinkedHashMap<>();
+            st.put("atMs", ms(start[i] - receivedAt));
+            st.put("durMs", ms(end[i] - start[i]));
+            stages.put(s.label(), st);
+        }
+        m.put("stages", stages);
+        return m;
+    }
+
+    private static double ms(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -0,0 +1,20 @@
+package server.trace;
+
+/**
+ * Stage - Etapas que se miden de un mensaje muestreado, en el orden en que ocurren.
+ * <ul>
+ *   <li>{@link #RECEIVE}: el transporte entregó el frame -> un hilo del carril lo toma (espera en cola).</li>
+ *   <li>{@link #DECODE}: parseo del JSON (o lectura de type/to en la señalización).</li>
+ *   <li>{@link #DISPATCH}: ejecución del handler (incluye p.ej. la consulta de historial del login).</li>
+ *   <li>{@link #PERSIST}: append al journal -> fila insertada en BD (asíncrono, lo cierra el replayer).</li>
+ *   <li>{@link #ENQUEUE}: inicio del broadcast -> último shard terminó de entregar el frame al transporte.</li>
+ *   <li>{@link #SOCKET_WRITE}: inicio del broadcast -> último frame escrito al socket (transporte nio; en
+ *       los demás, entregado a la librería).</li>
+ * </ul>
+ */
+public enum Stage {
+    RECEIVE, DECODE, DISPATCH, PERSIST, ENQUEUE, SOCKET_WRITE;
+
+    /** Nombre en minúsculas para JSON y trazas. */
+    public String label() { return name().toLowerCase(); }
+}
@@ -0,0 +1,204 @@
+package server.trace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.Gson;
+
+import server.journal.AuditEvent;
+import server.journal.PersistListener;
+import server.journal.SequenceListener;
+
+/**
+ * Tracer - Trazas por etapa de 1 de cada {@code sampleEvery} mensajes entrantes, en un buffer circular.
+ *
+ * El hilo del carril publica la traza del mensaje que procesa con {@link #attach(MessageTrace)}:
+ * así {@code AuditService} y {@code BroadcastShards} la marcan sin cambiar las firmas de los
+ * handlers. El buffer guarda las últimas {@code capacity} trazas (incluso las que todavía tienen
+ * etapas abiertas) y se puede consultar ({@link #slowest(int)}) o exportar en formato de
+ * Chrome trace ({@link #export(Path)}, se abre en chrome://tracing o Perfetto). Sin servicios externos.
+ *
+ * La etapa de persistencia se cierra por secuencia del journal: el evento encolado se asocia a su
+ * traza, el escritor del journal informa la secuencia asignada ({@link SequenceListener}) y el
+ * replayer la devuelve al insertar ({@link PersistListener}). Dos eventos iguales (mismo tipo,
+ * autor y milisegundo) no se confunden.
+ */
+public final class Tracer implements PersistListener, SequenceListener {
+
+    private static final ThreadLocal<MessageTrace> CURRENT = new ThreadLocal<>();
+    private static final int MAX_PENDING_PERSIST = 4096;
+    private static final int MAX_EXPORTS = 10;
+
+    private final int sampleEvery;
+    private final MessageTrace[] ring;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private final long epoch = System.nanoTime();
+    private final long epochMillis = System.currentTimeMillis();
+    private final Gson gson = new Gson();
+    // Ambos mapas se protegen con el lock de pendingPersist y están acotados (si la BD no está, se pierden las más viejas).
+    // evento encolado (por identidad: AuditEvent no redefine equals) -> traza, hasta que el journal le asigne secuencia
+    private final Map<AuditEvent, MessageTrace> awaitingSeq = bounded();
+    // secuencia del journal -> traza, hasta que el replayer la inserte
+    private final Map<Long, MessageTrace> pendingPersist = bounded();
+
+    /**
+     * @param sampleEvery se traza 1 de cada N mensajes (1 = todos, 0 = ninguno)
+     * @param capacity    trazas que conserva el buffer circular
+     */
+    public Tracer(int sampleEvery, int capacity) {
+        this.sampleEvery = Math.max(0, sampleEvery);
+        this.ring = new MessageTrace[Math.max(1, capacity)];
+    }
+
+    public boolean enabled() { return sampleEvery > 0; }
+    public int sampleEvery() { return sampleEvery; }
+
+    /** Traza actual del hilo (null si el mensaje en curso no fue muestreado). */
+    public static MessageTrace current() { return CURRENT.get(); }
+
+    public static void attach(MessageTrace trace) { CURRENT.set(trace); }
+
+    public static void detach() { CURRENT.remove(); }
+
+    /**
+     * Decide si se traza el mensaje que acaba de entregar el transporte; llamar en el hilo del
+     * transporte, antes de encolarlo. Devuelve la traza (ya en el buffer) o null.
+     */
+    public MessageTrace sample() {
+        if (sampleEvery == 0) return null;
+        long n = received.getAndIncrement();
+        if (n % sampleEvery != 0) return null;
+        long id = sampled.getAndIncrement();
+        MessageTrace t = new MessageTrace(id, this, System.nanoTime());
+        synchronized (ring) {
+            ring[(int) (id % ring.length)] = t;
+        }
+        return t;
+    }
+
+    /** Las {@code n} trazas más lentas del buffer (tiempo total, de mayor a menor). */
+    public List<MessageTrace> slowest(int n) {
+        List<MessageTrace> all = snapshot();
+        all.sort(Comparator.comparingLong(MessageTrace::totalNanos).reversed());
+        return all.subList(0, Math.min(Math.max(0, n), all.size()));
+    }
+
+    /**
+     * Escribe el buffer como Chrome trace JSON en {@code dir/trace-<epochMillis>.json} y devuelve la ruta.
+     * Se conservan solo las últimas {@value #MAX_EXPORTS} exportaciones del directorio.
+     */
+    public Path export(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            Path file = dir.resolve("trace-" + System.currentTimeMillis() + ".json");
+            Files.writeString(file, chromeTrace(), StandardCharsets.UTF_8);
+            pruneExports(dir);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo exportar la traza a " + dir, e);
+        }
+    }
+
+    /**
+     * Formato "Trace Event" de Chrome: un evento completo ("ph":"X") por mensaje y uno por etapa,
+     * cada mensaje en su propia fila ({@code tid} = id de traza). Tiempos en microsegundos.
+     */
+    public String chromeTrace() {
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (MessageTrace t : snapshot()) {
+            String label = (t.getType() != null ? t.getType() : "?") + " #" + t.getId();
+            Map<String, Object> args = new LinkedHashMap<>();
+            args.put("from", t.getUsername());
+            events.add(event(label, "message", t.receivedAt(), t.receivedAt() + t.totalNanos(), t.getId(), args));
+            for (Stage s : Stage.values()) {
+                long start = t.startOf(s), end = t.endOf(s);
+                if (start == 0 || end == 0) continue;
+                events.add(event(s.label(), "stage", start, end, t.getId(), null));
+            }
+        }
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("traceEvents", events);
+        root.put("displayTimeUnit", "ms");
+        root.put("otherData", Map.of("startedAt", epochMillis, "sampleEvery", sampleEvery));
+        return gson.toJson(root);
+    }
+
+    /** El journal escribió un evento: si era de un mensaje muestreado, su traza pasa a esperar esa secuencia. */
+    @Override
+    public void onSequenced(AuditEvent event, long seq) {
+        synchronized (pendingPersist) {
+            if (awaitingSeq.isEmpty()) return;
+            MessageTrace t = awaitingSeq.remove(event);
+            if (t != null) pendingPersist.put(seq, t);
+        }
+    }
+
+    /** El replayer insertó un evento: cierra {@link Stage#PERSIST} de la traza que lo generó, si hay. */
+    @Override
+    public void onPersisted(long seq, AuditEvent event, long actionId) {
+        MessageTrace t;
+        synchronized (pendingPersist) {
+            if (pendingPersist.isEmpty()) return;
+            t = pendingPersist.remove(seq);
+        }
+        if (t != null) t.end(Stage.PERSIST);
+    }
+
+    void awaitPersist(AuditEvent event, MessageTrace trace) {
+        synchronized (pendingPersist) {
+            awaitingSeq.put(event, trace);
+        }
+    }
+
+    private static <K> Map<K, MessageTrace> bounded() {
+        return new LinkedHashMap<>(64, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, MessageTrace> eldest) {
+                return size() > MAX_PENDING_PERSIST;
+            }
+        };
+    }
+
+    private static void pruneExports(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "trace-*.json")) {
+            for (Path p : ds) files.add(p);
+        }
+        if (files.size() <= MAX_EXPORTS) return;
+        files.sort(Comparator.comparing((Path p) -> p.getFileName().toString().length())
+                .thenComparing(p -> p.getFileName().toString()));
+        for (Path p : files.subList(0, files.size() - MAX_EXPORTS)) Files.deleteIfExists(p);
+    }
+
+    private List<MessageTrace> snapshot() {
+        List<MessageTrace> out = new ArrayList<>(ring.length);
+        synchronized (ring) {
+            for (MessageTrace t : ring) if (t != null) out.add(t);
+        }
+        return out;
+    }
+
+    private Map<String, Object> event(String name, String cat, long startNanos, long endNanos, long tid, Map<String, Object> args) {
+        Map<String, Object> e = new LinkedHashMap<>();
+        e.put("name", name);
+        e.put("cat", cat);
+        e.put("ph", "X");
+        e.put("ts", (startNanos - epoch) / 1000);
+        e.put("dur", Math.max(1, (endNanos - startNanos) / 1000));
+        e.put("pid", 1);
+        e.put("tid", tid);
+        if (args != null) e.put("args", args);
+        return e;
+    }
+}
@@ -0,0 +1,24 @@
+package server.transport;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ChannelHandler - Eventos que un {@link Transport} entrega a la aplicación.
+ * Se invocan en hilos del transporte: no deben bloquear.
+ */
+public interface ChannelHandler {
+
+    /** El transporte quedó escuchando. */
+    void onStart();
+
+    void onOpen(ClientChannel channel);
+
+    void onText(ClientChannel channel, String message);
+
+    void onBinary(ClientChannel channel, ByteBuffer data);
+
+    void onClose(ClientChannel channel, int code, String reason, boolean remote);
+
+    /** Error de una conexión, o del servidor si {@code channel} es null. */
+    void onError(ClientChannel channel, Exception ex);
+}
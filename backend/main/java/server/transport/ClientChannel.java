@@ -0,0 +1,47 @@
+package server.transport;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ClientChannel - Conexión de un cliente, independiente de la librería de transporte.
+ * Es lo único que ven los handlers y {@code MessageContext}; las implementaciones deben ser
+ * seguras para enviar desde varios hilos y conservar el orden de los envíos de un mismo hilo.
+ */
+public interface ClientChannel {
+
+    /** Envía un mensaje de texto (JSON). No bloquea: se encola si el socket está ocupado. */
+    void send(String text);
+
+    /**
+     * Como {@link #send(String)}, y ejecuta {@code written} cuando el frame se escribió al socket
+     * (en el hilo del transporte: debe ser inmediato). Si el transporte no lo sabe, al aceptar el envío.
+     */
+    default void send(String text, Runnable written) {
+        send(text);
+        written.run();
+    }
+
+    /**
+     * Envía como texto un mensaje ya codificado en UTF-8 (p.ej. un frame cacheado en memoria directa),
+     * sin pasarlo a String; no consume la posición del buffer, que no debe modificarse después.
+     */
+    default void sendText(ByteBuffer utf8) {
+        send(StandardCharsets.UTF_8.decode(utf8.duplicate()).toString());
+    }
+
+    /** Envía un mensaje binario; no consume la posición del buffer recibido. */
+    void send(ByteBuffer data);
+
+    boolean isOpen();
+
+    /** true si hay frames aceptados por {@code send} que todavía no se escribieron al socket. */
+    boolean hasBufferedData();
+
+    /** Cierra con código y motivo WebSocket (p.ej. 1008 "Not authed"). */
+    void close(int code, String reason);
+
+    /** Dirección remota, o null si el transporte no la conoce. */
+    InetSocketAddress getRemoteSocketAddress();
+}
@@ -0,0 +1,120 @@
+package server.transport;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * InMemoryTransport - Transporte en proceso, sin sockets: los "clientes" son objetos
+ * {@link Connection} que inyectan mensajes al servidor y reciben lo que este envía en un callback.
+ * Pensado para benchmarks y pruebas del pipeline de mensajes sin red ni librería WebSocket.
+ *
+ * Los mensajes del cliente se entregan al {@link ChannelHandler} en el hilo que llama a
+ * {@link Connection#sendText(String)}; los envíos del servidor llegan al callback en el hilo que envía.
+ */
+public final class InMemoryTransport implements Transport {
+    private final ChannelHandler handler;
+    private final Set<Connection> open = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    public InMemoryTransport(ChannelHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override public void start() { handler.onStart(); }
+    @Override public int getPort() { return 0; }
+    @Override public String name() { return Transports.MEMORY; }
+
+    @Override
+    public void stop(int timeoutMillis) {
+        for (Connection c : new ArrayList<>(open)) c.close(1001, "server stop");
+    }
+
+    /** Abre una conexión; {@code onText} recibe cada mensaje de texto que el servidor le envía. */
+    public Connection connect(Consumer<String> onText) {
+        return connect(onText, b -> { });
+    }
+
+    public Connection connect(Consumer<String> onText, Consumer<ByteBuffer> onBinary) {
+        int id = ids.incrementAndGet();
+        // dirección sintética única (10.x.y.z) para que los agregados por subred sigan funcionando
+        byte[] ip = {10, (byte) (id >> 16), (byte) (id >> 8), (byte) id};
+        InetSocketAddress addr;
+        try {
+            addr = new InetSocketAddress(InetAddress.getByAddress(ip), 1);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e); // no ocurre con 4 bytes
+        }
+        Connection c = new Connection(addr, onText, onBinary);
+        open.add(c);
+        handler.onOpen(c);
+        return c;
+    }
+
+    /** Conexión en memoria: lado servidor ({@link ClientChannel}) y lado cliente en un solo objeto. */
+    public final class Connection implements ClientChannel {
+        private final InetSocketAddress address;
+        private final Consumer<String> onText;
+        private final Consumer<ByteBuffer> onBinary;
+        private volatile boolean isOpen = true;
+
+        private Connection(InetSocketAddress address, Consumer<String> onText, Consumer<ByteBuffer> onBinary) {
+            this.address = address;
+            this.onText = onText;
+            this.onBinary = onBinary;
+        }
+
+        // ---- lado servidor
+
+        @Override
+        public void send(String text) {
+            if (isOpen) onText.accept(text);
+        }
+
+        @Override
+        public void send(ByteBuffer data) {
+            if (isOpen) onBinary.accept(data.asReadOnlyBuffer());
+        }
+
+        @Override public boolean isOpen() { return isOpen; }
+        @Override public boolean hasBufferedData() { return false; } // se entrega en el hilo que envía
+
+        @Override
+        public void close(int code, String reason) {
+            if (finish()) handler.onClose(this, code, reason, false);
+        }
+
+        @Override public InetSocketAddress getRemoteSocketAddress() { return address; }
+
+        // ---- lado cliente
+
+        /** El cliente envía un mensaje de texto al servidor. */
+        public void sendText(String message) {
+            if (isOpen) handler.onText(this, message);
+        }
+
+        public void sendBinary(ByteBuffer data) {
+            if (isOpen) handler.onBinary(this, data);
+        }
+
+        /** El cliente cierra la conexión. */
+        public void disconnect() {
+            if (finish()) handler.onClose(this, 1000, "", true);
+        }
+
+        private synchronized boolean finish() {
+            if (!isOpen) return false;
+            isOpen = false;
+            open.remove(this);
+            return true;
+        }
+
+        @Override public String toString() { return "memory:" + address.getAddress().getHostAddress(); }
+    }
+}
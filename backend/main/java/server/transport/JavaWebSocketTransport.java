@@ -0,0 +1,93 @@
+package server.transport;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+/**
+ * JavaWebSocketTransport - Adaptador de la librería Java-WebSocket a {@link Transport}.
+ * Cada conexión lleva su {@link ClientChannel} como attachment, así el canal es siempre la misma instancia.
+ */
+public final class JavaWebSocketTransport extends WebSocketServer implements Transport {
+    private final ChannelHandler handler;
+
+    public JavaWebSocketTransport(int port, ChannelHandler handler) {
+        super(new InetSocketAddress(port));
+        this.handler = handler;
+        // Mensajes chicos e interactivos (señalización, chat): sin Nagle, que sumaba ~40 ms por ida y vuelta
+        setTcpNoDelay(true);
+    }
+
+    @Override
+    public String name() { return Transports.JAVA_WEBSOCKET; }
+
+    @Override
+    public void onStart() {
+        setConnectionLostTimeout(30);
+        handler.onStart();
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        Channel ch = new Channel(conn);
+        conn.setAttachment(ch);
+        handler.onOpen(ch);
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        handler.onText(channel(conn), message);
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer bytes) {
+        handler.onBinary(channel(conn), bytes);
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        handler.onClose(channel(conn), code, reason, remote);
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        handler.onError(conn != null ? channel(conn) : null, ex);
+    }
+
+    private static ClientChannel channel(WebSocket conn) {
+        Channel ch = conn.getAttachment();
+        if (ch == null) {
+            // eventos previos a onOpen (p.ej. error en el handshake)
+            ch = new Channel(conn);
+            conn.setAttachment(ch);
+        }
+        return ch;
+    }
+
+    /** {@link ClientChannel} sobre un {@link WebSocket} de la librería. */
+    private static final class Channel implements ClientChannel {
+        private final WebSocket ws;
+
+        Channel(WebSocket ws) { this.ws = ws; }
+
+        @Override public void send(String text) { ws.send(text); }
+        @Override public void send(ByteBuffer data) { ws.send(data.duplicate()); }
+
+        /** Frame de texto armado a mano: la librería copia el payload una vez al buffer de salida, sin String. */
+        @Override
+        public void sendText(ByteBuffer utf8) {
+            TextFrame frame = new TextFrame();
+            frame.setPayload(utf8.duplicate());
+            ws.sendFrame(frame);
+        }
+        @Override public boolean isOpen() { return ws.isOpen(); }
+        @Override public boolean hasBufferedData() { return ws.hasBufferedData(); }
+        @Override public void close(int code, String reason) { ws.close(code, reason); }
+        @Override public InetSocketAddress getRemoteSocketAddress() { return ws.getRemoteSocketAddress(); }
+        @Override public String toString() { return String.valueOf(ws.getRemoteSocketAddress()); }
+    }
+}
@@ -0,0 +1,754 @@
+package server.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * NioWebSocketTransport - Servidor WebSocket (RFC 6455) propio sobre java.nio, sin la librería Java-WebSocket.
+ *
+ * Un hilo acepta conexiones y las reparte en round-robin entre {@code selectorThreads} bucles de
+ * selector; cada conexión vive siempre en el mismo bucle, así sus eventos llegan en orden y en un
+ * solo hilo. Cada bucle lee con un único buffer directo (sin copia extra entre kernel y heap) y
+ * escribe con escrituras agrupadas (gathering) de todos los frames pendientes de la conexión.
+ *
+ * Los envíos desde cualquier hilo se encolan en la conexión; el primer envío de una racha agenda
+ * un flush en el bucle dueño. Si el socket no acepta todo, se espera OP_WRITE.
+ * Soporta fragmentación, ping/pong, cierre ordenado y detección de conexiones inactivas
+ * (ping a los 30 s sin tráfico, cierre a los 60 s). Sin extensiones (permessage-deflate) ni subprotocolos.
+ * Solo acepta la versión 13 del protocolo (426 con la versión soportada si no). Frames de control
+ * fragmentados o de más de 125 bytes cierran con 1002 y un texto que no es UTF-8 válido con 1007.
+ */
+public final class NioWebSocketTransport implements Transport {
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int READ_BUFFER = 64 * 1024;
+    private static final int MAX_HEADER = 16 * 1024;
+    private static final int MAX_MESSAGE = 64 * 1024 * 1024;  // mensajes más grandes => cierre 1009
+    private static final int MAX_GATHER = 64;                  // frames por escritura agrupada
+    private static final long PING_AFTER_MS = 30_000;
+    private static final long DEAD_AFTER_MS = 60_000;
+    private static final long CLOSE_GRACE_MS = 5_000;
+    private static final int MAX_CONTROL_PAYLOAD = 125;
+
+    private static final int OP_CONT = 0x0, OP_TEXT = 0x1, OP_BINARY = 0x2, OP_CLOSE = 0x8, OP_PING = 0x9, OP_PONG = 0xA;
+
+    private final int port;
+    private final ChannelHandler handler;
+    private final Loop[] loops;
+    private final Set<Conn> conns = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+    private ServerSocketChannel server;
+    private Thread acceptor;
+
+    public NioWebSocketTransport(int port, int selectorThreads, ChannelHandler handler) {
+        this.port = port;
+        this.handler = handler;
+        this.loops = new Loop[Math.max(1, selectorThreads)];
+    }
+
+    @Override
+    public String name() { return Transports.NIO; }
+
+    @Override
+    public int getPort() {
+        try {
+            return server != null ? ((InetSocketAddress) server.getLocalAddress()).getPort() : port;
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    @Override
+    public void start() {
+        try {
+            server = ServerSocketChannel.open();
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            server.bind(new InetSocketAddress(port), 1024);
+            running = true;
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new Loop(i);
+                loops[i].thread.start();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("No se pudo abrir el puerto WebSocket " + port, e);
+        }
+        // no daemon: como el hilo del servidor de Java-WebSocket, mantiene viva la JVM hasta stop()
+        acceptor = new Thread(this::acceptLoop, "ws-nio-accept");
+        acceptor.start();
+        handler.onStart();
+    }
+
+    @Override
+    public void stop(int timeoutMillis) throws InterruptedException {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException ignored) { }
+        acceptor.interrupt();
+        for (Conn c : conns) c.close(1001, "");
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!conns.isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        for (Loop l : loops) l.shutdown();
+        for (Loop l : loops) l.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel ch = server.accept();
+                ch.configureBlocking(false);
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Loop loop = loops[next];
+                next = (next + 1) % loops.length;
+                loop.execute(() -> loop.register(ch));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (running) handler.onError(null, e);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ bucle de selector
+
+    private final class Loop implements Runnable {
+        final Thread thread;
+        final Selector selector;
+        final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER);
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        final Set<Conn> owned = ConcurrentHashMap.newKeySet();
+        volatile boolean active = true;
+        long lastSweep = System.currentTimeMillis();
+
+        Loop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "ws-nio-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Ejecuta {@code task} en el hilo del bucle. Desde el propio bucle no hace falta despertar
+         * el selector: {@link #run()} drena las tareas antes de cada select y no se bloquea si quedan.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread) selector.wakeup();
+        }
+
+        void shutdown() {
+            active = false;
+            selector.wakeup();
+        }
+
+        void register(SocketChannel ch) {
+            try {
+                Conn c = new Conn(this, ch);
+                c.key = ch.register(selector, SelectionKey.OP_READ, c);
+                owned.add(c);
+            } catch (IOException e) {
+                try {
+                    ch.close();
+                } catch (IOException ignored) { }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (active) {
+                try {
+                    runTasks();
+                    // una tarea pudo encolar otra (p. ej. flush reprogramado, user_left a un par del mismo bucle)
+                    if (tasks.isEmpty()) selector.select(1000);
+                    else selector.selectNow();
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Conn c = (Conn) key.attachment();
+                        if (!key.isValid()) continue;
+                        if (key.isReadable()) c.onReadable();
+                        if (key.isValid() && key.isWritable()) c.flush();
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastSweep >= 1000) {
+                        lastSweep = now;
+                        for (Conn c : owned) c.checkIdle(now);
+                    }
+                } catch (Exception e) {
+                    handler.onError(null, e);
+                }
+            }
+            for (Conn c : owned) c.terminate(1001, "server stop", false);
+            try {
+                selector.close();
+            } catch (IOException ignored) { }
+        }
+
+        /** Ejecuta las tareas encoladas hasta este momento (las que encolen ellas quedan para la vuelta siguiente). */
+        private void runTasks() {
+            for (int n = tasks.size(); n > 0; n--) {
+                Runnable task = tasks.poll();
+                if (task == null) return;
+                task.run();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ conexión
+
+    private enum State { HANDSHAKE, OPEN, CLOSING, CLOSED }
+
+    private final class Conn implements ClientChannel {
+        final Loop loop;
+        final SocketChannel ch;
+        final InetSocketAddress remote;
+        SelectionKey key;
+        volatile State state = State.HANDSHAKE;
+
+        // entrada (solo hilo del bucle)
+        ByteBuffer pending = ByteBuffer.allocate(4096);   // modo escritura
+        byte[] fragments;
+        int fragmentsLen;
+        int fragmentOpcode = -1;
+        long lastRead = System.currentTimeMillis();
+        boolean pingSent;
+        long closingSince;
+        final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        // salida
+        final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        final Queue<Written> written = new ConcurrentLinkedQueue<>(); // avisos de send(String, Runnable)
+        final AtomicBoolean flushScheduled = new AtomicBoolean();
+        final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        boolean closeAfterFlush;
+        int closeCode = 1006;
+        String closeReason = "";
+        boolean closeRemote;
+
+        Conn(Loop loop, SocketChannel ch) throws IOException {
+            this.loop = loop;
+            this.ch = ch;
+            this.remote = (InetSocketAddress) ch.getRemoteAddress();
+        }
+
+        // ---- ClientChannel (cualquier hilo)
+
+        @Override
+        public void send(String text) {
+            enqueue(frame(OP_TEXT, text.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public void send(String text, Runnable onWritten) {
+            ByteBuffer f = frame(OP_TEXT, text.getBytes(StandardCharsets.UTF_8));
+            if (state != State.OPEN) return;
+            // el aviso va antes que el frame: cuando el frame se termine de escribir, su aviso ya está en la cola
+            written.add(new Written(f, onWritten));
+            enqueue(f);
+        }
+
+        /** Cabecera propia y el payload tal cual: la escritura agrupada lo toma del buffer (directo) del llamador. */
+        @Override
+        public void sendText(ByteBuffer utf8) {
+            ByteBuffer payload = utf8.duplicate();
+            enqueue(frameHeader(OP_TEXT, payload.remaining()), payload);
+        }
+
+        @Override
+        public void send(ByteBuffer data) {
+            ByteBuffer src = data.duplicate();
+            byte[] payload = new byte[src.remaining()];
+            src.get(payload);
+            enqueue(frame(OP_BINARY, payload));
+        }
+
+        @Override
+        public boolean isOpen() { return state == State.OPEN; }
+
+        @Override
+        public boolean hasBufferedData() { return !outbound.isEmpty(); }
+
+        @Override
+        public void close(int code, String reason) {
+            loop.execute(() -> startClose(code, reason, false));
+        }
+
+        @Override
+        public InetSocketAddress getRemoteSocketAddress() { return remote; }
+
+        @Override
+        public String toString() { return String.valueOf(remote); }
+
+        private void enqueue(ByteBuffer... parts) {
+            if (state != State.OPEN) return;   // como la librería: tras el cierre no se envía nada
+            // las partes de un frame van juntas: otro hilo no puede intercalar un frame entre ellas
+            synchronized (outbound) {
+                for (ByteBuffer b : parts) outbound.add(b);
+            }
+            if (flushScheduled.compareAndSet(false, true)) loop.execute(this::flush);
+        }
+
+        // ---- escritura (hilo del bucle)
+
+        void flush() {
+            if (state == State.CLOSED) return;
+            try {
+                while (true) {
+                    int n = 0;
+                    for (ByteBuffer b : outbound) {
+                        gather[n++] = b;
+                        if (n == MAX_GATHER) break;
+                    }
+                    if (n == 0) break;
+                    ch.write(gather, 0, n);
+                    int done = 0;
+                    while (done < n && !gather[done].hasRemaining()) {
+                        outbound.poll();
+                        done++;
+                    }
+                    if (!written.isEmpty()) notifyWritten();
+                    Arrays.fill(gather, 0, n, null);
+                    if (done < n) {
+                        // el socket está lleno: seguimos cuando vuelva a aceptar datos
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                if (key.isValid()) key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (closeAfterFlush) {
+                    terminate(closeCode, closeReason, closeRemote);
+                    return;
+                }
+                flushScheduled.set(false);
+                // un envío pudo encolarse justo antes de liberar la marca
+                if (!outbound.isEmpty() && flushScheduled.compareAndSet(false, true)) loop.execute(this::flush);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Ejecuta los avisos cuyos frames ya se escribieron. Dos hilos pueden encolar aviso y frame
+         * intercalados: un aviso espera a que se escriban los frames de los avisos anteriores.
+         */
+        private void notifyWritten() {
+            Written w;
+            while ((w = written.peek()) != null && !w.frame.hasRemaining()) {
+                written.poll();
+                try {
+                    w.callback.run();
+                } catch (RuntimeException e) {
+                    // un aviso no debe cortar la escritura
+                }
+            }
+        }
+
+        private void writeRaw(ByteBuffer buf) {
+            synchronized (outbound) {
+                outbound.add(buf);
+            }
+            flushScheduled.set(true);
+            flush();
+        }
+
+        // ---- lectura (hilo del bucle)
+
+        void onReadable() {
+            ByteBuffer rb = loop.readBuffer;
+            try {
+                while (true) {
+                    rb.clear();
+                    int r = ch.read(rb);
+                    if (r < 0) throw new EOFException();
+                    if (r == 0) break;
+                    rb.flip();
+                    append(rb);
+                    if (r < rb.capacity()) break;
+                }
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            lastRead = System.currentTimeMillis();
+            pingSent = false;
+            pending.flip();
+            try {
+                if (state == State.HANDSHAKE) handshake();
+                while (state == State.OPEN || state == State.CLOSING) {
+                    if (!readFrame()) break;
+                }
+            } finally {
+                if (state != State.CLOSED) pending.compact();
+            }
+        }
+
+        private void append(ByteBuffer src) {
+            if (pending.remaining() < src.remaining()) {
+                int need = pending.position() + src.remaining();
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(need, pending.capacity() * 2));
+                pending.flip();
+                bigger.put(pending);
+                pending = bigger;
+            }
+            pending.put(src);
+        }
+
+        private void handshake() {
+            int end = headerEnd();
+            if (end < 0) {
+                if (pending.remaining() > MAX_HEADER) reject("431 Request Header Fields Too Large");
+                return;
+            }
+            byte[] raw = new byte[end];
+            pending.get(raw);
+            String[] lines = new String(raw, StandardCharsets.ISO_8859_1).split("\r\n");
+            String wsKey = null;
+            String version = null;
+            boolean upgrade = false;
+            boolean connectionUpgrade = false;
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) continue;
+                String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = lines[i].substring(colon + 1).trim();
+                if (name.equals("sec-websocket-key")) wsKey = value;
+                else if (name.equals("upgrade")) upgrade = value.equalsIgnoreCase("websocket");
+                else if (name.equals("sec-websocket-version")) version = value;
+                else if (name.equals("connection")) connectionUpgrade |= hasToken(value, "upgrade");
+            }
+            if (!lines[0].startsWith("GET ") || !upgrade || !connectionUpgrade || wsKey == null) {
+                reject("400 Bad Request");
+                return;
+            }
+            if (!"13".equals(version)) {
+                // RFC 6455 §4.4: se informa la versión que sí entendemos
+                reject("426 Upgrade Required", "Sec-WebSocket-Version: 13\r\n");
+                return;
+            }
+            String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptKey(wsKey) + "\r\n\r\n";
+            state = State.OPEN;
+            conns.add(this);
+            writeRaw(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+            handler.onOpen(this);
+        }
+
+        /** Posición justo después de "\r\n\r\n", o -1 si la cabecera está incompleta. */
+        private int headerEnd() {
+            int start = pending.position();
+            for (int i = start; i + 3 < pending.limit(); i++) {
+                if (pending.get(i) == '\r' && pending.get(i + 1) == '\n' && pending.get(i + 2) == '\r' && pending.get(i + 3) == '\n') {
+                    return i + 4 - start;
+                }
+            }
+            return -1;
+        }
+
+        private void reject(String status) {
+            reject(status, "");
+        }
+
+        private void reject(String status, String extraHeaders) {
+            String response = "HTTP/1.1 " + status + "\r\n" + extraHeaders + "Connection: close\r\nContent-Length: 0\r\n\r\n";
+            closeAfterFlush = true;
+            writeRaw(ByteBuffer.wrap(response.getBytes(StandardCharsets.ISO_8859_1)));
+        }
+
+        /** Procesa un frame completo si lo hay; false si faltan bytes o la conexión terminó. */
+        private boolean readFrame() {
+            ByteBuffer in = pending;
+            int start = in.position();
+            if (in.remaining() < 2) return false;
+            int b0 = in.get(start) & 0xff;
+            int b1 = in.get(start + 1) & 0xff;
+            boolean fin = (b0 & 0x80) != 0;
+            int opcode = b0 & 0x0f;
+            boolean masked = (b1 & 0x80) != 0;
+            long len = b1 & 0x7f;
+            int header = 2;
+            if (len == 126) {
+                if (in.remaining() < 4) return false;
+                len = in.getShort(start + 2) & 0xffff;
+                header = 4;
+            } else if (len == 127) {
+                if (in.remaining() < 10) return false;
+                len = in.getLong(start + 2);
+                header = 10;
+            }
+            if ((b0 & 0x70) != 0 || !masked) {
+                protocolError(1002, "Frame inválido");
+                return false;
+            }
+            if ((opcode & 0x8) != 0 && (!fin || len > MAX_CONTROL_PAYLOAD)) {
+                protocolError(1002, "Frame de control inválido");
+                return false;
+            }
+            if (len < 0 || len + fragmentsLen > MAX_MESSAGE) {
+                protocolError(1009, "Mensaje demasiado grande");
+                return false;
+            }
+            if (in.remaining() < header + 4 + len) return false;
+
+            byte[] mask = new byte[4];
+            in.position(start + header);
+            in.get(mask);
+            byte[] payload = new byte[(int) len];
+            in.get(payload);
+            for (int i = 0; i < payload.length; i++) payload[i] ^= mask[i & 3];
+
+            switch (opcode) {
+                case OP_TEXT, OP_BINARY -> {
+                    if (fragmentOpcode != -1) {
+                        protocolError(1002, "Se esperaba continuación");
+                        return false;
+                    }
+                    if (fin) {
+                        if (!deliver(opcode, payload, payload.length)) return false;
+                    } else {
+                        fragmentOpcode = opcode;
+                        fragmentsLen = 0;
+                        addFragment(payload);
+                    }
+                }
+                case OP_CONT -> {
+                    if (fragmentOpcode == -1) {
+                        protocolError(1002, "Continuación sin mensaje");
+                        return false;
+                    }
+                    addFragment(payload);
+                    if (fin) {
+                        int op = fragmentOpcode;
+                        fragmentOpcode = -1;
+                        boolean ok = deliver(op, fragments, fragmentsLen);
+                        fragments = null;
+                        fragmentsLen = 0;
+                        if (!ok) return false;
+                    }
+                }
+                case OP_PING -> enqueueControl(OP_PONG, payload);
+                case OP_PONG -> { }
+                case OP_CLOSE -> {
+                    int code = payload.length >= 2 ? ((payload[0] & 0xff) << 8) | (payload[1] & 0xff) : 1005;
+                    String reason = payload.length > 2 ? new String(payload, 2, payload.length - 2, StandardCharsets.UTF_8) : "";
+                    if (state == State.OPEN) {
+                        // respondemos el cierre y cortamos al terminar de enviar
+                        state = State.CLOSING;
+                        closeCode = code;
+                        closeReason = reason;
+                        closeRemote = true;
+                        closeAfterFlush = true;
+                        writeRaw(frame(OP_CLOSE, closePayload(code == 1005 ? 1000 : code, "")));
+                    } else {
+                        terminate(closeCode, closeReason, closeRemote);
+                    }
+                    return false;
+                }
+                default -> {
+                    protocolError(1002, "Opcode desconocido");
+                    return false;
+                }
+            }
+            return state == State.OPEN || state == State.CLOSING;
+        }
+
+        private void addFragment(byte[] payload) {
+            if (fragments == null) fragments = new byte[Math.max(payload.length, 4096)];
+            if (fragments.length < fragmentsLen + payload.length) {
+                fragments = Arrays.copyOf(fragments, Math.max(fragmentsLen + payload.length, fragments.length * 2));
+            }
+            System.arraycopy(payload, 0, fragments, fragmentsLen, payload.length);
+            fragmentsLen += payload.length;
+        }
+
+        /** Entrega un mensaje completo; false si su texto no es UTF-8 válido y la conexión se cierra. */
+        private boolean deliver(int opcode, byte[] data, int len) {
+            if (state != State.OPEN) return true;
+            String text = null;
+            if (opcode == OP_TEXT) {
+                try {
+                    // new String reemplazaría las secuencias inválidas en silencio
+                    text = utf8.reset().decode(ByteBuffer.wrap(data, 0, len)).toString();
+                } catch (CharacterCodingException e) {
+                    protocolError(1007, "UTF-8 inválido");
+                    return false;
+                }
+            }
+            try {
+                if (text != null) handler.onText(this, text);
+                else handler.onBinary(this, ByteBuffer.wrap(data, 0, len));
+            } catch (RuntimeException e) {
+                handler.onError(this, e);
+            }
+            return true;
+        }
+
+        private void enqueueControl(int opcode, byte[] payload) {
+            if (state == State.CLOSED) return;
+            writeRaw(frame(opcode, payload));
+        }
+
+        // ---- cierre
+
+        void startClose(int code, String reason, boolean remote) {
+            if (state == State.HANDSHAKE) {
+                terminate(code, reason, remote);
+                return;
+            }
+            if (state != State.OPEN) return;
+            state = State.CLOSING;
+            closingSince = System.currentTimeMillis();
+            closeCode = code;
+            closeReason = reason != null ? reason : "";
+            closeRemote = remote;
+            // esperamos el cierre del cliente; checkIdle corta si no llega
+            writeRaw(frame(OP_CLOSE, closePayload(code, closeReason)));
+        }
+
+        private void protocolError(int code, String reason) {
+            if (state == State.OPEN) {
+                startClose(code, reason, false);
+                closeAfterFlush = true;
+                if (outbound.isEmpty()) terminate(code, reason, false);
+            } else {
+                terminate(code, reason, false);
+            }
+        }
+
+        void checkIdle(long now) {
+            if (state == State.CLOSING) {
+                if (closingSince > 0 && now - closingSince > CLOSE_GRACE_MS) terminate(closeCode, closeReason, closeRemote);
+                return;
+            }
+            long idle = now - lastRead;
+            if (state == State.HANDSHAKE) {
+                if (idle > CLOSE_GRACE_MS * 2) terminate(1006, "handshake timeout", false);
+            } else if (state == State.OPEN) {
+                if (idle > DEAD_AFTER_MS) terminate(1006, "Sin respuesta al ping", false);
+                else if (idle > PING_AFTER_MS && !pingSent) {
+                    pingSent = true;
+                    enqueueControl(OP_PING, new byte[0]);
+                }
+            }
+        }
+
+        private void fail(IOException e) {
+            boolean wasOpen = state == State.OPEN;
+            if (wasOpen && !(e instanceof EOFException)) handler.onError(this, e);
+            terminate(wasOpen ? 1006 : closeCode, wasOpen ? "" : closeReason, true);
+        }
+
+        /** Cierra el socket y notifica onClose una sola vez (solo si la conexión llegó a abrirse). */
+        void terminate(int code, String reason, boolean remote) {
+            if (state == State.CLOSED) return;
+            boolean opened = state != State.HANDSHAKE;
+            state = State.CLOSED;
+            if (key != null) key.cancel();
+            try {
+                ch.close();
+            } catch (IOException ignored) { }
+            loop.owned.remove(this);
+            outbound.clear();
+            written.clear();
+            if (opened) {
+                conns.remove(this);
+                handler.onClose(this, code, reason, remote);
+            }
+        }
+    }
+
+    /** Frame de texto con aviso de escritura pendiente. */
+    private static final class Written {
+        final ByteBuffer frame;
+        final Runnable callback;
+
+        Written(ByteBuffer frame, Runnable callback) {
+            this.frame = frame;
+            this.callback = callback;
+        }
+    }
+
+    // ------------------------------------------------------------------ utilidades de frames
+
+    private static ByteBuffer frame(int opcode, byte[] payload) {
+        ByteBuffer buf = ByteBuffer.allocate(headerLength(payload.length) + payload.length);
+        putHeader(buf, opcode, payload.length);
+        buf.put(payload).flip();
+        return buf;
+    }
+
+    /** Solo la cabecera de un frame con {@code len} bytes de payload (sin máscara: lo envía el servidor). */
+    private static ByteBuffer frameHeader(int opcode, int len) {
+        ByteBuffer buf = ByteBuffer.allocate(headerLength(len));
+        putHeader(buf, opcode, len);
+        return buf.flip();
+    }
+
+    private static int headerLength(int len) {
+        return len < 126 ? 2 : len <= 0xffff ? 4 : 10;
+    }
+
+    private static void putHeader(ByteBuffer buf, int opcode, int len) {
+        buf.put((byte) (0x80 | opcode));
+        if (len < 126) {
+            buf.put((byte) len);
+        } else if (len <= 0xffff) {
+            buf.put((byte) 126).putShort((short) len);
+        } else {
+            buf.put((byte) 127).putLong(len);
+        }
+    }
+
+    /** true si la lista separada por comas de una cabecera contiene {@code token} (sin distinguir mayúsculas). */
+    private static boolean hasToken(String value, String token) {
+        for (String t : value.split(",")) {
+            if (t.trim().equalsIgnoreCase(token)) return true;
+        }
+        return false;
+    }
+
+    private static byte[] closePayload(int code, String reason) {
+        byte[] r = reason.getBytes(StandardCharsets.UTF_8);
+        int n = Math.min(r.length, 123);
+        byte[] out = new byte[2 + n];
+        out[0] = (byte) (code >> 8);
+        out[1] = (byte) code;
+        System.arraycopy(r, 0, out, 2, n);
+        return out;
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(sha1.digest((key + GUID).getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
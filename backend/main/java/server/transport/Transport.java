@@ -0,0 +1,20 @@
+package server.transport;
+
+/**
+ * Transport - Servidor de conexiones de clientes (WebSocket u otro) detrás de {@link ClientChannel}.
+ * Implementaciones: {@link JavaWebSocketTransport} (Java-WebSocket), {@link NioWebSocketTransport}
+ * (NIO propio, varios selectores) e {@link InMemoryTransport} (en proceso, para benchmarks).
+ */
+public interface Transport {
+
+    /** Arranca sin bloquear; {@link ChannelHandler#onStart()} se llama al quedar escuchando. */
+    void start();
+
+    /** Cierra las conexiones y libera los hilos, esperando como máximo {@code timeoutMillis}. */
+    void stop(int timeoutMillis) throws InterruptedException;
+
+    /** Puerto de escucha (0 si no usa red). */
+    int getPort();
+
+    String name();
+}
@@ -0,0 +1,22 @@
+package server.transport;
+
+/**
+ * Transports - Elige la implementación de {@link Transport} por nombre (ver {@code Config.getTransport()}).
+ */
+public final class Transports {
+    public static final String JAVA_WEBSOCKET = "java-websocket";
+    public static final String NIO = "nio";
+    public static final String MEMORY = "memory";
+
+    private Transports() { }
+
+    /**
+     * "nio" => {@link NioWebSocketTransport}; "memory" => {@link InMemoryTransport} (benchmarks, sin puerto);
+     * cualquier otro valor => {@link JavaWebSocketTransport}.
+     */
+    public static Transport create(String name, int port, int selectorThreads, ChannelHandler handler) {
+        if (NIO.equals(name)) return new NioWebSocketTransport(port, selectorThreads, handler);
+        if (MEMORY.equals(name)) return new InMemoryTransport(handler);
+        return new JavaWebSocketTransport(port, handler);
+    }
+}
@@ -0,0 +1,107 @@
+package server.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import server.model.User;
+import server.service.BroadcastShards;
+import server.transport.ChannelHandler;
+import server.transport.ClientChannel;
+import server.transport.InMemoryTransport;
+
+/**
+ * BroadcastBench - Tiempo hasta el último destinatario de un broadcast, en proceso.
+ *
+ * Conecta N clientes con {@link InMemoryTransport}, los registra en {@link BroadcastShards} y
+ * difunde un mensaje de texto; cada cliente codifica el mensaje a UTF-8 al recibirlo (el costo
+ * que pagaría el transporte al armar el frame). Para cada combinación de conexiones y shards
+ * mide cuánto queda retenido el hilo que difunde y cuánto tarda en llegar al último cliente.
+ * {@code shards=0} es la entrega en serie en el hilo que llama.
+ *
+ * Uso: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.BroadcastBench -Dexec.args="..."} con los argumentos
+ * [conexiones=1000,10000,50000] [shards=0,1,2,4,8] [rondas=20] [bytes=200].
+ */
+public final class BroadcastBench {
+
+    /** Los eventos del lado servidor no interesan: solo se usan los canales. */
+    private static final ChannelHandler IGNORE = new ChannelHandler() {
+        @Override public void onStart() { }
+        @Override public void onOpen(ClientChannel channel) { }
+        @Override public void onText(ClientChannel channel, String message) { }
+        @Override public void onBinary(ClientChannel channel, ByteBuffer data) { }
+        @Override public void onClose(ClientChannel channel, int code, String reason, boolean remote) { }
+        @Override public void onError(ClientChannel channel, Exception ex) { }
+    };
+
+    private volatile CountDownLatch done = new CountDownLatch(0);
+    private final AtomicInteger remaining = new AtomicInteger();
+    private volatile long lastAt;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = ints(args.length > 0 ? args[0] : "1000,10000,50000");
+        int[] shardCounts = ints(args.length > 1 ? args[1] : "0,1,2,4,8");
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int bytes = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        char[] fill = new char[bytes];
+        Arrays.fill(fill, 'x');
+        String payload = "{\"type\":\"text\",\"from\":\"bench\",\"content\":\"" + new String(fill) + "\"}";
+
+        System.out.println("Broadcast de " + payload.length() + " bytes, " + rounds + " rondas, "
+                + Runtime.getRuntime().availableProcessors() + " núcleos:");
+        for (int n : sizes) {
+            for (int shards : shardCounts) new BroadcastBench().run(n, shards, rounds, payload);
+        }
+    }
+
+    private void run(int connections, int shardCount, int rounds, String payload) throws Exception {
+        InMemoryTransport transport = new InMemoryTransport(IGNORE);
+        BroadcastShards shards = new BroadcastShards(shardCount);
+        for (int i = 0; i < connections; i++) {
+            InMemoryTransport.Connection c = transport.connect(this::received);
+            shards.add(c, new User(i, "u" + i, "u" + i));
+        }
+        long[] hold = new long[rounds];
+        long[] last = new long[rounds];
+        for (int r = -3; r < rounds; r++) { // 3 rondas de calentamiento
+            remaining.set(connections);
+            done = new CountDownLatch(1);
+            long t0 = System.nanoTime();
+            shards.broadcast(payload, (ch, u) -> true);
+            long t1 = System.nanoTime();
+            if (!done.await(60, TimeUnit.SECONDS)) throw new IllegalStateException("Broadcast incompleto: faltan " + remaining.get());
+            if (r < 0) continue;
+            hold[r] = (t1 - t0) / 1000;
+            last[r] = (lastAt - t0) / 1000;
+        }
+        shards.stop(1000);
+        transport.stop(0);
+        Arrays.sort(hold);
+        Arrays.sort(last);
+        System.out.printf("  %6d conexiones, shards=%d: hilo retenido p50=%.2f ms | último destinatario p50=%.2f ms p95=%.2f ms max=%.2f ms%n",
+                connections, shardCount, pct(hold, 50) / 1000.0, pct(last, 50) / 1000.0, pct(last, 95) / 1000.0,
+                last[last.length - 1] / 1000.0);
+    }
+
+    private void received(String message) {
+        byte[] frame = message.getBytes(StandardCharsets.UTF_8);
+        if (frame.length == 0) throw new IllegalStateException();
+        if (remaining.decrementAndGet() == 0) {
+            // antes del countDown: el hilo que espera lee lastAt apenas se libera
+            lastAt = System.nanoTime();
+            done.countDown();
+        }
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static long pct(long[] sorted, int p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+}
@@ -0,0 +1,173 @@
+package server.bench;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * CallSetupBench - Mide el establecimiento de videollamadas contra un servidor en marcha.
+ *
+ * Simula el protocolo del frontend: cada participante entra con join_room, envía un offer a
+ * cada usuario ya presente y {@code ice} candidatos por par; los demás responden con answer y
+ * sus propios candidatos. Para cada ingreso se mide join_room -> último answer y último
+ * candidato recibido, agrupado por tamaño de llamada.
+ *
+ * Uso: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.CallSetupBench -Dexec.args="..."} con los argumentos
+ * [ws://host:puerto/] [participantes=10] [rondas=5] [ice=12] [sdpBytes=3000].
+ * Registra usuarios "bench_*" nuevos en cada ronda: conviene usarlo con PERSISTENCE=local.
+ */
+public final class CallSetupBench {
+    private static final Gson GSON = new Gson();
+
+    private final URI uri;
+    private final int iceCount;
+    private final String sdp;
+    private final Map<Integer, List<Long>> setupMicros = new TreeMap<>();
+
+    private CallSetupBench(URI uri, int iceCount, int sdpBytes) {
+        this.uri = uri;
+        this.iceCount = iceCount;
+        char[] fill = new char[sdpBytes];
+        Arrays.fill(fill, 'a');
+        this.sdp = "v=0\r\no=- 0 0 IN IP4 127.0.0.1\r\n" + new String(fill);
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "ws://localhost:8081/");
+        int participants = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int ice = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+        int sdpBytes = args.length > 4 ? Integer.parseInt(args[4]) : 3000;
+        CallSetupBench bench = new CallSetupBench(uri, ice, sdpBytes);
+        for (int r = 0; r < rounds; r++) bench.round(participants, r);
+        bench.print();
+    }
+
+    private void round(int participants, int round) throws Exception {
+        String tag = Long.toString(System.nanoTime(), 36);
+        List<Peer> peers = new ArrayList<>();
+        for (int i = 0; i < participants; i++) {
+            Peer p = new Peer(uri, "bench_" + tag + "_" + i);
+            if (!p.connectBlocking(5, TimeUnit.SECONDS)) throw new IllegalStateException("No se pudo conectar a " + uri);
+            p.send(json("type", "register", "username", p.name, "fullName", p.name, "password", "bench"));
+            if (!p.authed.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("Registro sin respuesta: " + p.name);
+            peers.add(p);
+        }
+        for (int i = 0; i < participants; i++) {
+            Peer p = peers.get(i);
+            p.expect(1 + i * (1 + iceCount)); // room_users + answer e ICE de cada par
+            long t0 = System.nanoTime();
+            p.send(json("type", "join_room"));
+            if (!p.setupDone.await(10, TimeUnit.SECONDS)) {
+                System.err.println("Ronda " + round + ": " + p.name + " no completó el setup (" + p.setupDone.getCount() + " pendientes)");
+                continue;
+            }
+            if (i > 0) setupMicros.computeIfAbsent(i + 1, k -> new ArrayList<>()).add((p.doneAt - t0) / 1000);
+        }
+        for (Peer p : peers) {
+            p.send(json("type", "leave_room"));
+            p.closeBlocking();
+        }
+    }
+
+    private void print() {
+        System.out.println("Setup de videollamada (join_room -> último answer/candidato), " + iceCount + " ICE por par:");
+        for (Map.Entry<Integer, List<Long>> e : setupMicros.entrySet()) {
+            long[] v = e.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("  %2d participantes: n=%d p50=%.1f ms p95=%.1f ms max=%.1f ms%n", e.getKey(), v.length,
+                    pct(v, 50) / 1000.0, pct(v, 95) / 1000.0, v[v.length - 1] / 1000.0);
+        }
+    }
+
+    private static long pct(long[] sorted, int p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+
+    private static String json(Object... kv) {
+        Map<String, Object> m = new java.util.LinkedHashMap<>();
+        for (int i = 0; i + 1 < kv.length; i += 2) m.put(String.valueOf(kv[i]), kv[i + 1]);
+        return GSON.toJson(m);
+    }
+
+    /** Cliente que responde como el frontend (VideoCallManager). */
+    private final class Peer extends WebSocketClient {
+        final String name;
+        final CountDownLatch authed = new CountDownLatch(1);
+        volatile CountDownLatch setupDone = new CountDownLatch(0);
+        volatile long doneAt;
+        private volatile boolean joining;
+
+        Peer(URI server, String name) {
+            super(server);
+            this.name = name;
+            setTcpNoDelay(true); // como un navegador: sin Nagle en el lado cliente
+
+        }
+
+        /** Prepara la medición del próximo ingreso: mensajes que deben llegar. */
+        void expect(int total) {
+            setupDone = new CountDownLatch(total);
+            joining = true;
+        }
+
+        @Override public void onOpen(ServerHandshake handshake) { }
+        @Override public void onClose(int code, String reason, boolean remote) { }
+        @Override public void onError(Exception ex) { System.err.println(name + ": " + ex.getMessage()); }
+
+        @Override
+        public void onMessage(String message) {
+            Map<String, Object> m = GSON.fromJson(message, new TypeToken<Map<String, Object>>(){}.getType());
+            String type = String.valueOf(m.get("type"));
+            switch (type) {
+                case "register_ok" -> authed.countDown();
+                case "room_users" -> {
+                    arrived();
+                    for (Object u : (List<?>) m.get("users")) {
+                        if (name.equals(u)) continue;
+                        send(json("type", "webrtc_offer", "to", u, "offer", Map.of("type", "offer", "sdp", sdp)));
+                        sendIce(String.valueOf(u));
+                    }
+                }
+                case "webrtc_offer" -> {
+                    String from = String.valueOf(m.get("from"));
+                    send(json("type", "webrtc_answer", "to", from, "answer", Map.of("type", "answer", "sdp", sdp)));
+                    sendIce(from);
+                }
+                case "webrtc_answer", "webrtc_ice" -> arrived();
+                case "webrtc_ice_batch" -> ((List<?>) m.get("items")).forEach(x -> arrived());
+                default -> { }
+            }
+        }
+
+        private void sendIce(String to) {
+            for (int k = 0; k < iceCount; k++) {
+                send(json("type", "webrtc_ice", "to", to, "candidate", Map.of(
+                        "candidate", "candidate:" + k + " 1 udp 2122260223 192.168.1." + k + " 5" + k + "000 typ host",
+                        "sdpMid", "0", "sdpMLineIndex", 0)));
+            }
+        }
+
+        private void arrived() {
+            if (!joining) return; // señalización de otros ingresos: no se mide aquí
+            CountDownLatch l = setupDone;
+            if (l.getCount() == 1) {
+                // antes del countDown: el hilo que espera lee doneAt apenas se libera
+                joining = false;
+                doneAt = System.nanoTime();
+            }
+            l.countDown();
+        }
+    }
+}
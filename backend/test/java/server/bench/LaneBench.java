@@ -0,0 +1,162 @@
+package server.bench;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.handshake.ServerHandshake;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * LaneBench - Latencia de señalización y chat durante una ráfaga de archivos, contra un servidor en marcha.
+ *
+ * {@code uploaders} clientes suben archivos de {@code kb} KB sin pausa (cada uno se difunde al resto);
+ * mientras tanto, un par de sondas (que también reciben los archivos) se envía un {@code webrtc_offer}
+ * y un {@code text} cada 50 ms. Se mide envío -> llegada a la otra sonda de cada mensaje.
+ *
+ * Uso: {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.LaneBench -Dexec.args="..."} con los argumentos
+ * [ws://host:puerto/] [uploaders=4] [kb=1024] [muestras=100].
+ * Registra usuarios "lane_*" nuevos: conviene usarlo con PERSISTENCE=local.
+ */
+public final class LaneBench {
+    private static final Gson GSON = new Gson();
+
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "ws://localhost:8081/");
+        int uploaders = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int kb = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        int samples = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        String tag = Long.toString(System.nanoTime(), 36);
+
+        Client a = Client.open(uri, "lane_" + tag + "_a");
+        Client b = Client.open(uri, "lane_" + tag + "_b");
+        a.send(json("type", "join_room"));
+        b.send(json("type", "join_room"));
+        Thread.sleep(200);
+
+        byte[] data = new byte[kb * 1024];
+        new Random(1).nextBytes(data);
+        String file = Base64.getEncoder().encodeToString(data);
+        List<Client> ups = new ArrayList<>();
+        List<Thread> loops = new ArrayList<>();
+        for (int i = 0; i < uploaders; i++) {
+            Client u = Client.open(uri, "lane_" + tag + "_up" + i);
+            ups.add(u);
+            Thread t = new Thread(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        u.send(json("type", "file", "filename", "bench.bin", "mimetype", "application/octet-stream",
+                                "size", data.length, "data", file));
+                        // no acumular frames sin enviar en el cliente
+                        while (u.hasBufferedData()) Thread.sleep(1);
+                    }
+                } catch (InterruptedException | WebsocketNotConnectedException e) {
+                    // fin de la medición
+                }
+            }, "uploader-" + i);
+            t.setDaemon(true);
+            loops.add(t);
+            t.start();
+        }
+        Thread.sleep(1000); // que la ráfaga ya esté en curso
+
+        long[] offer = new long[samples];
+        long[] text = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            String id = tag + "-" + i;
+            b.arrivals.clear();
+            long t0 = System.nanoTime();
+            a.send(json("type", "webrtc_offer", "to", b.name, "offer", Map.of("type", "offer", "sdp", id)));
+            a.send(json("type", "text", "content", id));
+            offer[i] = b.await("offer:" + id, t0);
+            text[i] = b.await("text:" + id, t0);
+            Thread.sleep(50);
+        }
+        loops.forEach(Thread::interrupt);
+        for (Client u : ups) u.close();
+        a.close();
+        b.close();
+        System.out.printf("Ráfaga de %d uploaders x %d KB, %d muestras:%n", uploaders, kb, samples);
+        print("webrtc_offer", offer);
+        print("text", text);
+    }
+
+    private static void print(String label, long[] micros) {
+        long[] v = Arrays.stream(micros).filter(x -> x >= 0).sorted().toArray();
+        if (v.length == 0) {
+            System.out.println("  " + label + ": sin llegadas");
+            return;
+        }
+        System.out.printf("  %-12s n=%d p50=%.1f ms p95=%.1f ms max=%.1f ms (perdidos %d)%n", label, v.length,
+                pct(v, 50) / 1000.0, pct(v, 95) / 1000.0, v[v.length - 1] / 1000.0, micros.length - v.length);
+    }
+
+    private static long pct(long[] sorted, int p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+
+    private static String json(Object... kv) {
+        Map<String, Object> m = new java.util.LinkedHashMap<>();
+        for (int i = 0; i + 1 < kv.length; i += 2) m.put(String.valueOf(kv[i]), kv[i + 1]);
+        return GSON.toJson(m);
+    }
+
+    /** Cliente registrado que anota cuándo llegan offers y textos (clave "offer:sdp" / "text:contenido"). */
+    private static final class Client extends WebSocketClient {
+        final String name;
+        final CountDownLatch authed = new CountDownLatch(1);
+        final ConcurrentHashMap<String, Long> arrivals = new ConcurrentHashMap<>();
+
+        private Client(URI server, String name) {
+            super(server);
+            this.name = name;
+            setTcpNoDelay(true);
+        }
+
+        static Client open(URI uri, String name) throws InterruptedException {
+            Client c = new Client(uri, name);
+            if (!c.connectBlocking(5, TimeUnit.SECONDS)) throw new IllegalStateException("No se pudo conectar a " + uri);
+            c.send(json("type", "register", "username", name, "fullName", name, "password", "bench"));
+            if (!c.authed.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("Registro sin respuesta: " + name);
+            return c;
+        }
+
+        /** Microsegundos desde {@code t0} hasta la llegada de {@code key}, o -1 si no llega en 10 s. */
+        long await(String key, long t0) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            Long at;
+            while ((at = arrivals.get(key)) == null) {
+                if (System.nanoTime() > deadline) return -1;
+                Thread.sleep(0, 200_000);
+            }
+            return (at - t0) / 1000;
+        }
+
+        @Override public void onOpen(ServerHandshake handshake) { }
+        @Override public void onClose(int code, String reason, boolean remote) { }
+        @Override public void onError(Exception ex) { System.err.println(name + ": " + ex.getMessage()); }
+
+        @Override
+        public void onMessage(String message) {
+            long now = System.nanoTime();
+            if (message.length() > 4096) return; // archivos de la ráfaga: no se parsean
+            Map<String, Object> m = GSON.fromJson(message, new TypeToken<Map<String, Object>>(){}.getType());
+            String type = String.valueOf(m.get("type"));
+            if ("register_ok".equals(type)) authed.countDown();
+            else if ("webrtc_offer".equals(type)) arrivals.put("offer:" + ((Map<?, ?>) m.get("offer")).get("sdp"), now);
+            else if ("text".equals(type)) arrivals.put("text:" + m.get("content"), now);
+        }
+    }
+}
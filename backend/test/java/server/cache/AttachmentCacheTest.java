@@ -0,0 +1,77 @@
+package server.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import server.model.HistoryRecord;
+import server.service.handlers.FileGetHandler;
+
+/** Frames {@code file_data} armados una vez en memoria directa y reutilizados por id. */
+class AttachmentCacheTest {
+    private static final byte[] DATA = "contenido del adjunto ñ".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private HistoryRecord load(long id) {
+        loads.incrementAndGet();
+        if (id != 7) return null;
+        return HistoryRecord.file(7, "global", "ana", "año \"1\".txt", "text/plain", DATA.length,
+                Base64.getEncoder().encodeToString(DATA), 1000);
+    }
+
+    @Test
+    void frameIsTheFileDataMessageAndHitsShareDirectMemory() {
+        AttachmentCache cache = new AttachmentCache(1 << 20, FileGetHandler::frameHeader);
+        ByteBuffer first = cache.fileFrame(7, this::load);
+        JsonObject msg = new Gson().fromJson(StandardCharsets.UTF_8.decode(first.duplicate()).toString(), JsonObject.class);
+        assertEquals("file_data", msg.get("type").getAsString());
+        assertEquals(7, msg.get("id").getAsLong());
+        assertEquals("año \"1\".txt", msg.get("filename").getAsString());
+        assertEquals(DATA.length, msg.get("size").getAsLong());
+        assertEquals(Base64.getEncoder().encodeToString(DATA), msg.get("data").getAsString());
+
+        ByteBuffer again = cache.fileFrame(7, this::load);
+        assertTrue(again.isDirect() && again.isReadOnly(), "acierto: vista del buffer directo");
+        assertEquals(first, again);
+        assertEquals(1, loads.get(), "una sola carga");
+        assertEquals(1, cache.hits());
+
+        HistoryRecord hr = cache.fileRecord(7, this::load);
+        assertEquals(Base64.getEncoder().encodeToString(DATA), hr.getDataBase64(), "el historial sale del mismo frame");
+        assertEquals(1, loads.get());
+        assertNull(cache.fileFrame(8, this::load));
+    }
+
+    @Test
+    void rawVariantIsEncodedOnceIntoTheFrame() {
+        AttachmentCache cache = new AttachmentCache(1 << 20, FileGetHandler::frameHeader);
+        HistoryRecord meta = HistoryRecord.file(7, "global", "ana", "a.txt", "text/plain", DATA.length, null, 1000);
+        cache.putRaw(meta, DATA);
+        long rawBytes = cache.usedBytes();
+        ByteBuffer frame = cache.fileFrame(7, this::load);
+        assertEquals(0, loads.get(), "sale de la variante cruda");
+        assertEquals(frame.remaining(), cache.usedBytes(), "el frame reemplaza a la variante cruda");
+        assertTrue(rawBytes < cache.usedBytes());
+    }
+
+    @Test
+    void disabledOrOversizedStillServes() {
+        AttachmentCache off = new AttachmentCache(0, FileGetHandler::frameHeader);
+        assertTrue(off.fileFrame(7, this::load).remaining() > DATA.length);
+        assertEquals(0, off.usedBytes());
+        AttachmentCache tiny = new AttachmentCache(64, FileGetHandler::frameHeader);
+        assertEquals(off.fileFrame(7, this::load), tiny.fileFrame(7, this::load));
+        assertEquals(0, tiny.size(), "más de 1/8 del presupuesto no se guarda");
+    }
+}
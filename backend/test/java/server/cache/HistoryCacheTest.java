@@ -0,0 +1,42 @@
+package server.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import server.model.HistoryRecord;
+
+/** Recarga de una sala mientras llegan eventos recién persistidos. */
+class HistoryCacheTest {
+
+    @Test
+    void replaceKeepsRecordsAppendedAfterTheRead() {
+        HistoryCache cache = new HistoryCache(10);
+        assertNull(cache.recent("global"), "fría hasta la primera carga");
+        List<HistoryRecord> fromDb = List.of(text(1), text(2), text(3));   // leído de la BD
+        cache.append(text(4));                                            // persistido entre la lectura y el reemplazo
+        cache.replace("global", fromDb);
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(cache.recent("global")));
+    }
+
+    @Test
+    void replaceDropsStaleRecordsAndKeepsTheCapacity() {
+        HistoryCache cache = new HistoryCache(3);
+        cache.append(text(2));                     // ya cubierto por la lectura: gana la BD
+        cache.append(text(9));
+        cache.replace("global", List.of(text(3), text(4), text(5)));
+        assertEquals(List.of(4L, 5L, 9L), ids(cache.recent("global")), "los más recientes, en orden");
+        assertEquals(9L, cache.maxId("global"));
+    }
+
+    private static HistoryRecord text(long id) {
+        return HistoryRecord.text(id, "global", "ana", "m" + id, 1000 + id);
+    }
+
+    private static List<Long> ids(List<HistoryRecord> records) {
+        return records.stream().map(HistoryRecord::getId).toList();
+    }
+}
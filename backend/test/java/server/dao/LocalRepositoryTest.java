@@ -0,0 +1,68 @@
+package server.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import server.model.HistoryRecord;
+import server.model.User;
+
+/** Contrato sobre el log embebido, en un directorio temporal por prueba. */
+class LocalRepositoryTest extends RepositoryContractTest {
+    @TempDir
+    Path dir;
+
+    @Override
+    protected Persistence open() {
+        return Persistence.local(dir);
+    }
+
+    @Test
+    void reopenRebuildsIndexesFromLog() {
+        String name = "ana😀_" + tag;
+        User a = users.registerUser(name, "Ana 😀", "pw😀");
+        users.updateLastSeen(a.getId(), 7);
+        long id = actions.insertJournaled(1, "FILE", "sala😀", a.getId(), null, false, new Timestamp(1000),
+                null, "f😀.txt", "text/plain", 3, "abc".getBytes());
+        persistence.close();
+
+        persistence = Persistence.local(dir);
+        User again = persistence.userDAO().authenticate(name, "pw😀");
+        assertNotNull(again, "usuario persistido");
+        assertEquals(name, again.getUsername());
+        assertEquals(7L, persistence.userDAO().getLastSeen(again.getId()), "posición vista persistida");
+        HistoryRecord meta = persistence.actionDAO().getFileMeta(id);
+        assertNotNull(meta);
+        assertEquals("f😀.txt", meta.getFilename());
+        assertEquals(id, persistence.actionDAO().getHistoryHighWater("sala😀"));
+    }
+
+    @Test
+    void unknownRecordKindFailsTheOpenInsteadOfSkippingData() throws IOException {
+        users.registerUser("ana_" + tag, "Ana", "pw");
+        persistence.close();
+        byte[] body = { 0, 3, 'a', 'n', 'a' };   // registro íntegro de un tipo que este formato no define
+        CRC32C crc = new CRC32C();
+        crc.update(1);
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(9 + body.length);
+        record.putInt(body.length).putInt((int) crc.getValue()).put((byte) 1).put(body);
+        Files.write(dir.resolve("store.log"), record.array(), StandardOpenOption.APPEND);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> Persistence.local(dir));
+        assertTrue(e.getMessage().contains("tipo de registro desconocido 1"), e.getMessage());
+        persistence = Persistence.local(dir.resolve("otro"));   // para el cierre común del contrato
+    }
+}
@@ -0,0 +1,67 @@
+package server.dao;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+
+/**
+ * Contrato sobre MySQL, en un esquema descartable creado con {@code create_tables.sql} y borrado
+ * al terminar; nunca toca {@code DB_NAME}. Solo corre con {@code CONTRACT_MYSQL=true} (usa
+ * DB_HOST/DB_PORT/DB_USER/DB_PASS, el usuario necesita CREATE/DROP DATABASE).
+ */
+class MySqlRepositoryTest extends RepositoryContractTest {
+    private static final String SCHEMA = "chatapp_contract_" + Long.toString(System.currentTimeMillis(), 36);
+
+    @BeforeAll
+    static void createSchema() throws IOException, SQLException {
+        assumeTrue("true".equalsIgnoreCase(System.getenv("CONTRACT_MYSQL")), "CONTRACT_MYSQL=true para correr contra MySQL");
+        String script = Files.readString(Paths.get("documentación/database/create_tables.sql"), StandardCharsets.UTF_8);
+        try (Connection c = DBConnection.getInstance().getConnection(); Statement st = c.createStatement()) {
+            st.execute("CREATE DATABASE " + SCHEMA);
+            st.execute("USE " + SCHEMA);
+            for (String sql : statements(script)) st.execute(sql);
+        }
+        DBConnection.useDatabase(SCHEMA);
+    }
+
+    @AfterAll
+    static void dropSchema() throws SQLException {
+        if (!"true".equalsIgnoreCase(System.getenv("CONTRACT_MYSQL"))) return;
+        try (Connection c = DBConnection.getInstance().getConnection(); Statement st = c.createStatement()) {
+            st.execute("DROP DATABASE IF EXISTS " + SCHEMA);
+        }
+    }
+
+    @Override
+    protected Persistence open() {
+        return Persistence.mysql();
+    }
+
+    /** Sentencias del script sin comentarios ni las que eligen la base ({@code CREATE DATABASE}, {@code USE}). */
+    private static List<String> statements(String script) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) sb.append(line).append('\n');
+        }
+        List<String> out = new ArrayList<>();
+        for (String sql : sb.toString().split(";")) {
+            String s = sql.trim();
+            String upper = s.toUpperCase(Locale.ROOT);
+            if (s.isEmpty() || upper.startsWith("CREATE DATABASE") || upper.startsWith("USE ")) continue;
+            out.add(s);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,243 @@
+package server.dao;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import server.model.HistoryRecord;
+import server.model.User;
+
+/**
+ * Contrato común de {@link UserDAO}/{@link ActionDAO}: cada backend lo hereda y solo indica
+ * cómo abrir su {@link Persistence}. Los nombres llevan un sufijo único por prueba, así el
+ * mismo almacenamiento puede reutilizarse entre pruebas.
+ */
+abstract class RepositoryContractTest {
+    protected Persistence persistence;
+    protected UserDAO users;
+    protected ActionDAO actions;
+    protected final String tag = Long.toString(System.nanoTime(), 36);
+
+    /** Backend a verificar, vacío o descartable. */
+    protected abstract Persistence open() throws IOException;
+
+    @BeforeEach
+    void openBackend() throws IOException {
+        persistence = open();
+        users = persistence.userDAO();
+        actions = persistence.actionDAO();
+    }
+
+    @AfterEach
+    void closeBackend() {
+        persistence.close();
+    }
+
+    @Test
+    void ping() {
+        assertTrue(actions.ping());
+    }
+
+    @Test
+    void registerAndAuthenticate() {
+        String alice = "alice_" + tag;
+        User a = users.registerUser(alice, "Alice", "pw1");
+        assertNotNull(a);
+        assertNotNull(users.registerUser("carol_" + tag, null, "pw3"), "nombre completo opcional");
+        assertNull(users.registerUser(alice, "Otra", "x"), "username duplicado");
+        assertNull(users.registerUser("", "x", "x"), "username vacío");
+        User logged = users.authenticate(alice, "pw1");
+        assertNotNull(logged);
+        assertEquals(a.getId(), logged.getId());
+        assertNull(users.authenticate(alice, "mal"), "contraseña incorrecta");
+        assertNull(users.authenticate("nadie_" + tag, "pw1"), "usuario inexistente");
+        assertEquals(Integer.valueOf(a.getId()), actions.getUserIdByUsername(alice));
+        assertNull(actions.getUserIdByUsername("nadie_" + tag));
+    }
+
+    @Test
+    void lastSeenNeverMovesBack() {
+        User a = users.registerUser("alice_" + tag, "Alice", "pw1");
+        User b = users.registerUser("bob_" + tag, "Bob", "pw2");
+        assertEquals(0L, users.getLastSeen(a.getId()), "sin posición vista");
+        users.recordLogin(a.getId());
+        users.updateLastSeen(a.getId(), 40);
+        users.updateLastSeen(a.getId(), 25);
+        assertEquals(40L, users.getLastSeen(a.getId()));
+        assertEquals(0L, users.getLastSeen(b.getId()), "posición vista por usuario");
+    }
+
+    @Test
+    void journaledInsertIsIdempotentAndHistoryIsOrdered() {
+        User a = users.registerUser("alice_" + tag, "Alice", "pw1");
+        User b = users.registerUser("bob_" + tag, "Bob", "pw2");
+        String room = "contract-" + tag;
+        long seq = seqBase();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        assertEquals(0L, actions.getHistoryHighWater(room), "sala vacía");
+
+        long t1 = actions.insertJournaled(seq + 1, "TEXT", room, a.getId(), null, false, now, "hola", null, null, 0, null);
+        assertEquals(t1, actions.insertJournaled(seq + 1, "TEXT", room, a.getId(), null, false, now, "hola", null, null, 0, null),
+                "el mismo journal_seq devuelve el mismo id");
+        long t2 = actions.insertJournaled(seq + 2, "TEXT", room, b.getId(), null, false, now, "qué tal", null, null, 0, null);
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3, 4};
+        long f1 = actions.insertJournaled(seq + 3, "FILE", room, a.getId(), null, false, now, null, "a.png", "image/png", png.length, png);
+        byte[] txt = "contenido".getBytes();
+        long f2 = actions.insertJournaled(seq + 4, "FILE", room, b.getId(), null, false, now, null, "b.txt", "text/plain", txt.length, txt);
+        long other = actions.insertJournaled(seq + 5, "TEXT", room + "-otra", a.getId(), null, false, now, "fuera", null, null, 0, null);
+        actions.insertJournaled(seq + 6, "LOGIN", room, a.getId(), null, false, now, null, null, null, 0, null);
+        assertTrue(t1 < t2 && t2 < f1 && f1 < f2 && f2 < other, "ids crecientes");
+        assertEquals(f2, actions.getHistoryHighWater(room), "último TEXT/FILE de la sala");
+
+        List<HistoryRecord> h = actions.getRecentHistory(room, 10);
+        assertEquals(List.of(t1, t2, f1, f2), ids(h), "TEXT/FILE de la sala en orden ascendente");
+        assertEquals("text", h.get(0).getType());
+        assertEquals("hola", h.get(0).getContent());
+        assertEquals("alice_" + tag, h.get(0).getUsername());
+        assertEquals(Base64.getEncoder().encodeToString(png), h.get(2).getDataBase64(), "sin miniatura va el original");
+        assertEquals(List.of(f1, f2), ids(actions.getRecentHistory(room, 2)), "el límite conserva los más recientes");
+    }
+
+    @Test
+    void reusedJournalSeqOfAnotherActionIsRejected() {
+        User a = users.registerUser("alice_" + tag, "Alice", "pw1");
+        String room = "contract-" + tag;
+        long seq = seqBase();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        actions.insertJournaled(seq + 1, "TEXT", room, a.getId(), null, false, now, "hola", null, null, 0, null);
+        assertTrue(actions.getMaxJournalSeq() >= seq + 1, "el journal puede continuar desde la BD");
+        Timestamp later = new Timestamp(now.getTime() + 60_000);
+        assertThrows(RuntimeException.class, () -> actions.insertJournaled(seq + 1, "TEXT", room, a.getId(), null, false,
+                later, "otro", null, null, 0, null), "un journal nuevo no puede reutilizar la secuencia");
+        assertThrows(RuntimeException.class, () -> actions.insertJournaled(seq + 1, "LOGIN", room, a.getId(), null, false,
+                now, null, null, null, 0, null));
+        assertEquals(1, actions.getRecentHistory(room, 10).size(), "nada se asoció a la fila existente");
+    }
+
+    @Test
+    void previewReplacesOriginalInHistory() {
+        User a = users.registerUser("alice_" + tag, "Alice", "pw1");
+        String room = "contract-" + tag;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3, 4};
+        long f1 = actions.insertJournaled(seqBase() + 1, "FILE", room, a.getId(), null, false, now, null, "a.png", "image/png", png.length, png);
+        byte[] thumb = {9, 9, 9};
+        actions.insertFilePreview(f1, "image/jpeg", 1, 1, new byte[]{1});
+        actions.insertFilePreview(f1, "image/jpeg", 1, 1, thumb);
+        HistoryRecord withPreview = actions.getRecentHistory(room, 10).get(0);
+        assertEquals(Base64.getEncoder().encodeToString(thumb), withPreview.getPreviewBase64(), "miniatura reemplazada");
+        assertTrue(withPreview.getDataBase64() == null || withPreview.getDataBase64().isEmpty(), "con miniatura no va el original");
+    }
+
+    @Test
+    void attachments() throws IOException {
+        User a = users.registerUser("alice_" + tag, "Alice", "pw1");
+        String room = "contract-" + tag;
+        long seq = seqBase();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        long t1 = actions.insertJournaled(seq + 1, "TEXT", room, a.getId(), null, false, now, "hola", null, null, 0, null);
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3, 4};
+        long f1 = actions.insertJournaled(seq + 2, "FILE", room, a.getId(), null, false, now, null, "a.png", "image/png", png.length, png);
+        byte[] txt = "contenido".getBytes();
+        long f2 = actions.insertJournaled(seq + 3, "FILE", room, a.getId(), null, false, now, null, "b.txt", "text/plain", txt.length, txt);
+
+        HistoryRecord full = actions.getFileRecord(f1);
+        assertNotNull(full);
+        assertEquals(Base64.getEncoder().encodeToString(png), full.getDataBase64());
+        assertEquals("a.png", full.getFilename());
+        HistoryRecord meta = actions.getFileMeta(f2);
+        assertNotNull(meta);
+        assertNull(meta.getDataBase64(), "metadatos sin contenido");
+        assertEquals(txt.length, meta.getSize());
+        assertEquals("text/plain", meta.getMimetype());
+        assertNull(actions.getFileRecord(t1), "un TEXT no es adjunto");
+        assertNull(actions.getFileMeta(Long.MAX_VALUE));
+
+        Path out = Files.createTempFile("contract", ".bin");
+        try {
+            assertTrue(actions.copyFileData(f2, out));
+            assertArrayEquals(txt, Files.readAllBytes(out));
+            assertFalse(actions.copyFileData(Long.MAX_VALUE, out));
+        } finally {
+            Files.deleteIfExists(out);
+        }
+    }
+
+    @Test
+    void directMessagesOnlyForSenderAndRecipient() {
+        User a = users.registerUser("alice_" + tag, "Alice", "pw1");
+        User b = users.registerUser("bob_" + tag, "Bob", "pw2");
+        User c = users.registerUser("carol_" + tag, null, "pw3");
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        long d1 = actions.insertJournaled(seqBase() + 1, "DIRECT", "direct", a.getId(), b.getId(), false, now, "psst", null, null, 0, null);
+        List<HistoryRecord> da = actions.getDirectHistory(a.getId(), 10);
+        assertEquals(List.of(d1), ids(da));
+        assertEquals("bob_" + tag, da.get(0).getRecipient());
+        assertEquals(List.of(d1), ids(actions.getDirectHistory(b.getId(), 10)));
+        assertTrue(actions.getDirectHistory(c.getId(), 10).isEmpty());
+    }
+
+    @Test
+    void countsBetweenIdsExcludeBounds() {
+        User a = users.registerUser("alice_" + tag, "Alice", "pw1");
+        User b = users.registerUser("bob_" + tag, "Bob", "pw2");
+        String room = "contract-" + tag;
+        long seq = seqBase();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        long t1 = actions.insertJournaled(seq + 1, "TEXT", room, a.getId(), null, false, now, "uno", null, null, 0, null);
+        long d1 = actions.insertJournaled(seq + 2, "DIRECT", "direct", a.getId(), b.getId(), false, now, "psst", null, null, 0, null);
+        actions.insertJournaled(seq + 3, "LOGIN", room, a.getId(), null, false, now, null, null, null, 0, null);
+        long t2 = actions.insertJournaled(seq + 4, "TEXT", room, a.getId(), null, false, now, "dos", null, null, 0, null);
+        long d2 = actions.insertJournaled(seq + 5, "DIRECT", "direct", b.getId(), a.getId(), false, now, "hola", null, null, 0, null);
+        long t3 = actions.insertJournaled(seq + 6, "TEXT", room, a.getId(), null, false, now, "tres", null, null, 0, null);
+
+        assertEquals(1, actions.countHistoryBetween(room, t1, t3), "solo TEXT/FILE de la sala, sin los extremos");
+        assertEquals(3, actions.countHistoryBetween(room, 0, Long.MAX_VALUE));
+        assertEquals(0, actions.countHistoryBetween(room, t2, t2));
+        assertEquals(2, actions.countDirectBetween(a.getId(), 0, Long.MAX_VALUE), "enviados y recibidos");
+        assertEquals(1, actions.countDirectBetween(b.getId(), d1, Long.MAX_VALUE));
+        assertEquals(0, actions.countDirectBetween(b.getId(), d1, d2));
+    }
+
+    @Test
+    void textQueriesByIdAndAfter() {
+        User a = users.registerUser("alice_" + tag, "Alice", "pw1");
+        String room = "contract-" + tag;
+        long seq = seqBase();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        long t1 = actions.insertJournaled(seq + 1, "TEXT", room, a.getId(), null, false, now, "uno", null, null, 0, null);
+        long t2 = actions.insertJournaled(seq + 2, "TEXT", room, a.getId(), null, false, now, "dos", null, null, 0, null);
+        byte[] png = {1, 2};
+        long f1 = actions.insertJournaled(seq + 3, "FILE", room, a.getId(), null, false, now, null, "a.png", "image/png", png.length, png);
+        assertEquals(List.of(t2, t1), ids(actions.getTextRecordsByIds(Arrays.asList(t2, Long.MAX_VALUE, f1, t1))),
+                "orden recibido, sin inexistentes ni adjuntos");
+        List<HistoryRecord> after = actions.getTextRecordsAfter(t1, 1);
+        assertEquals(1, after.size());
+        assertEquals(t2, after.get(0).getId());
+    }
+
+    /** journal_seq únicos entre pruebas que comparten almacenamiento. */
+    private static long seqBase() {
+        return System.nanoTime() / 1000 * 1000;
+    }
+
+    private static List<Long> ids(List<HistoryRecord> records) {
+        return records.stream().map(HistoryRecord::getId).toList();
+    }
+}
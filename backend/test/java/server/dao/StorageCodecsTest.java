@@ -0,0 +1,98 @@
+package server.dao;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import server.Config;
+
+/** Ida y vuelta de deflate, política por tipo/tamaño y umbral de ahorro de 1/8. */
+class StorageCodecsTest {
+    private static final int MIN = Math.max(1, Config.getStorageCompressMinBytes());
+
+    @Test
+    void deflateRoundTripsBytesAndStreams() throws IOException {
+        byte[] raw = "hola mundo ".repeat(500).getBytes(StandardCharsets.UTF_8);
+        byte[] stored = StorageCodecs.DEFLATE.encode(raw);
+        assertTrue(stored.length < raw.length / 4);
+        assertArrayEquals(raw, StorageCodecs.decode("deflate", stored));
+        try (InputStream in = StorageCodecs.DEFLATE.decoding(new ByteArrayInputStream(stored))) {
+            assertArrayEquals(raw, in.readAllBytes());
+        }
+        assertArrayEquals(new byte[0], StorageCodecs.DEFLATE.decode(StorageCodecs.DEFLATE.encode(new byte[0])));
+        assertEquals("ñandú ".repeat(300), StorageCodecs.decodeText("deflate", null,
+                StorageCodecs.DEFLATE.encode("ñandú ".repeat(300).getBytes(StandardCharsets.UTF_8))));
+        assertEquals("sin comprimir", StorageCodecs.decodeText("none", "sin comprimir", null));
+    }
+
+    @Test
+    void compressiblePolicyByMimetypeAndSize() {
+        assertTrue(StorageCodecs.compressible("text/plain", MIN));
+        assertFalse(StorageCodecs.compressible("text/plain", MIN - 1), "por debajo del mínimo");
+        assertTrue(StorageCodecs.compressible(null, MIN), "tipo desconocido");
+        assertTrue(StorageCodecs.compressible("application/json", MIN));
+        assertTrue(StorageCodecs.compressible("image/svg+xml", MIN), "svg es texto");
+        assertTrue(StorageCodecs.compressible("IMAGE/SVG+XML", MIN));
+        assertFalse(StorageCodecs.compressible("image/png", MIN));
+        assertFalse(StorageCodecs.compressible("Video/MP4", MIN));
+        assertFalse(StorageCodecs.compressible("application/zip", MIN));
+        assertFalse(StorageCodecs.compressible("application/pdf", MIN));
+        assertFalse(StorageCodecs.compressible("application/vnd.openxmlformats-officedocument.wordprocessingml.document", MIN));
+    }
+
+    @Test
+    void keepsTheRawBytesUnlessTheCodecSavesAtLeastAnEighth() {
+        byte[] raw = new byte[8 * MIN];
+        StorageCodecs.Encoded saved = StorageCodecs.encode(fixedLength("x-eighth", raw.length - raw.length / 8), raw, "text/plain");
+        assertEquals("x-eighth", saved.getCodec());
+        assertEquals(raw.length - raw.length / 8, saved.getBytes().length);
+
+        StorageCodecs.Encoded kept = StorageCodecs.encode(fixedLength("x-less", raw.length - raw.length / 8 + 1), raw, "text/plain");
+        assertTrue(kept.isRaw());
+        assertSame(raw, kept.getBytes());
+
+        assertTrue(StorageCodecs.encode(fixedLength("x-png", 1), raw, "image/png").isRaw(), "ya comprimido");
+        assertTrue(StorageCodecs.encode(StorageCodecs.NONE, raw, "text/plain").isRaw());
+    }
+
+    @Test
+    void incompressibleContentIsStoredRaw() {
+        byte[] noise = new byte[4 * MIN];
+        new Random(42).nextBytes(noise);
+        StorageCodecs.Encoded e = StorageCodecs.encode(StorageCodecs.DEFLATE, noise, "application/octet-stream");
+        assertTrue(e.isRaw());
+        assertSame(noise, e.getBytes());
+    }
+
+    @Test
+    void codecNames() {
+        assertSame(StorageCodecs.NONE, StorageCodecs.forName(null), "filas previas a la columna codec");
+        assertSame(StorageCodecs.NONE, StorageCodecs.forName(""));
+        assertSame(StorageCodecs.DEFLATE, StorageCodecs.forName("deflate"));
+        assertNull(StorageCodecs.decode("deflate", null));
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> StorageCodecs.forName("lz4-no-registrado"));
+        assertTrue(e.getMessage().contains("lz4-no-registrado"));
+    }
+
+    /** Codec de prueba que "comprime" a un largo fijo. */
+    private static StorageCodec fixedLength(String name, int length) {
+        return new StorageCodec() {
+            @Override public String name() { return name; }
+            @Override public byte[] encode(byte[] raw) { return Arrays.copyOf(raw, length); }
+            @Override public InputStream decoding(InputStream stored) { return stored; }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package server.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import server.dao.ActionDAO;
+import server.dao.Persistence;
+
+/** Presupuesto LRU del spool, descarte por retención y metadatos cacheados. */
+class AttachmentSpoolTest {
+    @TempDir
+    Path dir;
+    private Persistence store;
+    private ActionDAO actions;
+    private int user;
+
+    @BeforeEach
+    void openStore() {
+        store = Persistence.local(dir.resolve("store"));
+        actions = store.actionDAO();
+        user = store.userDAO().registerUser("ana", "Ana", "pw").getId();
+    }
+
+    @AfterEach
+    void closeStore() {
+        store.close();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOverBudget() throws IOException {
+        Path spoolDir = dir.resolve("spool");
+        AttachmentSpool spool = AttachmentSpool.open(spoolDir, actions, 25);
+        long a = file(1, "aaaaaaaaaa"), b = file(2, "bbbbbbbbbb"), c = file(3, "cccccccccc");
+        assertEquals("aaaaaaaaaa", read(spool, a));
+        assertEquals("bbbbbbbbbb", read(spool, b));
+        assertEquals("aaaaaaaaaa", read(spool, a));   // 'a' pasa a ser el más reciente
+        assertEquals("cccccccccc", read(spool, c));
+        assertEquals(20, spool.usedBytes());
+        assertFalse(Files.exists(spoolDir.resolve(b + ".bin")), "se borra el menos usado");
+        assertTrue(Files.exists(spoolDir.resolve(a + ".bin")));
+
+        assertEquals("bbbbbbbbbb", read(spool, b), "lo desalojado se vuelve a materializar");
+
+        AttachmentSpool reopened = AttachmentSpool.open(spoolDir, actions, 10);
+        assertEquals(10, reopened.usedBytes(), "al abrir se recorta al presupuesto");
+    }
+
+    @Test
+    void evictAllDropsFilesAndMetadata() throws IOException {
+        Path spoolDir = dir.resolve("spool");
+        AttachmentSpool spool = AttachmentSpool.open(spoolDir, actions, 0);
+        long a = file(1, "contenido");
+        assertSame(spool.meta(a), spool.meta(a), "metadatos desde la LRU");
+        assertEquals("contenido", read(spool, a));
+
+        spool.evictAll(List.of(a, Long.MAX_VALUE));
+        assertFalse(Files.exists(spoolDir.resolve(a + ".bin")));
+        assertEquals(0, spool.usedBytes());
+        assertNull(spool.meta(Long.MAX_VALUE));
+        assertNull(spool.open(Long.MAX_VALUE));
+    }
+
+    private long file(long seq, String content) {
+        byte[] data = content.getBytes();
+        return actions.insertJournaled(seq, "FILE", "sala", user, null, false, new Timestamp(1000),
+                null, "f" + seq + ".txt", "text/plain", data.length, data);
+    }
+
+    private static String read(AttachmentSpool spool, long id) throws IOException {
+        try (FileChannel fc = spool.open(id)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) fc.size());
+            while (buf.hasRemaining()) fc.read(buf);
+            return new String(buf.array());
+        }
+    }
+}
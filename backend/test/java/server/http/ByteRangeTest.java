@@ -0,0 +1,53 @@
+package server.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/** Cabecera Range: sufijo, abierto, múltiple (se ignora) e insatisfacible. */
+class ByteRangeTest {
+
+    @Test
+    void suffixRangeTakesTheLastBytes() {
+        assertRange(7, 9, ByteRange.parse("bytes=-3", 10));
+        assertRange(0, 9, ByteRange.parse("bytes=-50", 10), "sufijo mayor que el contenido");
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", 10));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-5", 0), "contenido vacío");
+    }
+
+    @Test
+    void openEndedAndClampedRanges() {
+        assertRange(4, 9, ByteRange.parse("bytes=4-", 10));
+        assertRange(2, 5, ByteRange.parse(" bytes=2-5 ", 10));
+        assertRange(8, 9, ByteRange.parse("bytes=8-1000", 10), "fin recortado al contenido");
+        assertRange(0, 0, ByteRange.parse("bytes=0-0", 10));
+    }
+
+    @Test
+    void unsatisfiableWhenTheStartIsPastTheEnd() {
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=10-", 10));
+        assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=15-20", 10));
+    }
+
+    @Test
+    void multipleOrMalformedRangesServeTheWholeContent() {
+        assertNull(ByteRange.parse(null, 10));
+        assertNull(ByteRange.parse("bytes=0-1,4-5", 10), "multi-rango");
+        assertNull(ByteRange.parse("items=0-1", 10));
+        assertNull(ByteRange.parse("bytes=5", 10));
+        assertNull(ByteRange.parse("bytes=a-b", 10));
+        assertNull(ByteRange.parse("bytes=5-2", 10), "fin antes del inicio");
+    }
+
+    private static void assertRange(long start, long end, ByteRange r) {
+        assertRange(start, end, r, null);
+    }
+
+    private static void assertRange(long start, long end, ByteRange r, String msg) {
+        assertEquals(start, r.start, msg);
+        assertEquals(end, r.end, msg);
+        assertEquals(end - start + 1, r.length(), msg);
+    }
+}
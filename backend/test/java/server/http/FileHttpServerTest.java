@@ -0,0 +1,134 @@
+package server.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import server.dao.ActionDAO;
+import server.dao.Persistence;
+
+/** Respuestas 206/416 por Range, 304 por ETag y 403 con tokens vencidos o ajenos. */
+class FileHttpServerTest {
+    private static final String CONTENT = "0123456789";
+
+    @TempDir
+    Path dir;
+    private Persistence store;
+    private FileHttpServer server;
+    private final FileTokens tokens = FileTokens.create("secreto", 60_000);
+    private long id;
+    private String token;
+
+    @BeforeEach
+    void start() throws IOException {
+        store = Persistence.local(dir.resolve("store"));
+        ActionDAO actions = store.actionDAO();
+        int user = store.userDAO().registerUser("ana", "Ana", "pw").getId();
+        byte[] data = CONTENT.getBytes(StandardCharsets.US_ASCII);
+        id = actions.insertJournaled(1, "FILE", "global", user, null, false, new Timestamp(1000),
+                null, "n.txt", "text/plain", data.length, data);
+        token = tokens.issue("ana", id, System.currentTimeMillis() + 60_000);
+        server = new FileHttpServer(0, 2, AttachmentSpool.open(dir.resolve("spool"), actions, 0), tokens);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+        store.close();
+    }
+
+    @Test
+    void rangesAreServedAsPartialContent() throws IOException {
+        Response suffix = get("Range: bytes=-3");
+        assertEquals(206, suffix.status);
+        assertEquals("789", suffix.body);
+        assertEquals("bytes 7-9/10", suffix.headers.get("content-range"));
+
+        Response open = get("Range: bytes=6-");
+        assertEquals(206, open.status);
+        assertEquals("6789", open.body);
+
+        Response multi = get("Range: bytes=0-1,4-5");
+        assertEquals(200, multi.status, "multi-rango: contenido completo");
+        assertEquals(CONTENT, multi.body);
+
+        Response unsatisfiable = get("Range: bytes=20-");
+        assertEquals(416, unsatisfiable.status);
+        assertEquals("bytes */10", unsatisfiable.headers.get("content-range"));
+
+        Response staleIfRange = get("Range: bytes=0-1\r\nIf-Range: \"otro\"");
+        assertEquals(200, staleIfRange.status, "If-Range de otra versión: contenido completo");
+    }
+
+    @Test
+    void matchingEtagAnswersNotModified() throws IOException {
+        Response first = get(null);
+        assertEquals(200, first.status);
+        String etag = first.headers.get("etag");
+        assertEquals("\"" + id + "-10\"", etag);
+
+        Response cached = get("If-None-Match: " + etag);
+        assertEquals(304, cached.status);
+        assertNull(cached.headers.get("content-length"));
+        assertEquals("", cached.body);
+        assertEquals(304, get("If-None-Match: \"x\", W/" + etag).status, "lista y validador débil");
+        assertEquals(304, get("If-None-Match: *").status);
+        assertEquals(200, get("If-None-Match: \"" + id + "-11\"").status);
+    }
+
+    @Test
+    void expiredOrForeignTokensAreForbidden() throws IOException {
+        assertEquals(403, request("/files/" + id + "?t=" + tokens.issue("ana", id, System.currentTimeMillis() - 1), null).status);
+        assertEquals(403, request("/files/" + (id + 1) + "?t=" + token, null).status);
+        assertEquals(403, request("/files/" + id, null).status);
+        assertEquals(404, request("/otro/" + id + "?t=" + token, null).status);
+    }
+
+    private Response get(String extraHeaders) throws IOException {
+        return request("/files/" + id + "?t=" + token, extraHeaders);
+    }
+
+    private Response request(String target, String extraHeaders) throws IOException {
+        try (Socket s = new Socket("127.0.0.1", server.port())) {
+            s.setSoTimeout(5000);
+            String req = "GET " + target + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n"
+                    + (extraHeaders != null ? extraHeaders + "\r\n" : "") + "\r\n";
+            s.getOutputStream().write(req.getBytes(StandardCharsets.ISO_8859_1));
+            InputStream in = s.getInputStream();
+            ByteArrayOutputStream all = new ByteArrayOutputStream();
+            in.transferTo(all);
+            String raw = all.toString(StandardCharsets.ISO_8859_1);
+            int split = raw.indexOf("\r\n\r\n");
+            String[] lines = raw.substring(0, split).split("\r\n");
+            Response r = new Response();
+            r.status = Integer.parseInt(lines[0].split(" ")[1]);
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                r.headers.put(lines[i].substring(0, colon).toLowerCase(), lines[i].substring(colon + 1).trim());
+            }
+            r.body = r.status >= 400 ? null : raw.substring(split + 4);
+            return r;
+        }
+    }
+
+    private static final class Response {
+        int status;
+        final Map<String, String> headers = new HashMap<>();
+        String body;
+    }
+}
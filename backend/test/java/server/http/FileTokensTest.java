@@ -0,0 +1,52 @@
+package server.http;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Firma, expiración y manipulación de los tokens de descarga. */
+class FileTokensTest {
+    private static final long NOW = 1_000_000L;
+    private final FileTokens tokens = FileTokens.create("secreto", 60_000);
+
+    @Test
+    void validUntilItExpires() {
+        String t = tokens.issue("ana", 42, NOW + 1000);
+        assertTrue(tokens.verify(t, 42, NOW));
+        assertTrue(tokens.verify(t, 42, NOW + 999));
+        assertFalse(tokens.verify(t, 42, NOW + 1000), "vence en expiresAt");
+        assertFalse(tokens.verify(t, 43, NOW), "otro adjunto");
+    }
+
+    @Test
+    void tamperedTokensAreRejected() {
+        String t = tokens.issue("ana", 42, NOW + 1000);
+        String[] p = t.split("\\.");
+        assertFalse(tokens.verify("43." + p[1] + "." + p[2] + "." + p[3], 43, NOW), "id cambiado");
+        assertFalse(tokens.verify(p[0] + "." + (NOW + 10_000_000) + "." + p[2] + "." + p[3], 42, NOW), "expiración extendida");
+        assertFalse(tokens.verify(p[0] + "." + p[1] + ".Ym9i." + p[3], 42, NOW), "otro usuario");
+        char last = p[3].charAt(0);
+        assertFalse(tokens.verify(p[0] + "." + p[1] + "." + p[2] + "." + (last == 'A' ? 'B' : 'A') + p[3].substring(1), 42, NOW),
+                "firma alterada");
+        assertFalse(tokens.verify(p[0] + "." + p[1] + "." + p[2] + ".!!", 42, NOW), "firma no base64");
+        assertFalse(FileTokens.create("otra clave", 60_000).verify(t, 42, NOW), "otra clave");
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        assertFalse(tokens.verify(null, 42, NOW));
+        assertFalse(tokens.verify("", 42, NOW));
+        assertFalse(tokens.verify(".", 42, NOW));
+        assertFalse(tokens.verify("42", 42, NOW));
+    }
+
+    @Test
+    void randomKeyWhenNoSecretIsConfigured() {
+        FileTokens a = FileTokens.create(null, 60_000);
+        FileTokens b = FileTokens.create(" ", 60_000);
+        String t = a.issue("ana", 1, NOW + 1000);
+        assertTrue(a.verify(t, 1, NOW));
+        assertFalse(b.verify(t, 1, NOW));
+    }
+}
@@ -0,0 +1,89 @@
+package server.lanes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** Prioridad de high sobre normal en el pool compartido y rechazo con la cola bulk llena. */
+class LaneExecutorsTest {
+    private final LaneMetrics metrics = new LaneMetrics();
+    private LaneExecutors lanes;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        lanes.stop(1000);
+    }
+
+    @Test
+    void highIsTakenBeforeQueuedNormalAndEachLaneKeepsArrivalOrder() throws InterruptedException {
+        lanes = new LaneExecutors(1, 1, 1, metrics);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        List<String> order = new CopyOnWriteArrayList<>();
+        lanes.execute(Lane.NORMAL, () -> await(release));   // ocupa el único hilo
+        for (String s : List.of("n1", "n2")) lanes.execute(Lane.NORMAL, record(order, s, done));
+        for (String s : List.of("h1", "h2")) lanes.execute(Lane.HIGH, record(order, s, done));
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("h1", "h2", "n1", "n2"), order);
+    }
+
+    @Test
+    void fullBulkQueueRejectsWithoutTouchingOtherLanes() throws InterruptedException {
+        lanes = new LaneExecutors(1, 1, 1, metrics);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(lanes.execute(Lane.BULK, () -> await(release)));   // en el hilo
+        assertTrue(lanes.execute(Lane.BULK, () -> { }));              // en la cola
+        assertFalse(lanes.execute(Lane.BULK, () -> { }), "cola llena");
+        assertEquals(1, metrics.rejected(Lane.BULK));
+
+        CountDownLatch normal = new CountDownLatch(1);
+        assertTrue(lanes.execute(Lane.NORMAL, normal::countDown));
+        assertTrue(normal.await(5, TimeUnit.SECONDS), "normal no espera a bulk");
+        release.countDown();
+    }
+
+    @Test
+    void failingTaskDoesNotKillTheWorkerAndIsLogged() throws InterruptedException {
+        lanes = new LaneExecutors(1, 1, 1, metrics);
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            lanes.execute(Lane.NORMAL, () -> { throw new IllegalStateException("handler roto"); });
+            CountDownLatch next = new CountDownLatch(1);
+            lanes.execute(Lane.NORMAL, next::countDown);
+            assertTrue(next.await(5, TimeUnit.SECONDS));
+        } finally {
+            System.setErr(err);
+        }
+        String log = captured.toString(StandardCharsets.UTF_8);
+        assertTrue(log.contains(Lane.NORMAL.label()) && log.contains("handler roto"), log);
+    }
+
+    private static Runnable record(List<String> order, String name, CountDownLatch done) {
+        return () -> {
+            order.add(name);
+            done.countDown();
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
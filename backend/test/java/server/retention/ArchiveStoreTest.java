@@ -0,0 +1,73 @@
+package server.retention;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import server.model.ActionRow;
+
+/** Segmentos de archivo: ida y vuelta, filtros y reintentos que nunca sobrescriben. */
+class ArchiveStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void queryFiltersByTypeRoomAndDateAndKeepsDetails() throws IOException {
+        ArchiveStore archive = new ArchiveStore(dir);
+        archive.write(List.of(
+                text(1, "global", 1_000, "hola"),
+                new ActionRow(2, "FILE", "global", 7, null, false, 2_000, null, "a.bin", "application/octet-stream",
+                        3, new byte[] { 1, 2, 3 }),
+                new ActionRow(3, "SYSTEM", null, null, null, true, 3_000, "arranque", null, null, 0, null)));
+        archive.write(List.of(text(4, "sala", 4_000, "chau")));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(archive.query(null, null, 0, 0, 10)));
+        assertEquals(List.of(1L, 4L), ids(archive.query("TEXT", null, 0, 0, 10)));
+        assertEquals(List.of(4L), ids(archive.query(null, "sala", 0, 0, 10)));
+        assertEquals(List.of(2L, 3L), ids(archive.query(null, null, 1_500, 3_500, 10)));
+        assertEquals(List.of(1L, 2L), ids(archive.query(null, null, 0, 0, 2)), "limit");
+
+        ActionRow file = archive.query("FILE", null, 0, 0, 1).get(0);
+        assertEquals("a.bin", file.getFilename());
+        assertEquals(7, file.getActorUserId());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, file.getData());
+        ActionRow sys = archive.query("SYSTEM", null, 0, 0, 1).get(0);
+        assertNull(sys.getActorUserId());
+        assertEquals("arranque", sys.getContent());
+    }
+
+    @Test
+    void rewritingTheSameRangeAddsASuffixAndQueryDropsRepeatedIds() throws IOException {
+        ArchiveStore archive = new ArchiveStore(dir);
+        List<ActionRow> batch = List.of(text(1, "global", 1_000, "a"), text(2, "global", 2_000, "b"));
+        Path first = archive.write(batch);
+        Path retry = archive.write(batch);   // mismo lote tras un fallo antes del borrado en BD
+        assertNotEquals(first, retry);
+        assertEquals(2, segments().size(), "el original no se reemplaza");
+        assertEquals(List.of(1L, 2L), ids(archive.query(null, null, 0, 0, 10)));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().endsWith(".jsonl.gz")).toList();
+        }
+    }
+
+    static ActionRow text(long id, String room, long createdAt, String content) {
+        return new ActionRow(id, "TEXT", room, 7, null, false, createdAt, content, null, null, 0, null);
+    }
+
+    static List<Long> ids(List<ActionRow> rows) {
+        return rows.stream().map(ActionRow::getId).toList();
+    }
+}
@@ -0,0 +1,170 @@
+package server.retention;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import server.dao.RetentionDAO;
+import server.model.ActionRow;
+
+/** Archivado y DROP de particiones expiradas, y reanudación tras una pasada cortada o fallida. */
+class RetentionJobTest {
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    @TempDir
+    Path dir;
+    private final FakeRetentionDAO dao = new FakeRetentionDAO();
+    private final long now = System.currentTimeMillis();
+    private ArchiveStore archive;
+
+    @BeforeEach
+    void fill() {
+        archive = new ArchiveStore(dir);
+        dao.partition("pold", (now - 365 * DAY_MS) / 1000);
+        dao.partition("pmax", Long.MAX_VALUE);
+        for (long id = 1; id <= 5; id++) dao.insert("pold", system(id, now - 400 * DAY_MS + id));
+    }
+
+    @Test
+    void expiredPartitionIsArchivedDroppedAndStillQueryable() throws IOException {
+        assertEquals(5, job(100).runOnce());
+        assertTrue(dao.dropped.containsKey("pold"));
+        dao.dropped.forEach((p, upper) -> assertTrue(upper * 1000 <= now, "no borra particiones futuras: " + p));
+        assertTrue(dao.bounds.containsKey("pmax"));
+        assertTrue(dao.bounds.values().stream().anyMatch(upper -> upper != Long.MAX_VALUE && upper * 1000 > now),
+                "crea particiones futuras");
+
+        List<ActionRow> rows = archive.query("SYSTEM", null, 0, 0, 100);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ArchiveStoreTest.ids(rows));
+        assertEquals("evento 3", rows.get(2).getContent());
+    }
+
+    @Test
+    void passCutByTheRowBudgetResumesWithoutArchivingTwice() throws IOException {
+        RetentionJob job = job(2);
+        assertEquals(2, job.runOnce());
+        assertFalse(dao.dropped.containsKey("pold"), "quedan filas sin archivar");
+        assertEquals(2, job.runOnce());
+        assertEquals(1, job.runOnce());
+        assertTrue(dao.dropped.containsKey("pold"));
+
+        assertEquals(3, segments().size());
+        assertTrue(segments().stream().noneMatch(p -> p.getFileName().toString().matches(".*-\\d+-\\d+-\\d+-\\d+-\\d+\\.jsonl\\.gz")),
+                "sin segmentos de reintento");
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ArchiveStoreTest.ids(archive.query(null, null, 0, 0, 100)));
+    }
+
+    @Test
+    void crashBetweenArchiveAndDeleteIsRetriedWithoutLosingTheFirstCopy() throws IOException {
+        RetentionJob job = job(100);
+        dao.failNextDelete = true;
+        assertThrows(RuntimeException.class, job::runOnce);   // segmento escrito, filas aún en la BD
+        assertEquals(1, segments().size());
+
+        assertEquals(5, job.runOnce());
+        assertTrue(dao.dropped.containsKey("pold"));
+        assertEquals(4, segments().size(), "el lote reintentado va a un segmento con sufijo");
+        List<ActionRow> rows = archive.query(null, null, 0, 0, 100);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ArchiveStoreTest.ids(rows));
+        assertEquals("evento 1", rows.get(0).getContent());
+    }
+
+    private RetentionJob job(int maxRowsPerRun) {
+        return new RetentionJob(dao, archive, null, Map.of("SYSTEM", 30), 2, 0, maxRowsPerRun, true);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().endsWith(".jsonl.gz")).toList();
+        }
+    }
+
+    private static ActionRow system(long id, long createdAt) {
+        return new ActionRow(id, "SYSTEM", null, null, null, true, createdAt, "evento " + id, null, null, 0, null);
+    }
+
+    /** 'actions' particionada en memoria: cada fila queda en la partición donde se insertó. */
+    private static final class FakeRetentionDAO implements RetentionDAO {
+        final Map<String, Long> bounds = new LinkedHashMap<>();
+        final Map<String, TreeMap<Long, ActionRow>> rows = new LinkedHashMap<>();
+        final Map<String, Long> dropped = new LinkedHashMap<>();
+        boolean failNextDelete;
+
+        void partition(String name, long upperEpochSeconds) {
+            bounds.put(name, upperEpochSeconds);
+            rows.put(name, new TreeMap<>());
+        }
+
+        void insert(String partition, ActionRow row) {
+            rows.get(partition).put(row.getId(), row);
+        }
+
+        @Override
+        public List<ActionRow> selectExpired(String actionType, Timestamp cutoff, int limit) {
+            return rows.values().stream().flatMap(m -> m.values().stream())
+                    .filter(r -> r.getActionType().equals(actionType) && r.getCreatedAt() < cutoff.getTime())
+                    .sorted(Comparator.comparingLong(ActionRow::getId)).limit(limit).toList();
+        }
+
+        @Override
+        public List<ActionRow> selectFromPartition(String partition, long afterId, int limit) {
+            return rows.get(partition).tailMap(afterId, false).values().stream().limit(limit).toList();
+        }
+
+        @Override
+        public int deleteByIds(List<Long> ids) {
+            if (failNextDelete) {
+                failNextDelete = false;
+                throw new RuntimeException("conexión perdida");
+            }
+            int deleted = 0;
+            for (TreeMap<Long, ActionRow> m : rows.values()) {
+                for (Long id : ids) if (m.remove(id) != null) deleted++;
+            }
+            return deleted;
+        }
+
+        @Override public boolean isActionsPartitioned() { return true; }
+
+        @Override
+        public Map<String, Long> listPartitions() {
+            Map<String, Long> out = new LinkedHashMap<>();
+            bounds.entrySet().stream().sorted(Map.Entry.comparingByValue())
+                    .forEach(e -> out.put(e.getKey(), e.getValue()));
+            return out;
+        }
+
+        @Override
+        public List<String> actionTypesIn(String partition) {
+            return rows.get(partition).values().stream().map(ActionRow::getActionType).distinct().toList();
+        }
+
+        @Override
+        public void addPartitionBefore(String maxPartition, String name, long upperEpochSeconds) {
+            partition(name, upperEpochSeconds);
+        }
+
+        @Override
+        public void dropPartition(String name) {
+            if (!rows.get(name).isEmpty()) throw new IllegalStateException("partición con filas: " + name);
+            dropped.put(name, bounds.remove(name));
+            rows.remove(name);
+        }
+    }
+}
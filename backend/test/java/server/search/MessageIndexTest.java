@@ -0,0 +1,85 @@
+package server.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import server.dao.ActionDAO;
+import server.dao.Persistence;
+
+/** Paginación hacia atrás sobre buffers y segmentos, y la marca contigua al reiniciar. */
+class MessageIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void pagesWalkBackwardsAcrossBuffersAndSegments() {
+        MessageIndex idx = MessageIndex.open(dir, 3);
+        List<Long> expected = new ArrayList<>();
+        for (long id = 1; id <= 40; id++) {
+            boolean both = id % 3 == 0;
+            idx.add(id, "sala", both ? "hola mundo" : "hola");
+            idx.add(1000 + id, "otra", "hola mundo");
+            if (both) expected.add(0, id);
+        }
+        idx.add(25, "sala", "hola mundo tarde");   // id repetido y fuera de orden: solapa segmentos
+        expected.add(expected.indexOf(24L), 25L);
+
+        List<Long> seen = new ArrayList<>();
+        long before = 0;
+        do {
+            SearchPage page = idx.search("sala", "mundo hola", before, 4);
+            assertTrue(page.getIds().size() <= 4);
+            seen.addAll(page.getIds());
+            before = page.getNextBefore();
+        } while (before > 0);
+        assertEquals(expected, seen, "todas las coincidencias, de la más reciente a la más antigua, sin duplicados");
+
+        SearchPage last = idx.search("sala", "hola", 2, 4);
+        assertEquals(List.of(1L), last.getIds());
+        assertFalse(last.hasMore());
+        assertTrue(idx.search("sala", "inexistente", 0, 4).getIds().isEmpty());
+        idx.close();
+    }
+
+    @Test
+    void restartReindexesIdsIndexedOutOfOrderDuringCatchUp() {
+        Persistence store = Persistence.local(dir.resolve("store"));
+        try {
+            ActionDAO actions = store.actionDAO();
+            int user = store.userDAO().registerUser("ana", "Ana", "pw").getId();
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            List<Long> ids = new ArrayList<>();
+            for (int i = 1; i <= 5; i++) {
+                ids.add(actions.insertJournaled(i, "TEXT", "sala", user, null, false, now, "mensaje " + i, null, null, 0, null));
+            }
+            long newest = ids.get(4);
+
+            // antes de que termine catchUp llegan en vivo los más nuevos y se vuelcan a disco
+            MessageIndex idx = MessageIndex.open(dir.resolve("idx"), 1);
+            idx.add(newest, "sala", "mensaje 5");
+            idx.add(newest + 100, "sala", "otro mensaje");
+            idx.close();
+
+            idx = MessageIndex.open(dir.resolve("idx"), 1);
+            assertEquals(0L, idx.watermark(), "sin catchUp la marca no avanza");
+            idx.catchUp(actions);
+            assertEquals(6, idx.search("sala", "mensaje", 0, 10).getIds().size());
+            idx.close();
+
+            idx = MessageIndex.open(dir.resolve("idx"), 1);
+            assertEquals(newest + 100, idx.watermark(), "tras catchUp todo lo indexado es contiguo");
+            idx.close();
+        } finally {
+            store.close();
+        }
+    }
+}
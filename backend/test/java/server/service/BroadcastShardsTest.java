@@ -0,0 +1,126 @@
+package server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import server.model.User;
+import server.transport.ClientChannel;
+
+/** Orden por conexión entre broadcasts consecutivos, entrega en línea sin shards y drenado al detener. */
+class BroadcastShardsTest {
+
+    @Test
+    void consecutiveBroadcastsKeepTheirOrderOnEveryConnection() throws InterruptedException {
+        BroadcastShards shards = new BroadcastShards(4);
+        List<Channel> conns = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Channel c = new Channel();
+            if (i == 0) c.delayFirstSend = true;   // un destinatario lento no reordena su shard
+            conns.add(c);
+            shards.add(c, new User(i, "u" + i, "U" + i));
+        }
+        for (int m = 0; m < 100; m++) shards.broadcast("m" + m, (c, u) -> true);
+        shards.stop(5000);
+
+        List<String> expected = new ArrayList<>();
+        for (int m = 0; m < 100; m++) expected.add("m" + m);
+        for (Channel c : conns) assertEquals(expected, c.received);
+    }
+
+    @Test
+    void withoutShardsDeliversInTheCallingThread() throws InterruptedException {
+        BroadcastShards shards = new BroadcastShards(0);
+        assertEquals(0, shards.shards());
+        Channel ana = new Channel(), bob = new Channel(), closed = new Channel();
+        closed.open = false;
+        shards.add(ana, new User(1, "ana", "Ana"));
+        shards.add(bob, new User(2, "bob", "Bob"));
+        shards.add(closed, new User(3, "eve", "Eve"));
+
+        shards.broadcast("hola", (c, u) -> !u.getUsername().equals("bob"));
+        assertEquals(List.of("hola"), ana.received, "entregado antes de retornar");
+        assertSame(Thread.currentThread(), ana.senders.get(0));
+        assertTrue(bob.received.isEmpty(), "filtrado");
+        assertTrue(closed.received.isEmpty(), "cerrada");
+
+        shards.remove(ana);
+        shards.broadcast("chau", (c, u) -> true);
+        assertEquals(List.of("hola"), ana.received);
+        assertEquals(List.of("chau"), bob.received);
+        shards.stop(1000);
+    }
+
+    @Test
+    void stopDrainsQueuedBroadcasts() throws InterruptedException {
+        BroadcastShards shards = new BroadcastShards(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Channel slow = new Channel();
+        slow.blockUntil = release;
+        Channel failing = new Channel();
+        failing.fail = true;
+        shards.add(slow, new User(1, "ana", "Ana"));
+        shards.add(failing, new User(2, "bob", "Bob"));
+        for (int m = 0; m < 3; m++) shards.broadcast("m" + m, (c, u) -> true);
+        assertTrue(slow.received.isEmpty(), "el shard sigue bloqueado en el primero");
+
+        new Thread(() -> {
+            sleep(100);
+            release.countDown();
+        }).start();
+        shards.stop(5000);
+        assertEquals(List.of("m0", "m1", "m2"), slow.received, "stop espera las colas");
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Channel implements ClientChannel {
+        final List<String> received = new CopyOnWriteArrayList<>();
+        final List<Thread> senders = new CopyOnWriteArrayList<>();
+        volatile boolean open = true;
+        volatile boolean delayFirstSend;
+        volatile boolean fail;
+        volatile CountDownLatch blockUntil;
+
+        @Override
+        public void send(String text) {
+            if (fail) throw new IllegalStateException("conexión cerrada");
+            if (delayFirstSend) {
+                delayFirstSend = false;
+                sleep(50);
+            }
+            CountDownLatch b = blockUntil;
+            if (b != null) {
+                try {
+                    b.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            senders.add(Thread.currentThread());
+            received.add(text);
+        }
+
+        @Override public void send(ByteBuffer data) { }
+        @Override public boolean isOpen() { return open; }
+        @Override public boolean hasBufferedData() { return false; }
+        @Override public void close(int code, String reason) { open = false; }
+        @Override public InetSocketAddress getRemoteSocketAddress() { return null; }
+    }
+}
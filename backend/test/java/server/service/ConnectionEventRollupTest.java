@@ -0,0 +1,56 @@
+package server.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/** Resumen estructurado por intervalo y cambio de ventana que no repite ni mezcla intervalos. */
+class ConnectionEventRollupTest {
+    // sin muestras: el resumen no toca la auditoría hasta flush
+    private final ConnectionEventRollup rollup = new ConnectionEventRollup(null, 0);
+
+    @Test
+    void summaryCarriesCountsAsFields() {
+        for (int i = 1; i <= 3; i++) rollup.connected(new InetSocketAddress("10.0.0." + i, 5000));
+        rollup.connected(new InetSocketAddress("192.168.1.9", 5000));
+        rollup.error(new InetSocketAddress("10.0.0.1", 5000), new IOException("reset"));
+        rollup.error(null, null);
+
+        Map<String, Object> s = rollup.drain();
+        assertEquals("conn_rollup", s.get("kind"));
+        assertEquals(4L, s.get("connects"));
+        assertEquals(Map.of("IOException", 1L, "desconocido", 1L), s.get("errors"));
+        assertEquals(Map.of("10.0.0.0/24", 3L, "192.168.1.0/24", 1L), s.get("subnets"));
+        assertEquals(0, s.get("otherSubnets"));
+        assertEquals(6L, s.get("unsampled"));
+    }
+
+    @Test
+    void eachWindowIsSummarizedOnce() {
+        rollup.connected(new InetSocketAddress("10.0.0.1", 5000));
+        Map<String, Object> first = rollup.drain();
+        assertEquals(1L, first.get("connects"));
+        assertNull(rollup.drain(), "la ventana nueva empieza vacía");
+
+        rollup.connected(new InetSocketAddress("10.0.0.2", 5000));
+        assertEquals(1L, rollup.drain().get("connects"), "sin arrastrar el intervalo anterior");
+    }
+
+    @Test
+    void onlyTopSubnetsAreListedAndTheRestCounted() {
+        for (int i = 0; i < 15; i++) {
+            for (int j = 0; j <= i; j++) rollup.connected(new InetSocketAddress("10.0." + i + ".1", 5000));
+        }
+        Map<String, Object> s = rollup.drain();
+        @SuppressWarnings("unchecked")
+        Map<String, Long> subnets = (Map<String, Long>) s.get("subnets");
+        assertEquals(10, subnets.size());
+        assertEquals(15L, subnets.values().iterator().next(), "la más activa primero");
+        assertEquals(5, s.get("otherSubnets"));
+    }
+}
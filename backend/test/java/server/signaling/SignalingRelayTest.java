@@ -0,0 +1,88 @@
+package server.signaling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import server.model.User;
+import server.transport.ClientChannel;
+
+/** Reenvío textual de señalización y lote de candidatos ICE armado sin reparsear. */
+class SignalingRelayTest {
+    private final Map<String, ClientChannel> room = new ConcurrentHashMap<>();
+    private final Channel bob = new Channel();
+    private final User ana = new User(1, "ana", "Ana");
+    private SignalingRelay relay;
+
+    @AfterEach
+    void stop() {
+        relay.stop();
+    }
+
+    @Test
+    void iceCandidatesAreBatchedFromTheForwardedText() throws InterruptedException {
+        relay = new SignalingRelay(room, new CallSetupMetrics(), 50);
+        room.put("bob", bob);
+        assertTrue(relay.tryRelay(ana, "{\"type\":\"webrtc_ice\",\"to\":\"bob\",\"candidate\":{\"c\":\"a \\\" b\"}}"));
+        assertTrue(relay.tryRelay(ana, "{\"type\":\"webrtc_ice\",\"to\":\"bob\",\"candidate\":null}"));
+        String sent = bob.sent.poll(5, TimeUnit.SECONDS);
+        JsonObject batch = JsonParser.parseString(sent).getAsJsonObject();
+        assertEquals("webrtc_ice_batch", batch.get("type").getAsString());
+        JsonArray items = batch.getAsJsonArray("items");
+        assertEquals(2, items.size());
+        assertEquals("ana", items.get(0).getAsJsonObject().get("from").getAsString());
+        assertEquals("a \" b", items.get(0).getAsJsonObject().getAsJsonObject("candidate").get("c").getAsString());
+        assertTrue(sent.contains("{\"from\":\"ana\",\"type\":\"webrtc_ice\""), "texto original con from al inicio");
+    }
+
+    @Test
+    void offerFlushesPendingCandidatesFirst() throws InterruptedException {
+        relay = new SignalingRelay(room, new CallSetupMetrics(), 10_000);
+        room.put("bob", bob);
+        relay.tryRelay(ana, "{\"type\":\"webrtc_ice\",\"to\":\"bob\",\"candidate\":1}");
+        relay.tryRelay(ana, "{\"type\":\"webrtc_offer\",\"to\":\"bob\",\"sdp\":\"x\"}");
+        assertEquals("{\"from\":\"ana\",\"type\":\"webrtc_ice\",\"to\":\"bob\",\"candidate\":1}", bob.sent.poll(1, TimeUnit.SECONDS));
+        assertEquals("{\"from\":\"ana\",\"type\":\"webrtc_offer\",\"to\":\"bob\",\"sdp\":\"x\"}", bob.sent.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void onlyASingleStrictObjectIsRelayed() {
+        relay = new SignalingRelay(room, new CallSetupMetrics(), 50);
+        room.put("bob", bob);
+        for (String bad : List.of(
+                "{\"type\":\"webrtc_ice\",\"to\":\"bob\"}{\"from\":\"eve\"}",
+                "{\"type\":\"webrtc_ice\",\"to\":\"bob\",\"from\":\"eve\"}",
+                "{'type':'webrtc_ice','to':'bob'}",
+                "[\"webrtc_ice\"]")) {
+            assertFalse(relay.tryRelay(ana, bad), bad);
+        }
+        assertTrue(bob.sent.isEmpty());
+    }
+
+    private static final class Channel implements ClientChannel {
+        final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+
+        @Override public void send(String text) { sent.add(text); }
+        @Override public void send(ByteBuffer data) { }
+        @Override public boolean isOpen() { return true; }
+        @Override public boolean hasBufferedData() { return false; }
+        @Override public void close(int code, String reason) { }
+        @Override public InetSocketAddress getRemoteSocketAddress() { return null; }
+    }
+}
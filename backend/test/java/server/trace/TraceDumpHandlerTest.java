@@ -0,0 +1,80 @@
+package server.trace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import server.model.User;
+import server.service.MessageContext;
+import server.service.handlers.TraceDumpHandler;
+import server.transport.ClientChannel;
+
+/** trace_dump solo responde a usuarios autenticados listados como administradores. */
+class TraceDumpHandlerTest {
+    private final ConcurrentHashMap<ClientChannel, User> sessions = new ConcurrentHashMap<>();
+    private final Tracer tracer = new Tracer(1, 10);
+    private final MessageContext ctx = new MessageContext(sessions, new ConcurrentHashMap<>(), null, null, null, null,
+            null, null, null, null, null, null, null, tracer, new Gson());
+    private final TraceDumpHandler handler = new TraceDumpHandler(Set.of("root"));
+
+    @Test
+    void nonAdminIsRejected() {
+        Channel conn = login(new User(2, "ana", "Ana"));
+        handler.handle(ctx, conn, Map.of("type", "trace_dump"));
+        JsonObject reply = conn.last();
+        assertEquals("error", reply.get("type").getAsString());
+        assertEquals("forbidden", reply.get("msg").getAsString());
+    }
+
+    @Test
+    void unauthenticatedConnectionIsClosed() {
+        Channel conn = new Channel();
+        handler.handle(ctx, conn, Map.of("type", "trace_dump"));
+        assertEquals(1008, conn.closeCode);
+        assertTrue(conn.sent.isEmpty());
+    }
+
+    @Test
+    void adminGetsTheSlowestTraces() {
+        for (int i = 0; i < 3; i++) tracer.sample().describe("text", "ana");
+        Channel conn = login(new User(1, "root", "Root"));
+        handler.handle(ctx, conn, Map.of("type", "trace_dump", "n", 2));
+        JsonObject reply = conn.last();
+        assertEquals("trace_dump", reply.get("type").getAsString());
+        assertEquals(1, reply.get("sampleEvery").getAsInt());
+        assertEquals(2, reply.getAsJsonArray("items").size());
+    }
+
+    private Channel login(User u) {
+        Channel conn = new Channel();
+        sessions.put(conn, u);
+        return conn;
+    }
+
+    private static final class Channel implements ClientChannel {
+        final List<String> sent = new ArrayList<>();
+        int closeCode;
+
+        JsonObject last() { return JsonParser.parseString(sent.get(sent.size() - 1)).getAsJsonObject(); }
+
+        @Override public void send(String text) { sent.add(text); }
+        @Override public void send(ByteBuffer data) { }
+        @Override public boolean isOpen() { return closeCode == 0; }
+        @Override public boolean hasBufferedData() { return false; }
+        @Override public void close(int code, String reason) { closeCode = code; }
+        @Override public InetSocketAddress getRemoteSocketAddress() { return null; }
+    }
+}
@@ -0,0 +1,113 @@
+package server.trace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import server.journal.AuditEvent;
+
+/** Muestreo, buffer circular, más lentas, exportación Chrome trace y cierre de persist por secuencia. */
+class TracerTest {
+
+    @Test
+    void samplesOneOfEveryNMessages() {
+        Tracer tracer = new Tracer(3, 10);
+        List<MessageTrace> sampled = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            MessageTrace t = tracer.sample();
+            if (t != null) sampled.add(t);
+            assertEquals(i % 3 == 0, t != null, "mensaje " + i);
+        }
+        assertEquals(List.of(0L, 1L, 2L), sampled.stream().map(MessageTrace::getId).toList());
+
+        Tracer off = new Tracer(0, 10);
+        assertFalse(off.enabled());
+        assertNull(off.sample());
+    }
+
+    @Test
+    void ringKeepsOnlyTheLastCapacityTraces() {
+        Tracer tracer = new Tracer(1, 3);
+        for (int i = 0; i < 5; i++) tracer.sample();
+        assertEquals(List.of(2L, 3L, 4L), tracer.slowest(10).stream().map(MessageTrace::getId).sorted().toList());
+    }
+
+    @Test
+    void slowestIsOrderedByTotalTime() {
+        Tracer tracer = new Tracer(1, 10);
+        MessageTrace fast = tracer.sample();
+        MessageTrace slow = tracer.sample();
+        MessageTrace mid = tracer.sample();
+        fast.end(Stage.DISPATCH, fast.receivedAt() + 1_000_000);
+        slow.end(Stage.DISPATCH, slow.receivedAt() + 9_000_000);
+        mid.end(Stage.DISPATCH, mid.receivedAt() + 5_000_000);
+        assertEquals(List.of(slow, mid), tracer.slowest(2));
+        assertEquals(9.0, slow.toMap().get("totalMs"));
+    }
+
+    @Test
+    void chromeTraceHasOneRowPerMessageAndOneEventPerClosedStage() {
+        Tracer tracer = new Tracer(1, 10);
+        MessageTrace t = tracer.sample();
+        t.describe("text", "ana");
+        t.begin(Stage.DISPATCH, t.receivedAt() + 1_000);
+        t.end(Stage.DISPATCH, t.receivedAt() + 3_000_000);
+        t.begin(Stage.PERSIST, t.receivedAt() + 2_000);   // abierta: no se exporta
+        tracer.sample();
+
+        JsonObject root = JsonParser.parseString(tracer.chromeTrace()).getAsJsonObject();
+        assertEquals(1, root.getAsJsonObject("otherData").get("sampleEvery").getAsInt());
+        JsonArray events = root.getAsJsonArray("traceEvents");
+        assertEquals(3, events.size(), "dos mensajes y la etapa dispatch");
+        List<String> names = new ArrayList<>();
+        for (JsonElement e : events) {
+            JsonObject o = e.getAsJsonObject();
+            assertEquals("X", o.get("ph").getAsString());
+            assertTrue(o.get("dur").getAsLong() >= 1);
+            names.add(o.get("name").getAsString());
+        }
+        assertEquals(List.of("text #0", "dispatch", "? #1"), names);
+        JsonObject dispatch = events.get(1).getAsJsonObject();
+        assertEquals(0, dispatch.get("tid").getAsLong(), "en la fila del mensaje");
+        assertEquals(2999, dispatch.get("dur").getAsLong());
+        assertEquals("ana", events.get(0).getAsJsonObject().getAsJsonObject("args").get("from").getAsString());
+    }
+
+    @Test
+    void persistIsClosedByJournalSequenceEvenForIdenticalEvents() {
+        Tracer tracer = new Tracer(1, 10);
+        MessageTrace first = tracer.sample();
+        MessageTrace second = tracer.sample();
+        AuditEvent a = text("ana", 1_000);
+        AuditEvent b = text("ana", 1_000);   // mismo tipo, autor y milisegundo
+        first.persisting(a);
+        second.persisting(b);
+        tracer.onSequenced(text("otro", 5), 9);   // evento no muestreado
+        tracer.onSequenced(a, 10);
+        tracer.onSequenced(b, 11);
+
+        tracer.onPersisted(11, text("ana", 1_000), 77);   // el replayer relee otra instancia
+        assertEquals(0, first.endOf(Stage.PERSIST));
+        assertTrue(second.endOf(Stage.PERSIST) > 0);
+        tracer.onPersisted(11, text("ana", 1_000), 77);   // repetido tras un crash: sin efecto
+        tracer.onPersisted(10, text("ana", 1_000), 76);
+        assertTrue(first.endOf(Stage.PERSIST) > 0);
+        assertNotNull(first.toMap().get("stages"));
+    }
+
+    private static AuditEvent text(String user, long createdAt) {
+        return new AuditEvent("TEXT", "global", user, false, createdAt, "hola", null, null, 0L, null);
+    }
+}
@@ -0,0 +1,95 @@
+package server.transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Ciclo de vida y entrega de mensajes del transporte en proceso. */
+class InMemoryTransportTest {
+    private RecordingHandler handler;
+    private InMemoryTransport transport;
+
+    @BeforeEach
+    void start() {
+        handler = new RecordingHandler();
+        transport = new InMemoryTransport(handler);
+        transport.start();
+    }
+
+    @Test
+    void startNotifiesHandler() {
+        assertTrue(handler.started);
+        assertEquals(Transports.MEMORY, transport.name());
+        assertEquals(0, transport.getPort());
+    }
+
+    @Test
+    void clientAndServerExchangeMessages() throws InterruptedException {
+        List<String> received = new ArrayList<>();
+        List<String> binary = new ArrayList<>();
+        InMemoryTransport.Connection c = transport.connect(received::add,
+                b -> binary.add(StandardCharsets.UTF_8.decode(b).toString()));
+        assertEquals("open", handler.next());
+        assertEquals(c, handler.last);
+
+        c.sendText("hola");
+        c.sendBinary(ByteBuffer.wrap("bin".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("text:hola", handler.next());
+        assertEquals("binary:bin", handler.next());
+
+        ByteBuffer out = ByteBuffer.wrap("datos".getBytes(StandardCharsets.UTF_8));
+        c.send("respuesta");
+        c.send(out);
+        assertEquals(List.of("respuesta"), received);
+        assertEquals(List.of("datos"), binary);
+        assertEquals(0, out.position(), "send no consume el buffer");
+        assertFalse(c.hasBufferedData());
+    }
+
+    @Test
+    void connectionsGetDistinctAddresses() {
+        InMemoryTransport.Connection a = transport.connect(s -> { });
+        InMemoryTransport.Connection b = transport.connect(s -> { });
+        assertNotEquals(a.getRemoteSocketAddress(), b.getRemoteSocketAddress());
+    }
+
+    @Test
+    void clientDisconnectIsRemoteCloseAndReportedOnce() throws InterruptedException {
+        List<String> received = new ArrayList<>();
+        InMemoryTransport.Connection c = transport.connect(received::add);
+        handler.next();
+        c.disconnect();
+        c.disconnect();
+        c.close(1000, "");
+        assertEquals("close:1000::remote", handler.next());
+        assertEquals(null, handler.events.poll(), "onClose una sola vez");
+        assertFalse(c.isOpen());
+
+        c.sendText("tarde");
+        c.send("tarde");
+        assertTrue(handler.events.isEmpty(), "nada se entrega tras el cierre");
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void serverCloseAndStopAreLocal() throws InterruptedException {
+        InMemoryTransport.Connection a = transport.connect(s -> { });
+        InMemoryTransport.Connection b = transport.connect(s -> { });
+        handler.next();
+        handler.next();
+        a.close(1008, "Not authed");
+        assertEquals("close:1008:Not authed:local", handler.next());
+        transport.stop(100);
+        assertEquals("close:1001:server stop:local", handler.next());
+        assertFalse(b.isOpen());
+    }
+}
@@ -0,0 +1,293 @@
+package server.transport;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Frames RFC 6455 del transporte NIO, contra un cliente de sockets crudo: enmascarado,
+ * fragmentación, ping/pong, cierre 1009 por tamaño, 1002 por frames de control inválidos, 1007 por
+ * texto que no es UTF-8, validación de la cabecera de upgrade y el saludo de cierre en ambos sentidos.
+ */
+class NioWebSocketTransportTest {
+    private static final int OP_CONT = 0x0, OP_TEXT = 0x1, OP_BINARY = 0x2, OP_CLOSE = 0x8, OP_PING = 0x9, OP_PONG = 0xA;
+
+    private RecordingHandler handler;
+    private NioWebSocketTransport transport;
+    private Socket socket;
+    private DataInputStream in;
+    private OutputStream out;
+
+    @BeforeEach
+    void start() throws IOException, InterruptedException {
+        handler = new RecordingHandler();
+        transport = new NioWebSocketTransport(0, 1, handler);
+        transport.start();
+        socket = new Socket("127.0.0.1", transport.getPort());
+        socket.setSoTimeout(5000);
+        in = new DataInputStream(socket.getInputStream());
+        out = socket.getOutputStream();
+        out.write(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        String response = readHeader();
+        assertTrue(response.startsWith("HTTP/1.1 101"), response);
+        assertTrue(response.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="), "clave de RFC 6455 §1.3");
+        assertEquals("open", handler.next());
+    }
+
+    @AfterEach
+    void stop() throws IOException, InterruptedException {
+        socket.close();
+        transport.stop(1000);
+    }
+
+    @Test
+    void maskedTextAndBinaryAreDelivered() throws IOException, InterruptedException {
+        sendFrame(true, OP_TEXT, "hola ñandú".getBytes(StandardCharsets.UTF_8));
+        assertEquals("text:hola ñandú", handler.next());
+        sendFrame(true, OP_BINARY, "bin".getBytes(StandardCharsets.UTF_8));
+        assertEquals("binary:bin", handler.next());
+
+        byte[] big = new byte[70_000];   // longitud extendida de 64 bits
+        Arrays.fill(big, (byte) 'x');
+        sendFrame(true, OP_TEXT, big);
+        assertEquals("text:" + new String(big, StandardCharsets.US_ASCII), handler.next());
+    }
+
+    @Test
+    void serverFramesAreUnmasked() throws IOException {
+        handler.last.send("respuesta");
+        handler.last.send(ByteBuffer.wrap(new byte[300]));   // longitud extendida de 16 bits
+        Frame text = readFrame();
+        assertEquals(OP_TEXT, text.opcode);
+        assertEquals("respuesta", new String(text.payload, StandardCharsets.UTF_8));
+        Frame bin = readFrame();
+        assertEquals(OP_BINARY, bin.opcode);
+        assertEquals(300, bin.payload.length);
+    }
+
+    @Test
+    void preEncodedTextIsSentFromTheCallersBuffer() throws IOException {
+        byte[] json = ("{\"data\":\"" + "A".repeat(70_000) + "\"}").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(json.length).put(json).flip().asReadOnlyBuffer();
+        handler.last.sendText(direct);
+        handler.last.send("después");
+        Frame big = readFrame();
+        assertEquals(OP_TEXT, big.opcode);
+        assertArrayEquals(json, big.payload);
+        assertEquals(0, direct.position(), "no consume el buffer");
+        assertEquals("después", new String(readFrame().payload, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void unmaskedClientFrameClosesWith1002() throws IOException, InterruptedException {
+        out.write(new byte[]{(byte) 0x81, 2, 'h', 'i'});
+        assertEquals(1002, closeCode(readFrame()));
+        assertEquals("close:1002:Frame inválido:local", handler.next());
+        assertEof();
+    }
+
+    @Test
+    void fragmentsAreReassembledWithControlFramesInBetween() throws IOException, InterruptedException {
+        sendFrame(false, OP_TEXT, "frag".getBytes(StandardCharsets.UTF_8));
+        sendFrame(true, OP_PING, "p1".getBytes(StandardCharsets.UTF_8));
+        sendFrame(false, OP_CONT, "men".getBytes(StandardCharsets.UTF_8));
+        sendFrame(true, OP_CONT, "tado".getBytes(StandardCharsets.UTF_8));
+        Frame pong = readFrame();
+        assertEquals(OP_PONG, pong.opcode);
+        assertArrayEquals("p1".getBytes(StandardCharsets.UTF_8), pong.payload, "el pong repite el payload del ping");
+        assertEquals("text:fragmentado", handler.next());
+    }
+
+    @Test
+    void continuationWithoutMessageClosesWith1002() throws IOException {
+        sendFrame(true, OP_CONT, "x".getBytes(StandardCharsets.UTF_8));
+        assertEquals(1002, closeCode(readFrame()));
+    }
+
+    @Test
+    void oversizedMessageClosesWith1009BeforeReadingPayload() throws IOException, InterruptedException {
+        // solo la cabecera: anuncia 64 MiB + 1 sin enviar el contenido
+        ByteBuffer header = ByteBuffer.allocate(14);
+        header.put((byte) (0x80 | OP_BINARY)).put((byte) (0x80 | 127)).putLong(64L * 1024 * 1024 + 1).putInt(0);
+        out.write(header.array());
+        assertEquals(1009, closeCode(readFrame()));
+        assertEquals("close:1009:Mensaje demasiado grande:local", handler.next());
+        assertEof();
+    }
+
+    @Test
+    void clientCloseIsEchoedAndReportedAsRemote() throws IOException, InterruptedException {
+        sendFrame(true, OP_CLOSE, closePayload(1000, "adiós"));
+        Frame echo = readFrame();
+        assertEquals(1000, closeCode(echo));
+        assertEquals("close:1000:adiós:remote", handler.next());
+        assertEof();
+    }
+
+    @Test
+    void serverCloseWaitsForClientReply() throws IOException, InterruptedException {
+        handler.last.close(1008, "Not authed");
+        Frame close = readFrame();
+        assertEquals(1008, closeCode(close));
+        assertEquals("Not authed", new String(close.payload, 2, close.payload.length - 2, StandardCharsets.UTF_8));
+        assertEquals(null, handler.events.poll(), "onClose llega con la respuesta del cliente");
+        sendFrame(true, OP_CLOSE, closePayload(1008, ""));
+        assertEquals("close:1008:Not authed:local", handler.next());
+        assertEof();
+    }
+
+    @Test
+    void fragmentedOrLongControlFramesCloseWith1002() throws IOException, InterruptedException {
+        sendFrame(true, OP_PING, new byte[126]);
+        assertEquals(1002, closeCode(readFrame()));
+        assertEquals("close:1002:Frame de control inválido:local", handler.next());
+        assertEof();
+
+        socket.close();
+        socket = handshake("Connection: Upgrade\r\nSec-WebSocket-Version: 13\r\n");
+        in = new DataInputStream(socket.getInputStream());
+        out = socket.getOutputStream();
+        assertTrue(readHeader().startsWith("HTTP/1.1 101"));
+        assertEquals("open", handler.next());
+        sendFrame(false, OP_PING, "p".getBytes(StandardCharsets.UTF_8));
+        assertEquals(1002, closeCode(readFrame()));
+    }
+
+    @Test
+    void invalidUtf8TextClosesWith1007() throws IOException, InterruptedException {
+        byte[] euro = "€".getBytes(StandardCharsets.UTF_8);
+        // una secuencia válida partida entre fragmentos se valida sobre el mensaje completo
+        sendFrame(false, OP_TEXT, Arrays.copyOfRange(euro, 0, 2));
+        sendFrame(true, OP_CONT, Arrays.copyOfRange(euro, 2, 3));
+        assertEquals("text:€", handler.next());
+
+        sendFrame(true, OP_TEXT, new byte[]{'a', (byte) 0xc3, 0x28});
+        assertEquals(1007, closeCode(readFrame()));
+        assertEquals("close:1007:UTF-8 inválido:local", handler.next());
+        assertEof();
+    }
+
+    @Test
+    void upgradeRequiresVersion13AndConnectionUpgrade() throws IOException, InterruptedException {
+        String wrongVersion = response(handshake("Connection: Upgrade\r\nSec-WebSocket-Version: 8\r\n"));
+        assertTrue(wrongVersion.startsWith("HTTP/1.1 426"), wrongVersion);
+        assertTrue(wrongVersion.contains("Sec-WebSocket-Version: 13\r\n"), "anuncia la versión soportada");
+
+        String noVersion = response(handshake("Connection: Upgrade\r\n"));
+        assertTrue(noVersion.startsWith("HTTP/1.1 426"), noVersion);
+
+        String noConnection = response(handshake("Connection: keep-alive\r\nSec-WebSocket-Version: 13\r\n"));
+        assertTrue(noConnection.startsWith("HTTP/1.1 400"), noConnection);
+
+        String listed = response(handshake("Connection: keep-alive, Upgrade\r\nSec-WebSocket-Version: 13\r\n"));
+        assertTrue(listed.startsWith("HTTP/1.1 101"), "Connection admite una lista de tokens: " + listed);
+        assertEquals("open", handler.next());
+        assertEquals(null, handler.events.poll(), "los rechazos no abren conexión");
+    }
+
+    // ------------------------------------------------------------------ cliente mínimo
+
+    /** Abre otro socket y envía un upgrade con las cabeceras dadas además de Host, Upgrade y la clave. */
+    private Socket handshake(String headers) throws IOException {
+        Socket s = new Socket("127.0.0.1", transport.getPort());
+        s.setSoTimeout(5000);
+        s.getOutputStream().write(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\n" + headers
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        return s;
+    }
+
+    private String response(Socket s) throws IOException {
+        try (s) {
+            DataInputStream saved = in;
+            in = new DataInputStream(s.getInputStream());
+            try {
+                return readHeader();
+            } finally {
+                in = saved;
+            }
+        }
+    }
+
+    private record Frame(int opcode, byte[] payload) { }
+
+    private void sendFrame(boolean fin, int opcode, byte[] payload) throws IOException {
+        ByteArrayOutputStream f = new ByteArrayOutputStream();
+        f.write((fin ? 0x80 : 0) | opcode);
+        int len = payload.length;
+        if (len < 126) {
+            f.write(0x80 | len);
+        } else if (len <= 0xffff) {
+            f.write(0x80 | 126);
+            f.write(len >> 8);
+            f.write(len);
+        } else {
+            f.write(0x80 | 127);
+            f.writeBytes(ByteBuffer.allocate(8).putLong(len).array());
+        }
+        byte[] mask = {0x37, (byte) 0xfa, 0x21, 0x3d};
+        f.writeBytes(mask);
+        for (int i = 0; i < len; i++) f.write(payload[i] ^ mask[i & 3]);
+        out.write(f.toByteArray());
+        out.flush();
+    }
+
+    private Frame readFrame() throws IOException {
+        int b0 = in.readUnsignedByte();
+        int b1 = in.readUnsignedByte();
+        assertEquals(0, b1 & 0x80, "el servidor no enmascara");
+        long len = b1 & 0x7f;
+        if (len == 126) len = in.readUnsignedShort();
+        else if (len == 127) len = in.readLong();
+        byte[] payload = new byte[(int) len];
+        in.readFully(payload);
+        return new Frame(b0 & 0x0f, payload);
+    }
+
+    private static int closeCode(Frame f) {
+        assertEquals(OP_CLOSE, f.opcode, "se esperaba un frame de cierre");
+        return ((f.payload[0] & 0xff) << 8) | (f.payload[1] & 0xff);
+    }
+
+    private static byte[] closePayload(int code, String reason) {
+        byte[] r = reason.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 + r.length).putShort((short) code).put(r).array();
+    }
+
+    private void assertEof() throws IOException {
+        try {
+            int b = in.read();
+            assertEquals(-1, b, "el servidor cierra el socket");
+        } catch (EOFException | SocketException e) {
+            // conexión reiniciada: también cuenta como cerrada
+        }
+    }
+
+    private String readHeader() throws IOException {
+        ByteArrayOutputStream h = new ByteArrayOutputStream();
+        while (true) {
+            h.write(in.readUnsignedByte());
+            byte[] b = h.toByteArray();
+            int n = b.length;
+            if (n >= 4 && b[n - 4] == '\r' && b[n - 3] == '\n' && b[n - 2] == '\r' && b[n - 1] == '\n') {
+                return new String(b, StandardCharsets.ISO_8859_1);
+            }
+        }
+    }
+}
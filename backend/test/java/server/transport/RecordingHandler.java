@@ -0,0 +1,53 @@
+package server.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handler de prueba: anota cada evento como texto ("open", "text:hola", "close:1000:bye:remote")
+ * en una cola, para esperarlos en orden desde el hilo de la prueba.
+ */
+final class RecordingHandler implements ChannelHandler {
+    final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    volatile ClientChannel last;
+    volatile boolean started;
+
+    @Override public void onStart() { started = true; }
+
+    @Override
+    public void onOpen(ClientChannel channel) {
+        last = channel;
+        events.add("open");
+    }
+
+    @Override
+    public void onText(ClientChannel channel, String message) {
+        events.add("text:" + message);
+    }
+
+    @Override
+    public void onBinary(ClientChannel channel, ByteBuffer data) {
+        ByteBuffer src = data.duplicate();
+        byte[] b = new byte[src.remaining()];
+        src.get(b);
+        events.add("binary:" + new String(b, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onClose(ClientChannel channel, int code, String reason, boolean remote) {
+        events.add("close:" + code + ":" + reason + ":" + (remote ? "remote" : "local"));
+    }
+
+    @Override
+    public void onError(ClientChannel channel, Exception ex) {
+        events.add("error:" + ex);
+    }
+
+    /** Siguiente evento, o null si no llega en 5 s. */
+    String next() throws InterruptedException {
+        return events.poll(5, TimeUnit.SECONDS);
+    }
+}
@@ -12,6 +12,7 @@ CREATE TABLE IF NOT EXISTS users (
     password_hash VARCHAR(255) NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     last_login TIMESTAMP NULL,
+    last_seen_action_id BIGINT NULL,        -- último id de acción entregado (catch-up incremental al hacer login)
     INDEX idx_username (username)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
@@ -19,21 +20,28 @@ CREATE TABLE IF NOT EXISTS users (
 -- action_type define la naturaleza de la acción y se detalla en tablas secundarias cuando aplica
 CREATE TABLE IF NOT EXISTS actions (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
-    action_type ENUM('TEXT','FILE','LOGIN','LOGOUT','VIDEO_JOIN','VIDEO_LEAVE','SYSTEM') NOT NULL,
+    action_type ENUM('TEXT','FILE','LOGIN','LOGOUT','VIDEO_JOIN','VIDEO_LEAVE','SYSTEM','DIRECT') NOT NULL,
     room VARCHAR(100) NOT NULL DEFAULT 'global',
     actor_user_id INT NULL,                 -- NULL si es generada por el servidor/sistema
+    recipient_user_id INT NULL,             -- destinatario de mensajes DIRECT
     server_generated TINYINT(1) NOT NULL DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    journal_seq BIGINT NULL,                -- secuencia del journal local (replay idempotente)
     FOREIGN KEY (actor_user_id) REFERENCES users(id) ON DELETE SET NULL,
+    FOREIGN KEY (recipient_user_id) REFERENCES users(id) ON DELETE SET NULL,
     INDEX idx_room_created (room, created_at),
+    INDEX idx_recipient (recipient_user_id, id),
+    UNIQUE INDEX idx_journal_seq (journal_seq), -- un replay concurrente no puede duplicar la acción
     INDEX idx_type_created (action_type, created_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- Detalles específicos para acciones de texto (solo se insertan filas con action_type = 'TEXT')
 CREATE TABLE IF NOT EXISTS action_text_details (
     action_id BIGINT PRIMARY KEY,
-    content TEXT NOT NULL,
+    content TEXT NOT NULL,                  -- vacío si el texto se guardó comprimido en content_z
     content_length INT NOT NULL,
+    codec VARCHAR(16) NOT NULL DEFAULT 'none', -- 'none' | 'deflate' (ver StorageCodecs)
+    content_z MEDIUMBLOB NULL,
     FOREIGN KEY (action_id) REFERENCES actions(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
@@ -43,12 +51,42 @@ CREATE TABLE IF NOT EXISTS action_file_details (
     filename VARCHAR(255) NOT NULL,
     mimetype VARCHAR(120) NOT NULL,
     size BIGINT NOT NULL,
-    data LONGBLOB NOT NULL,
+    data LONGBLOB NOT NULL,                 -- codificado con 'codec'; size es el tamaño original
+    codec VARCHAR(16) NOT NULL DEFAULT 'none',
     FOREIGN KEY (action_id) REFERENCES actions(id) ON DELETE CASCADE,
     INDEX idx_filename (filename),
     INDEX idx_mimetype (mimetype)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- Miniaturas de adjuntos de imagen (generadas en segundo plano por PreviewService)
+CREATE TABLE IF NOT EXISTS action_file_previews (
+    action_id BIGINT PRIMARY KEY,
+    mimetype VARCHAR(120) NOT NULL,
+    width INT NOT NULL,
+    height INT NOT NULL,
+    size INT NOT NULL,
+    data MEDIUMBLOB NOT NULL,
+    FOREIGN KEY (action_id) REFERENCES actions(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Migración para bases existentes (journal de auditoría):
+-- ALTER TABLE actions ADD COLUMN journal_seq BIGINT NULL, ADD UNIQUE INDEX idx_journal_seq (journal_seq);
+-- Migración para bases existentes (journal_seq único; primero se borran los duplicados de replays
+-- concurrentes conservando el id menor, los detalles se borran en cascada):
+-- DELETE a FROM actions a JOIN actions b ON a.journal_seq = b.journal_seq AND a.id > b.id;
+-- ALTER TABLE actions DROP INDEX idx_journal_seq, ADD UNIQUE INDEX idx_journal_seq (journal_seq);
+-- Migración para bases existentes (mensajes directos):
+-- ALTER TABLE actions
+--     MODIFY action_type ENUM('TEXT','FILE','LOGIN','LOGOUT','VIDEO_JOIN','VIDEO_LEAVE','SYSTEM','DIRECT') NOT NULL,
+--     ADD COLUMN recipient_user_id INT NULL AFTER actor_user_id,
+--     ADD FOREIGN KEY (recipient_user_id) REFERENCES users(id) ON DELETE SET NULL,
+--     ADD INDEX idx_recipient (recipient_user_id, id);
+-- Migración para bases existentes (historial incremental al hacer login):
+-- ALTER TABLE users ADD COLUMN last_seen_action_id BIGINT NULL AFTER last_login;
+-- Migración para bases existentes (compresión del contenido; las filas previas quedan como 'none'):
+-- ALTER TABLE action_text_details ADD COLUMN codec VARCHAR(16) NOT NULL DEFAULT 'none', ADD COLUMN content_z MEDIUMBLOB NULL;
+-- ALTER TABLE action_file_details ADD COLUMN codec VARCHAR(16) NOT NULL DEFAULT 'none';
+
 -- Datos de prueba (usuarios ejemplo)
 -- Contraseñas sin hash para desarrollo (en producción usar bcrypt)
 INSERT IGNORE INTO users (username, full_name, password_hash) VALUES
@@ -0,0 +1,46 @@
+-- Migración opcional: particionado mensual de 'actions' por created_at
+-- Permite que RetentionJob (RETENTION_PARTITIONING=true) elimine rangos antiguos con
+-- DROP PARTITION en lugar de DELETE fila a fila.
+--
+-- Restricciones de MySQL para tablas InnoDB particionadas:
+--  * No admiten claves foráneas (ni propias ni apuntando hacia ellas): se eliminan las FK de
+--    'actions' y de las tablas de detalle. El borrado de detalles lo hace RetentionDAO
+--    explícitamente en la misma transacción.
+--  * La columna de particionado debe formar parte de toda clave única: la PK pasa a (id, created_at)
+--    y el índice único de journal_seq a (journal_seq, created_at). Un replay repite el created_at
+--    del evento, así que sigue rechazando la segunda inserción de la misma secuencia.
+--
+-- Ejecutar en una ventana de mantenimiento (ALTER TABLE reconstruye la tabla).
+
+USE chatapp;
+
+-- Los nombres de las FK generadas pueden variar; verificar con:
+-- SELECT CONSTRAINT_NAME, TABLE_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS WHERE CONSTRAINT_SCHEMA = 'chatapp';
+ALTER TABLE action_text_details DROP FOREIGN KEY action_text_details_ibfk_1;
+ALTER TABLE action_file_details DROP FOREIGN KEY action_file_details_ibfk_1;
+ALTER TABLE action_file_previews DROP FOREIGN KEY action_file_previews_ibfk_1;
+ALTER TABLE actions DROP FOREIGN KEY actions_ibfk_1;
+ALTER TABLE actions DROP FOREIGN KEY actions_ibfk_2; -- recipient_user_id (mensajes directos)
+
+ALTER TABLE actions
+    MODIFY created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, created_at),
+    DROP INDEX idx_journal_seq,
+    ADD UNIQUE INDEX idx_journal_seq (journal_seq, created_at),
+    ADD INDEX idx_actor (actor_user_id);
+
+-- Particiones iniciales: ajustar el primer mes al dato más antiguo existente.
+-- RetentionJob crea por adelantado las particiones de los meses siguientes dividiendo 'pmax'.
+ALTER TABLE actions
+PARTITION BY RANGE (UNIX_TIMESTAMP(created_at)) (
+    PARTITION p202509 VALUES LESS THAN (UNIX_TIMESTAMP('2025-10-01 00:00:00')),
+    PARTITION p202510 VALUES LESS THAN (UNIX_TIMESTAMP('2025-11-01 00:00:00')),
+    PARTITION p202511 VALUES LESS THAN (UNIX_TIMESTAMP('2025-12-01 00:00:00')),
+    PARTITION p202512 VALUES LESS THAN (UNIX_TIMESTAMP('2026-01-01 00:00:00')),
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+
+SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS
+FROM information_schema.PARTITIONS
+WHERE TABLE_SCHEMA = 'chatapp' AND TABLE_NAME = 'actions';
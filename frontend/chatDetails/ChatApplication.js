@@ -262,7 +262,7 @@ class ChatApplication {
   }
 
   /**
-   * Maneja envío de mensaje de texto
+   * Maneja envío de mensaje de texto ("/msg usuario texto" envía un mensaje directo)
    */
   handleSendMessage() {
     const content = this.uiManager.getTextInputValue();
@@ -272,10 +272,10 @@ class ChatApplication {
     }
 
     // Enviar al servidor
-    const success = this.wsManager.send({
-      type: 'text',
-      content: content
-    });
+    const direct = content.match(/^\/msg\s+(\S+)\s+([\s\S]+)$/);
+    const success = direct
+      ? this.wsManager.send({ type: 'direct', to: direct[1], content: direct[2] })
+      : this.wsManager.send({ type: 'text', content: content });
 
     if (success) {
       this.uiManager.clearTextInput();
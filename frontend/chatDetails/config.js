@@ -13,5 +13,10 @@ export const CONFIG = {
   wsPath: '/',
   get wsUrl() {
     return `${this.wsProtocol}://${this.wsHost}:${this.wsPort}${this.wsPath}`;
+  },
+  // URL de descarga HTTP de adjuntos (mismo host que el WebSocket)
+  fileUrl(port, path) {
+    const protocol = this.wsProtocol === 'wss' ? 'https' : 'http';
+    return `${protocol}://${this.wsHost}:${port}${path}`;
   }
 };
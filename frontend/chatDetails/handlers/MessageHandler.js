@@ -22,22 +22,34 @@ class MessageHandler {
       ['history', this.handleHistory.bind(this)],
       ['text', this.handleTextMessage.bind(this)],
       ['file', this.handleFileMessage.bind(this)],
+      ['file_preview', this.handleFilePreview.bind(this)],
+      ['direct', this.handleDirectMessage.bind(this)],
+      ['file_data', this.handleFileData.bind(this)],
+      ['file_url', this.handleFileUrl.bind(this)],
       ['error', this.handleError.bind(this)],
       ['room_users', this.handleRoomUsers.bind(this)],
       ['user_joined', this.handleUserJoined.bind(this)],
       ['user_left', this.handleUserLeft.bind(this)],
       ['webrtc_offer', this.handleWebRTCOffer.bind(this)],
       ['webrtc_answer', this.handleWebRTCAnswer.bind(this)],
-      ['webrtc_ice', this.handleWebRTCIce.bind(this)]
+      ['webrtc_ice', this.handleWebRTCIce.bind(this)],
+      ['webrtc_ice_batch', this.handleWebRTCIceBatch.bind(this)],
+      ['trace_dump', this.handleTraceDump.bind(this)]
     ]);
   }
 
   /**
    * Maneja historial inicial de mensajes
-   * @param {Object} message - Mensaje history con items
+   * @param {Object} message - Mensaje history con items (solo lo posterior a la última sesión), older y unsent
    */
   handleHistory(message) {
     const items = Array.isArray(message.items) ? message.items : [];
+    if (message.older > 0) {
+      this.uiManager.renderSystemMessage(`${message.older} mensajes anteriores disponibles (ya vistos en tu última sesión)`);
+    }
+    if (message.unsent > 0) {
+      this.uiManager.renderSystemMessage(`${message.unsent} mensajes sin leer de tu ausencia son más antiguos que el historial reciente y no se muestran`);
+    }
     // Reproduce cada item como si fuera mensaje normal
     for (const it of items) {
       // Aseguramos timestamp por compatibilidad
@@ -115,11 +127,36 @@ class MessageHandler {
     );
   }
 
+  /**
+   * Maneja mensaje directo (privado)
+   * @param {Object} message - Mensaje direct
+   */
+  handleDirectMessage(message) {
+    const currentUser = this.uiManager.getCurrentUser();
+    const isMine = message.from === currentUser;
+    this.uiManager.renderTextMessage(
+      `${message.from} → ${message.to} (privado)`,
+      message.content,
+      message.timestamp,
+      isMine
+    );
+  }
+
   /**
    * Maneja mensaje de archivo
    * @param {Object} message - Mensaje file
    */
   handleFileMessage(message) {
+    // Imagen recién enviada: solo la referencia; la miniatura llega luego con file_preview
+    if (message.pending) {
+      this.fileManager.receivePending(message);
+      return;
+    }
+    // Imágenes: llega solo la miniatura; el original se pide al hacer clic
+    if (message.preview && !message.data) {
+      this.fileManager.receivePreview(message);
+      return;
+    }
     this.fileManager.receiveFile(
       message.from,
       message.filename,
@@ -129,6 +166,30 @@ class MessageHandler {
     );
   }
 
+  /**
+   * Maneja la miniatura de una imagen anunciada como pendiente (llega una vez persistida)
+   * @param {Object} message - Mensaje file_preview con id, from, timestamp y preview
+   */
+  handleFilePreview(message) {
+    this.fileManager.receivePreviewUpdate(message);
+  }
+
+  /**
+   * Maneja el original de un adjunto pedido con file_get
+   * @param {Object} message - Mensaje file_data
+   */
+  handleFileData(message) {
+    this.fileManager.receiveOriginal(message);
+  }
+
+  /**
+   * Maneja el enlace de descarga HTTP pedido con file_url
+   * @param {Object} message - Mensaje file_url
+   */
+  handleFileUrl(message) {
+    this.fileManager.receiveFileUrl(message);
+  }
+
   /**
    * Maneja mensaje de error
    * @param {Object} message - Mensaje error
@@ -186,6 +247,29 @@ class MessageHandler {
   handleWebRTCIce(message) {
     this.videoCallManager.handleIceCandidate(message.from, message.candidate);
   }
+
+  /**
+   * Maneja varios ICE candidates agrupados por el servidor
+   * @param {Object} message - Mensaje webrtc_ice_batch con items (cada uno como webrtc_ice)
+   */
+  handleWebRTCIceBatch(message) {
+    const items = Array.isArray(message.items) ? message.items : [];
+    for (const it of items) this.handleWebRTCIce(it);
+  }
+
+  /**
+   * Muestra en consola las trazas más lentas pedidas por un administrador
+   * @param {Object} message - Mensaje trace_dump con items (etapas en ms) y file si se exportó
+   */
+  handleTraceDump(message) {
+    const items = Array.isArray(message.items) ? message.items : [];
+    console.table(items.map(it => {
+      const row = { id: it.id, type: it.type, from: it.from, totalMs: it.totalMs };
+      for (const [stage, t] of Object.entries(it.stages || {})) row[stage] = t.durMs;
+      return row;
+    }));
+    if (message.file) this.uiManager.renderSystemMessage(`Traza exportada en ${message.file}`);
+  }
 }
 
 export default MessageHandler;
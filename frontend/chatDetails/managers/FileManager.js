@@ -1,3 +1,4 @@
+import { CONFIG } from '../config.js';
 import FileUtils from '../utils/FileUtils.js';
 import UIManager from './UIManager.js';
 import WebSocketManager from './WebSocketManager.js';
@@ -113,6 +114,83 @@ class FileManager {
     }
   }
 
+  /**
+   * Recibe un adjunto de imagen representado por su miniatura
+   * @param {Object} message - Mensaje file con id, preview y previewMimetype
+   */
+  receivePreview(message) {
+    try {
+      const blob = FileUtils.base64ToBlob(message.preview, message.previewMimetype || 'image/jpeg');
+      const previewUrl = FileUtils.createObjectURL(blob);
+      const isMine = message.from === this.uiManager.getCurrentUser();
+      this.uiManager.renderFilePreviewMessage(
+        previewUrl,
+        message.filename,
+        message.from,
+        isMine,
+        message.timestamp,
+        () => this.requestOriginal(message.id)
+      );
+    } catch (err) {
+      console.error('Error al recibir miniatura:', err);
+      this.uiManager.renderSystemMessage(`Error al recibir archivo de ${message.from}`);
+    }
+  }
+
+  /**
+   * Muestra una imagen recién enviada de la que aún no llegó la miniatura
+   * @param {Object} message - Mensaje file con pending, sin data
+   */
+  receivePending(message) {
+    const isMine = message.from === this.uiManager.getCurrentUser();
+    this.uiManager.renderFilePendingMessage(message.filename, message.from, isMine, message.timestamp);
+  }
+
+  /**
+   * Completa una imagen pendiente con su miniatura y el id de acción para pedir el original
+   * @param {Object} message - Mensaje file_preview con id, from, timestamp y, si se generó, preview
+   */
+  receivePreviewUpdate(message) {
+    let previewUrl = null;
+    if (message.preview) {
+      previewUrl = FileUtils.createObjectURL(
+        FileUtils.base64ToBlob(message.preview, message.previewMimetype || 'image/jpeg'));
+    }
+    this.uiManager.attachFileId(message.from, message.timestamp, message.id);
+    this.uiManager.completeFilePreview(message.from, message.timestamp, previewUrl, () => this.requestOriginal(message.id));
+  }
+
+  /**
+   * Pide al servidor un enlace de descarga HTTP del original de un adjunto
+   * @param {number} id - Id de la acción FILE
+   */
+  requestOriginal(id) {
+    this.wsManager.send({ type: 'file_url', id });
+  }
+
+  /**
+   * Descarga por HTTP el original (respuesta a file_url); el navegador maneja la reanudación
+   * @param {Object} message - Mensaje file_url con port y path
+   */
+  receiveFileUrl(message) {
+    const link = document.createElement('a');
+    link.href = CONFIG.fileUrl(message.port, `${message.path}&dl=1`);
+    link.click();
+  }
+
+  /**
+   * Descarga el original recibido (respuesta a file_get)
+   * @param {Object} message - Mensaje file_data
+   */
+  receiveOriginal(message) {
+    const blob = FileUtils.base64ToBlob(message.data, message.mimetype);
+    const url = FileUtils.createObjectURL(blob);
+    const link = document.createElement('a');
+    link.href = url;
+    link.download = message.filename || 'archivo';
+    link.click();
+  }
+
   /**
    * Renderiza un archivo en el chat
    * @param {string} url - URL del archivo
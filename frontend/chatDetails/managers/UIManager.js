@@ -170,6 +170,7 @@ class UIManager {
   renderFileMessage(url, filename, from, isMine = false, timestamp = Date.now()) {
     const wrapper = document.createElement('div');
     wrapper.className = 'msg-container' + (isMine ? ' mine' : '');
+    wrapper.dataset.fileKey = `${from}|${timestamp}`;
 
     // Normalizar nombre: recortar y colapsar espacios repetidos
     const cleanName = (filename || '').trim().replace(/\s+/g, ' ');
@@ -199,6 +200,107 @@ class UIManager {
     this.scrollToBottom();
   }
 
+  /**
+   * Guarda el id de acción en un adjunto ya renderizado (lo identifica remitente + timestamp)
+   * @param {string} from - Usuario que envió el archivo
+   * @param {number} timestamp - Timestamp del mensaje file
+   * @param {number} id - Id de la acción FILE
+   */
+  attachFileId(from, timestamp, id) {
+    for (const el of this.messagesContainer.querySelectorAll('.msg-container[data-file-key]')) {
+      if (el.dataset.fileKey === `${from}|${timestamp}`) el.dataset.fileId = id;
+    }
+  }
+
+  /**
+   * Renderiza una imagen recién enviada por otro usuario, aún sin miniatura (llega con file_preview)
+   * @param {string} filename - Nombre del archivo
+   * @param {string} from - Usuario que envía
+   * @param {boolean} isMine - Si es archivo propio
+   * @param {number} timestamp - Timestamp del mensaje file
+   */
+  renderFilePendingMessage(filename, from, isMine = false, timestamp = Date.now()) {
+    const wrapper = document.createElement('div');
+    wrapper.className = 'msg-container' + (isMine ? ' mine' : '');
+    wrapper.dataset.fileKey = `${from}|${timestamp}`;
+    const cleanName = (filename || '').trim().replace(/\s+/g, ' ');
+
+    wrapper.innerHTML = `
+      <div class="msg-avatar">
+        ${DOMUtils.getAvatarSVG()}
+        <div class="msg-username">${DOMUtils.escapeHtml(from)}</div>
+      </div>
+      <div class="msg-bubble ${isMine ? 'me' : ''}">
+        <div class="msg-content file-preview">
+          <span class="file-preview-pending">Procesando imagen…</span>
+          <span class="file-link">${DOMUtils.escapeHtml(cleanName)}</span>
+        </div>
+        <div class="msg-time">${DOMUtils.formatTime(timestamp)}</div>
+      </div>
+    `;
+
+    this.messagesContainer.appendChild(wrapper);
+    this.scrollToBottom();
+  }
+
+  /**
+   * Completa una imagen pendiente con su miniatura (si hay) y el acceso al original
+   * @param {string} from - Usuario que envió el archivo
+   * @param {number} timestamp - Timestamp del mensaje file
+   * @param {string|null} previewUrl - URL de la miniatura, o null si no se generó
+   * @param {Function} onOpen - Callback para obtener el original
+   */
+  completeFilePreview(from, timestamp, previewUrl, onOpen) {
+    for (const el of this.messagesContainer.querySelectorAll('.msg-container[data-file-key]')) {
+      if (el.dataset.fileKey !== `${from}|${timestamp}`) continue;
+      const pending = el.querySelector('.file-preview-pending');
+      if (!pending) continue;
+      if (previewUrl) {
+        const img = document.createElement('img');
+        img.className = 'file-preview-img';
+        img.src = previewUrl;
+        img.alt = el.querySelector('.file-link')?.textContent || '';
+        pending.replaceWith(img);
+      } else {
+        pending.textContent = 'Abrir imagen';
+      }
+      el.querySelector('.file-preview').addEventListener('click', onOpen);
+    }
+  }
+
+  /**
+   * Renderiza un adjunto de imagen mediante su miniatura
+   * @param {string} previewUrl - URL de la miniatura
+   * @param {string} filename - Nombre del archivo
+   * @param {string} from - Usuario que envía
+   * @param {boolean} isMine - Si es archivo propio
+   * @param {number} timestamp - Timestamp
+   * @param {Function} onOpen - Callback para obtener el original
+   */
+  renderFilePreviewMessage(previewUrl, filename, from, isMine = false, timestamp = Date.now(), onOpen = null) {
+    const wrapper = document.createElement('div');
+    wrapper.className = 'msg-container' + (isMine ? ' mine' : '');
+    const cleanName = (filename || '').trim().replace(/\s+/g, ' ');
+
+    wrapper.innerHTML = `
+      <div class="msg-avatar">
+        ${DOMUtils.getAvatarSVG()}
+        <div class="msg-username">${DOMUtils.escapeHtml(from)}</div>
+      </div>
+      <div class="msg-bubble ${isMine ? 'me' : ''}">
+        <div class="msg-content file-preview">
+          <img class="file-preview-img" src="${previewUrl}" alt="${DOMUtils.escapeAttribute(cleanName)}">
+          <span class="file-link">${DOMUtils.escapeHtml(cleanName)}</span>
+        </div>
+        <div class="msg-time">${DOMUtils.formatTime(timestamp)}</div>
+      </div>
+    `;
+    if (onOpen) wrapper.querySelector('.file-preview').addEventListener('click', onOpen);
+
+    this.messagesContainer.appendChild(wrapper);
+    this.scrollToBottom();
+  }
+
   /**
    * Obtiene emoji por extensión del archivo
    * @param {string} extension - Extensión del archivo